@@ -34,7 +34,6 @@ import sys
 columns = [
     "bornAt",
     "lastMovedAt",
-    "tag",
     "size",
     "arrayLen",
     "address",
@@ -51,7 +50,6 @@ columns = [
 dtype = {
     "bornAt": int,
     "lastMovedAt": int,
-    "tag": int,
     "size": int,
     "arrayLen": int,
     "address": str,
@@ -0,0 +1,95 @@
+import sys
+import os
+import struct
+
+import numpy as np
+import pyarrow as pa
+import pyarrow.parquet as pq
+from tqdm import tqdm
+
+# Reads the column batches written by the analyzer's BinaryLifetimeRecordSink (LifetimeFormat=binary)
+# and writes the same Parquet dataset as to_parquet.py, without a CSV round trip.
+
+MAGIC = 0x414C5446
+VERSION = 2
+
+columns = [
+    ("bornAt", "<i2"),
+    ("lastMovedAt", "<i2"),
+    ("size", "<i4"),
+    ("arrayLen", "<i4"),
+    ("address", "<i8"),
+    ("gcTime", "<i8"),
+    ("gcId", "<i2"),
+    ("allocationSite", "<i4"),
+    ("lifetime", "<i8"),
+    ("type", "<i4"),
+    ("isArray", "<i1"),
+    ("bornTime", "<i8"),
+]
+
+bin_file = sys.argv[1]
+file_without_ext, _ = os.path.splitext(bin_file)
+parquet_file = file_without_ext + ".parquet"
+
+
+def read_dictionary(path):
+    ids = []
+    names = []
+    with open(path) as f:
+        for line in f:
+            key, _, value = line.rstrip("\n").partition("\t")
+            ids.append(int(key))
+            names.append(value)
+    return dict(zip(ids, names))
+
+
+def dictionary_column(codes, dictionary):
+    keys = np.array(sorted(dictionary.keys()), dtype=np.int64)
+    values = pa.array([dictionary[k] for k in keys], type=pa.string())
+    indices = np.searchsorted(keys, codes)
+    return pa.DictionaryArray.from_arrays(pa.array(indices, type=pa.int32()), values)
+
+
+sites = read_dictionary(file_without_ext + ".sites.tsv")
+types = read_dictionary(file_without_ext + ".types.tsv")
+
+with open(bin_file, "rb") as f:
+    magic, version = struct.unpack("<ii", f.read(8))
+    if magic != MAGIC or version != VERSION:
+        sys.exit("Not a lifetime file of version %d: %s" % (VERSION, bin_file))
+
+    with tqdm() as progress:
+        while True:
+            header = f.read(4)
+            if len(header) < 4:
+                break
+            (n,) = struct.unpack("<i", header)
+
+            data = {}
+            for name, dtype in columns:
+                width = np.dtype(dtype).itemsize
+                data[name] = np.frombuffer(f.read(n * width), dtype=dtype)
+
+            table = pa.table({
+                "bornAt": data["bornAt"],
+                "lastMovedAt": data["lastMovedAt"],
+                "size": data["size"],
+                "arrayLen": data["arrayLen"],
+                "address": pa.array(data["address"]).cast(pa.string()),
+                "gcTime": data["gcTime"],
+                "gcId": data["gcId"],
+                "allocationSite": dictionary_column(data["allocationSite"], sites),
+                "lifetime": data["lifetime"],
+                "type": dictionary_column(data["type"], types),
+                "isArray": pa.array(np.where(data["isArray"] != 0, "true", "false")),
+                "arrayLen_2": data["arrayLen"],
+                "bornTime_2": data["bornTime"],
+            })
+
+            pq.write_to_dataset(
+                table,
+                root_path=parquet_file,
+                partition_cols=["type", "allocationSite"],
+            )
+            progress.update(n)
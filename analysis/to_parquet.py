@@ -14,7 +14,6 @@ chunksize = 10_000_000
 columns = [
     "bornAt",
     "lastMovedAt",
-    "tag",
     "size",
     "arrayLen",
     "address",
@@ -31,7 +30,6 @@ columns = [
 dtype = {
     "bornAt": int,
     "lastMovedAt": int,
-    "tag": int,
     "size": int,
     "arrayLen": int,
     "address": str,
@@ -7,5 +7,9 @@ csvfile="$1"
 csvfilewithoutextension="${csvfile%.*}"
 parquetfile="$csvfilewithoutextension.parquet"
 
-python3 "$SCRIPT_DIR/to_parquet.py" $csvfile
+if [[ "$csvfile" == *.bin ]]; then
+    python3 "$SCRIPT_DIR/binary_to_parquet.py" $csvfile
+else
+    python3 "$SCRIPT_DIR/to_parquet.py" $csvfile
+fi
 
@@ -0,0 +1,154 @@
+package com.brr.anttracks.cli.main;
+
+import at.jku.anttracks.heap.labs.AddressHO;
+import at.jku.anttracks.parser.ParserGCInfo;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes lifetime records as column batches of fixed-width little-endian values, which can be loaded without parsing (see
+ * analysis/binary_to_parquet.py).
+ * <p>
+ * File layout: magic (int), version (int), batch*, where each batch is the row count (int) followed by the columns in the order of
+ * {@link #COLUMNS}. Allocation sites and types are stored by their symbols id, the id-to-name dictionaries are written to the
+ * {@code .sites.tsv} and {@code .types.tsv} files next to the data file on close.
+ */
+public class BinaryLifetimeRecordSink implements LifetimeRecordSink {
+
+    public static final int MAGIC = 0x414C5446; // "ALTF"
+    public static final int VERSION = 2;
+    public static final String[] COLUMNS = {"bornAt:i2",
+                                            "lastMovedAt:i2",
+                                            "size:i4",
+                                            "arrayLen:i4",
+                                            "address:i8",
+                                            "gcTime:i8",
+                                            "gcId:i2",
+                                            "allocationSite:i4",
+                                            "lifetime:i8",
+                                            "type:i4",
+                                            "isArray:i1",
+                                            "bornTime:i8"};
+    private static final int ROW_WIDTH = 2 + 2 + 4 + 4 + 8 + 8 + 2 + 4 + 8 + 4 + 1 + 8;
+    private static final int BATCH_SIZE = 1 << 16;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    private final short[] bornAt = new short[BATCH_SIZE];
+    private final short[] lastMovedAt = new short[BATCH_SIZE];
+    private final int[] size = new int[BATCH_SIZE];
+    private final int[] arrayLength = new int[BATCH_SIZE];
+    private final long[] address = new long[BATCH_SIZE];
+    private final long[] gcTime = new long[BATCH_SIZE];
+    private final short[] gcId = new short[BATCH_SIZE];
+    private final int[] siteId = new int[BATCH_SIZE];
+    private final long[] lifetime = new long[BATCH_SIZE];
+    private final int[] typeId = new int[BATCH_SIZE];
+    private final byte[] isArray = new byte[BATCH_SIZE];
+    private final long[] bornTime = new long[BATCH_SIZE];
+    private int n = 0;
+
+    private final Int2ObjectMap<String> sites = new Int2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<String> types = new Int2ObjectOpenHashMap<>();
+
+    public BinaryLifetimeRecordSink(File file) throws IOException {
+        this.file = file;
+        channel = new FileOutputStream(file).getChannel();
+        buffer = ByteBuffer.allocateDirect(Integer.BYTES + BATCH_SIZE * ROW_WIDTH).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        writeBuffer();
+    }
+
+    @Override
+    public void write(long address, AddressHO obj, ParserGCInfo gcInfo, long bornTime, long lifetime) throws IOException {
+        int siteId = obj.getSite().getId();
+        int typeId = obj.getType().id;
+        if (!sites.containsKey(siteId)) {
+            sites.put(siteId, obj.getSite().getCallSites()[0].toString());
+        }
+        if (!types.containsKey(typeId)) {
+            types.put(typeId, obj.getType().internalName);
+        }
+
+        this.bornAt[n] = obj.getBornAt();
+        this.lastMovedAt[n] = obj.getLastMovedAt();
+        this.size[n] = obj.getSize();
+        this.arrayLength[n] = obj.getArrayLength();
+        this.address[n] = address;
+        this.gcTime[n] = gcInfo.getTime();
+        this.gcId[n] = gcInfo.getId();
+        this.siteId[n] = siteId;
+        this.lifetime[n] = lifetime;
+        this.typeId[n] = typeId;
+        this.isArray[n] = (byte) (obj.isArray() ? 1 : 0);
+        this.bornTime[n] = bornTime;
+        n++;
+
+        if (n == BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (n == 0) {
+            return;
+        }
+        buffer.putInt(n);
+        for (int i = 0; i < n; i++) { buffer.putShort(bornAt[i]); }
+        for (int i = 0; i < n; i++) { buffer.putShort(lastMovedAt[i]); }
+        for (int i = 0; i < n; i++) { buffer.putInt(size[i]); }
+        for (int i = 0; i < n; i++) { buffer.putInt(arrayLength[i]); }
+        for (int i = 0; i < n; i++) { buffer.putLong(address[i]); }
+        for (int i = 0; i < n; i++) { buffer.putLong(gcTime[i]); }
+        for (int i = 0; i < n; i++) { buffer.putShort(gcId[i]); }
+        for (int i = 0; i < n; i++) { buffer.putInt(siteId[i]); }
+        for (int i = 0; i < n; i++) { buffer.putLong(lifetime[i]); }
+        for (int i = 0; i < n; i++) { buffer.putInt(typeId[i]); }
+        buffer.put(isArray, 0, n);
+        for (int i = 0; i < n; i++) { buffer.putLong(bornTime[i]); }
+        writeBuffer();
+        n = 0;
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void writeDictionary(Int2ObjectMap<String> dictionary, String suffix) throws IOException {
+        String path = file.getPath();
+        int extension = path.lastIndexOf('.');
+        File dictionaryFile = new File((extension > 0 ? path.substring(0, extension) : path) + suffix);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(dictionaryFile))) {
+            for (Int2ObjectMap.Entry<String> entry : dictionary.int2ObjectEntrySet()) {
+                writer.write(entry.getIntKey() + "\t" + entry.getValue() + "\n");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+        writeDictionary(sites, ".sites.tsv");
+        writeDictionary(types, ".types.tsv");
+    }
+}
@@ -0,0 +1,40 @@
+package com.brr.anttracks.cli.main;
+
+import at.jku.anttracks.heap.labs.AddressHO;
+import at.jku.anttracks.parser.ParserGCInfo;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+// Writes one text row per object, the column order is expected by analysis/to_parquet.py
+public class CsvLifetimeRecordSink implements LifetimeRecordSink {
+
+    private final BufferedWriter writer;
+
+    public CsvLifetimeRecordSink(File file) throws IOException {
+        writer = new BufferedWriter(new FileWriter(file));
+    }
+
+    @Override
+    public void write(long address, AddressHO obj, ParserGCInfo gcInfo, long bornTime, long lifetime) throws IOException {
+        String str = Short.toString(obj.getBornAt()) + ","
+                + obj.getLastMovedAt() + ","
+                + obj.getSize() + "," + obj.getArrayLength() + ","
+                + address + "," + gcInfo.getTime() + ","
+                + gcInfo.getId() + ","
+                + obj.getSite().getCallSites()[0] + ","
+                + lifetime + ","
+                + obj.getType().internalName + ","
+                + obj.isArray() + ","
+                + obj.getArrayLength() + ","
+                + bornTime + "\n";
+        writer.write(str);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,45 @@
+package com.brr.anttracks.cli.main;
+
+import at.jku.anttracks.heap.labs.AddressHO;
+import at.jku.anttracks.parser.ParserGCInfo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+// Receives one record per dead object, see Main.objectYeeted
+public interface LifetimeRecordSink extends Closeable {
+
+    enum Format {
+        CSV("csv"),
+        BINARY("bin");
+
+        public final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public static Format parse(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name) || format.extension.equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown lifetime format: " + name);
+        }
+    }
+
+    void write(long address, AddressHO obj, ParserGCInfo gcInfo, long bornTime, long lifetime) throws IOException;
+
+    static LifetimeRecordSink create(Format format, String pathWithoutExtension) throws IOException {
+        File file = new File(pathWithoutExtension + "." + format.extension);
+        switch (format) {
+            case BINARY:
+                return new BinaryLifetimeRecordSink(file);
+            case CSV:
+            default:
+                return new CsvLifetimeRecordSink(file);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.brr.anttracks.cli.main;
 
 import at.jku.anttracks.heap.ObjectVisitor;
 import at.jku.anttracks.heap.labs.AddressHO;
+import at.jku.anttracks.heap.labs.Lab;
 import at.jku.anttracks.heap.space.SpaceInfo;
 
 import at.jku.anttracks.gui.model.AppInfo;
@@ -43,11 +44,11 @@ import java.nio.file.Files;
 import java.io.IOException;
 import java.io.FileWriter;
 import java.io.BufferedWriter;
+import java.util.Arrays;
 import java.util.List;
 import java.util.HashMap;
 import java.util.logging.LogManager;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.ConcurrentHashMap;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -61,22 +62,23 @@ public class Main {
     private static AppInfo appInfo;
     private static Symbols symbols;
     private static HeapTraceParser parser;
-    private static FileWriter file;
-    private static BufferedWriter bf;
+    private static final String LIFETIMES_PATH = "data/lifetimes";
+    private static final String LIFETIME_FORMAT_ARG = "LifetimeFormat=";
+    private static final String MAP_WHOLE_TRACE_ARG = "MapWholeTrace=";
+    private static final String QUEUE_SIZE_ARG = "QueueSize=";
+    private static final String MAX_QUEUE_SIZE_ARG = "MaxQueueSize=";
+    private static final String LAB_STORAGE_ARG = "LabStorage=";
+    private static LifetimeRecordSink sink;
     private static AtomicLong numObjects;
-    private static final AtomicLong lastTag;
-    private static ConcurrentHashMap<Long, Long> tagBornMap;
+    private static final long UNKNOWN_BORN_TIME = -1;
+    // Indexed by the GC id of a mutator phase (i.e., the bornAt of every object allocated in it), holds the time of the GC start that
+    // ends this phase. GC ids are shorts that wrap around to negative values in long traces, thus the table is indexed by their unsigned
+    // value (see bornTimeIndex) and never grows beyond 512kB, no matter how many objects are born.
+    private static final long[] bornTimes = new long[1 << Short.SIZE];
 
     static {
-        try {
-            file = new FileWriter("data/lifetimes.csv");
-            bf = new BufferedWriter(file);
-            numObjects = new AtomicLong(1);
-            lastTag = new AtomicLong(1);
-            tagBornMap = new ConcurrentHashMap<Long, Long>();
-        } catch (IOException e) {
-            throw new ExceptionInInitializerError(e.getMessage());
-        }
+        numObjects = new AtomicLong(1);
+        Arrays.fill(bornTimes, UNKNOWN_BORN_TIME);
     }
 
     public static void main(String[] args) {
@@ -92,8 +94,26 @@ public class Main {
             return;
         }
 
+        // Further arguments have the form Key=Value, e.g., LifetimeFormat=binary
+        LifetimeRecordSink.Format lifetimeFormat = LifetimeRecordSink.Format.CSV;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith(LIFETIME_FORMAT_ARG)) {
+                lifetimeFormat = LifetimeRecordSink.Format.parse(args[i].substring(LIFETIME_FORMAT_ARG.length()));
+            } else if (args[i].startsWith(MAP_WHOLE_TRACE_ARG)) {
+                TraceFile.mapWholeFile = Boolean.parseBoolean(args[i].substring(MAP_WHOLE_TRACE_ARG.length()));
+            } else if (args[i].startsWith(QUEUE_SIZE_ARG)) {
+                TraceParser.queueHeapFraction = Double.parseDouble(args[i].substring(QUEUE_SIZE_ARG.length()));
+            } else if (args[i].startsWith(MAX_QUEUE_SIZE_ARG)) {
+                TraceParser.maxQueueHeapFraction = Double.parseDouble(args[i].substring(MAX_QUEUE_SIZE_ARG.length()));
+            } else if (args[i].startsWith(LAB_STORAGE_ARG)) {
+                Lab.storage = Lab.Storage.parse(args[i].substring(LAB_STORAGE_ARG.length()));
+            }
+        }
+
         File traceFile = new File(args[0]);
         try {
+            sink = LifetimeRecordSink.create(lifetimeFormat, LIFETIMES_PATH);
+
             // AppInfo represents information about the currently analyzed application
             // This would not be ultimately necessary but make working with classification a
             // bit easier
@@ -137,6 +157,8 @@ public class Main {
             // move events, etc.
             // parser.addEventHandler(JsonExportMain::customEventHandler);
             parser.addEventHandler(Main::customEventHandler);
+            // Deaths are reported from the collected spaces only, so we do not have to scan the whole heap at every GC
+            parser.addDeadObjectListener(Main::objectYeeted);
             DetailedHeap detailedHeap = parser.parse();
             // Once the whole trace has been parsed, if meta-data has been written, we can
             // read statistics information.
@@ -147,7 +169,7 @@ public class Main {
 
             System.out.println("Number of objects processed: " + numObjects.get());
 
-            bf.close();
+            sink.close();
         } catch (Throwable e) {
             e.printStackTrace(System.err);
         }
@@ -176,6 +198,8 @@ public class Main {
                 DetailedHeap heap = (DetailedHeap) sender;
                 if (to.getEventType() == EventType.GC_START) {
                     // Switching into GC phase
+                    // All objects allocated in the mutator phase that ends now are born at this GC start
+                    bornTimes[bornTimeIndex(from.getId())] = to.getTime();
                     // If you want to inspect the heap, we suggest to use IndexBasedHeap idxHeap =
                     // heap.toIndexBasedHeap(false, null) for faster object access
                     // IndexBasedHeap idxHeap = heap.toIndexBasedHeap(false, null);
@@ -213,6 +237,35 @@ public class Main {
         };
     }
 
+    private static void logObject(String event, long address, AddressHO obj, @NotNull ParserGCInfo gcInfo) {
+        // TODO: show all call sites instead of getCallSites()[0]
+        System.out.println("OBJECT " + event + ": " + obj + " at: " + gcInfo.getTime() + " address: " + address
+                + " gcId: " + gcInfo.getId() + " allocationSites: " + obj.getSite().getCallSites()[0]);
+    }
+
+    // Called for every allocation event, the birth time is resolved via the object's bornAt once it dies
+    private static void objectBorn() {
+        numObjects.getAndIncrement();
+    }
+
+    private static int bornTimeIndex(short gcId) {
+        return gcId & 0xFFFF;
+    }
+
+    private static void objectYeeted(DetailedHeap heap, long address, AddressHO obj, SpaceInfo space, ParserGCInfo gcInfo) {
+        // logObject("DELETED", address, obj, gcInfo);
+
+        long bornTime = bornTimes[bornTimeIndex(obj.getBornAt())];
+        if (bornTime != UNKNOWN_BORN_TIME) {
+            long lifetime = gcInfo.getTime() - bornTime;
+            try {
+                sink.write(address, obj, gcInfo, bornTime, lifetime);
+            } catch (IOException x) {
+                System.err.println(x);
+            }
+        }
+    }
+
     // TODO Modify this method if you want to inspect the events read from the trace
     // file (e.g., counting ObjAlloc events)
     // Otherwise, just ignore
@@ -260,6 +313,7 @@ public class Main {
                     @NotNull ThreadLocalHeap threadLocalHeap) throws TraceException {
                 // System.out.println(eventType + "\t" + allocationSite + "\t" + addr + "\t" +
                 // isArray + "\t" + arrayLength + "\t" + size);
+                objectBorn();
                 return null;
             }
 
@@ -269,6 +323,7 @@ public class Main {
                     @NotNull AllocatedType allocatedType, @NotNull AllocationSite allocationSite, long addr,
                     boolean isArray, int arrayLength, int realAllocatedTypeId, @NotNull ThreadLocalHeap threadLocalHeap)
                     throws TraceException {
+                objectBorn();
                 return null;
             }
 
@@ -277,6 +332,7 @@ public class Main {
             public ObjectInfo doParseObjAllocNormalIr(@NotNull EventType eventType, int allocationSiteId,
                     @NotNull AllocationSite allocationSite, long addr, @NotNull ThreadLocalHeap threadLocalHeap)
                     throws TraceException {
+                objectBorn();
                 return null;
             }
 
@@ -285,12 +341,14 @@ public class Main {
             public ObjectInfo doParseObjAllocNormalCi(@NotNull EventType eventType,
                     @NotNull AllocationSite allocationSite, @NotNull AllocatedType allocatedType, long addr,
                     boolean isArray, int arrayLength, @NotNull ThreadLocalHeap threadLocalHeap) throws TraceException {
+                objectBorn();
                 return null;
             }
 
             @Override
             public long doParseObjAllocFastIr(@NotNull EventType eventType, @NotNull AllocationSite allocationSite,
                     @NotNull ThreadLocalHeap threadLocalHeap) throws TraceException {
+                objectBorn();
                 return 0;
             }
 
@@ -298,6 +356,7 @@ public class Main {
             public long doParseObjAllocFastC2DeviantType(@NotNull EventType eventType, int header, int allocationSiteId,
                     @NotNull AllocatedType allocatedType, boolean isArray, int arrayLength,
                     @NotNull ThreadLocalHeap threadLocalHeap) throws TraceException {
+                objectBorn();
                 return 0;
             }
 
@@ -305,6 +364,7 @@ public class Main {
             public long doParseObjAllocFastCi(@NotNull EventType eventType, @NotNull AllocationSite allocationSite,
                     @NotNull AllocatedType allocatedType, boolean isArray, int arrayLength,
                     @NotNull ThreadLocalHeap threadLocalHeap) throws TraceException {
+                objectBorn();
                 return 0;
             }
 
@@ -412,99 +472,16 @@ public class Main {
             }
 
 
-            private void logObject(String event, long address, AddressHO obj, @NotNull ParserGCInfo gcInfo) {
-                // TODO: show all call sites instead of getCallSites()[0]
-                System.out.println("OBJECT " + event + ": " + obj + " at: " + gcInfo.getTime() + " address: " + address
-                        + " gcId: " + gcInfo.getId() + " allocationSites: " + obj.getSite().getCallSites()[0]);
-            }
-
-            private void objectBorn(long address, AddressHO obj, @NotNull ParserGCInfo gcInfo) {
-                // increment and set tag
-                long tag = lastTag.getAndIncrement();
-                obj.setTag(tag);
-                numObjects.getAndIncrement();
-
-                // add tag -> time to map
-                Long tagL = new Long(tag);
-                Long timeL = new Long(gcInfo.getTime());
-                tagBornMap.put(tagL, timeL);
-
-                // logObject("BORN", address, obj, gcInfo);
-            }
-
-            private void objectMoved(long address, AddressHO obj, @NotNull ParserGCInfo gcInfo) {
-                // logObject("MOVED", address, obj, gcInfo);
-            }
-
-            Path outputPath = Paths.get("data/lifetimes.csv");
-
-            private void objectYeeted(long address, AddressHO obj, @NotNull ParserGCInfo gcInfo) {
-                // logObject("DELETED", address, obj, gcInfo);
-
-                Long tag = new Long(obj.getTag());
-                Long bornTime = tagBornMap.remove(tag);
-                if (bornTime != null) {
-                    Long curTime = gcInfo.getTime();
-                    Long lifetime = curTime - bornTime;
-                    String str = Short.toString(obj.getBornAt()) + ","
-                        + obj.getLastMovedAt() + "," + obj.getTag() + ","
-                        + obj.getSize() + "," + obj.getArrayLength() + ","
-                        + address + "," + gcInfo.getTime() + ","
-                        + gcInfo.getId() + ","
-                        + obj.getSite().getCallSites()[0] + ","
-                        + lifetime + ","
-                        + obj.getType().internalName + ","
-                        + obj.isArray() + ","
-                        + obj.getArrayLength() + ","
-                        + bornTime + "\n";
-
-                    try {
-                        bf.write(str);
-                    } catch (IOException x) {
-                        System.err.println(x);
-                    }
-
-                }
-            }
-
             @Override
             public void doParseGCEnd(@NotNull ParserGCInfo gcInfo, long start, long end, boolean failed,
                     @NotNull ThreadLocalHeap threadLocalHeap) throws TraceException {
-                heap.toObjectStream(false).forEach(new ObjectVisitor() {
-                    @Override
-                    public void visit(long address, AddressHO obj, SpaceInfo space, List<? extends RootPtr> rootPtrs) {
-                        if (gcInfo.getId() == obj.getLastMovedAt()) {
-                            objectMoved(address, obj, gcInfo);
-                        }
-                        if (space.isBeingCollected() && obj.getLastMovedAt() != gcInfo.getId()) {
-                            objectYeeted(address, obj, gcInfo);
-                        }
-                    }
-                }, new ObjectVisitor.Settings(true));
+
             }
 
             @Override
             public void doParseGCStart(@NotNull ParserGCInfo gcInfo, long start, long end,
                     @NotNull ThreadLocalHeap threadLocalHeap) throws TraceException {
-                // System.out.println("doParseGCStart");
-                heap.toObjectStream(true).forEach(new ObjectVisitor() {
-                    @Override
-                    public void visit(long address, AddressHO obj, SpaceInfo space, List<? extends RootPtr> rootPtrs) {
-                        // System.out.format("Address: %d, obj info: %s, bornAt: %d, lastMovedAt: %d,
-                        // tag: %d %n", address, obj.getInfo(), obj.getBornAt(), obj.getLastMovedAt(),
-                        // obj.getTag());
-                        if (heap.latestGCId() == obj.getBornAt()) {
-                            objectBorn(address, obj, gcInfo);
-                        }
-                        if (heap.latestGCId() == obj.getLastMovedAt()) {
-                            objectMoved(address, obj, gcInfo);
-                        }
-                        // if (space.isBeingCollected() && obj.getLastMovedAt() != heap.latestGCId()) {
-                        // System.out.println("[START] OBJECT YEETED: " + obj + " at: " +
-                        // gcInfo.getTime() + " address: " + address);
-                        // }
-                    }
-                }, new ObjectVisitor.Settings(true));
+
             }
 
             @Override
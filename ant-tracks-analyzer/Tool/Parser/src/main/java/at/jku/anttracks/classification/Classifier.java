@@ -2,6 +2,7 @@
 package at.jku.anttracks.classification;
 
 import at.jku.anttracks.classification.annotations.C;
+import at.jku.anttracks.classification.annotations.ObjectInfoBased;
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection;
 import at.jku.anttracks.classification.enumerations.ClassifierType;
 import at.jku.anttracks.features.FeatureMap;
@@ -224,6 +225,20 @@ public abstract class Classifier<T> implements Comparable<Classifier<T>> {
         return type;
     }
 
+    private Boolean objectInfoBased = null;
+
+    /**
+     * Whether the classifier only depends on the object's {@link ObjectInfo}, see {@link ObjectInfoBased}
+     *
+     * @return true if the classifier is annotated with {@link ObjectInfoBased}
+     */
+    public boolean isObjectInfoBased() {
+        if (objectInfoBased == null) {
+            objectInfoBased = AnnotationHelper.getAnnotation(this, ObjectInfoBased.class) != null;
+        }
+        return objectInfoBased;
+    }
+
     protected String desc = null;
 
     /**
@@ -0,0 +1,18 @@
+package at.jku.anttracks.classification.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * This annotation marks {@link at.jku.anttracks.classification.Classifier} subclasses (including filters) whose result only depends on the
+ * classified object's {@link at.jku.anttracks.heap.objects.ObjectInfo} (i.e., type, allocation site, thread, event type, size and array
+ * length), but not on the object itself (e.g., its address, pointers or space).
+ * <p>
+ * If every classifier and filter of a classification is marked, objects that share an ObjectInfo end up in the same groups, and the
+ * classification result of the first such object can be reused for all others (see
+ * {@link at.jku.anttracks.classification.nodes.MemoizedClassification}).
+ */
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.TYPE_USE})
+public @interface ObjectInfoBased {
+}
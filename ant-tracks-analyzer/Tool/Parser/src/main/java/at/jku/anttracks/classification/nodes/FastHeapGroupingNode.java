@@ -72,7 +72,7 @@ public abstract class FastHeapGroupingNode implements GroupingNode {
                 Filter f = filters[i];
                 if (!f.classify(objIndex)) {
                     // Filter failed, do not continue with classification
-                    addLeaf(objIndex, n);
+                    leaf(objIndex, n);
                     return this;
                 }
             }
@@ -94,7 +94,7 @@ public abstract class FastHeapGroupingNode implements GroupingNode {
                                          int continueWithSubTreeLevel) throws Exception {
         // Recursion hook: No more classifiers to process
         if (classifiers.length() == 0) {
-            addLeaf(objIndex, n);
+            leaf(objIndex, n);
             return this;
         }
 
@@ -151,7 +151,7 @@ public abstract class FastHeapGroupingNode implements GroupingNode {
                 }
                 for (int i = 0; i < keys.length; i++) {
                     if (i > 0) {
-                        addDuplicate(objIndex, n);
+                        duplicate(objIndex, n);
                     }
                     FastHeapGroupingNode group = addChildIfNeeded((Class<? extends Classifier<?>>) classifierToUse.getClass(), keys[i], continueWithSubTreeLevel);
                     group.classify(fastHeap, objIndex, remainingClassifiers, n);
@@ -196,7 +196,7 @@ public abstract class FastHeapGroupingNode implements GroupingNode {
                                                                            continueWithSubTreeLevel);
                     }
                     if (i > 0) {
-                        addDuplicate(objIndex, n);
+                        duplicate(objIndex, n);
                     }
                     currentGrouping.classify(fastHeap, objIndex, remainingClassifiers, n);
                 }
@@ -220,7 +220,7 @@ public abstract class FastHeapGroupingNode implements GroupingNode {
                 // Leaf nodes in transformer -> Continue classification with
                 // remaining classifiers on all leaf nodes
                 if (!firstClassification.get()) {
-                    transformerParent.addDuplicate(objIndex, n);
+                    transformerParent.duplicate(objIndex, n);
                 }
                 child.classify(fastHeap, objIndex, classifiers, n, transformerParent.getSubTreeLevel());
                 firstClassification.set(false);
@@ -253,6 +253,31 @@ public abstract class FastHeapGroupingNode implements GroupingNode {
         return getFullKeyAsString().hashCode();
     }
 
+    /**
+     * Is notified about every node an object is added to while it is classified on the current thread, see {@link MemoizedClassification}
+     */
+    interface Recorder {
+        void added(FastHeapGroupingNode node, boolean duplicate);
+    }
+
+    static final ThreadLocal<Recorder> recorder = new ThreadLocal<>();
+
+    private void leaf(int objIndex, long n) {
+        addLeaf(objIndex, n);
+        Recorder r = recorder.get();
+        if (r != null) {
+            r.added(this, false);
+        }
+    }
+
+    private void duplicate(int objIndex, long n) {
+        addDuplicate(objIndex, n);
+        Recorder r = recorder.get();
+        if (r != null) {
+            r.added(this, true);
+        }
+    }
+
     protected abstract void addLeaf(int objId, long n);
 
     protected abstract void addDuplicate(int objId, long n);
@@ -67,17 +67,21 @@ public class IndexCollection implements GroupingDataCollection {
                                       boolean calculateDataStructureClosure,
                                       boolean calculateDeepDataStructureClosure,
                                       BitSet assumeChildClosure) {
-        if (!sorted) {
-            sort();
-        }
         return heap.getClosures(calculateTransitiveClosure,
                                 calculateGCClosure,
                                 calculateDataStructureClosure,
                                 calculateDeepDataStructureClosure,
-                                Arrays.copyOf(data, count),
+                                getSortedIndices(),
                                 assumeChildClosure);
     }
 
+    public int[] getSortedIndices() {
+        if (!sorted) {
+            sort();
+        }
+        return Arrays.copyOf(data, count);
+    }
+
     /*
     public Closures getClosures() {
         return getClosures(null);
@@ -0,0 +1,118 @@
+package at.jku.anttracks.classification.nodes;
+
+import at.jku.anttracks.classification.Classifier;
+import at.jku.anttracks.classification.ClassifierChain;
+import at.jku.anttracks.classification.Filter;
+import at.jku.anttracks.classification.Transformer;
+import at.jku.anttracks.classification.annotations.ObjectInfoBased;
+import at.jku.anttracks.heap.IndexBasedHeap;
+import at.jku.anttracks.heap.objects.ObjectInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classifies objects into a {@link FastHeapGroupingNode} tree like {@link FastHeapGroupingNode#classify(IndexBasedHeap, Integer,
+ * ClassifierChain, Filter[], boolean)}, but runs the classifiers only once per distinct {@link ObjectInfo} if all classifiers and filters
+ * are {@link ObjectInfoBased}. The nodes the first object of an ObjectInfo has been added to are recorded (by {@link ObjectInfo#id}), and
+ * every further object with the same ObjectInfo is directly added to these nodes. Otherwise, every object is classified as usual.
+ * <p>
+ * An instance must only be used by one thread at a time.
+ */
+public class MemoizedClassification {
+    private static final FastHeapGroupingNode[] NO_NODES = new FastHeapGroupingNode[0];
+
+    private final FastHeapGroupingNode root;
+    private final ClassifierChain classifiers;
+    private final Filter[] filters;
+    private final boolean addFilterNodeInTree;
+    private final boolean memoize;
+
+    // per ObjectInfo id: the nodes the ObjectInfo's objects are added to, and whether they are added as duplicate (null if there are no
+    // duplicates), null if no object with that ObjectInfo has been classified yet
+    private FastHeapGroupingNode[][] targets = new FastHeapGroupingNode[0][];
+    private boolean[][] duplicates = new boolean[0][];
+
+    public MemoizedClassification(FastHeapGroupingNode root, ClassifierChain classifiers, Filter[] filters, boolean addFilterNodeInTree) {
+        this.root = root;
+        this.classifiers = classifiers;
+        this.filters = filters;
+        this.addFilterNodeInTree = addFilterNodeInTree;
+        memoize = canMemoize(classifiers, filters);
+    }
+
+    /**
+     * @return true if all classifiers and filters only depend on an object's {@link ObjectInfo}
+     */
+    public static boolean canMemoize(ClassifierChain classifiers, Filter[] filters) {
+        for (Classifier<?> classifier : classifiers.getList()) {
+            if (classifier == null || classifier instanceof Transformer || !classifier.isObjectInfoBased()) {
+                return false;
+            }
+        }
+        if (filters != null) {
+            for (Filter filter : filters) {
+                if (filter == null || !filter.isObjectInfoBased()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public FastHeapGroupingNode getRoot() {
+        return root;
+    }
+
+    public boolean isMemoizing() {
+        return memoize;
+    }
+
+    public void classify(IndexBasedHeap fastHeap, int objIndex) throws Exception {
+        ObjectInfo objectInfo = memoize ? fastHeap.getObjectInfo(objIndex) : null;
+        if (objectInfo == null || objectInfo.id < 0) {
+            root.classify(fastHeap, objIndex, classifiers, filters, addFilterNodeInTree);
+            return;
+        }
+
+        int id = objectInfo.id;
+        if (id < targets.length && targets[id] != null) {
+            FastHeapGroupingNode[] nodes = targets[id];
+            boolean[] duplicate = duplicates[id];
+            for (int i = 0; i < nodes.length; i++) {
+                if (duplicate != null && duplicate[i]) {
+                    nodes[i].addDuplicate(objIndex, 1);
+                } else {
+                    nodes[i].addLeaf(objIndex, 1);
+                }
+            }
+            return;
+        }
+
+        List<FastHeapGroupingNode> nodes = new ArrayList<>(1);
+        List<Boolean> duplicate = new ArrayList<>(1);
+        FastHeapGroupingNode.recorder.set((node, isDuplicate) -> {
+            nodes.add(node);
+            duplicate.add(isDuplicate);
+        });
+        try {
+            root.classify(fastHeap, objIndex, classifiers, filters, addFilterNodeInTree);
+        } finally {
+            FastHeapGroupingNode.recorder.remove();
+        }
+
+        if (id >= targets.length) {
+            int length = Math.max(id + 1, targets.length * 2);
+            targets = Arrays.copyOf(targets, length);
+            duplicates = Arrays.copyOf(duplicates, length);
+        }
+        targets[id] = nodes.isEmpty() ? NO_NODES : nodes.toArray(new FastHeapGroupingNode[0]);
+        if (duplicate.contains(true)) {
+            duplicates[id] = new boolean[duplicate.size()];
+            for (int i = 0; i < duplicate.size(); i++) {
+                duplicates[id][i] = duplicate.get(i);
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ import at.jku.anttracks.classification.nodes.ListGroupingNode
 import at.jku.anttracks.heap.Closures
 import at.jku.anttracks.heap.Heap
 import at.jku.anttracks.heap.IndexBasedHeap
+import at.jku.anttracks.heap.ParallelClosures
 import at.jku.anttracks.util.Consts.LIST_TREE_EXTENSION
 import at.jku.anttracks.util.Counter
 import at.jku.anttracks.util.ParallelizationUtil
@@ -91,16 +92,17 @@ class ListClassificationTree(grouping: ListGroupingNode, filters: Array<Filter>,
                              calculateDataStructureClosure: Boolean,
                              calculateDeepDataStructureClosure: Boolean,
                              node: ListGroupingNode,
-                             multiThread: Boolean): ClosureInitInfo? {
+                             multiThread: Boolean,
+                             leafClosures: Closures? = null): ClosureInitInfo? {
         val ret: ClosureInitInfo
         val childrenOnSameSubtreeLevel = node.firstChildrenOnSameSubtreeLevel
         if (node.children.isEmpty()) { //ApplicationStatistics.Measurement m = ApplicationStatistics.getInstance().createMeasurement("anttracks.closures.leaf");
 // Init leafs, no big deal
-            val closures = node.data.calculateClosures(heap as IndexBasedHeap?,
-                                                       calculateTransitiveClosure,
-                                                       calculateGCClosure,
-                                                       calculateDataStructureClosure,
-                                                       calculateDeepDataStructureClosure)
+            val closures = leafClosures ?: node.data.calculateClosures(heap as IndexBasedHeap?,
+                                                                       calculateTransitiveClosure,
+                                                                       calculateGCClosure,
+                                                                       calculateDataStructureClosure,
+                                                                       calculateDeepDataStructureClosure)
             //ApplicationStatistics.Measurement m2 = ApplicationStatistics.getInstance().createMeasurement("anttracks.closures.leaf.calcbytes");
             node.setClosureSize(closures.transitiveClosureByteCount)
             node.setGCSize(closures.gcClosureByteCount)
@@ -119,6 +121,7 @@ class ListClassificationTree(grouping: ListGroupingNode, filters: Array<Filter>,
             val combinedChildClosure = BitSet()
             val childData = arrayOfNulls<IndexCollection>(childrenOnSameSubtreeLevel.size)
             val sameSubtreeLevelChildId = Counter()
+            val childLeafClosures = calculateLeafClosures(heap as IndexBasedHeap, node, calculateTransitiveClosure, calculateGCClosure)
             if (multiThread && childrenOnSameSubtreeLevel.size > 1) {
                 ParallelizationUtil.temporaryExecutorServiceBlocking { threadId: Int, threadCount: Int ->
                     var childId = threadId
@@ -129,7 +132,8 @@ class ListClassificationTree(grouping: ListGroupingNode, filters: Array<Filter>,
                                                              calculateDataStructureClosure,
                                                              calculateDeepDataStructureClosure,
                                                              node.children[childId] as ListGroupingNode,
-                                                             false)
+                                                             false,
+                                                             childLeafClosures[childId])
                         if (childrenOnSameSubtreeLevel.contains(node.children[childId])) {
                             synchronized(combinedChildClosure
                             ) { combinedChildClosure.or(childClosuresInfo!!.closures.transitiveClosure) }
@@ -148,7 +152,9 @@ class ListClassificationTree(grouping: ListGroupingNode, filters: Array<Filter>,
                                                          calculateGCClosure,
                                                          calculateDataStructureClosure,
                                                          calculateDeepDataStructureClosure,
-                                                         node.children[childId] as ListGroupingNode, false)
+                                                         node.children[childId] as ListGroupingNode,
+                                                         false,
+                                                         childLeafClosures[childId])
                     if (childrenOnSameSubtreeLevel.contains(node.children[childId])) {
                         combinedChildClosure.or(childClosuresInfo!!.closures.transitiveClosure)
                         childData[childId] = childClosuresInfo.data
@@ -187,6 +193,26 @@ class ListClassificationTree(grouping: ListGroupingNode, filters: Array<Filter>,
         return ret
     }
 
+    /**
+     * Calculates the closures of all leaf children of the given node, [ParallelClosures.MAX_GROUPS] leaves per traversal.
+     * Returns null for children that are no leaves, or for all children if there are less than two leaves.
+     */
+    private fun calculateLeafClosures(heap: IndexBasedHeap,
+                                      node: ListGroupingNode,
+                                      calculateTransitiveClosure: Boolean,
+                                      calculateGCClosure: Boolean): Array<Closures?> {
+        val leafClosures = arrayOfNulls<Closures>(node.children.size)
+        val leafIds = node.children.indices.filter { node.children[it].children.isEmpty() }
+        if (!calculateTransitiveClosure || leafIds.size < 2) {
+            return leafClosures
+        }
+        leafIds.chunked(ParallelClosures.MAX_GROUPS).forEach { chunk ->
+            val closures = heap.getClosures(calculateGCClosure, chunk.map { (node.children[it] as ListGroupingNode).data.sortedIndices }.toTypedArray())
+            chunk.forEachIndexed { i, childId -> leafClosures[childId] = closures[i] }
+        }
+        return leafClosures
+    }
+
     @Synchronized
     fun closureCalculationProgressed() {
         assert(nNodes >= 0) { "Classification tree must be initialized! Probably missing call to init()" }
@@ -0,0 +1,195 @@
+package at.jku.anttracks.experiments;
+
+import at.jku.anttracks.parser.Decompressor;
+import at.jku.anttracks.parser.Scanner;
+import at.jku.anttracks.parser.TraceFile;
+import at.jku.anttracks.parser.io.InputStreamScanner;
+import at.jku.anttracks.util.TraceException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link Decompressor} with the previous dictionary-based decoder on the compressed buffers of a recorded trace file, e.g.,
+ * {@code java -cp <classpath> org.openjdk.jmh.Main DecompressorBenchmark -p trace=/path/to/trace}.
+ * The setup fails if both decoders do not produce the same bytes for every buffer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class DecompressorBenchmark {
+
+    private static final int HEAP_WORD_SIZE = 8;
+    private static final int COMPRESSED_MASK = 1 << (Integer.SIZE - 1);
+    private static final int SYNC_MASK = 3 << (Integer.SIZE - 3);
+    private static final int LENGTH_MASK = ~(COMPRESSED_MASK | SYNC_MASK);
+
+    @Param({""})
+    public String trace;
+
+    @Param({"1000"})
+    public int maxBuffers;
+
+    private List<ByteBuffer> buffers;
+    private Decompressor decompressor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, TraceException {
+        if (trace.isEmpty()) {
+            throw new IllegalArgumentException("Pass the trace file to decode with -p trace=<file>");
+        }
+        buffers = readCompressedBuffers(new File(trace), maxBuffers);
+        if (buffers.isEmpty()) {
+            throw new IllegalArgumentException("Trace does not contain compressed buffers: " + trace);
+        }
+        decompressor = new Decompressor();
+
+        for (ByteBuffer buffer : buffers) {
+            ByteBuffer expected = new HashMapDecompressor().decode(buffer.duplicate());
+            ByteBuffer actual = decompressor.decode(buffer.duplicate());
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Decoders disagree on a buffer of " + buffer.limit() + "b");
+            }
+        }
+    }
+
+    @Benchmark
+    public void table(Blackhole blackhole) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            blackhole.consume(decompressor.decode(buffer.duplicate()));
+        }
+    }
+
+    @Benchmark
+    public void hashMap(Blackhole blackhole) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            blackhole.consume(new HashMapDecompressor().decode(buffer.duplicate()));
+        }
+    }
+
+    private static List<ByteBuffer> readCompressedBuffers(File file, int maxBuffers) throws IOException, TraceException {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        try (Scanner scanner = new InputStreamScanner(new FileInputStream(file))) {
+            TraceFile.readTraceFileInfo(new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    return (scanner.getByte()) & 0xFF;
+                }
+            });
+            while (buffers.size() < maxBuffers && scanner.getThread(HEAP_WORD_SIZE) != null) {
+                int metadata = scanner.getWord();
+                ByteBuffer buffer = scanner.getBuffer(metadata & LENGTH_MASK);
+                if ((metadata & COMPRESSED_MASK) != 0) {
+                    buffers.add(buffer);
+                }
+            }
+        }
+        return buffers;
+    }
+
+    /**
+     * Condensed copy of the dictionary-based decoder that {@link Decompressor} used before switching to code tables, kept as the baseline.
+     */
+    private static class HashMapDecompressor {
+        private static final int FIRST_CUSTOM_INDEX = 1 << 8;
+        private static final int MAX_INDEX = (((~0) & ((1 << 16) - 1)) >> 2);
+
+        private final ByteArrayOutputStream dest = new ByteArrayOutputStream(2);
+        private ByteBuffer src;
+        private int width = 8;
+        private int in_byte_offset = 8;
+        private int b = 0;
+
+        public ByteBuffer decode(ByteBuffer buffer) throws IOException {
+            src = buffer;
+            final Map<Integer, byte[]> dictionary = new HashMap<>();
+            int nextIndex = FIRST_CUSTOM_INDEX;
+
+            byte[] last = new byte[0];
+            for (int index = next(); index >= 0; index = next()) {
+                byte[] current;
+                boolean mergeLastWithCurrent = false;
+                if (index < FIRST_CUSTOM_INDEX) {
+                    current = new byte[]{(byte) (index & 0xFF)};
+                } else {
+                    current = dictionary.get(index);
+                    if (current == null) {
+                        current = new byte[]{last[0]};
+                        dest.write(last);
+                        mergeLastWithCurrent = true;
+                    }
+                }
+                dest.write(current);
+                if (last.length != 0 && nextIndex <= MAX_INDEX) {
+                    dictionary.put(nextIndex++, concat(last, new byte[]{current[0]}));
+                }
+                if (mergeLastWithCurrent) {
+                    current = concat(last, current);
+                }
+                last = current;
+            }
+            return ByteBuffer.wrap(dest.toByteArray());
+        }
+
+        private static byte[] concat(byte[] a1, byte[] a2) {
+            byte[] result = new byte[a1.length + a2.length];
+            System.arraycopy(a1, 0, result, 0, a1.length);
+            System.arraycopy(a2, 0, result, a1.length, a2.length);
+            return result;
+        }
+
+        private int next() {
+            int value = read();
+            if (value == (1 << width) - 1) {
+                width++;
+                value = next();
+                if (value == 0) {
+                    return -1;
+                }
+            }
+            return value;
+        }
+
+        private int read() {
+            int value = 0;
+            int bits = width;
+            do {
+                if (in_byte_offset == 8) {
+                    in_byte_offset = 0;
+                    b = src.get() & 0xFF;
+                }
+                int bits_to_read = Math.min(8 - in_byte_offset, bits);
+                int value_part = (b >> (8 - in_byte_offset - bits_to_read)) & ((1 << bits_to_read) - 1);
+                value = value | (value_part << (bits - bits_to_read));
+                bits = bits - bits_to_read;
+                in_byte_offset = in_byte_offset + bits_to_read;
+            } while (bits > 0);
+            return value;
+        }
+    }
+}
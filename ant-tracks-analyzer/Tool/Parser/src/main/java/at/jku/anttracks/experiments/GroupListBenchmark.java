@@ -0,0 +1,165 @@
+package at.jku.anttracks.experiments;
+
+import at.jku.anttracks.classification.Classifier;
+import at.jku.anttracks.classification.ClassifierChain;
+import at.jku.anttracks.classification.Filter;
+import at.jku.anttracks.classification.annotations.C;
+import at.jku.anttracks.classification.annotations.ObjectInfoBased;
+import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection;
+import at.jku.anttracks.classification.enumerations.ClassifierType;
+import at.jku.anttracks.classification.nodes.ListGroupingNode;
+import at.jku.anttracks.heap.FastHeap;
+import at.jku.anttracks.heap.objects.ObjectInfo;
+import at.jku.anttracks.heap.symbols.AllocatedType;
+import at.jku.anttracks.heap.symbols.AllocatedTypes;
+import at.jku.anttracks.heap.symbols.AllocationSite;
+import at.jku.anttracks.heap.symbols.Symbols;
+import at.jku.anttracks.parser.EventType;
+import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifies a synthetic {@link FastHeap} by type, allocation site and call site with different numbers of threads, e.g.,
+ * {@code java -Xmx24g -cp <classpath> org.openjdk.jmh.Main GroupListBenchmark -p objects=50000000 -p threads=1,2,4,8,16}.
+ * <p>
+ * {@code ranges} is {@link FastHeap#groupListParallel} (contiguous index ranges on a fork/join pool, one tree per thread, merged pairwise).
+ * {@code memoized} is {@code ranges} with {@link ObjectInfoBased} classifiers, which are only run once per distinct ObjectInfo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupListBenchmark {
+
+    private static final int TYPES = 1_000;
+    private static final int SITES = 10_000;
+    private static final int CALLERS = 100;
+
+    @Param({"50000000"})
+    public int objects;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private FastHeap heap;
+    private ClassifierChain classifiers;
+    private ClassifierChain objectInfoBasedClassifiers;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Random random = new Random(42);
+        HprofToFastHeapHandler handler = new HprofToFastHeapHandler();
+        Symbols symbols = handler.getSymbols();
+
+        // java.lang.Object and the mirror class type must exist to complete the types, IDs 0 and 1 are reserved for unknown types
+        AllocatedType object = symbols.types.add(2, new AllocatedType(2, AllocatedType.ALLOCATED_TYPE_IDENTIFIER_UNKNOWN, "Ljava/lang/Object;", 16));
+        symbols.types.add(3, new AllocatedType(3, object.id, AllocatedTypes.MIRROR_CLASS_NAME, 16));
+        AllocatedType[] types = new AllocatedType[TYPES];
+        for (int t = 0; t < TYPES; t++) {
+            types[t] = symbols.types.add(t + 4, new AllocatedType(t + 4, object.id, "Lcom/example/Type" + t + ";", 16 + 8 * (t % 8)));
+        }
+        AllocationSite[] sites = new AllocationSite[SITES];
+        for (int s = 0; s < SITES; s++) {
+            AllocationSite.Location[] callSites = {new AllocationSite.Location("com/example/Factory" + s + ".create()V", s % 64),
+                                                   new AllocationSite.Location("com/example/Caller" + random.nextInt(CALLERS) + ".call()V", 0)};
+            sites[s] = new AllocationSite(s, callSites, types[random.nextInt(TYPES)].id);
+            symbols.sites.add(sites[s]);
+        }
+        symbols.types.complete();
+        symbols.sites.complete();
+
+        long[] addresses = new long[objects];
+        int[][] pointers = new int[objects][];
+        ObjectInfo[] objectInfos = new ObjectInfo[objects];
+        int[] noPointers = new int[0];
+        for (int i = 0; i < objects; i++) {
+            AllocationSite site = sites[random.nextInt(SITES)];
+            addresses[i] = i * 64L;
+            pointers[i] = noPointers;
+            objectInfos[i] = handler.getObjectInfoCache().get("main",
+                                                              site,
+                                                              symbols.types.getById(site.getAllocatedTypeId()),
+                                                              EventType.NOP,
+                                                              -1,
+                                                              -1,
+                                                              symbols);
+        }
+        // the handler is usually filled by parsing an HPROF file
+        setField(handler, "addr", addresses);
+        setField(handler, "toPtrs", pointers);
+        setField(handler, "frmPtrs", pointers);
+        setField(handler, "objectInfos", objectInfos);
+        heap = new FastHeap(handler, false);
+
+        classifiers = new ClassifierChain(new TypeNameClassifier(), new AllocationSiteNameClassifier(), new CallSiteNameClassifier());
+        objectInfoBasedClassifiers = new ClassifierChain(new ObjectInfoBasedTypeNameClassifier(),
+                                                         new ObjectInfoBasedAllocationSiteNameClassifier(),
+                                                         new ObjectInfoBasedCallSiteNameClassifier());
+    }
+
+    private static void setField(HprofToFastHeapHandler handler, String name, Object value) throws ReflectiveOperationException {
+        Field field = HprofToFastHeapHandler.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(handler, value);
+    }
+
+    @Benchmark
+    public ListGroupingNode ranges() {
+        return (ListGroupingNode) heap.groupListParallel(new Filter[0], classifiers, false, false, null, null, threads).getRoot();
+    }
+
+    @Benchmark
+    public ListGroupingNode memoized() {
+        return (ListGroupingNode) heap.groupListParallel(new Filter[0], objectInfoBasedClassifiers, false, false, null, null, threads).getRoot();
+    }
+
+    @C(name = "Type", desc = "Type name", example = "Type0", type = ClassifierType.ONE, collection = ClassifierSourceCollection.ALL)
+    public static class TypeNameClassifier extends Classifier<String> {
+        @Override
+        protected String classify() {
+            return type().internalName;
+        }
+    }
+
+    @C(name = "Allocation Site", desc = "Allocating method", example = "Factory0.create()", type = ClassifierType.ONE, collection = ClassifierSourceCollection.ALL)
+    public static class AllocationSiteNameClassifier extends Classifier<String> {
+        @Override
+        protected String classify() {
+            return allocationSite().getCallSites()[0].getSignature();
+        }
+    }
+
+    @C(name = "Call Site", desc = "Caller of the allocating method", example = "Caller0.call()", type = ClassifierType.ONE, collection = ClassifierSourceCollection.ALL)
+    public static class CallSiteNameClassifier extends Classifier<String> {
+        @Override
+        protected String classify() {
+            return allocationSite().getCallSites()[1].getSignature();
+        }
+    }
+
+    @ObjectInfoBased
+    public static class ObjectInfoBasedTypeNameClassifier extends TypeNameClassifier {}
+
+    @ObjectInfoBased
+    public static class ObjectInfoBasedAllocationSiteNameClassifier extends AllocationSiteNameClassifier {}
+
+    @ObjectInfoBased
+    public static class ObjectInfoBasedCallSiteNameClassifier extends CallSiteNameClassifier {}
+}
@@ -0,0 +1,164 @@
+package at.jku.anttracks.experiments;
+
+import at.jku.anttracks.parser.EventType;
+import at.jku.anttracks.parser.QueueBudget;
+import at.jku.anttracks.parser.QueueEntry;
+import at.jku.anttracks.parser.SlaveQueues;
+import at.jku.anttracks.parser.SyncLevel;
+import at.jku.anttracks.parser.ThreadLocalHeap;
+import at.jku.anttracks.util.SpscRingBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static at.jku.anttracks.parser.ThreadLocalHeap.STATE_IN_PROCESS;
+import static at.jku.anttracks.parser.ThreadLocalHeap.STATE_IN_QUEUE;
+
+/**
+ * Measures how many events per second pass through the dispatcher -> master -> slave handoff of the TraceParser as the number of slaves
+ * grows, e.g., {@code java -cp <classpath> org.openjdk.jmh.Main HandoffBenchmark -p slaves=1,8,32}.
+ * <p>
+ * Buffers of synthetic events are dispatched round-robin for a number of application threads, with an ENSURE_ORDER sync point every
+ * {@link #SYNC_INTERVAL} buffers. Slaves only sum up the events, such that the handoff itself dominates. {@code lockFree} uses
+ * {@link QueueBudget}, {@link SpscRingBuffer} and {@link SlaveQueues} like the parser does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandoffBenchmark {
+
+    private static final int BUFFERS = 20_000;
+    private static final int EVENTS_PER_BUFFER = 256;
+    private static final int SYNC_INTERVAL = 1_000;
+    private static final long MAX_QUEUE_SIZE = 1 << 22;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int slaves;
+
+    @Param({"64"})
+    public int threads;
+
+    private QueueEntry[] entries;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ByteBuffer payload = ByteBuffer.allocate(EVENTS_PER_BUFFER * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int event = 0; event < EVENTS_PER_BUFFER; event++) {
+            payload.putInt(event * Integer.BYTES, event);
+        }
+        entries = new QueueEntry[BUFFERS];
+        for (int i = 0; i < BUFFERS; i++) {
+            SyncLevel sync = i % SYNC_INTERVAL == SYNC_INTERVAL - 1 ? SyncLevel.ENSURE_ORDER : SyncLevel.NONE;
+            // slaves only use absolute reads, thus all entries can share the payload
+            entries[i] = new QueueEntry("0x" + Integer.toHexString(i % threads), payload, (long) i * payload.capacity(), false, sync);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BUFFERS * EVENTS_PER_BUFFER)
+    public long lockFree() throws InterruptedException {
+        final QueueBudget queueSize = new QueueBudget(MAX_QUEUE_SIZE);
+        final SpscRingBuffer<QueueEntry> chunks = new SpscRingBuffer<>(1 << 14);
+        final SlaveQueues masterQueue = new SlaveQueues();
+        final long[] sums = new long[slaves];
+
+        Thread[] workers = new Thread[slaves];
+        for (int id = 0; id < slaves; id++) {
+            final int slave = id;
+            masterQueue.register(slave);
+            workers[slave] = new Thread(() -> {
+                try {
+                    while (true) {
+                        ThreadLocalHeap heap = masterQueue.take(slave);
+                        heap.compareAndSetState(STATE_IN_QUEUE, STATE_IN_PROCESS);
+                        do {
+                            for (QueueEntry entry = heap.getQueue().poll(); entry != null; entry = heap.getQueue().poll()) {
+                                sums[slave] += parse(entry.getBuffer());
+                                queueSize.release(entry.getBuffer().limit());
+                            }
+                        } while (!heap.park());
+                        masterQueue.done(slave);
+                    }
+                } catch (InterruptedException e) {
+                    // finished
+                }
+            });
+            workers[slave].start();
+        }
+
+        Thread master = new Thread(() -> {
+            Map<String, ThreadLocalHeap> heaps = new HashMap<>();
+            try {
+                for (QueueEntry entry = chunks.take(); entry != QueueEntry.Companion.getNULL(); entry = chunks.take()) {
+                    if (entry.getSync() != SyncLevel.NONE) {
+                        for (ThreadLocalHeap heap : heaps.values()) {
+                            heap.awaitParked();
+                        }
+                    }
+                    ThreadLocalHeap heap = heaps.get(entry.getThread());
+                    if (heap == null) {
+                        heap = new ThreadLocalHeap(entry.getThread(), STATE_IN_QUEUE, (short) -1, EventType.GC_END);
+                        heaps.put(entry.getThread(), heap);
+                        masterQueue.add(heap);
+                    }
+                    if (heap.enqueue(entry)) {
+                        masterQueue.add(heap);
+                    }
+                }
+                for (ThreadLocalHeap heap : heaps.values()) {
+                    heap.awaitParked();
+                }
+            } catch (InterruptedException e) {
+                // finished
+            }
+        });
+        master.start();
+
+        for (QueueEntry entry : entries) {
+            queueSize.acquire(entry.getBuffer().limit());
+            chunks.put(entry);
+        }
+        chunks.put(QueueEntry.Companion.getNULL());
+        return finish(master, workers, sums);
+    }
+
+    private static long parse(ByteBuffer buffer) {
+        long sum = 0;
+        for (int offset = 0; offset < buffer.limit(); offset += Integer.BYTES) {
+            sum += buffer.getInt(offset);
+        }
+        return sum;
+    }
+
+    private static long finish(Thread master, Thread[] workers, long[] sums) throws InterruptedException {
+        master.join();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        long sum = 0;
+        for (int slave = 0; slave < workers.length; slave++) {
+            workers[slave].join();
+            sum += sums[slave];
+        }
+        return sum;
+    }
+}
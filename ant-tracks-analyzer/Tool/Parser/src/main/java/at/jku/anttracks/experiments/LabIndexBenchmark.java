@@ -0,0 +1,139 @@
+package at.jku.anttracks.experiments;
+
+import at.jku.anttracks.heap.labs.Lab;
+import at.jku.anttracks.heap.labs.MultiObjectLab;
+import at.jku.anttracks.heap.space.LabIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link LabIndex} of a space with the ConcurrentSkipListMap it replaced, e.g.,
+ * {@code java -cp <classpath> org.openjdk.jmh.Main LabIndexBenchmark -p labs=1000,100000}.
+ * <p>
+ * {@code lookup*} resolves random object addresses to the LAB that contains them, like every move and pointer event does.
+ * {@code insert*} adds LABs in ascending address order, like TLAB and PLAB allocations do. {@code rebuild*} inserts the LABs of a space
+ * into a space that already contains every other LAB, like committing an accumulative transition at the end of a GC does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LabIndexBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+    private static final int LAB_SIZE = 32 * 1024;
+    private static final long SPACE_START = 1L << 34;
+
+    @Param({"1000", "10000", "100000"})
+    public int labs;
+
+    private Lab[] sortedLabs;
+    private Lab[] evenLabs;
+    private Lab[] oddLabs;
+    private long[] lookups;
+
+    private LabIndex index;
+    private ConcurrentSkipListMap<Long, Lab> map;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        sortedLabs = new Lab[labs];
+        evenLabs = new Lab[(labs + 1) / 2];
+        oddLabs = new Lab[labs / 2];
+        index = new LabIndex();
+        map = new ConcurrentSkipListMap<>();
+        for (int i = 0; i < labs; i++) {
+            Lab lab = new MultiObjectLab("0x0", Lab.Kind.TLAB, SPACE_START + (long) i * LAB_SIZE, LAB_SIZE);
+            sortedLabs[i] = lab;
+            if (i % 2 == 0) {
+                evenLabs[i / 2] = lab;
+            } else {
+                oddLabs[i / 2] = lab;
+            }
+            index.put(lab);
+            map.put(lab.addr, lab);
+        }
+        lookups = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = SPACE_START + (long) (random.nextDouble() * labs * LAB_SIZE);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public long lookupIndex() {
+        long sum = 0;
+        for (long addr : lookups) {
+            sum += index.floor(addr).addr;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public long lookupSkipList() {
+        long sum = 0;
+        for (long addr : lookups) {
+            Map.Entry<Long, Lab> entry = map.floorEntry(addr);
+            sum += entry.getValue().addr;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public LabIndex insertIndex() {
+        LabIndex index = new LabIndex();
+        for (Lab lab : sortedLabs) {
+            index.put(lab);
+        }
+        return index;
+    }
+
+    @Benchmark
+    public ConcurrentSkipListMap<Long, Lab> insertSkipList() {
+        ConcurrentSkipListMap<Long, Lab> map = new ConcurrentSkipListMap<>();
+        for (Lab lab : sortedLabs) {
+            map.put(lab.addr, lab);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public LabIndex rebuildIndex() {
+        LabIndex index = new LabIndex();
+        index.merge(evenLabs, true);
+        index.merge(oddLabs, true);
+        return index;
+    }
+
+    @Benchmark
+    public ConcurrentSkipListMap<Long, Lab> rebuildSkipList() {
+        ConcurrentSkipListMap<Long, Lab> map = new ConcurrentSkipListMap<>();
+        for (Lab lab : evenLabs) {
+            map.put(lab.addr, lab);
+        }
+        for (Lab lab : oddLabs) {
+            map.put(lab.addr, lab);
+        }
+        return map;
+    }
+}
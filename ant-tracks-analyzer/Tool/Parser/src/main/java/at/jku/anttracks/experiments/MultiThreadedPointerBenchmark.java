@@ -0,0 +1,142 @@
+package at.jku.anttracks.experiments;
+
+import at.jku.anttracks.parser.heap.pointer.MultiThreadedPointerBuffer;
+import at.jku.anttracks.parser.heap.pointer.MultiThreadedPointerTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures staging and merging the pointer events of a parallel young GC in which every object's pointers are spread over several GC
+ * threads, e.g., {@code java -cp <classpath> org.openjdk.jmh.Main MultiThreadedPointerBenchmark -p objects=10000,100000}.
+ * <p>
+ * Each parsing thread handles the events of one GC thread in a shuffled order, so chunks regularly arrive before the first event of their
+ * object. {@code buffers} stages into {@link MultiThreadedPointerBuffer}s and merges them into a {@link MultiThreadedPointerTable} like the
+ * parser does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiThreadedPointerBenchmark {
+
+    private static final int OBJECT_EVENT = -1;
+
+    @Param({"10000", "100000"})
+    public int objects;
+
+    @Param({"8"})
+    public int threads;
+
+    @Param({"4"})
+    public int chunksPerObject;
+
+    @Param({"16"})
+    public int pointersPerChunk;
+
+    // per thread: object index and chunk number (OBJECT_EVENT for the object's first event) of every event
+    private int[][] eventObjects;
+    private int[][] eventChunks;
+    private long[] chunk;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        List<List<int[]>> events = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            events.add(new ArrayList<>());
+        }
+        for (int o = 0; o < objects; o++) {
+            events.get(random.nextInt(threads)).add(new int[]{o, OBJECT_EVENT});
+            for (int c = 0; c < chunksPerObject; c++) {
+                events.get(random.nextInt(threads)).add(new int[]{o, c});
+            }
+        }
+        eventObjects = new int[threads][];
+        eventChunks = new int[threads][];
+        for (int t = 0; t < threads; t++) {
+            List<int[]> threadEvents = events.get(t);
+            // GC threads work on objects in no particular order
+            Collections.shuffle(threadEvents, random);
+            eventObjects[t] = threadEvents.stream().mapToInt(e -> e[0]).toArray();
+            eventChunks[t] = threadEvents.stream().mapToInt(e -> e[1]).toArray();
+        }
+        chunk = new long[pointersPerChunk];
+        Arrays.fill(chunk, 42);
+    }
+
+    private static long toAddr(int object) {
+        return (1L << 34) + object * 64L;
+    }
+
+    private int pointerCount() {
+        // the first event carries one chunk as well
+        return (chunksPerObject + 1) * pointersPerChunk;
+    }
+
+    @Benchmark
+    public long buffers() throws Exception {
+        ConcurrentLinkedQueue<MultiThreadedPointerBuffer> staged = new ConcurrentLinkedQueue<>();
+        run(t -> {
+            MultiThreadedPointerBuffer buffer = new MultiThreadedPointerBuffer();
+            long[] ptrs = new long[pointerCount()];
+            for (int e = 0; e < eventObjects[t].length; e++) {
+                long addr = toAddr(eventObjects[t][e]);
+                if (eventChunks[t][e] == OBJECT_EVENT) {
+                    // the parser reuses the pointer array of the current object only after the event has been finished
+                    buffer.addIncompleteObject(addr, addr, ptrs, pointersPerChunk);
+                } else {
+                    buffer.addChunk(addr, chunk);
+                }
+            }
+            staged.add(buffer);
+        });
+        MultiThreadedPointerTable table = MultiThreadedPointerTable.merge(staged);
+        return table.size() + table.getPointers(table.size() - 1)[pointerCount() - 1];
+    }
+
+    private interface ThreadBody {
+        void run(int thread) throws Exception;
+    }
+
+    private void run(ThreadBody body) throws Exception {
+        Thread[] workers = new Thread[threads];
+        Exception[] error = new Exception[1];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    body.run(thread);
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+}
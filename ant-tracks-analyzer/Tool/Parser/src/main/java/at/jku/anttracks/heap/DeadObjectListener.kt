@@ -0,0 +1,14 @@
+package at.jku.anttracks.heap
+
+import at.jku.anttracks.heap.labs.AddressHO
+import at.jku.anttracks.heap.space.SpaceInfo
+import at.jku.anttracks.parser.ParserGCInfo
+
+/**
+ * Gets notified about every object that has not been moved out of a collected space, right before the space's back labs are dropped
+ * (see [DetailedHeap.addDeadObjectListener]).
+ * Only the labs of the collected spaces are visited, thus the cost per GC is proportional to the collected spaces and not to the whole heap.
+ */
+interface DeadObjectListener {
+    fun objectDied(sender: DetailedHeap, address: Long, obj: AddressHO, space: SpaceInfo, gcInfo: ParserGCInfo)
+}
@@ -9,21 +9,28 @@ import at.jku.anttracks.heap.labs.AddressHO;
 import at.jku.anttracks.heap.labs.Lab;
 import at.jku.anttracks.heap.objects.ObjectInfoCache;
 import at.jku.anttracks.heap.roots.RootPtr;
+import at.jku.anttracks.heap.space.LabAppendLog;
 import at.jku.anttracks.heap.space.Space;
 import at.jku.anttracks.heap.space.SpaceInfo;
+import at.jku.anttracks.heap.space.SpaceType;
+import at.jku.anttracks.heap.statistics.ReachableBytesTracker;
 import at.jku.anttracks.heap.symbols.Symbols;
 import at.jku.anttracks.parser.*;
 import at.jku.anttracks.parser.heap.ThreadInfo;
-import at.jku.anttracks.parser.heap.pointer.IncompletePointerInfo;
+import at.jku.anttracks.parser.heap.pointer.MultiThreadedPointerBuffer;
 import at.jku.anttracks.parser.heap.pointer.PointerHandling;
 import at.jku.anttracks.util.ProgressListener;
 import at.jku.anttracks.util.TraceException;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -41,22 +48,25 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
 
     private final ObjectInfoCache cache;
     private Space[] spaces;
+    private final LabAppendLog labAppends;
+    private final ReachableBytesTracker reachableBytes = new ReachableBytesTracker();
     private final Map<Short, short[]> collectedSpaces;
     private final Map<Short, GarbageCollectionCause> causes;
 
     private ParserGCInfo gc;
     private ParsingInfo parsingInfo;
     private final CopyOnWriteArrayList<HeapListener> listeners;
+    private final CopyOnWriteArrayList<DeadObjectListener> deadObjectListeners;
 
     public final Long2ObjectOpenHashMap<List<RootPtr>> rootPtrs;
     public final ConcurrentHashMap<Long, ThreadInfo> threadsById;
     public final ConcurrentHashMap<String, ThreadInfo> threadsByInternalName;
 
-    public final CopyOnWriteArrayList<IncompletePointerInfo> notYetMatchedMultiThreadedPtrEventsToHandleAtGCEnd;
-    public final ConcurrentHashMap<Long, IncompletePointerInfo> multiThreadedPtrEventsToHandleAtGCEnd;
+    // thread-local buffers handed over by the threads that parsed multi-threaded pointer events, merged at GC end
+    public final ConcurrentLinkedQueue<MultiThreadedPointerBuffer> multiThreadedPtrEventsToHandleAtGCEnd;
     // public final Long2LongOpenHashMap movesSinceLastGCStart = new Long2LongOpenHashMap();
 
-    public final CopyOnWriteArrayList<Long> addressesThatMayHaveInvalidPointersDueToNullingOnNonDirtyObjects = new CopyOnWriteArrayList<>();
+    public final LongSet addressesThatMayHaveInvalidPointersDueToNullingOnNonDirtyObjects = LongSets.synchronize(new LongOpenHashSet());
 
     // root pointers must be written before GC start thus we need to signal when the current root pointer DS should be cleared
     // if they would be written after GC start, inspecting the heap at a GC start would not yield up to date root info
@@ -85,18 +95,24 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
         this.symbols = symbols;
         cache = prototypes;
         this.spaces = spaces.clone();
+        labAppends = new LabAppendLog();
+        for (Space space : this.spaces) {
+            if (space != null) {
+                space.setAppendLog(labAppends);
+            }
+        }
         collectedSpaces = new HashMap<>(7, 0.8f);
         causes = new HashMap<>(7, 0.8f);
         gc = currentGC;
         listeners = new CopyOnWriteArrayList<>();
+        deadObjectListeners = new CopyOnWriteArrayList<>();
         this.rootPtrs = rootPtrs;
         this.threadsById = threads;
         this.threadsByInternalName = new ConcurrentHashMap<>();
         for (ThreadInfo ti : threadsById.values()) {
             this.threadsByInternalName.put(ti.internalThreadName, ti);
         }
-        notYetMatchedMultiThreadedPtrEventsToHandleAtGCEnd = new CopyOnWriteArrayList<>();
-        multiThreadedPtrEventsToHandleAtGCEnd = new ConcurrentHashMap<>();
+        multiThreadedPtrEventsToHandleAtGCEnd = new ConcurrentLinkedQueue<>();
         tags = new ArrayList<>();
         this.parsingInfo = parsingInfo;
         // movesSinceLastGCStart.defaultReturnValue(-1);
@@ -121,12 +137,49 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
         for (HeapListener listener : listeners) {
             removeListener(listener);
         }
+        deadObjectListeners.clear();
+    }
+
+    /**
+     * Registers a listener that gets notified about every object that dies, i.e., every object that has not been moved out of a space that
+     * gets collected. Objects are reported right before the collected space's transition is committed.
+     *
+     * @param listener The listener to notify
+     */
+    public void addDeadObjectListener(DeadObjectListener listener) {
+        deadObjectListeners.add(listener);
+    }
+
+    public void removeDeadObjectListener(DeadObjectListener listener) {
+        deadObjectListeners.remove(listener);
     }
 
     public ObjectInfoCache getCache() {
         return cache;
     }
 
+    /**
+     * @return the log that objects appended to LABs which are already part of a space have to be reported to, see {@link LabAppendLog}
+     */
+    public LabAppendLog getLabAppends() {
+        return labAppends;
+    }
+
+    /**
+     * @return the tracker that calculates the reachable bytes at the end of GCs, pointer updates of non-moved objects have to be reported to it
+     */
+    public ReachableBytesTracker getReachableBytesTracker() {
+        return reachableBytes;
+    }
+
+    /**
+     * Adds the objects that have been appended to LABs since the last call to the object counts of their spaces.
+     * Has to be called before LABs are moved between the states of a space, and before the statistics of the spaces are read.
+     */
+    public void countAppendedObjects() throws TraceException {
+        labAppends.flush(this);
+    }
+
     public void addSpace(short index, Space space) throws TraceException {
         if (index < spaces.length) {
             if (spaces[index] != null) {
@@ -139,6 +192,7 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
         }
         spaces[index] = space;
         space.setId(index);
+        space.setAppendLog(labAppends);
 
         if (gc.getEventType() == EventType.GC_START) {
             // We are currently in a garbage collection phase
@@ -162,6 +216,7 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
     }
 
     public void startGC(ParserGCInfo info, long beforeEventPosition) throws TraceException {
+        countAppendedObjects();
         ParserGCInfo fromGC = gc;
         ParserGCInfo toGC = info;
         /*
@@ -193,6 +248,9 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
         if (collectedSpaces.put(info.getId(), new short[0]) != null) {
             throw new TraceException("GC already active");
         }
+        if (info.getType().isFull()) {
+            reachableBytes.invalidate();
+        }
 
         HeapListener.Companion.firePhaseChanging(listeners,
                                                  this,
@@ -241,6 +299,7 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
 
     public void markSpaceForCollection(short spaceID, short gcId) throws TraceException {
         errorOnAlreadyCollectedSpace(spaceID);
+        countAppendedObjects();
         short[] spaceIDs = collectedSpaces.get(gcId);
         if (spaceIDs == null) {
             throw new TraceException("Space=\"" + gcId + "\" can not be registered for GCID=\"" + gcId + "\", as the GCID is not registered! (gc_start missing?)");
@@ -253,6 +312,10 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
         // This event tells us that a garbage collection happens in this space and that all living objects have to be moved
         // Objects that don't have get moved are assumed dead (i.e., Transition type is ReplaceAll)
         Space space = spaces[spaceID];
+        if (space.getType() != SpaceType.EDEN && space.getType() != SpaceType.SURVIVOR) {
+            // old objects may move or die
+            reachableBytes.invalidate();
+        }
         if (space.getTransitionType() == SpaceInfo.TransitionType.Accumulative) {
             space.commitTransition();
         }
@@ -261,6 +324,8 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
 
     public Space failGC(int spaceID) throws TraceException {
         LOGGER.info("Fail GC - " + spaces[spaceID].toShortString());
+        countAppendedObjects();
+        reachableBytes.invalidate();
         Space space = spaces[spaceID];
         space.rollbackTransition();
         return space;
@@ -271,6 +336,10 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
         //ApplicationStatistics.Measurement mInner = ApplicationStatistics.getInstance().createMeasurement("handlePointers");
         PointerHandling.handlePtrsOnGCEnd(this, failed);
         //mInner.end();
+        countAppendedObjects();
+        if (failed) {
+            reachableBytes.invalidate();
+        }
 
         ParserGCInfo fromGC = gc;
         ParserGCInfo toGC = info;
@@ -311,6 +380,7 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
             Space space = spaces[sID];
             if (space != null) {
                 if (space.getTransitionType() != SpaceInfo.TransitionType.None) {
+                    fireObjectsDied(space, Long.MAX_VALUE);
                     space.commitTransition();
                     if (anyGCActive) {
                         space.startTransition(SpaceInfo.TransitionType.Accumulative);
@@ -327,6 +397,7 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
             for (Space s : spaces) {
                 if (s != null) {
                     if (s.getTransitionType() != SpaceInfo.TransitionType.None) {
+                        fireObjectsDied(s, Long.MAX_VALUE);
                         s.commitTransition();
                     }
                     if (s.getType() == null) {
@@ -420,15 +491,40 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
         //m.end();
     }
 
+    /**
+     * Notifies the dead object listeners about all objects in the given space that die once its transition gets committed.
+     * Only a ReplaceAll transition drops objects, namely those in the back labs that have not been moved during the current GC.
+     *
+     * @param space         The space whose transition is about to be committed
+     * @param conservedFrom Objects at or above this address are conserved (see {@link Space#commitTransition(long)})
+     */
+    private void fireObjectsDied(Space space, long conservedFrom) {
+        if (deadObjectListeners.isEmpty() || space.getTransitionType() != SpaceInfo.TransitionType.ReplaceAll) {
+            return;
+        }
+        final ParserGCInfo gcInfo = gc;
+        final ObjectVisitor deadObjectVisitor = (address, obj, spaceInfo, rootPtrs) -> {
+            if (address < conservedFrom && obj.getLastMovedAt() != gcInfo.getId()) {
+                for (int i = 0; i < deadObjectListeners.size(); i++) {
+                    deadObjectListeners.get(i).objectDied(this, address, obj, spaceInfo, gcInfo);
+                }
+            }
+        };
+        for (Lab lab : space.getBackLabs().get()) {
+            if (lab.bottom() < conservedFrom) {
+                lab.iterate(this, space.getInfo(), null, deadObjectVisitor, ObjectVisitor.Settings.Companion.getNO_INFOS());
+            }
+        }
+    }
+
     public void shrinkObjectInfoCache() {
 
         // TODO currently object info cache shrinking is disabled to check if this speeds up performance
         /*
         cache.clear();
-        ObjectInfo proto = new ObjectInfo();
 
         toObjectStream().forEach(
-                (address, object, space, rootPtrs) -> cache.get(object.getInfo(), proto, symbols),
+                (address, object, space, rootPtrs) -> cache.get(object.getInfo(), symbols),
                 ObjectVisitor.Settings.Companion.getNO_INFOS());
         */
     }
@@ -475,6 +571,11 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
 
     @Override
     public DetailedHeap clone() {
+        try {
+            countAppendedObjects();
+        } catch (TraceException e) {
+            e.printStackTrace();
+        }
         return new DetailedHeap(symbols,
                                 cache,
                                 Stream.of(spaces).filter(Objects::nonNull).map(Space::clone).toArray(Space[]::new),
@@ -776,6 +877,10 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
             throw new TraceException("collection of space is interrupted by different GC!");
         }
 
+        countAppendedObjects();
+        reachableBytes.invalidate();
+
+        fireObjectsDied(space, address);
         space.commitTransition(address);
         space.startTransition(SpaceInfo.TransitionType.Accumulative);
         // check if other Space is beeing collected
@@ -814,6 +919,9 @@ public class DetailedHeap implements Heap, FrontBackObjectAccess {
             throw new TraceException("collection of space is continued by different GC!");
         }
 
+        countAppendedObjects();
+        reachableBytes.invalidate();
+
         // check if other Space is beeing collected
         // changes on the code here should also be made to
         // Heap::interruptGC(int,long)!
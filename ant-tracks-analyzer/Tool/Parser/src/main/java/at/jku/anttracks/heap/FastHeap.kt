@@ -1,6 +1,5 @@
 package at.jku.anttracks.heap
 
-import at.jku.anttracks.heap.labs.IndexHeapObject
 import at.jku.anttracks.heap.objects.ObjectInfo
 import at.jku.anttracks.heap.space.SpaceInfo
 import at.jku.anttracks.heap.symbols.AllocatedTypes
@@ -22,17 +21,17 @@ open class FastHeap : IndexBasedHeap {
     //================================================================================
     // fields
     //================================================================================
-    public lateinit var objectsArray: Array<IndexHeapObject>
+    protected lateinit var columns: IndexHeapColumns
 
     private lateinit var spaceInfos: Array<SpaceInfo>
     private lateinit var spaceStartAddresses: LongArray
 
     override fun store(spaceInfos: Array<SpaceInfo>,
                        spaceStartAddresses: LongArray,
-                       objectsArray: Array<IndexHeapObject>) {
+                       columns: IndexHeapColumns) {
         this.spaceInfos = spaceInfos
         this.spaceStartAddresses = spaceStartAddresses
-        this.objectsArray = objectsArray
+        this.columns = columns
 
         // TODO: This prevents that objects that have a reference to the class loader appear with 99% transitive size
         // Yet, it changes the real composition of the heap (the references exist in the original program, we just ignore it in the IndexBasedHeap)
@@ -69,35 +68,13 @@ open class FastHeap : IndexBasedHeap {
         }
          */
         // TODO mw this is here for better in the graph view, its hacky and has the same problems as above, fix in the future!
+        val mirrors = BitSet()
         for (i in 0 until objectCount) {
-            val obj = objectsArray[i]
             if (getType(i).getExternalName(false, false) == AllocatedTypes.MIRROR_CLASS_EXTERNAL_NAME) {
-                Arrays.fill(obj.pointsTo, null)
-                Arrays.fill(obj.pointsToIndices, NULL_INDEX)
-            }
-            var nSetNull = 0
-            obj.pointedFrom.forEachIndexed { pIdx, pObj ->
-                if (pObj!!.type.getExternalName(false, false) == AllocatedTypes.MIRROR_CLASS_EXTERNAL_NAME) {
-                    nSetNull++
-                }
-            }
-            if (nSetNull > 0) {
-                val original = obj.pointedFrom
-                val originalIndices = obj.pointedFromIndices
-
-                obj.pointedFrom = arrayOfNulls(original.size - nSetNull)
-                obj.pointedFromIndices = IntArray(originalIndices.size - nSetNull)
-
-                var copyIdx = 0
-                for (pIdx in original.indices) {
-                    if (original[pIdx]!!.type.getExternalName(false, false) != AllocatedTypes.MIRROR_CLASS_EXTERNAL_NAME) {
-                        obj.pointedFrom[copyIdx] = original[pIdx]
-                        obj.pointedFromIndices[copyIdx] = originalIndices[pIdx]
-                        copyIdx++
-                    }
-                }
+                mirrors.set(i)
             }
         }
+        columns.ignorePointersFrom(mirrors)
     }
 
     //================================================================================
@@ -114,38 +91,42 @@ open class FastHeap : IndexBasedHeap {
     override fun getAddress(objIndex: Int): Long {
         return if (!valid(objIndex)) {
             IndexBasedHeap.NULL_INDEX.toLong()
-        } else objectsArray[objIndex].address
+        } else columns.addresses[objIndex]
 
     }
 
     override fun getToPointers(objIndex: Int): IntArray? {
         return if (!valid(objIndex)) {
             null
-        } else objectsArray[objIndex].pointsToIndices
+        } else columns.getToPointers(objIndex)
     }
 
     override fun getFromPointers(objIndex: Int): IntArray? {
         return if (!valid(objIndex)) {
             null
-        } else objectsArray[objIndex].pointedFromIndices
+        } else columns.getFromPointers(objIndex)
     }
 
+    override fun getAllToPointers(): IndexHeapPointers = columns.getAllToPointers()
+
+    override fun getAllFromPointers(): IndexHeapPointers = columns.getAllFromPointers()
+
     override fun getObjectInfo(objIndex: Int): ObjectInfo? {
         if (!valid(objIndex)) {
             return null
         }
 
-        return objectsArray[objIndex].info
+        return columns.getObjectInfo(objIndex)
     }
 
-    override fun toIndex(address: Long): Int = toObject(address, objectsArray).index
+    override fun toIndex(address: Long): Int = columns.toIndex(address)
 
     override fun getBorn(objIndex: Int): Short {
         if (!valid(objIndex)) {
             return -1
         }
 
-        return objectsArray[objIndex].bornAt
+        return columns.born[objIndex]
     }
 
     override fun getSpace(objIndex: Int): SpaceInfo {
@@ -1,6 +1,5 @@
 package at.jku.anttracks.heap
 
-import at.jku.anttracks.heap.labs.IndexHeapObject
 import at.jku.anttracks.heap.space.SpaceInfo
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler
 
@@ -9,14 +8,14 @@ open class FastHeapHPROF(handler: HprofToFastHeapHandler) : IndexBasedHeap(handl
     // fields
     //================================================================================
 
-    protected lateinit var objectsArray: Array<IndexHeapObject>
+    protected lateinit var columns: IndexHeapColumns
     private lateinit var fakeSpaceInfo: SpaceInfo
 
     override fun store(spaceInfos: Array<SpaceInfo>,
                        spaceStartAdresses: LongArray,
-                       objectsArray: Array<IndexHeapObject>) {
+                       columns: IndexHeapColumns) {
         this.fakeSpaceInfo = spaceInfos[0]
-        this.objectsArray = objectsArray
+        this.columns = columns
     }
 
     //================================================================================
@@ -33,32 +32,36 @@ open class FastHeapHPROF(handler: HprofToFastHeapHandler) : IndexBasedHeap(handl
     override fun getAddress(objIndex: Int): Long {
         return if (!valid(objIndex)) {
             IndexBasedHeap.NULL_INDEX.toLong()
-        } else objectsArray[objIndex].address
+        } else columns.addresses[objIndex]
 
     }
 
     override fun getToPointers(objIndex: Int): IntArray? {
         return if (!valid(objIndex)) {
             null
-        } else objectsArray[objIndex].pointsToIndices
+        } else columns.getToPointers(objIndex)
 
     }
 
     override fun getFromPointers(objIndex: Int): IntArray? {
         return if (!valid(objIndex)) {
             null
-        } else objectsArray[objIndex].pointedFromIndices
+        } else columns.getFromPointers(objIndex)
     }
 
+    override fun getAllToPointers(): IndexHeapPointers = columns.getAllToPointers()
+
+    override fun getAllFromPointers(): IndexHeapPointers = columns.getAllFromPointers()
+
     override fun getObjectInfo(objIndex: Int): at.jku.anttracks.heap.objects.ObjectInfo? {
         if (!valid(objIndex)) {
             return null
         }
 
-        return objectsArray[objIndex].info
+        return columns.getObjectInfo(objIndex)
     }
 
-    override fun toIndex(address: Long): Int = toObject(address, objectsArray).index
+    override fun toIndex(address: Long): Int = columns.toIndex(address)
 
     override fun getBorn(objIndex: Int): Short {
         return -1
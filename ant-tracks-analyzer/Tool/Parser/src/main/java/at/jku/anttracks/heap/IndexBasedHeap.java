@@ -3,11 +3,11 @@ package at.jku.anttracks.heap;
 import at.jku.anttracks.classification.ClassifierChain;
 import at.jku.anttracks.classification.Filter;
 import at.jku.anttracks.classification.nodes.ListGroupingNode;
+import at.jku.anttracks.classification.nodes.MemoizedClassification;
 import at.jku.anttracks.classification.trees.ListClassificationTree;
 import at.jku.anttracks.graph.Graph;
 import at.jku.anttracks.heap.datastructures.dsl.DSLDataStructure;
 import at.jku.anttracks.heap.datastructures.dsl.DataStructureUtil;
-import at.jku.anttracks.heap.labs.IndexHeapObject;
 import at.jku.anttracks.heap.objects.ObjectInfo;
 import at.jku.anttracks.heap.objects.ObjectInfoCache;
 import at.jku.anttracks.heap.roots.RootPtr;
@@ -27,6 +27,10 @@ import javafx.beans.property.BooleanProperty;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
@@ -50,7 +54,8 @@ public abstract class IndexBasedHeap implements Heap {
     public Map<String, ThreadInfo> threadsByInternalName;
     protected Symbols symbols;
 
-    protected FastDominators dominators;
+    protected volatile FastDominators dominators;
+    private final ParallelClosures closures = new ParallelClosures(this);
 
     protected DSLDataStructure[] dataStructures;
     protected Map<Integer, DSLDataStructure> dataStructuresByHeadObjectIndexMap;
@@ -74,37 +79,36 @@ public abstract class IndexBasedHeap implements Heap {
         SpaceInfo[] spaceInfos = new SpaceInfo[]{fakeSpace};
         long[] spaceStartAddresses = new long[]{0};
 
-        IndexHeapObject[] objectsArray = new IndexHeapObject[handler.getObjectInfos().length];
-        for (int i = 0; i < handler.getObjectInfos().length; i++) {
-            objectsArray[i] = new IndexHeapObject(handler.getAddr()[i],
-                                                  i,
-                                                  handler.getObjectInfos()[i]
-            );
-        }
-
-        for (int i = 0; i < handler.getObjectInfos().length; i++) {
-            objectsArray[i].pointsToIndices = handler.getToPtrs()[i];
-            objectsArray[i].pointsTo = Arrays.stream(handler.getToPtrs()[i]).mapToObj(ptrI -> ptrI == NULL_INDEX ? null : objectsArray[ptrI]).toArray(IndexHeapObject[]::new);
-            objectsArray[i].pointedFromIndices = handler.getFrmPtrs()[i];
-            objectsArray[i].pointedFrom = Arrays.stream(handler.getFrmPtrs()[i]).mapToObj(ptrI -> ptrI == NULL_INDEX ? null : objectsArray[ptrI]).toArray(IndexHeapObject[]::new);
+        // the handler already provides per-object pointer arrays, they are copied into flat arrays
+        IndexHeapColumns columns = new IndexHeapColumns(objectCount);
+        for (int i = 0; i < objectCount; i++) {
+            columns.setObject(i, handler.getAddr()[i], handler.getObjectInfos()[i], (short) -1);
+            int[] toPtrs = handler.getToPtrs()[i];
+            columns.setToPointerCount(i, toPtrs != null ? toPtrs.length : 0);
+        }
+        columns.allocateToPointers();
+        for (int i = 0; i < objectCount; i++) {
+            int[] toPtrs = handler.getToPtrs()[i];
+            if (toPtrs != null) {
+                System.arraycopy(toPtrs, 0, columns.toPointers, columns.toPointerOffsets[i], toPtrs.length);
+            }
         }
+        columns.buildFromPointers();
 
         // This call ensures that everything is set up right in the child classes
         store(spaceInfos,
               spaceStartAddresses,
-              objectsArray);
+              columns);
 
         // translate root pointers to indices
         handler.getGcRoots().forEach((address, rootPointerList) -> {
             int rootIdx = NULL_INDEX;
             if (address != NULL_INDEX) {
-                IndexHeapObject obj = toObject(address, objectsArray);
-                if (obj == null) {
+                rootIdx = columns.toIndex(address);
+                if (rootIdx == NULL_INDEX) {
                     System.err.println("Could not find object at " + address + " with GC roots " + rootPointerList.stream()
                                                                                                                   .map(RootPtr::toString)
                                                                                                                   .collect(Collectors.joining(",")));
-                } else {
-                    rootIdx = obj.getIndex();
                 }
             }
             final int finalRootIdx = rootIdx;
@@ -139,10 +143,10 @@ public abstract class IndexBasedHeap implements Heap {
 
         SpaceInfo[] spaceInfos = new SpaceInfo[spaces.length];
         long[] spaceStartAdresses = new long[spaces.length];
-        IndexHeapObject[] objectArray = new IndexHeapObject[objectCount];
-
-        long[][] addressToPointers = new long[objectCount][];
+        IndexHeapColumns columns = new IndexHeapColumns(objectCount);
 
+        // The objects are visited twice to avoid buffering their pointers:
+        // the first pass collects the addresses (which are needed to translate pointers to indices), the second pass copies the pointers
         if (progressListener != null) {
             progressListener.fire(0.1, "Build space info, address info, object info");
         }
@@ -155,17 +159,10 @@ public abstract class IndexBasedHeap implements Heap {
                 progressListener.fire(0.1 + 0.2 / spaces.length * spaceIndex, "Build space info, address info, and object info of space #" + spaceIndex + " of " + spaces.length);
             }
 
-            // copy heap objects
             spaces[spaceIndex].iterate(heap, (address, obj, space, rootPtrs) -> {
-                int objectIndexInt = objIndex.get();
-                objectArray[objectIndexInt] = new IndexHeapObject(address, objectIndexInt, obj);
-
-                int ptrCount = Math.max(obj.getPointerCount(), 0);
-                addressToPointers[objectIndexInt] = new long[ptrCount];
-                for (int ptrNr = 0; ptrNr < ptrCount; ptrNr++) {
-                    addressToPointers[objectIndexInt][ptrNr] = obj.getPointer(ptrNr);
-                }
-                objIndex.incrementAndGet();
+                int objectIndexInt = objIndex.getAndIncrement();
+                columns.setObject(objectIndexInt, address, obj.getInfo(), obj.getBornAt());
+                columns.setToPointerCount(objectIndexInt, Math.max(obj.getPointerCount(), 0));
 
                 byteCount += obj.getSize();
             }, new ObjectVisitor.Settings(false));
@@ -175,93 +172,40 @@ public abstract class IndexBasedHeap implements Heap {
             progressListener.fire(0.3, "Build to-pointer info");
         }
 
-        int[] noPointersDummyArrayIndices = new int[0];
-        IndexHeapObject[] noPointersDummyArray = new IndexHeapObject[0];
-        for (int i = 0; i < addressToPointers.length; i++) {
-            if (addressToPointers[i] != null) {
-                objectArray[i].pointsToIndices = new int[addressToPointers[i].length];
-                objectArray[i].pointsTo = new IndexHeapObject[addressToPointers[i].length];
-                for (int j = 0; j < addressToPointers[i].length; j++) {
-                    IndexHeapObject pointedObject = addressToPointers[i][j] != TraceSlaveParser.NULL_PTR ? toObject(addressToPointers[i][j], objectArray) : null;
-                    if (pointedObject != null) {
-                        objectArray[i].pointsToIndices[j] = pointedObject.getIndex();
-                        objectArray[i].pointsTo[j] = pointedObject;
-                    } else {
-                        objectArray[i].pointsToIndices[j] = NULL_INDEX;
-                        objectArray[i].pointsTo[j] = null;
-                    }
+        columns.allocateToPointers();
+        objIndex.set(0);
+        for (Space space : spaces) {
+            space.iterate(heap, (address, obj, s, rootPtrs) -> {
+                int offset = columns.toPointerOffsets[objIndex.getAndIncrement()];
+                for (int ptrNr = 0; ptrNr < obj.getPointerCount(); ptrNr++) {
+                    long ptr = obj.getPointer(ptrNr);
+                    columns.toPointers[offset + ptrNr] = ptr != TraceSlaveParser.NULL_PTR ? columns.toIndex(ptr) : NULL_INDEX;
                 }
-            } else {
-                // All objects that do not have pointers receive the same empty array as pointer array
-                objectArray[i].pointsToIndices = noPointersDummyArrayIndices;
-                objectArray[i].pointsTo = noPointersDummyArray;
-            }
+            }, new ObjectVisitor.Settings(false));
         }
 
         if (progressListener != null) {
             progressListener.fire(0.5, "Build from-pointer info");
         }
 
-        //LOGGER.info("Count from pointers");
-        Counter[] fromPtrCounter = new Counter[objectCount];
-        for (IndexHeapObject pointingObject : objectArray) {
-            for (IndexHeapObject pointedObject : pointingObject.pointsTo) {
-                if (pointedObject != null) {
-                    if (fromPtrCounter[pointedObject.getIndex()] == null) {
-                        fromPtrCounter[pointedObject.getIndex()] = new Counter();
-                    }
-                    fromPtrCounter[pointedObject.getIndex()].inc();
-                }
-            }
-        }
-        if (progressListener != null) {
-            progressListener.fire(0.6, null);
-        }
-        //LOGGER.info("Set from pointer arrays");
-        for (int idx = 0; idx < objectCount; idx++) {
-            if (fromPtrCounter[idx] != null) {
-                objectArray[idx].pointedFromIndices = new int[(int) fromPtrCounter[idx].get()];
-                objectArray[idx].pointedFrom = new IndexHeapObject[(int) fromPtrCounter[idx].get()];
-                fromPtrCounter[idx].reset();
-            } else {
-                // No from pointers
-                objectArray[idx].pointedFromIndices = noPointersDummyArrayIndices;
-                objectArray[idx].pointedFrom = noPointersDummyArray;
-            }
-        }
-        if (progressListener != null) {
-            progressListener.fire(0.7, null);
-        }
-        for (int idx = 0; idx < objectCount; idx++) {
-            IndexHeapObject pointingObject = objectArray[idx];
-            IndexHeapObject[] pointedObjects = pointingObject.pointsTo;
-            for (IndexHeapObject pointedObject : pointedObjects) {
-                if (pointedObject != null) {
-                    pointedObject.pointedFromIndices[(int) fromPtrCounter[pointedObject.getIndex()].get()] = pointingObject.getIndex();
-                    pointedObject.pointedFrom[(int) fromPtrCounter[pointedObject.getIndex()].get()] = pointingObject;
-                    fromPtrCounter[pointedObject.getIndex()].inc();
-                }
-            }
-        }
+        columns.buildFromPointers();
 
         if (progressListener != null) {
             progressListener.fire(0.8, "Build root pointers");
         }
 
         // This call ensures that everything is set up right in the child classes
-        store(spaceInfos, spaceStartAdresses, objectArray);
+        store(spaceInfos, spaceStartAdresses, columns);
 
         // translate root pointers to indices
         heap.rootPtrs.forEach((address, rootPointerList) -> {
             int rootIdx = NULL_INDEX;
             if (address != NULL_INDEX) {
-                IndexHeapObject obj = toObject(address, objectArray);
-                if (obj == null) {
+                rootIdx = columns.toIndex(address);
+                if (rootIdx == NULL_INDEX) {
                     System.err.println("Could not find object at " + address + " with GC roots " + rootPointerList.stream()
                                                                                                                   .map(RootPtr::toString)
                                                                                                                   .collect(Collectors.joining(",")));
-                } else {
-                    rootIdx = obj.getIndex();
                 }
             }
             final int finalRootIdx = rootIdx;
@@ -292,6 +236,49 @@ public abstract class IndexBasedHeap implements Heap {
         finalInit(initDataStructures, progressListener);
     }
 
+    /**
+     * Starts restoring a heap from a snapshot that has been written with {@link IndexHeapSnapshot#write(IndexBasedHeap, java.io.File)}. The
+     * subclass has to take over the snapshot's columns and then call {@link #restore(IndexHeapSnapshot, boolean, ProgressListener)}.
+     */
+    protected IndexBasedHeap(IndexHeapSnapshot snapshot) {
+        initialize(snapshot.symbols,
+                   snapshot.objectCount,
+                   snapshot.objectInfoCache,
+                   snapshot.gcNo,
+                   snapshot.threadsById,
+                   snapshot.threadsByInternalName);
+        byteCount = snapshot.byteCount;
+    }
+
+    /**
+     * Finishes restoring a heap from a snapshot once the objects can be accessed. The objects reachable from roots and the dominators (if
+     * present) are taken from the snapshot, data structures are detected again if requested.
+     */
+    protected void restore(IndexHeapSnapshot snapshot, boolean initDataStructures, ProgressListener progressListener) {
+        snapshot.rootPtrs.forEach((rootIdx, rootPointerList) -> {
+            rootPtrList.addAll(rootPointerList);
+            rootPtrs.put(rootIdx, rootPointerList);
+            rootPointerList.forEach(rp -> rp.setIdx(rootIdx));
+        });
+        rootPtrList.forEach(rp -> {
+            try {
+                rp.resolve(this);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        directlyReachableFromRootType.putAll(snapshot.directlyReachableFromRootType);
+        indirectlyReachableFromRootType.putAll(snapshot.indirectlyReachableFromRootType);
+        dominators = snapshot.dominators;
+
+        if (initDataStructures) {
+            if (progressListener != null) {
+                progressListener.fire(1.0, "Calculate data structures");
+            }
+            initDSLDataStructures(progressListener);
+        }
+    }
+
     private void initialize(Symbols symbols,
                             int objectCount,
                             ObjectInfoCache cache,
@@ -315,7 +302,7 @@ public abstract class IndexBasedHeap implements Heap {
         }
     }
 
-    protected abstract void store(SpaceInfo[] spaceInfos, long[] spaceStartAdresses, IndexHeapObject[] objects);
+    protected abstract void store(SpaceInfo[] spaceInfos, long[] spaceStartAdresses, IndexHeapColumns columns);
 
     private void finalInit(boolean initDataStructures, ProgressListener progressListener) {
         // mark everything that is reachable from roots
@@ -348,6 +335,7 @@ public abstract class IndexBasedHeap implements Heap {
 
     private Graph initAutoDetectedDataStructures(ProgressListener progressListener) {
         Graph graph = new Graph();
+        IndexHeapPointers fromPointers = getAllFromPointers();
         for (int idx = 0; idx < objectCount; idx++) {
             AllocatedType type = getType(idx);
             String typeName = type.getExternalName(true, false);
@@ -355,13 +343,11 @@ public abstract class IndexBasedHeap implements Heap {
             if (isRecursiveType) {
                 graph.addEdge(typeName, typeName);
 
-                int[] fromPtrs = getFromPointers(idx);
-                if (fromPtrs != null) {
-                    for (int fromPtr : fromPtrs) {
-                        AllocatedType fromType = getType(fromPtr);
-                        if (!fromType.isArray()) {
-                            graph.addEdge(getType(fromPtr).getExternalName(true, false), typeName);
-                        }
+                for (int p = fromPointers.start(idx); p < fromPointers.end(idx); p++) {
+                    int fromPtr = fromPointers.get(p);
+                    AllocatedType fromType = getType(fromPtr);
+                    if (!fromType.isArray()) {
+                        graph.addEdge(getType(fromPtr).getExternalName(true, false), typeName);
                     }
                 }
             }
@@ -424,18 +410,17 @@ public abstract class IndexBasedHeap implements Heap {
 
         indirectlyReachableFromRoot.set(objectIndex);
 
+        IndexHeapPointers toPointers = getAllToPointers();
         IntStack stack = new IntStack();
         stack.push(objectIndex);
 
         while (!stack.isEmpty()) {
             int idx = stack.pop();
-            int[] ptrs = getToPointers(idx);
-            if (ptrs != null) {
-                for (int ptrIdx : ptrs) {
-                    if (ptrIdx >= 0 && !indirectlyReachableFromRootType.get(rootType).get(ptrIdx)) {
-                        stack.push(ptrIdx);
-                        indirectlyReachableFromRoot.set(ptrIdx);
-                    }
+            for (int p = toPointers.start(idx); p < toPointers.end(idx); p++) {
+                int ptrIdx = toPointers.get(p);
+                if (ptrIdx >= 0 && !indirectlyReachableFromRoot.get(ptrIdx)) {
+                    stack.push(ptrIdx);
+                    indirectlyReachableFromRoot.set(ptrIdx);
                 }
             }
         }
@@ -449,26 +434,6 @@ public abstract class IndexBasedHeap implements Heap {
         return objIndex >= 0 && objIndex < objectCount;
     }
 
-    protected IndexHeapObject toObject(long address, IndexHeapObject[] objects) {
-        IndexHeapObject obj = binarySearch(objects, 0, objects.length - 1, address);
-        assert obj != null : "Object was not found!";
-        return obj;
-    }
-
-    private IndexHeapObject binarySearch(IndexHeapObject[] arr, int low, int high, long addr) {
-        while (low <= high) {
-            int mid = (low + high) / 2;
-            if (arr[mid].getAddress() < addr) {
-                low = mid + 1;
-            } else if (arr[mid].getAddress() > addr) {
-                high = mid - 1;
-            } else if (arr[mid].getAddress() == addr) {
-                return arr[mid];
-            }
-        }
-        return null;
-    }
-
     abstract public void clear();
 
     //================================================================================
@@ -487,50 +452,137 @@ public abstract class IndexBasedHeap implements Heap {
             boolean sample,
             ObjectStream.IterationListener listener,
             BooleanProperty cancellationToken) {
+        return groupListParallel(filters, classifiers, addFilterNodeInTree, sample, listener, cancellationToken, Consts.getAVAILABLE_PROCESSORS());
+    }
+
+    /**
+     * Classifies all objects using the given number of threads. The objects are split into contiguous index ranges that are processed by a
+     * fork/join pool (idle threads steal ranges from busy ones). Every thread classifies its ranges into its own tree, and these trees are
+     * merged pairwise in parallel at the end. If all classifiers and filters are {@link at.jku.anttracks.classification.annotations.ObjectInfoBased},
+     * every thread runs them only once per distinct ObjectInfo (see {@link MemoizedClassification}).
+     */
+    public ListClassificationTree groupListParallel(
+            @NotNull
+                    Filter[] filters,
+            @NotNull
+                    ClassifierChain classifiers,
+            boolean addFilterNodeInTree,
+            boolean sample,
+            ObjectStream.IterationListener listener,
+            BooleanProperty cancellationToken,
+            int threadCount) {
         ApplicationStatistics.Measurement m = ApplicationStatistics.getInstance()
                                                                    .createMeasurement("fast heap: group list");
         Arrays.stream(filters).filter(Objects::nonNull).forEach(f -> f.setup(() -> symbols, () -> this));
         classifiers.getList().stream().filter(Objects::nonNull).forEach(c -> c.setup(() -> symbols, () -> this));
 
-        ListGroupingNode combinedTree = new ListGroupingNode();
-        ParallelizationUtil.temporaryExecutorServiceBlocking((threadId, threadCount) -> {
-            ListGroupingNode threadLocalTree = new ListGroupingNode();
-            Counter threadLocalCounter = new Counter();
-            for (int i = threadId; i < objectCount; i += threadCount) {
+        Map<Thread, MemoizedClassification> threadLocalTrees = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+        ListGroupingNode combinedTree;
+        try {
+            pool.invoke(new GroupingTask(0, objectCount, threadLocalTrees, filters, classifiers, addFilterNodeInTree, listener, cancellationToken));
+            ListGroupingNode[] trees = threadLocalTrees.values().stream().map(tree -> (ListGroupingNode) tree.getRoot()).toArray(ListGroupingNode[]::new);
+            combinedTree = trees.length == 0 ? new ListGroupingNode() : pool.invoke(new MergeTask(trees, 0, trees.length));
+        } finally {
+            pool.shutdown();
+        }
+        if (sample) {
+            if (combinedTree.containsChild("Filtered")) {
+                combinedTree.getChild("Filtered").sampleTopDown(this);
+            } else {
+                combinedTree.sampleTopDown(this);
+            }
+        }
+        m.end();
+        return new ListClassificationTree(combinedTree, filters, classifiers);
+
+    }
+
+    private static final int GROUPING_RANGE_SIZE = 1 << 14;
+
+    @SuppressWarnings("serial")
+    private class GroupingTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final Map<Thread, MemoizedClassification> threadLocalTrees;
+        private final Filter[] filters;
+        private final ClassifierChain classifiers;
+        private final boolean addFilterNodeInTree;
+        private final ObjectStream.IterationListener listener;
+        private final BooleanProperty cancellationToken;
+
+        GroupingTask(int from,
+                     int to,
+                     Map<Thread, MemoizedClassification> threadLocalTrees,
+                     Filter[] filters,
+                     ClassifierChain classifiers,
+                     boolean addFilterNodeInTree,
+                     ObjectStream.IterationListener listener,
+                     BooleanProperty cancellationToken) {
+            this.from = from;
+            this.to = to;
+            this.threadLocalTrees = threadLocalTrees;
+            this.filters = filters;
+            this.classifiers = classifiers;
+            this.addFilterNodeInTree = addFilterNodeInTree;
+            this.listener = listener;
+            this.cancellationToken = cancellationToken;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GROUPING_RANGE_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new GroupingTask(from, mid, threadLocalTrees, filters, classifiers, addFilterNodeInTree, listener, cancellationToken),
+                          new GroupingTask(mid, to, threadLocalTrees, filters, classifiers, addFilterNodeInTree, listener, cancellationToken));
+                return;
+            }
+
+            MemoizedClassification threadLocalTree = threadLocalTrees.computeIfAbsent(Thread.currentThread(),
+                                                                                      thread -> new MemoizedClassification(new ListGroupingNode(),
+                                                                                                                           classifiers,
+                                                                                                                           filters,
+                                                                                                                           addFilterNodeInTree));
+            for (int i = from; i < to; i++) {
                 if (cancellationToken == null || !cancellationToken.get()) {
                     try {
-                        threadLocalTree.classify(this, i, classifiers, filters, addFilterNodeInTree);
+                        threadLocalTree.classify(IndexBasedHeap.this, i);
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
                 }
-
-                if (listener != null) {
-                    // progress indication...
-                    threadLocalCounter.inc();
-                    if (threadLocalCounter.get() % 10_000 == 0) {
-                        listener.objectsIterated(threadLocalCounter.get());
-                        threadLocalCounter.reset();
-                    }
-                }
             }
             if (listener != null) {
-                listener.objectsIterated(threadLocalCounter.get());
-            }
-            synchronized (combinedTree) {
-                combinedTree.merge(threadLocalTree);
-            }
-        });
-        if (sample) {
-            if (combinedTree.containsChild("Filtered")) {
-                combinedTree.getChild("Filtered").sampleTopDown(this);
-            } else {
-                combinedTree.sampleTopDown(this);
+                // progress indication...
+                listener.objectsIterated(to - from);
             }
         }
-        m.end();
-        return new ListClassificationTree(combinedTree, filters, classifiers);
+    }
+
+    @SuppressWarnings("serial")
+    private static class MergeTask extends RecursiveTask<ListGroupingNode> {
+        private final ListGroupingNode[] trees;
+        private final int from;
+        private final int to;
 
+        MergeTask(ListGroupingNode[] trees, int from, int to) {
+            this.trees = trees;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ListGroupingNode compute() {
+            if (to - from == 1) {
+                return trees[from];
+            }
+            int mid = (from + to) >>> 1;
+            MergeTask right = new MergeTask(trees, mid, to);
+            right.fork();
+            ListGroupingNode tree = new MergeTask(trees, from, mid).compute();
+            tree.merge(right.join());
+            return tree;
+        }
     }
 
     //================================================================================
@@ -754,38 +806,47 @@ public abstract class IndexBasedHeap implements Heap {
 
     public abstract long getAddress(int objIndex);
 
+    /**
+     * @return a copy of the to-pointers of the given object, loops over many objects should use {@link #getAllToPointers()} instead
+     */
     public abstract int[] getToPointers(int objIndex);
 
+    /**
+     * @return the to-pointers of all objects in compressed sparse row format, without copying them
+     */
+    public abstract IndexHeapPointers getAllToPointers();
+
     public BitSet getToPointers(BitSet objIndices) {
-        BitSet pointedTo = new BitSet();
-        int objIdx = objIndices.nextSetBit(0);
-        while (objIdx != -1) {
-            int[] pointers = getToPointers(objIdx);
-            for (int p : pointers) {
-                if (valid(p)) {
-                    pointedTo.set(p);
-                }
-            }
-            objIdx = objIndices.nextSetBit(objIdx + 1);
-        }
-        return pointedTo;
+        return getPointed(getAllToPointers(), objIndices);
     }
 
+    /**
+     * @return a copy of the from-pointers of the given object, loops over many objects should use {@link #getAllFromPointers()} instead
+     */
     public abstract int[] getFromPointers(int objIndex);
 
+    /**
+     * @return the from-pointers of all objects in compressed sparse row format, without copying them
+     */
+    public abstract IndexHeapPointers getAllFromPointers();
+
     public BitSet getFromPointers(BitSet objIndices) {
-        BitSet pointedFrom = new BitSet();
+        return getPointed(getAllFromPointers(), objIndices);
+    }
+
+    private BitSet getPointed(IndexHeapPointers pointers, BitSet objIndices) {
+        BitSet pointed = new BitSet();
         int objIdx = objIndices.nextSetBit(0);
         while (objIdx != -1) {
-            int[] pointers = getFromPointers(objIdx);
-            for (int p : pointers) {
-                if (valid(p)) {
-                    pointedFrom.set(p);
+            for (int p = pointers.start(objIdx); p < pointers.end(objIdx); p++) {
+                int ptr = pointers.get(p);
+                if (valid(ptr)) {
+                    pointed.set(ptr);
                 }
             }
             objIdx = objIndices.nextSetBit(objIdx + 1);
         }
-        return pointedFrom;
+        return pointed;
     }
 
     public abstract ObjectInfo getObjectInfo(int objIndex);
@@ -844,6 +905,19 @@ public abstract class IndexBasedHeap implements Heap {
         return new Closures(this, objIndices, transitiveClosure, gcClosure, new BitSet(), new BitSet());
     }
 
+    /**
+     * Calculates the transitive closures and optionally the GC closures of several groups of objects in a single traversal
+     *
+     * @param objIndices at most {@link ParallelClosures#MAX_GROUPS} groups of object indices
+     * @return the closures of the groups, in the same order
+     */
+    public Closures[] getClosures(boolean calculateGCClosure, int[][] objIndices) {
+        ApplicationStatistics.Measurement m = ApplicationStatistics.getInstance().createMeasurement("anttracks.indexbasedheap.batchclosures");
+        Closures[] batch = closures.closures(objIndices, calculateGCClosure);
+        m.end();
+        return batch;
+    }
+
     //================================================================================
     // Closure size
     //================================================================================
@@ -857,33 +931,7 @@ public abstract class IndexBasedHeap implements Heap {
 
     public BitSet transitiveClosure(int[] objIndices, BitSet assumeClosure) {
         ApplicationStatistics.Measurement m = ApplicationStatistics.getInstance().createMeasurement("anttracks.indexbasedheap.transitiveclosure");
-        ApplicationStatistics.Measurement m2 = ApplicationStatistics.getInstance().createMeasurement("anttracks.indexbasedheap.transitiveclosure.preperation");
-        BitSet closure = assumeClosure != null ? assumeClosure : new BitSet();
-        IntStack toProcess = new IntStack(objIndices.length);
-
-        // build closure of objIndices
-        for (int objIndex : objIndices) {
-            if (valid(objIndex)) {
-                toProcess.push(objIndex);
-                closure.set(objIndex);
-            }
-        }
-        m2.end();
-        m2 = ApplicationStatistics.getInstance().createMeasurement("anttracks.indexbasedheap.transitiveclosure.traversal");
-        while (!toProcess.isEmpty()) {
-            int idx = toProcess.pop();
-            int[] pointers = getToPointers(idx);
-            if (pointers != null) {
-                for (int ptr : pointers) {
-                    if (valid(ptr) && !closure.get(ptr)) {
-                        closure.set(ptr);
-                        toProcess.push(ptr);
-                    }
-                }
-            }
-        }
-
-        m2.end();
+        BitSet closure = closures.transitiveClosure(objIndices, assumeClosure);
         m.end();
         return closure;
     }
@@ -892,72 +940,8 @@ public abstract class IndexBasedHeap implements Heap {
     // GC size
     //================================================================================
     public BitSet gcClosure(int[] objIndices, BitSet transitiveClosure) {
-        // everything reachable from given indices (= upper limit of gc size)
         ApplicationStatistics.Measurement m = ApplicationStatistics.getInstance().createMeasurement("anttracks.indexbasedheap.gcclosure");
-        ApplicationStatistics.Measurement m2 = ApplicationStatistics.getInstance().createMeasurement("anttracks.indexbasedheap.gcclosure.preperation");
-        BitSet gcClosure = (BitSet) transitiveClosure.clone();
-        BitSet objIndicesSet = new BitSet();
-        for (int i = 0; i < objIndices.length; i++) {
-            if (valid(objIndices[i])) {
-                objIndicesSet.set(objIndices[i]);
-            }
-        }
-        m2.end();
-        m2 = ApplicationStatistics.getInstance().createMeasurement("anttracks.indexbasedheap.gcclosure.traversal");
-        // find all objects in transitiveClosure that are referenced from the outside (except transitiveClosure root objects)
-        IntStack toRemoveWalker = new IntStack();
-        for (int idx = gcClosure.nextSetBit(0); idx != -1; idx = gcClosure.nextSetBit(idx + 1)) {
-            if (objIndicesSet.get(idx)) {
-                continue;
-            }
-
-            // check direct root pointer for idx
-            if (isDirectlyReachable(idx)) {
-                toRemoveWalker.push(idx);
-                gcClosure.clear(idx);
-                while (!toRemoveWalker.isEmpty()) {
-                    int removeIdx = toRemoveWalker.pop();
-                    int[] pointers = getToPointers(removeIdx);
-                    if (pointers != null) {
-                        for (int j = 0; j < pointers.length; j++) {
-                            int ptr = pointers[j];
-                            if (valid(ptr) && gcClosure.get(ptr) && !objIndicesSet.get(ptr)) {
-                                toRemoveWalker.push(ptr);
-                                gcClosure.clear(ptr);
-                            }
-                        }
-                    }
-                }
-            } else {
-                // object itself is not directly root pointed, check if any referee is 1) outside of the transitiveClosure and 2) reachable from root
-                int[] fromPointers = getFromPointers(idx);
-                if (fromPointers != null) {
-                    for (int i = 0; i < fromPointers.length; i++) {
-                        int fromPtr = fromPointers[i];
-                        if (!transitiveClosure.get(fromPtr) && isRootReachable(fromPtr)) {
-                            // Object is kept alive from outside the transitiveClosure: Remove it and all its children from the transitiveClosure
-                            toRemoveWalker.push(idx);
-                            gcClosure.clear(idx);
-                            while (!toRemoveWalker.isEmpty()) {
-                                int removeIdx = toRemoveWalker.pop();
-                                int[] pointers = getToPointers(removeIdx);
-                                if (pointers != null) {
-                                    for (int j = 0; j < pointers.length; j++) {
-                                        int ptr = pointers[j];
-                                        if (valid(ptr) && gcClosure.get(ptr) && !objIndicesSet.get(ptr)) {
-                                            toRemoveWalker.push(ptr);
-                                            gcClosure.clear(ptr);
-                                        }
-                                    }
-                                }
-                            }
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-        m2.end();
+        BitSet gcClosure = closures.gcClosure(objIndices, transitiveClosure);
         m.end();
 
         // TODO dominator tree
@@ -1058,6 +1042,7 @@ public abstract class IndexBasedHeap implements Heap {
             return new ArrayList<>();
         }
 
+        IndexHeapPointers fromPointers = getAllFromPointers();
         Set<Integer> closedSet = new HashSet<>();
         ArrayDeque<int[]> fifo = new ArrayDeque<>();
         List<RootPtr.RootInfo> ret = new ArrayList<>();
@@ -1095,14 +1080,14 @@ public abstract class IndexBasedHeap implements Heap {
             }
 
             // ... and keep searching
-            int[] fromPointers = getFromPointers(curObjIndex);
-            if (fromPointers != null && curPath.length < maxDepth) {
-                for (int i = 0; i < fromPointers.length; i++) {
+            if (curPath.length < maxDepth) {
+                for (int p = fromPointers.start(curObjIndex); p < fromPointers.end(curObjIndex); p++) {
+                    int fromPtr = fromPointers.get(p);
                     // skip already handled addresses
-                    if (closedSet.add(fromPointers[i])) {
+                    if (closedSet.add(fromPtr)) {
                         // extend path by next step
                         int[] newPath = Arrays.copyOf(curPath, curPath.length + 1);
-                        newPath[newPath.length - 1] = fromPointers[i];
+                        newPath[newPath.length - 1] = fromPtr;
                         fifo.offer(newPath);
                     }
                 }
@@ -1121,6 +1106,7 @@ public abstract class IndexBasedHeap implements Heap {
         // the value of each key is an array of RootInfos i.e. the results (paths) that contain the key
         Map<Integer, List<RootPtr.RootInfo>> foundPathObjects = new HashMap<>();
         List<RootPtr.RootInfo> ret = new ArrayList<>();
+        IndexHeapPointers fromPointers = getAllFromPointers();
 
         for (int objIndex : objIndices) {
             if (!valid(objIndex)) {
@@ -1189,14 +1175,14 @@ public abstract class IndexBasedHeap implements Heap {
                 }
 
                 // ... and keep searching
-                int[] fromPointers = getFromPointers(curObjIndex);
-                if (fromPointers != null && curPath.length < maxDepth) {
-                    for (int i = 0; i < fromPointers.length; i++) {
+                if (curPath.length < maxDepth) {
+                    for (int p = fromPointers.start(curObjIndex); p < fromPointers.end(curObjIndex); p++) {
+                        int fromPtr = fromPointers.get(p);
                         // skip already handled addresses
-                        if (closedSet.add(fromPointers[i])) {
+                        if (closedSet.add(fromPtr)) {
                             // extend path by next step
                             int[] newPath = Arrays.copyOf(curPath, curPath.length + 1);
-                            newPath[newPath.length - 1] = fromPointers[i];
+                            newPath[newPath.length - 1] = fromPtr;
                             stack.push(newPath);
                         }
                     }
@@ -1218,6 +1204,7 @@ public abstract class IndexBasedHeap implements Heap {
         BitSet currentlyToVisit = new BitSet();
         BitSet nextVisitRound = new BitSet();
 
+        IndexHeapPointers fromPointers = getAllFromPointers();
         RootPtr ret = null;
 
         nextVisitRound.set(objIndex);
@@ -1244,14 +1231,12 @@ public abstract class IndexBasedHeap implements Heap {
                 }
                 if (ret == null) {
                     // ... and keep searching
-                    int[] fromPointers = getFromPointers(idx);
-                    if (fromPointers != null) {
-                        for (int i = 0; i < fromPointers.length; i++) {
-                            if (!visited.get(fromPointers[i])) {
-                                visited.set(fromPointers[i]);
-                                // extend path by next step
-                                nextVisitRound.set(fromPointers[i]);
-                            }
+                    for (int p = fromPointers.start(idx); p < fromPointers.end(idx); p++) {
+                        int fromPtr = fromPointers.get(p);
+                        if (!visited.get(fromPtr)) {
+                            visited.set(fromPtr);
+                            // extend path by next step
+                            nextVisitRound.set(fromPtr);
                         }
                     }
                 }
@@ -1267,6 +1252,7 @@ public abstract class IndexBasedHeap implements Heap {
 
     public List<RootPtr> indirectGCRoots(int[] objIndices, int maxDepth, BiConsumer<Integer, Integer> visitor) {
         List<RootPtr> ret = new ArrayList<>();
+        IndexHeapPointers fromPointers = getAllFromPointers();
 
         BitSet visited = new BitSet();
         BitSet currentlyToVisit = new BitSet();
@@ -1292,17 +1278,15 @@ public abstract class IndexBasedHeap implements Heap {
                 }
 
                 // ... and keep searching
-                int[] fromPointers = getFromPointers(idx);
-                if (fromPointers != null) {
-                    for (int i = 0; i < fromPointers.length; i++) {
-                        if (!visited.get(fromPointers[i])) {
-                            visited.set(fromPointers[i]);
-                            // extend path by next step
-                            nextVisitRound.set(fromPointers[i]);
+                for (int p = fromPointers.start(idx); p < fromPointers.end(idx); p++) {
+                    int fromPtr = fromPointers.get(p);
+                    if (!visited.get(fromPtr)) {
+                        visited.set(fromPtr);
+                        // extend path by next step
+                        nextVisitRound.set(fromPtr);
 
-                            if (visitor != null) {
-                                visitor.accept(idx, fromPointers[i]);
-                            }
+                        if (visitor != null) {
+                            visitor.accept(idx, fromPtr);
                         }
                     }
                 }
@@ -1324,6 +1308,7 @@ public abstract class IndexBasedHeap implements Heap {
         }
 
         BitSet fromClosure = new BitSet();
+        IndexHeapPointers fromPointers = getAllFromPointers();
 
         int[] stack = new int[]{objIndex};
         int stackIndex = 0;
@@ -1336,19 +1321,16 @@ public abstract class IndexBasedHeap implements Heap {
             fromClosure.set(curObjIndex);
 
             // ... and keep following from-pointers
-            int[] fromPointers = getFromPointers(curObjIndex);
-            if (fromPointers != null) {
-                for (int i = 0; i < fromPointers.length; i++) {
-                    int pointedFromPtr = fromPointers[i];
-                    if (!fromClosure.get(pointedFromPtr)) {
-                        fromClosure.set(pointedFromPtr);
-                        // extend path by next step
-                        if (stackTop == stack.length) {
-                            stack = Arrays.copyOf(stack, stack.length * 2);
-                        }
-                        stack[stackTop] = pointedFromPtr;
-                        stackTop++;
+            for (int p = fromPointers.start(curObjIndex); p < fromPointers.end(curObjIndex); p++) {
+                int pointedFromPtr = fromPointers.get(p);
+                if (!fromClosure.get(pointedFromPtr)) {
+                    fromClosure.set(pointedFromPtr);
+                    // extend path by next step
+                    if (stackTop == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
                     }
+                    stack[stackTop] = pointedFromPtr;
+                    stackTop++;
                 }
             }
         }
@@ -1358,18 +1340,28 @@ public abstract class IndexBasedHeap implements Heap {
 
     //================================================================================
     // Dominator Tree (written by eg)
-    // TODO: Check for correctness
     //================================================================================
     public void initDominators() {
         ApplicationStatistics.Measurement m = ApplicationStatistics.getInstance().createMeasurement("Calculate fast dominators");
-        dominators = new FastDominators(this::getToPointers,
-                                        this::getFromPointers,
-                                        this::isRootReachable,
+        dominators = new FastDominators(getAllToPointers(),
+                                        getAllFromPointers(),
+                                        this::getSize,
                                         rootPtrs.keySet().stream().mapToInt(i -> i).toArray(),
                                         objectCount);
         m.end();
     }
 
+    private FastDominators dominators() {
+        if (dominators == null) {
+            synchronized (this) {
+                if (dominators == null) {
+                    initDominators();
+                }
+            }
+        }
+        return dominators;
+    }
+
     /**
      * Checks whether object n dominates object m
      *
@@ -1378,49 +1370,22 @@ public abstract class IndexBasedHeap implements Heap {
      * @return true if n is an ancestor of m in the dominator tree, false otherwise. Note that for n = m, this method returns false.
      */
     private boolean dominates(int n, int m) {
-        if (dominators == null) {
-            initDominators();
-        }
-
-        for (int d = dominators.getImmediateDominator(m); d >= 0; d = dominators.getImmediateDominator(d)) {
-            if (d == n) {
-                return true;
-            }
-        }
-
-        return false;
+        return dominators().dominates(n, m);
     }
 
     public int getImmediateDominator(int objIndex) {
-        if (dominators == null) {
-            initDominators();
-        }
-
-        return dominators.getImmediateDominator(objIndex);
+        return dominators().getImmediateDominator(objIndex);
     }
 
     public BitSet getDominatedObjects(int objIndex) {
-        if (dominators == null) {
-            initDominators();
-        }
-
-        BitSet dominatedObjects = new BitSet();
-        BitSet toProcess = new BitSet();
-
-        toProcess.set(objIndex);
-
-        for (int idx = toProcess.nextSetBit(0); idx != -1; idx = toProcess.nextSetBit(idx + 1)) {
-            toProcess.clear(idx);
-            dominatedObjects.set(idx);
-
-            int[] immediatelyDominated = dominators.getImmediatelyDominated(idx);
-            if (immediatelyDominated != null) {
-                for (int i = 0; i < immediatelyDominated.length; i++) {
-                    toProcess.set(immediatelyDominated[i]);
-                }
-            }
-        }
+        return dominators().getDominated(objIndex);
+    }
 
-        return dominatedObjects;
+    /**
+     * @return the number of bytes that are only reachable via the given object (including itself), 0 if the object is not reachable from
+     * any root. The retained sizes of all objects are calculated together on the first call.
+     */
+    public long getRetainedSize(int objIndex) {
+        return dominators().getRetainedSize(objIndex);
     }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package at.jku.anttracks.heap;
+
+import at.jku.anttracks.heap.objects.ObjectInfo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static at.jku.anttracks.heap.IndexBasedHeap.NULL_INDEX;
+
+/**
+ * Column-wise representation of the objects of an {@link IndexBasedHeap}: one primitive array per property (address, object info id, born
+ * GC), and the to- and from-pointers of all objects in compressed sparse row format, i.e., the pointers of object i are
+ * {@code pointers[offsets[i]]} to {@code pointers[offsets[i + 1] - 1]}. Per-object pointer arrays are only created on request.
+ * <p>
+ * The objects have to be added in ascending address order, such that addresses can be translated to indices by binary search.
+ */
+public class IndexHeapColumns {
+    private static final int[] NO_POINTERS = new int[0];
+
+    public final int objectCount;
+    public final long[] addresses;
+    public final int[] objectInfoIds;
+    public final short[] born;
+    // all object infos referenced by objects, indexed by their id
+    private ObjectInfo[] objectInfos = new ObjectInfo[1024];
+
+    public final int[] toPointerOffsets;
+    public int[] toPointers = NO_POINTERS;
+    public int[] fromPointerOffsets;
+    public int[] fromPointers = NO_POINTERS;
+
+    public IndexHeapColumns(int objectCount) {
+        this.objectCount = objectCount;
+        addresses = new long[objectCount];
+        objectInfoIds = new int[objectCount];
+        born = new short[objectCount];
+        toPointerOffsets = new int[objectCount + 1];
+    }
+
+    public void setObject(int objIndex, long address, ObjectInfo info, short bornAt) {
+        assert info.id >= 0 : "Object info has not been created by an object info cache";
+        addresses[objIndex] = address;
+        objectInfoIds[objIndex] = info.id;
+        born[objIndex] = bornAt;
+        if (info.id >= objectInfos.length) {
+            objectInfos = Arrays.copyOf(objectInfos, Math.max(info.id + 1, objectInfos.length * 2));
+        }
+        objectInfos[info.id] = info;
+    }
+
+    /**
+     * Sets the number of to-pointers of an object, must be called for all objects in index order before the to-pointers are set
+     */
+    public void setToPointerCount(int objIndex, int count) {
+        toPointerOffsets[objIndex + 1] = Math.addExact(toPointerOffsets[objIndex], count);
+    }
+
+    /**
+     * Allocates the to-pointer array after the pointer counts of all objects have been set
+     */
+    public void allocateToPointers() {
+        toPointers = new int[toPointerOffsets[objectCount]];
+    }
+
+    /**
+     * Builds the from-pointers by inverting the to-pointers. The from-pointers of an object are ordered by the index of the pointing objects.
+     */
+    public void buildFromPointers() {
+        // count into the slot of the target, the inclusive prefix sum then yields the end of each target's from-pointers
+        fromPointerOffsets = new int[objectCount + 1];
+        for (int ptr : toPointers) {
+            if (ptr != NULL_INDEX) {
+                fromPointerOffsets[ptr]++;
+            }
+        }
+        int sum = 0;
+        for (int i = 0; i <= objectCount; i++) {
+            sum += fromPointerOffsets[i];
+            fromPointerOffsets[i] = sum;
+        }
+        // fill backwards, afterwards every slot holds the start of the target's from-pointers
+        fromPointers = new int[sum];
+        for (int from = objectCount - 1; from >= 0; from--) {
+            for (int p = toPointerOffsets[from + 1] - 1; p >= toPointerOffsets[from]; p--) {
+                int ptr = toPointers[p];
+                if (ptr != NULL_INDEX) {
+                    fromPointers[--fromPointerOffsets[ptr]] = from;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ignores all pointers of the given objects, i.e., their to-pointers are set to {@link IndexBasedHeap#NULL_INDEX} and they are removed
+     * from the from-pointers of the pointed objects
+     */
+    public void ignorePointersFrom(BitSet objects) {
+        if (objects.isEmpty()) {
+            return;
+        }
+        for (int obj = objects.nextSetBit(0); obj >= 0; obj = objects.nextSetBit(obj + 1)) {
+            Arrays.fill(toPointers, toPointerOffsets[obj], toPointerOffsets[obj + 1], NULL_INDEX);
+        }
+        // compact in place, the from-pointer array keeps its length
+        int write = 0;
+        int start = fromPointerOffsets[0];
+        for (int i = 0; i < objectCount; i++) {
+            int end = fromPointerOffsets[i + 1];
+            fromPointerOffsets[i] = write;
+            for (int p = start; p < end; p++) {
+                if (!objects.get(fromPointers[p])) {
+                    fromPointers[write++] = fromPointers[p];
+                }
+            }
+            start = end;
+        }
+        fromPointerOffsets[objectCount] = write;
+    }
+
+    public ObjectInfo getObjectInfo(int objIndex) {
+        return objectInfos[objectInfoIds[objIndex]];
+    }
+
+    /**
+     * @return the to-pointers of all objects without copying them, see {@link #getToPointers(int)} for a copy of a single object's pointers
+     */
+    public IndexHeapPointers getAllToPointers() {
+        return new IndexHeapPointers.ArrayBacked(toPointerOffsets, toPointers);
+    }
+
+    /**
+     * @return the from-pointers of all objects without copying them, see {@link #getFromPointers(int)} for a copy of a single object's pointers
+     */
+    public IndexHeapPointers getAllFromPointers() {
+        return new IndexHeapPointers.ArrayBacked(fromPointerOffsets, fromPointers);
+    }
+
+    public int[] getToPointers(int objIndex) {
+        return slice(toPointers, toPointerOffsets[objIndex], toPointerOffsets[objIndex + 1]);
+    }
+
+    public int[] getFromPointers(int objIndex) {
+        return slice(fromPointers, fromPointerOffsets[objIndex], fromPointerOffsets[objIndex + 1]);
+    }
+
+    private static int[] slice(int[] pointers, int from, int to) {
+        return from == to ? NO_POINTERS : Arrays.copyOfRange(pointers, from, to);
+    }
+
+    /**
+     * @return the index of the object at the given address, or {@link IndexBasedHeap#NULL_INDEX} if there is no object at this address
+     */
+    public int toIndex(long address) {
+        int idx = Arrays.binarySearch(addresses, address);
+        return idx >= 0 ? idx : NULL_INDEX;
+    }
+}
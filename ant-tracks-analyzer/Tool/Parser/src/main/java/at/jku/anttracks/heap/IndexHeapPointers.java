@@ -0,0 +1,52 @@
+package at.jku.anttracks.heap;
+
+/**
+ * The to- or from-pointers of all objects of an {@link IndexBasedHeap} in compressed sparse row format, i.e., the pointers of object i are
+ * {@code get(start(i))} to {@code get(end(i) - 1)}. In contrast to {@link IndexBasedHeap#getToPointers(int)} and
+ * {@link IndexBasedHeap#getFromPointers(int)}, iterating the pointers this way does not allocate an array per object.
+ */
+public interface IndexHeapPointers {
+
+    /**
+     * @return the position of the first pointer of the given object
+     */
+    int start(int objIndex);
+
+    /**
+     * @return the position after the last pointer of the given object
+     */
+    int end(int objIndex);
+
+    /**
+     * @return the pointer at the given position, may be {@link IndexBasedHeap#NULL_INDEX}
+     */
+    int get(int position);
+
+    /**
+     * Pointers that are backed by an offset array and a pointer array, e.g., the columns of an {@link IndexHeapColumns}
+     */
+    final class ArrayBacked implements IndexHeapPointers {
+        private final int[] offsets;
+        private final int[] pointers;
+
+        public ArrayBacked(int[] offsets, int[] pointers) {
+            this.offsets = offsets;
+            this.pointers = pointers;
+        }
+
+        @Override
+        public int start(int objIndex) {
+            return offsets[objIndex];
+        }
+
+        @Override
+        public int end(int objIndex) {
+            return offsets[objIndex + 1];
+        }
+
+        @Override
+        public int get(int position) {
+            return pointers[position];
+        }
+    }
+}
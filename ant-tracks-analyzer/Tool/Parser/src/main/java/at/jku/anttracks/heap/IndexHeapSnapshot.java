@@ -0,0 +1,444 @@
+package at.jku.anttracks.heap;
+
+import at.jku.anttracks.heap.io.HeapReader;
+import at.jku.anttracks.heap.io.HeapWriter;
+import at.jku.anttracks.heap.objects.ObjectInfo;
+import at.jku.anttracks.heap.objects.ObjectInfoCache;
+import at.jku.anttracks.heap.roots.RootPtr;
+import at.jku.anttracks.heap.space.SpaceInfo;
+import at.jku.anttracks.heap.space.SpaceMode;
+import at.jku.anttracks.heap.space.SpaceType;
+import at.jku.anttracks.heap.symbols.Symbols;
+import at.jku.anttracks.parser.heap.ThreadInfo;
+import at.jku.anttracks.util.Consts;
+import at.jku.anttracks.util.FastDominators;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static at.jku.anttracks.util.Consts.HEAP_FILES_MAGIC_PREFIX;
+
+/**
+ * An {@link IndexBasedHeap} stored in a single file, such that it can be opened by memory-mapping (see {@link MemoryMappedFastHeap}) instead
+ * of parsing the trace and building the heap again. Snapshots are stored in the trace's meta data directory, one per selected point in time.
+ * <p>
+ * File layout (all values big-endian):
+ * <ul>
+ * <li>header ({@value #HEADER_SIZE} bytes): magic, version, object count, GC id, to-pointer count, from-pointer count, meta data offset, flags</li>
+ * <li>columns: addresses (long), object info ids (int), born GC (short), to-pointer offsets and from-pointer offsets (int, object count + 1
+ * each), to-pointers and from-pointers (int), see {@link IndexHeapColumns} for the pointer representation</li>
+ * <li>meta data: byte count, object infos (encoded like in {@link HeapWriter}), spaces, roots, threads, the objects reachable from each root
+ * type and, if they have been calculated, the dominators</li>
+ * </ul>
+ * The columns are mapped and read on demand, only the meta data is read into memory when a snapshot is opened.
+ */
+public class IndexHeapSnapshot {
+    public static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int FLAG_DOMINATORS = 1;
+
+    // write snapshots of index-based heaps built from a trace, such that later sessions can open them instead of parsing the trace.
+    // Off by default, every snapshot is about as large as the heap's columns and snapshots are never cleaned up.
+    public static boolean WRITE_SNAPSHOTS = false;
+
+    final int objectCount;
+    final int gcNo;
+
+    final MappedSection addresses;
+    final MappedSection objectInfoIds;
+    final MappedSection born;
+    final MappedSection toPointerOffsets;
+    final MappedSection fromPointerOffsets;
+    final MappedSection toPointers;
+    final MappedSection fromPointers;
+
+    final Symbols symbols;
+    int byteCount;
+    final ObjectInfoCache objectInfoCache = new ObjectInfoCache();
+    // object infos of the new cache, indexed by the ids stored in the object info id column
+    ObjectInfo[] objectInfosById;
+    SpaceInfo[] spaceInfos;
+    long[] spaceStartAddresses;
+    final Map<Integer, List<RootPtr>> rootPtrs = new HashMap<>();
+    final Map<Long, ThreadInfo> threadsById = new HashMap<>();
+    final Map<String, ThreadInfo> threadsByInternalName = new HashMap<>();
+    final Map<RootPtr.RootType, BitSet> directlyReachableFromRootType = new HashMap<>();
+    final Map<RootPtr.RootType, BitSet> indirectlyReachableFromRootType = new HashMap<>();
+    FastDominators dominators;
+
+    private IndexHeapSnapshot(FileChannel channel, Symbols symbols) throws IOException {
+        this.symbols = symbols;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                break;
+            }
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != HEAP_FILES_MAGIC_PREFIX) {
+            throw new IOException("Expected magic prefix");
+        }
+        if (header.getInt() != VERSION) {
+            throw new IOException("Unsupported version");
+        }
+        objectCount = header.getInt();
+        gcNo = header.getInt();
+        int toPointerCount = header.getInt();
+        int fromPointerCount = header.getInt();
+        long metaOffset = header.getLong();
+        int flags = header.getInt();
+
+        long position = HEADER_SIZE;
+        addresses = new MappedSection(channel, position, (long) objectCount * Long.BYTES);
+        position += addresses.size();
+        objectInfoIds = new MappedSection(channel, position, (long) objectCount * Integer.BYTES);
+        position += objectInfoIds.size();
+        born = new MappedSection(channel, position, (long) objectCount * Short.BYTES);
+        position += born.size();
+        toPointerOffsets = new MappedSection(channel, position, (objectCount + 1L) * Integer.BYTES);
+        position += toPointerOffsets.size();
+        fromPointerOffsets = new MappedSection(channel, position, (objectCount + 1L) * Integer.BYTES);
+        position += fromPointerOffsets.size();
+        toPointers = new MappedSection(channel, position, (long) toPointerCount * Integer.BYTES);
+        position += toPointers.size();
+        fromPointers = new MappedSection(channel, position, (long) fromPointerCount * Integer.BYTES);
+        position += fromPointers.size();
+        if (position != metaOffset) {
+            throw new IOException("Corrupt snapshot, meta data expected at " + position + " but found at " + metaOffset);
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(metaOffset))));
+        readMetaData(in, (flags & FLAG_DOMINATORS) != 0);
+    }
+
+    /**
+     * @param metaDataDirectory the trace's meta data directory (see {@link Consts#ANT_META_DIRECTORY})
+     * @param time              the point in time the heap has been built for
+     * @return the snapshot file of the heap at the given time, which may not exist
+     */
+    public static File getFile(String metaDataDirectory, long time) {
+        return new File(metaDataDirectory, time + Consts.INDEX_HEAP_SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * Opens a snapshot that has been written with {@link #write(IndexBasedHeap, File)}, use {@link MemoryMappedFastHeap#MemoryMappedFastHeap
+     * (IndexHeapSnapshot, boolean, at.jku.anttracks.util.ProgressListener)} to access it as a heap
+     *
+     * @param symbols the symbols of the trace the heap has been built from
+     * @throws IOException if the file cannot be read or is not a snapshot of this version
+     */
+    public static IndexHeapSnapshot open(File file, Symbols symbols) throws IOException {
+        // the mappings stay valid after the channel has been closed
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new IndexHeapSnapshot(channel, symbols);
+        }
+    }
+
+    /**
+     * Writes the given heap to the given file. The snapshot is written to a temporary file first, such that an incomplete snapshot is never
+     * opened. The temporary file is deleted if writing fails.
+     */
+    public static void write(IndexBasedHeap heap, File file) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            writeTo(heap, tmpFile);
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    private static void writeTo(IndexBasedHeap heap, File tmpFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(tmpFile.toPath(),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.WRITE)) {
+            int objectCount = heap.getObjectCount();
+            ColumnWriter columns = new ColumnWriter(channel, HEADER_SIZE);
+            for (int i = 0; i < objectCount; i++) {
+                columns.putLong(heap.getAddress(i));
+            }
+            for (int i = 0; i < objectCount; i++) {
+                columns.putInt(heap.getObjectInfo(i).id);
+            }
+            for (int i = 0; i < objectCount; i++) {
+                columns.putShort(heap.getBorn(i));
+            }
+
+            // the offsets are only known after the pointers have been written
+            long offsetsPosition = columns.position();
+            columns.seek(offsetsPosition + 2 * (objectCount + 1L) * Integer.BYTES);
+            int[] toPointerOffsets = writePointers(columns, objectCount, heap.getAllToPointers());
+            int[] fromPointerOffsets = writePointers(columns, objectCount, heap.getAllFromPointers());
+            long metaOffset = columns.position();
+            columns.seek(offsetsPosition);
+            for (int offset : toPointerOffsets) {
+                columns.putInt(offset);
+            }
+            for (int offset : fromPointerOffsets) {
+                columns.putInt(offset);
+            }
+            columns.flush();
+
+            FastDominators dominators = heap.dominators;
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel.position(metaOffset))));
+            writeMetaData(heap, dominators, out);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(HEAP_FILES_MAGIC_PREFIX)
+                  .putInt(VERSION)
+                  .putInt(objectCount)
+                  .putInt(heap.gcNo)
+                  .putInt(toPointerOffsets[objectCount])
+                  .putInt(fromPointerOffsets[objectCount])
+                  .putLong(metaOffset)
+                  .putInt(dominators != null ? FLAG_DOMINATORS : 0);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+    }
+
+    /**
+     * @return the offsets of the pointers of each object, see {@link IndexHeapColumns}
+     */
+    private static int[] writePointers(ColumnWriter columns, int objectCount, IndexHeapPointers pointers) throws IOException {
+        int[] offsets = new int[objectCount + 1];
+        for (int i = 0; i < objectCount; i++) {
+            int start = pointers.start(i);
+            int end = pointers.end(i);
+            for (int p = start; p < end; p++) {
+                columns.putInt(pointers.get(p));
+            }
+            offsets[i + 1] = Math.addExact(offsets[i], end - start);
+        }
+        return offsets;
+    }
+
+    private static void writeMetaData(IndexBasedHeap heap, FastDominators dominators, DataOutputStream out) throws IOException {
+        out.writeInt(heap.byteCount);
+
+        // object infos, the ids stored in the object info id column are those of the heap's cache
+        ObjectInfo[] objectInfos = new ObjectInfo[1024];
+        List<SpaceInfo> spaces = new ArrayList<>();
+        SpaceInfo space = null;
+        for (int i = 0; i < heap.getObjectCount(); i++) {
+            ObjectInfo info = heap.getObjectInfo(i);
+            if (info.id >= objectInfos.length) {
+                objectInfos = Arrays.copyOf(objectInfos, Math.max(info.id + 1, objectInfos.length * 2));
+            }
+            objectInfos[info.id] = info;
+            // objects are sorted by address, a space only has to be looked up if an object is not in the previous object's space
+            if (space == null || !space.contains(heap.getAddress(i))) {
+                space = heap.getSpace(i);
+                spaces.add(space);
+            }
+        }
+        out.writeInt((int) Arrays.stream(objectInfos).filter(info -> info != null).count());
+        for (ObjectInfo info : objectInfos) {
+            if (info != null) {
+                out.writeInt(info.id);
+                HeapWriter.writeObjectInfo(out, info, heap.getSymbols().sites);
+            }
+        }
+
+        out.writeInt(spaces.size());
+        for (SpaceInfo s : spaces) {
+            out.writeUTF(s.name);
+            out.writeShort(s.id);
+            out.writeLong(s.getAddress());
+            out.writeLong(s.getLength());
+            out.writeInt(s.getType() != null ? s.getType().ordinal() : -1);
+            out.writeInt(s.getMode() != null ? s.getMode().ordinal() : -1);
+            out.writeInt(s.getTransitionType() != null ? s.getTransitionType().ordinal() : -1);
+        }
+
+        out.writeInt(heap.rootPtrs.size());
+        for (Map.Entry<Integer, List<RootPtr>> entry : heap.rootPtrs.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (RootPtr root : entry.getValue()) {
+                out.write(root.getMetadata());
+            }
+        }
+
+        out.writeInt(heap.threadsById.size());
+        for (ThreadInfo t : heap.threadsById.values()) {
+            out.writeLong(t.threadId);
+            writeNullableUTF(out, t.threadName);
+            writeNullableUTF(out, t.internalThreadName);
+            out.writeBoolean(t.isAlive());
+            out.writeInt(t.getStackDepth());
+            out.write(t.getCallstackMetadata());
+        }
+
+        for (RootPtr.RootType type : RootPtr.RootType.values()) {
+            writeBitSet(out, heap.directlyReachableFromRootType.get(type));
+            writeBitSet(out, heap.indirectlyReachableFromRootType.get(type));
+        }
+
+        if (dominators != null) {
+            dominators.write(out);
+        }
+    }
+
+    private void readMetaData(DataInputStream in, boolean hasDominators) throws IOException {
+        byteCount = in.readInt();
+
+        int objectInfoCount = in.readInt();
+        objectInfosById = new ObjectInfo[0];
+        for (int i = 0; i < objectInfoCount; i++) {
+            int id = in.readInt();
+            if (id >= objectInfosById.length) {
+                objectInfosById = Arrays.copyOf(objectInfosById, Math.max(id + 1, objectInfosById.length * 2));
+            }
+            objectInfosById[id] = HeapReader.readPrototype(in, objectInfoCache, symbols);
+        }
+
+        spaceInfos = new SpaceInfo[in.readInt()];
+        spaceStartAddresses = new long[spaceInfos.length];
+        for (int i = 0; i < spaceInfos.length; i++) {
+            SpaceInfo space = new SpaceInfo(in.readUTF());
+            space.id = in.readShort();
+            space.setAddress(in.readLong());
+            space.setLength(in.readLong());
+            int type = in.readInt();
+            int mode = in.readInt();
+            int transitionType = in.readInt();
+            space.setType(type >= 0 ? SpaceType.values()[type] : null);
+            space.setMode(mode >= 0 ? SpaceMode.values()[mode] : null);
+            space.setTransitionType(transitionType >= 0 ? SpaceInfo.TransitionType.values()[transitionType] : null);
+            spaceInfos[i] = space;
+            spaceStartAddresses[i] = space.getAddress();
+        }
+
+        int rootEntries = in.readInt();
+        for (int i = 0; i < rootEntries; i++) {
+            int idx = in.readInt();
+            List<RootPtr> roots = new ArrayList<>();
+            int rootCount = in.readInt();
+            for (int r = 0; r < rootCount; r++) {
+                roots.add(RootPtr.fromMetadata(in));
+            }
+            rootPtrs.put(idx, roots);
+        }
+
+        int threadCount = in.readInt();
+        for (int i = 0; i < threadCount; i++) {
+            ThreadInfo t = new ThreadInfo(in.readLong(), readNullableUTF(in), readNullableUTF(in), in.readBoolean());
+            int stackDepth = in.readInt();
+            for (int j = 0; j < stackDepth; j++) {
+                t.addStackframe(in.readInt(), in.readInt());
+            }
+            threadsById.put(t.threadId, t);
+            threadsByInternalName.put(t.internalThreadName, t);
+        }
+
+        for (RootPtr.RootType type : RootPtr.RootType.values()) {
+            directlyReachableFromRootType.put(type, readBitSet(in));
+            indirectlyReachableFromRootType.put(type, readBitSet(in));
+        }
+
+        if (hasDominators) {
+            dominators = new FastDominators(in);
+        }
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeBitSet(DataOutputStream out, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static BitSet readBitSet(DataInputStream in) throws IOException {
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Writes primitive values to a file channel through a buffer
+     */
+    static class ColumnWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private long position;
+
+        ColumnWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        long position() {
+            return position + buffer.position();
+        }
+
+        void seek(long position) throws IOException {
+            flush();
+            this.position = position;
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putShort(short value) throws IOException {
+            ensureRemaining(Short.BYTES);
+            buffer.putShort(value);
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package at.jku.anttracks.heap;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only memory-mapped region of a file that holds a column of primitive values. A single {@link MappedByteBuffer} is limited to 2GB,
+ * thus the region is mapped in chunks of 1GB. Since the chunk size is a multiple of every element size, no element spans two chunks.
+ * <p>
+ * Only absolute reads are used, so a section can be read by several threads concurrently.
+ */
+class MappedSection {
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    MappedSection(FileChannel channel, long position, long size) throws IOException {
+        this.size = size;
+        chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            long chunkStart = (long) chunk << CHUNK_SHIFT;
+            chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, position + chunkStart, Math.min(size - chunkStart, 1L << CHUNK_SHIFT));
+        }
+    }
+
+    /**
+     * @return the size of this section in bytes
+     */
+    long size() {
+        return size;
+    }
+
+    long getLong(long index) {
+        long pos = index * Long.BYTES;
+        return chunks[(int) (pos >>> CHUNK_SHIFT)].getLong((int) (pos & CHUNK_MASK));
+    }
+
+    int getInt(long index) {
+        long pos = index * Integer.BYTES;
+        return chunks[(int) (pos >>> CHUNK_SHIFT)].getInt((int) (pos & CHUNK_MASK));
+    }
+
+    short getShort(long index) {
+        long pos = index * Short.BYTES;
+        return chunks[(int) (pos >>> CHUNK_SHIFT)].getShort((int) (pos & CHUNK_MASK));
+    }
+
+    /**
+     * @return the ints from index {@code from} (inclusive) to index {@code to} (exclusive)
+     */
+    int[] getInts(long from, long to) {
+        int[] values = new int[Math.toIntExact(to - from)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getInt(from + i);
+        }
+        return values;
+    }
+}
@@ -1,22 +1,17 @@
 package at.jku.anttracks.heap;
 
-import at.jku.anttracks.heap.labs.IndexHeapObject;
 import at.jku.anttracks.heap.objects.ObjectInfo;
 import at.jku.anttracks.heap.space.SpaceInfo;
+import at.jku.anttracks.util.ProgressListener;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.IntBuffer;
-import java.nio.MappedByteBuffer;
+import java.io.UncheckedIOException;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
-import java.util.BitSet;
 
 public class MemoryMappedFastHeap extends IndexBasedHeap {
     //================================================================================
@@ -31,58 +26,85 @@ public class MemoryMappedFastHeap extends IndexBasedHeap {
     public static final String TO_POINTERS_OFF_PREFIX = "tp_off";
     public static final String TO_POINTERS_PREFIX = "tp";
     public static final String OBJECT_INFO_ID_PREFIX = "oid";
+    public static final String BORN_PREFIX = "born";
     public static final String FILE_EXTENSION = ".dat";
 
-    public static final int EOF = 42;
-
     // instance fields
-    private Path[] dataFiles;
-    private MappedByteBuffer addresses;
-    private MappedByteBuffer fromPointersOffsets;
-    private MappedByteBuffer fromPointers;
-    private MappedByteBuffer toPointersOffsets;
-    private MappedByteBuffer toPointers;
-    private MappedByteBuffer objectInfos;
+    // the temporary files this heap has been written to, empty if the heap has been restored from a snapshot (which is kept)
+    private Path[] dataFiles = new Path[0];
+    private MappedSection addresses;
+    private MappedSection fromPointersOffsets;
+    private MappedSection fromPointers;
+    private MappedSection toPointersOffsets;
+    private MappedSection toPointers;
+    private MappedSection objectInfoIds;
+    private MappedSection born;
+    private ObjectInfo[] objectInfosById;
 
     SpaceInfo[] spaceInfos;
     long[] spaceStartAddresses;
-    // short[] born;
 
     public MemoryMappedFastHeap(DetailedHeap heap) {
         super(heap);
-        System.out.println("IM IN MEMORY MAPPED FAST HEAP HAHAHAHAHH");
+    }
+
+    /**
+     * Opens a heap snapshot without reading its objects into memory, see {@link IndexHeapSnapshot#open(java.io.File, at.jku.anttracks.heap.symbols.Symbols)}
+     */
+    public MemoryMappedFastHeap(IndexHeapSnapshot snapshot, boolean initDataStructures, ProgressListener progressListener) {
+        super(snapshot);
+        spaceInfos = snapshot.spaceInfos;
+        spaceStartAddresses = snapshot.spaceStartAddresses;
+        objectInfosById = snapshot.objectInfosById;
+        addresses = snapshot.addresses;
+        objectInfoIds = snapshot.objectInfoIds;
+        born = snapshot.born;
+        toPointersOffsets = snapshot.toPointerOffsets;
+        toPointers = snapshot.toPointers;
+        fromPointersOffsets = snapshot.fromPointerOffsets;
+        fromPointers = snapshot.fromPointers;
+        restore(snapshot, initDataStructures, progressListener);
     }
 
     @Override
     protected void store(SpaceInfo[] spaceInfos,
                          long[] spaceStartAddresses,
-                         IndexHeapObject[] objectsArray) {
+                         IndexHeapColumns columns) {
         this.spaceInfos = spaceInfos;
         this.spaceStartAddresses = spaceStartAddresses;
-
-        dataFiles = new Path[6];
-        int nrOfFromPointers = calcNrOfFromPointers(objectsArray);
-        int nrOfToPointers = calcNrOfToPointers(objectsArray);
-        initMappedByteBuffers(nrOfFromPointers, nrOfToPointers);
-
-        // write adresses
-        for (int i = 0; i < objectsArray.length; i++) {
-            this.addresses.putLong(objectsArray[i].getAddress());
+        objectInfosById = new ObjectInfo[0];
+        for (int i = 0; i < objectCount; i++) {
+            ObjectInfo info = columns.getObjectInfo(i);
+            if (info.id >= objectInfosById.length) {
+                objectInfosById = Arrays.copyOf(objectInfosById, Math.max(info.id + 1, objectInfosById.length * 2));
+            }
+            objectInfosById[info.id] = info;
         }
 
-        // TODO: Write born array
-
-        //write object info IDs
-        for (int i = 0; i < objectsArray.length; i++) {
-            this.objectInfos.putInt(objectsArray[i].getInfo().id);
+        dataFiles = new Path[7];
+        try {
+            addresses = writeDataFile(0, ADDRESSES_PREFIX, (long) objectCount * Long.BYTES, writer -> {
+                for (long address : columns.addresses) {
+                    writer.putLong(address);
+                }
+            });
+            objectInfoIds = writeDataFile(1, OBJECT_INFO_ID_PREFIX, (long) objectCount * Integer.BYTES, writer -> {
+                for (int id : columns.objectInfoIds) {
+                    writer.putInt(id);
+                }
+            });
+            born = writeDataFile(2, BORN_PREFIX, (long) objectCount * Short.BYTES, writer -> {
+                for (short bornAt : columns.born) {
+                    writer.putShort(bornAt);
+                }
+            });
+            toPointersOffsets = writeIntDataFile(3, TO_POINTERS_OFF_PREFIX, columns.toPointerOffsets, objectCount + 1);
+            toPointers = writeIntDataFile(4, TO_POINTERS_PREFIX, columns.toPointers, columns.toPointerOffsets[objectCount]);
+            fromPointersOffsets = writeIntDataFile(5, FROM_POINTERS_OFF_PREFIX, columns.fromPointerOffsets, objectCount + 1);
+            fromPointers = writeIntDataFile(6, FROM_POINTERS_PREFIX, columns.fromPointers, columns.fromPointerOffsets[objectCount]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
-        // write from-pointers
-        writeOffsetAndFromPointerFile(this.fromPointersOffsets, this.fromPointers, objectsArray);
-
-        // write to-pointers
-        writeOffsetAndToPointerFile(this.toPointersOffsets, this.toPointers, objectsArray);
-
     }
 
     //================================================================================
@@ -93,7 +115,7 @@ public class MemoryMappedFastHeap extends IndexBasedHeap {
         if (!valid(objIndex)) {
             return NULL_INDEX;
         }
-        return (int) addresses.getLong(objIndex * Long.BYTES);
+        return addresses.getLong(objIndex);
     }
 
     public int[] getToPointers(int objIndex) {
@@ -110,31 +132,45 @@ public class MemoryMappedFastHeap extends IndexBasedHeap {
         return getPointers(objIndex, fromPointersOffsets, fromPointers);
     }
 
+    @Override
+    public IndexHeapPointers getAllToPointers() {
+        return new MappedPointers(toPointersOffsets, toPointers);
+    }
+
+    @Override
+    public IndexHeapPointers getAllFromPointers() {
+        return new MappedPointers(fromPointersOffsets, fromPointers);
+    }
+
     @Override
     public ObjectInfo getObjectInfo(int objIndex) {
         if (!valid(objIndex)) {
             return null;
         }
-        int id = objectInfos.getInt(objIndex * Integer.BYTES);
-        return objectInfoCache.get(id);
+        return objectInfosById[objectInfoIds.getInt(objIndex)];
     }
 
     @Override
     public int toIndex(long address) {
-        // TODO implement binary search for memory-mapped files
-        for (int i = 0; i < objectCount; i++) {
-            if (addresses.getLong(i * Long.BYTES) == address) {
-                return i;
+        int low = 0;
+        int high = objectCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midAddress = addresses.getLong(mid);
+            if (midAddress < address) {
+                low = mid + 1;
+            } else if (midAddress > address) {
+                high = mid - 1;
+            } else {
+                return mid;
             }
         }
-        return -1;
+        return NULL_INDEX;
     }
 
     @Override
     public short getBorn(int objIndex) {
-        // TODO: Read born once we have a file for them
-        // return born[objIndex];
-        return -1;
+        return born.getShort(objIndex);
     }
 
     //================================================================================
@@ -154,163 +190,66 @@ public class MemoryMappedFastHeap extends IndexBasedHeap {
     }
 
     // private
-    private void writeOffsetAndFromPointerFile(MappedByteBuffer offsetFile, MappedByteBuffer ptFile, IndexHeapObject[] objectsArray) {
-        int counter = 0;
-        for (int i = 0; i < objectsArray.length; i++) {
-            IndexHeapObject heapObject = objectsArray[i];
-
-            //write offsets
-            if (i >= 1) {
-                offsetFile.putInt(offsetFile.getInt((i - 1) * Integer.BYTES) + counter);
-            } else {
-                offsetFile.putInt(counter);
-            }
-            counter = 0;
-
-            //write referenced objects
-            for (long j = offsetFile.getInt(i * Integer.BYTES); j < heapObject.pointedFromIndices.length + offsetFile.getInt(i * Integer.BYTES); j++) {
-                ptFile.putInt(heapObject.pointedFromIndices[counter]);
-                counter++;
-            }
-        }
-        offsetFile.putInt(offsetFile.getInt((objectsArray.length - 1) * Integer.BYTES));
-
-        ptFile.putInt(EOF);
-
-        // write buffer contents to file
-        offsetFile.force();
-        ptFile.force();
-        offsetFile.rewind();
-        ptFile.rewind();
+    private int[] getPointers(int objIndex, MappedSection offsets, MappedSection pointers) {
+        // the pointers of object i range from offset i to offset i + 1
+        int from = offsets.getInt(objIndex);
+        int to = offsets.getInt(objIndex + 1);
+        return from < to ? pointers.getInts(from, to) : null;
     }
 
-    private void writeOffsetAndToPointerFile(MappedByteBuffer offsetFile, MappedByteBuffer ptFile, IndexHeapObject[] objectsArray) {
-        int counter = 0;
-        for (int i = 0; i < objectsArray.length; i++) {
-            IndexHeapObject heapObject = objectsArray[i];
+    private static class MappedPointers implements IndexHeapPointers {
+        private final MappedSection offsets;
+        private final MappedSection pointers;
 
-            //write offsets
-            if (i >= 1) {
-                offsetFile.putInt(offsetFile.getInt((i - 1) * Integer.BYTES) + counter);
-            } else {
-                offsetFile.putInt(counter);
-            }
-            counter = 0;
-
-            //write referenced objects
-            for (long j = offsetFile.getInt(i * Integer.BYTES); j < heapObject.pointsToIndices.length + offsetFile.getInt(i * Integer.BYTES); j++) {
-                ptFile.putInt(heapObject.pointsToIndices[counter]);
-                counter++;
-            }
+        MappedPointers(MappedSection offsets, MappedSection pointers) {
+            this.offsets = offsets;
+            this.pointers = pointers;
         }
-        offsetFile.putInt(offsetFile.getInt((objectsArray.length - 1) * Integer.BYTES));
-
-        ptFile.putInt(EOF);
-
-        // write buffer contents to file
-        offsetFile.force();
-        ptFile.force();
-        offsetFile.rewind();
-        ptFile.rewind();
-    }
 
-    private int calcNrOfToPointers(IndexHeapObject[] objects) {
-        int nPointers = 0;
-        for (IndexHeapObject obj : objects) {
-            nPointers += obj.pointsTo.length;
+        @Override
+        public int start(int objIndex) {
+            return offsets.getInt(objIndex);
         }
-        return nPointers;
-    }
 
-    private int calcNrOfFromPointers(IndexHeapObject[] objects) {
-        int nPointers = 0;
-        for (IndexHeapObject obj : objects) {
-            nPointers += obj.pointedFrom.length;
+        @Override
+        public int end(int objIndex) {
+            return offsets.getInt(objIndex + 1);
         }
-        return nPointers;
-    }
 
-    private int[] getPointers(int objIndex, MappedByteBuffer offsetFile, MappedByteBuffer ptFile) {
-        int offset = offsetFile.getInt(objIndex * Integer.BYTES);
-        int limit = (offsetFile.limit() / Integer.BYTES);
-
-        if (objIndex == limit - 1) {
-            //last obj/pointers of file
-            int pos = 0;
-            int ptr = ptFile.getInt((offset + pos) * Integer.BYTES);
-            ArrayList<Integer> pointers = new ArrayList<>();
-            while (ptr != EOF) {
-                pointers.add(ptr);
-                pos++;
-                ptr = ptFile.getInt((offset + pos) * Integer.BYTES);
-            }
-            return pointers.stream().mapToInt(i -> i).toArray();
-        } else {
-            //not last obj
-            int nrPtrs = offsetFile.getInt((objIndex + 1) * Integer.BYTES) - offset;
-            if (nrPtrs > 0) {
-                ptFile.position(offset * Integer.BYTES);
-                byte[] vals = new byte[nrPtrs * Integer.BYTES];
-                ptFile.get(vals, 0, nrPtrs * Integer.BYTES);
-                IntBuffer intBuf =
-                        ByteBuffer.wrap(vals)
-                                  .order(ByteOrder.BIG_ENDIAN)
-                                  .asIntBuffer();
-                int[] intVals = new int[intBuf.remaining()];
-                intBuf.get(intVals);
-                return intVals;
-            } else {
-                return null;
-            }
+        @Override
+        public int get(int position) {
+            return pointers.getInt(position);
         }
     }
 
-    private void initMappedByteBuffers(int nrOfFromPointers, int nrOfToPointers) {
-        dataFiles[0] = getPathString(ADDRESSES_PREFIX);
-        dataFiles[1] = getPathString(FROM_POINTERS_PREFIX);
-        dataFiles[2] = getPathString(FROM_POINTERS_OFF_PREFIX);
-        dataFiles[3] = getPathString(TO_POINTERS_PREFIX);
-        dataFiles[4] = getPathString(TO_POINTERS_OFF_PREFIX);
-        dataFiles[5] = getPathString(OBJECT_INFO_ID_PREFIX);
-
-        try {
-            for (Path path : dataFiles) {
-                path.toFile().getParentFile().mkdirs();
-                if (Files.exists(path)) {
-                    Files.delete(path);
-                }
-                Files.createFile(path);
+    private MappedSection writeIntDataFile(int fileIndex, String prefix, int[] values, int count) throws IOException {
+        return writeDataFile(fileIndex, prefix, (long) count * Integer.BYTES, writer -> {
+            for (int i = 0; i < count; i++) {
+                writer.putInt(values[i]);
             }
+        });
+    }
 
-            this.addresses =
-                    new RandomAccessFile(dataFiles[0].toAbsolutePath().toString(), "rw")
-                            .getChannel()
-                            .map(FileChannel.MapMode.READ_WRITE, 0, (super.objectCount + 1) * Long.BYTES);
-            this.fromPointers =
-                    new RandomAccessFile(dataFiles[1].toAbsolutePath().toString(), "rw")
-                            .getChannel()
-                            .map(FileChannel.MapMode.READ_WRITE, 0, (nrOfFromPointers + 1) * Integer.BYTES);
-            this.fromPointersOffsets =
-                    new RandomAccessFile(dataFiles[2].toAbsolutePath().toString(), "rw")
-                            .getChannel()
-                            .map(FileChannel.MapMode.READ_WRITE, 0, (super.objectCount + 1) * Integer.BYTES);
-            this.toPointers =
-                    new RandomAccessFile(dataFiles[3].toAbsolutePath().toString(), "rw")
-                            .getChannel()
-                            .map(FileChannel.MapMode.READ_WRITE, 0, (nrOfToPointers + 1) * Integer.BYTES);
-            this.toPointersOffsets =
-                    new RandomAccessFile(dataFiles[4].toAbsolutePath().toString(), "rw")
-                            .getChannel()
-                            .map(FileChannel.MapMode.READ_WRITE, 0, (super.objectCount + 1) * Integer.BYTES);
-            this.objectInfos =
-                    new RandomAccessFile(dataFiles[5].toAbsolutePath().toString(), "rw")
-                            .getChannel()
-                            .map(FileChannel.MapMode.READ_WRITE, 0, (super.objectCount + 1) * Integer.BYTES);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private MappedSection writeDataFile(int fileIndex, String prefix, long size, DataFileContent content) throws IOException {
+        Path path = getPathString(prefix);
+        dataFiles[fileIndex] = path;
+        path.toFile().getParentFile().mkdirs();
+        try (FileChannel channel = FileChannel.open(path,
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            IndexHeapSnapshot.ColumnWriter writer = new IndexHeapSnapshot.ColumnWriter(channel, 0);
+            content.write(writer);
+            writer.flush();
+            return new MappedSection(channel, 0, size);
         }
     }
 
+    private interface DataFileContent {
+        void write(IndexHeapSnapshot.ColumnWriter writer) throws IOException;
+    }
+
     public static Path getTempDir() {
         String workingDir = System.getProperty("user.dir");
         return Paths.get(workingDir, TMP_DIR);
@@ -0,0 +1,335 @@
+package at.jku.anttracks.heap;
+
+import at.jku.anttracks.util.AtomicBitSet;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Computes transitive closures and GC closures of an {@link IndexBasedHeap} by level-synchronous breadth-first traversals: all objects
+ * of the current level are expanded in parallel (in chunks), and objects are claimed for the next level by atomically setting their bit.
+ * Small levels are expanded sequentially. The results are exactly those of a sequential depth-first traversal.
+ * <p>
+ * {@link #closures(int[][], boolean)} computes the closures of up to {@link #MAX_GROUPS} seed sets in a single traversal by tracking one
+ * bit per seed set for every object.
+ * <p>
+ * The pointers are read via {@link IndexBasedHeap#getAllToPointers()} and {@link IndexBasedHeap#getAllFromPointers()}, which do not copy
+ * them, from several threads and must therefore be thread-safe.
+ */
+public class ParallelClosures {
+    public static final int MAX_GROUPS = Long.SIZE;
+
+    // levels with fewer objects are expanded by the calling thread
+    public static int PARALLEL_THRESHOLD = 1 << 12;
+    private static final int CHUNK_SIZE = 1024;
+
+    private final IndexBasedHeap heap;
+
+    public ParallelClosures(IndexBasedHeap heap) {
+        this.heap = heap;
+    }
+
+    private interface Step {
+        void expand(int objIndex, IntArrayList next);
+    }
+
+    private static IntArrayList expandLevel(IntArrayList level, Step step) {
+        if (level.size() < PARALLEL_THRESHOLD) {
+            IntArrayList next = new IntArrayList();
+            for (int i = 0; i < level.size(); i++) {
+                step.expand(level.getInt(i), next);
+            }
+            return next;
+        }
+        int chunks = (level.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+            IntArrayList next = new IntArrayList();
+            int end = Math.min(level.size(), (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                step.expand(level.getInt(i), next);
+            }
+            return next;
+        }).collect(IntArrayList::new, (all, next) -> all.addAll(next), (all, other) -> all.addAll(other));
+    }
+
+    private static void traverse(IntArrayList frontier, Step step) {
+        while (!frontier.isEmpty()) {
+            frontier = expandLevel(frontier, step);
+        }
+    }
+
+    //================================================================================
+    // Single seed set
+    //================================================================================
+
+    /**
+     * @param objIndices    the seed objects, invalid indices are ignored
+     * @param assumeClosure objects that are already known to be part of the closure (together with everything they reference), may be null.
+     *                      If given, the closure is added to this set and the set is returned.
+     * @return all objects reachable from the given objects, including themselves
+     */
+    public BitSet transitiveClosure(int[] objIndices, BitSet assumeClosure) {
+        AtomicBitSet closure = assumeClosure != null ?
+                               new AtomicBitSet(heap.getObjectCount(), assumeClosure) :
+                               new AtomicBitSet(heap.getObjectCount());
+        IntArrayList frontier = new IntArrayList(objIndices.length);
+        for (int objIndex : objIndices) {
+            if (heap.valid(objIndex)) {
+                closure.set(objIndex);
+                frontier.add(objIndex);
+            }
+        }
+
+        IndexHeapPointers toPointers = heap.getAllToPointers();
+        traverse(frontier, (objIndex, next) -> {
+            for (int p = toPointers.start(objIndex); p < toPointers.end(objIndex); p++) {
+                int ptr = toPointers.get(p);
+                if (heap.valid(ptr) && closure.set(ptr)) {
+                    next.add(ptr);
+                }
+            }
+        });
+
+        if (assumeClosure == null) {
+            return closure.toBitSet();
+        }
+        assumeClosure.or(closure.toBitSet());
+        return assumeClosure;
+    }
+
+    /**
+     * @param objIndices        the seed objects, invalid indices are ignored
+     * @param transitiveClosure the transitive closure of the seed objects
+     * @return the objects of the transitive closure that would be freed if the seed objects were freed, i.e., all objects of the closure
+     * except those that are (transitively) kept alive by a root or by a root-reachable object outside of the closure
+     */
+    public BitSet gcClosure(int[] objIndices, BitSet transitiveClosure) {
+        BitSet seeds = new BitSet();
+        for (int objIndex : objIndices) {
+            if (heap.valid(objIndex)) {
+                seeds.set(objIndex);
+            }
+        }
+
+        IndexHeapPointers toPointers = heap.getAllToPointers();
+        IndexHeapPointers fromPointers = heap.getAllFromPointers();
+        AtomicBitSet removed = new AtomicBitSet(heap.getObjectCount());
+        IntArrayList keptAlive = expandLevel(new IntArrayList(transitiveClosure.stream().toArray()), (objIndex, next) -> {
+            if (!seeds.get(objIndex) && isKeptAliveFromOutside(objIndex, transitiveClosure, fromPointers) && removed.set(objIndex)) {
+                next.add(objIndex);
+            }
+        });
+
+        // everything these objects reference within the closure (except the seeds) is kept alive as well
+        traverse(keptAlive, (objIndex, next) -> {
+            for (int p = toPointers.start(objIndex); p < toPointers.end(objIndex); p++) {
+                int ptr = toPointers.get(p);
+                if (heap.valid(ptr) && transitiveClosure.get(ptr) && !seeds.get(ptr) && removed.set(ptr)) {
+                    next.add(ptr);
+                }
+            }
+        });
+
+        BitSet gcClosure = (BitSet) transitiveClosure.clone();
+        gcClosure.andNot(removed.toBitSet());
+        return gcClosure;
+    }
+
+    private boolean isKeptAliveFromOutside(int objIndex, BitSet transitiveClosure, IndexHeapPointers fromPointers) {
+        if (heap.isDirectlyReachable(objIndex)) {
+            return true;
+        }
+        for (int p = fromPointers.start(objIndex); p < fromPointers.end(objIndex); p++) {
+            int fromPtr = fromPointers.get(p);
+            if (heap.valid(fromPtr) && !transitiveClosure.get(fromPtr) && heap.isRootReachable(fromPtr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //================================================================================
+    // Several seed sets
+    //================================================================================
+
+    /**
+     * Computes the transitive closure and optionally the GC closure of every group of seed objects, as {@link #transitiveClosure(int[],
+     * BitSet)} and {@link #gcClosure(int[], BitSet)} would, but in a single traversal. Every object carries a mask with one bit per group
+     * from which it is reachable; an object is expanded again whenever its mask gains bits.
+     *
+     * @param groups             at most {@link #MAX_GROUPS} seed sets, invalid indices are ignored
+     * @param calculateGCClosure whether to calculate the GC closures, otherwise they are empty
+     * @return the closures of the groups, in the same order
+     */
+    public Closures[] closures(int[][] groups, boolean calculateGCClosure) {
+        if (groups.length > MAX_GROUPS) {
+            throw new IllegalArgumentException(String.format("At most %d groups can be traversed at once, got %d", MAX_GROUPS, groups.length));
+        }
+
+        Masks reach = new Masks(heap.getObjectCount());
+        Masks seeds = new Masks(heap.getObjectCount());
+        IntArrayList frontier = new IntArrayList();
+        for (int group = 0; group < groups.length; group++) {
+            long bit = 1L << group;
+            for (int objIndex : groups[group]) {
+                if (heap.valid(objIndex)) {
+                    seeds.or(objIndex, bit);
+                    if ((reach.or(objIndex, bit) & bit) == 0) {
+                        frontier.add(objIndex);
+                    }
+                }
+            }
+        }
+
+        IndexHeapPointers toPointers = heap.getAllToPointers();
+        IndexHeapPointers fromPointers = heap.getAllFromPointers();
+        traverse(frontier, (objIndex, next) -> {
+            long bits = reach.get(objIndex);
+            for (int p = toPointers.start(objIndex); p < toPointers.end(objIndex); p++) {
+                int ptr = toPointers.get(p);
+                if (heap.valid(ptr)) {
+                    long old = reach.or(ptr, bits);
+                    if ((old | bits) != old) {
+                        next.add(ptr);
+                    }
+                }
+            }
+        });
+        IntArrayList reached = reach.nonZero();
+
+        Masks removed = new Masks(heap.getObjectCount());
+        if (calculateGCClosure) {
+            IntArrayList keptAlive = expandLevel(reached, (objIndex, next) -> {
+                long candidates = reach.get(objIndex) & ~seeds.get(objIndex);
+                if (candidates != 0) {
+                    long groupsKeepingAlive = keptAliveFromOutside(objIndex, candidates, reach, fromPointers);
+                    if (groupsKeepingAlive != 0) {
+                        removed.or(objIndex, groupsKeepingAlive);
+                        next.add(objIndex);
+                    }
+                }
+            });
+
+            traverse(keptAlive, (objIndex, next) -> {
+                long bits = removed.get(objIndex);
+                for (int p = toPointers.start(objIndex); p < toPointers.end(objIndex); p++) {
+                    int ptr = toPointers.get(p);
+                    if (heap.valid(ptr)) {
+                        long allowed = bits & reach.get(ptr) & ~seeds.get(ptr);
+                        if (allowed != 0) {
+                            long old = removed.or(ptr, allowed);
+                            if ((old | allowed) != old) {
+                                next.add(ptr);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        BitSet[] transitiveClosures = new BitSet[groups.length];
+        BitSet[] gcClosures = new BitSet[groups.length];
+        for (int group = 0; group < groups.length; group++) {
+            transitiveClosures[group] = new BitSet();
+            gcClosures[group] = new BitSet();
+        }
+        for (int i = 0; i < reached.size(); i++) {
+            int objIndex = reached.getInt(i);
+            long bits = reach.get(objIndex);
+            long gcBits = calculateGCClosure ? bits & ~removed.get(objIndex) : 0;
+            for (long rest = bits; rest != 0; rest &= rest - 1) {
+                transitiveClosures[Long.numberOfTrailingZeros(rest)].set(objIndex);
+            }
+            for (long rest = gcBits; rest != 0; rest &= rest - 1) {
+                gcClosures[Long.numberOfTrailingZeros(rest)].set(objIndex);
+            }
+        }
+
+        Closures[] closures = new Closures[groups.length];
+        for (int group = 0; group < groups.length; group++) {
+            closures[group] = new Closures(heap, groups[group], transitiveClosures[group], gcClosures[group], new BitSet(), new BitSet());
+        }
+        return closures;
+    }
+
+    /**
+     * @return the groups (of the given candidates) in whose transitive closure the object is directly reachable from a root or referenced
+     * by a root-reachable object outside of the closure
+     */
+    private long keptAliveFromOutside(int objIndex, long candidates, Masks reach, IndexHeapPointers fromPointers) {
+        if (heap.isDirectlyReachable(objIndex)) {
+            return candidates;
+        }
+        long outside = 0;
+        for (int p = fromPointers.start(objIndex); p < fromPointers.end(objIndex); p++) {
+            int fromPtr = fromPointers.get(p);
+            if (heap.valid(fromPtr) && heap.isRootReachable(fromPtr)) {
+                outside |= ~reach.get(fromPtr);
+                if ((candidates & ~outside) == 0) {
+                    break;
+                }
+            }
+        }
+        return candidates & outside;
+    }
+
+    /**
+     * One long per object, allocated in pages on first write, that can be modified by several threads concurrently.
+     */
+    private static class Masks {
+        private static final int PAGE_SHIFT = 9;
+        private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+        private final AtomicReferenceArray<AtomicLongArray> pages;
+
+        Masks(int size) {
+            pages = new AtomicReferenceArray<>((size >>> PAGE_SHIFT) + 1);
+        }
+
+        long get(int objIndex) {
+            AtomicLongArray page = pages.get(objIndex >>> PAGE_SHIFT);
+            return page != null ? page.get(objIndex & PAGE_MASK) : 0;
+        }
+
+        /**
+         * @return the mask before adding the given bits
+         */
+        long or(int objIndex, long bits) {
+            AtomicLongArray page = pages.get(objIndex >>> PAGE_SHIFT);
+            if (page == null) {
+                pages.compareAndSet(objIndex >>> PAGE_SHIFT, null, new AtomicLongArray(PAGE_SIZE));
+                page = pages.get(objIndex >>> PAGE_SHIFT);
+            }
+            long old;
+            do {
+                old = page.get(objIndex & PAGE_MASK);
+                if ((old | bits) == old) {
+                    return old;
+                }
+            } while (!page.compareAndSet(objIndex & PAGE_MASK, old, old | bits));
+            return old;
+        }
+
+        /**
+         * @return all objects with a non-zero mask, must not be called concurrently with {@link #or(int, long)}
+         */
+        IntArrayList nonZero() {
+            IntArrayList objIndices = new IntArrayList();
+            for (int p = 0; p < pages.length(); p++) {
+                AtomicLongArray page = pages.get(p);
+                if (page != null) {
+                    for (int i = 0; i < PAGE_SIZE; i++) {
+                        if (page.get(i) != 0) {
+                            objIndices.add((p << PAGE_SHIFT) + i);
+                        }
+                    }
+                }
+            }
+            return objIndices;
+        }
+    }
+}
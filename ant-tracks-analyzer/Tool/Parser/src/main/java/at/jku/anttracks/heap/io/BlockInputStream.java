@@ -0,0 +1,123 @@
+package at.jku.anttracks.heap.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static at.jku.anttracks.heap.io.BlockOutputStream.CODEC_DEFLATE;
+import static at.jku.anttracks.heap.io.BlockOutputStream.CODEC_END;
+import static at.jku.anttracks.heap.io.BlockOutputStream.CODEC_STORED;
+
+/**
+ * Reads the blocks written by a {@link BlockOutputStream}. Either stops at the end of the block stream or continues with the block stream
+ * that follows it.
+ */
+public class BlockInputStream extends InputStream {
+    private final DataInputStream in;
+    private final boolean continueAfterEnd;
+    private final Inflater inflater = new Inflater(true);
+    private byte[] block = new byte[0];
+    private byte[] stored = new byte[0];
+    private int position;
+    private int length;
+    private boolean end;
+
+    public BlockInputStream(InputStream in) {
+        this(in, false);
+    }
+
+    public BlockInputStream(InputStream in, boolean continueAfterEnd) {
+        this.in = new DataInputStream(in);
+        this.continueAfterEnd = continueAfterEnd;
+    }
+
+    /**
+     * @return whether another block could be read
+     */
+    private boolean readBlock() throws IOException {
+        if (end) {
+            return false;
+        }
+        byte codec = in.readByte();
+        int rawLength = in.readInt();
+        int storedLength = in.readInt();
+        if (block.length < rawLength) {
+            block = new byte[rawLength];
+        }
+        switch (codec) {
+            case CODEC_END:
+                end = !continueAfterEnd;
+                length = 0;
+                position = 0;
+                return !end;
+            case CODEC_STORED:
+                in.readFully(block, 0, rawLength);
+                break;
+            case CODEC_DEFLATE:
+                if (stored.length < storedLength) {
+                    stored = new byte[storedLength];
+                }
+                in.readFully(stored, 0, storedLength);
+                inflater.reset();
+                inflater.setInput(stored, 0, storedLength);
+                try {
+                    int inflated = 0;
+                    while (inflated < rawLength) {
+                        int n = inflater.inflate(block, inflated, rawLength - inflated);
+                        if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                            throw new EOFException("Truncated block");
+                        }
+                        inflated += n;
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException(e);
+                }
+                break;
+            default:
+                throw new IOException("Unknown block codec " + codec);
+        }
+        position = 0;
+        length = rawLength;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (position == length) {
+            if (!readBlock()) {
+                return -1;
+            }
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (position == length) {
+            if (!readBlock()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, length - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+}
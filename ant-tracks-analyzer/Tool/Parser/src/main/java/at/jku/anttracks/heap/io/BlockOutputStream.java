@@ -0,0 +1,114 @@
+package at.jku.anttracks.heap.io;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Splits the written bytes into blocks of {@link #BLOCK_SIZE} bytes that are compressed separately. Every block starts with its codec, its
+ * uncompressed length and its stored length, the stream is terminated by a block header with the codec {@link #CODEC_END}. Several block
+ * streams may follow each other, e.g., to be read independently (see {@link BlockInputStream}).
+ * Blocks that do not get smaller when being compressed are stored as they are.
+ */
+public class BlockOutputStream extends OutputStream {
+    public static final byte CODEC_END = 0;
+    public static final byte CODEC_STORED = 1;
+    public static final byte CODEC_DEFLATE = 2;
+
+    public static int BLOCK_SIZE = 1 << 20;
+    static final int BLOCK_HEADER_BYTES = Byte.BYTES + 2 * Integer.BYTES;
+
+    private final DataOutputStream out;
+    private final Deflater deflater;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private int position;
+    private byte[] compressed = new byte[BLOCK_SIZE];
+    private long writtenBytes;
+    private boolean closed;
+
+    public BlockOutputStream(OutputStream out, int level) {
+        this.out = new DataOutputStream(out);
+        deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == block.length) {
+            writeBlock();
+        }
+        block[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (position == block.length) {
+                writeBlock();
+            }
+            int n = Math.min(len, block.length - position);
+            System.arraycopy(b, off, block, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(block, 0, position);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished() && length < compressed.length) {
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+
+        if (deflater.finished() && length < position) {
+            out.writeByte(CODEC_DEFLATE);
+            out.writeInt(position);
+            out.writeInt(length);
+            out.write(compressed, 0, length);
+            writtenBytes += BLOCK_HEADER_BYTES + length;
+        } else {
+            // incompressible
+            out.writeByte(CODEC_STORED);
+            out.writeInt(position);
+            out.writeInt(position);
+            out.write(block, 0, position);
+            writtenBytes += BLOCK_HEADER_BYTES + position;
+        }
+        position = 0;
+    }
+
+    /**
+     * Writes the remaining bytes and terminates the block stream, the underlying stream is flushed but not closed
+     */
+    public void finish() throws IOException {
+        if (!closed) {
+            closed = true;
+            writeBlock();
+            out.writeByte(CODEC_END);
+            out.writeInt(0);
+            out.writeInt(0);
+            writtenBytes += BLOCK_HEADER_BYTES;
+            out.flush();
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return the number of bytes written to the underlying stream so far
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+}
@@ -0,0 +1,61 @@
+package at.jku.anttracks.heap.io;
+
+import at.jku.anttracks.parser.BufferIndex;
+import at.jku.anttracks.parser.io.BaseFile;
+import at.jku.anttracks.util.Consts;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+
+public class BufferIndexReader implements AutoCloseable {
+    private final DataInputStream in;
+
+    public BufferIndexReader(String path) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(BaseFile.openR(path + File.separator + Consts.BUFFER_INDEX_META_FILE)));
+    }
+
+    public static boolean exists(String path) {
+        return BaseFile.exists(path + File.separator + Consts.BUFFER_INDEX_META_FILE);
+    }
+
+    public BufferIndex read() throws IOException {
+        int magic = in.readInt();
+        if (magic != Consts.HEAP_FILES_MAGIC_PREFIX) {
+            throw new IOException("Buffer index file must start with correct magic number");
+        }
+        int version = in.readInt();
+        if (version != BufferIndex.VERSION) {
+            throw new IOException("Buffer index file has version " + version + " instead of " + BufferIndex.VERSION);
+        }
+
+        int fileCount = in.readInt();
+        long[] fileStarts = new long[fileCount];
+        long[] fileLengths = new long[fileCount];
+        long[] fileModified = new long[fileCount];
+        int[] fileFirstEntries = new int[fileCount + 1];
+        for (int file = 0; file < fileCount; file++) {
+            fileStarts[file] = in.readLong();
+            fileLengths[file] = in.readLong();
+            fileModified[file] = in.readLong();
+            fileFirstEntries[file + 1] = fileFirstEntries[file] + in.readInt();
+        }
+
+        int size = fileFirstEntries[fileCount];
+        long[] positions = new long[size];
+        long[] threads = new long[size];
+        int[] metadata = new int[size];
+        for (int entry = 0; entry < size; entry++) {
+            positions[entry] = in.readLong();
+            threads[entry] = in.readLong();
+            metadata[entry] = in.readInt();
+        }
+        return new BufferIndex(fileStarts, fileLengths, fileModified, fileFirstEntries, positions, threads, metadata);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
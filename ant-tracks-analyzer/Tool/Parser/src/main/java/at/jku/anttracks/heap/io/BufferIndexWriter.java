@@ -0,0 +1,43 @@
+package at.jku.anttracks.heap.io;
+
+import at.jku.anttracks.parser.BufferIndex;
+import at.jku.anttracks.parser.io.BaseFile;
+import at.jku.anttracks.util.Consts;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+public class BufferIndexWriter implements AutoCloseable {
+
+    private final DataOutputStream out;
+
+    public BufferIndexWriter(String path) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(BaseFile.openW(path + File.separator + Consts.BUFFER_INDEX_META_FILE)));
+        out.writeInt(Consts.HEAP_FILES_MAGIC_PREFIX);
+        out.writeInt(BufferIndex.VERSION);
+    }
+
+    public void write(BufferIndex index) throws IOException {
+        out.writeInt(index.getFileCount());
+        for (int file = 0; file < index.getFileCount(); file++) {
+            out.writeLong(index.getFileStart(file));
+            out.writeLong(index.getFileLength(file));
+            out.writeLong(index.getFileModified(file));
+            out.writeInt(index.getFirstEntry(file + 1) - index.getFirstEntry(file));
+        }
+        for (int entry = 0; entry < index.size(); entry++) {
+            out.writeLong(index.getPosition(entry));
+            out.writeLong(index.getThreadId(entry));
+            out.writeInt(index.getMetadata(entry));
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
@@ -0,0 +1,183 @@
+package at.jku.anttracks.heap.io;
+
+import at.jku.anttracks.parser.io.BaseFile;
+import at.jku.anttracks.util.Consts;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides at which GCs heap dumps are written, such that seeking to any GC does not have to replay the trace for longer than
+ * {@link MetaDataWriterConfig#maxReplaySeconds}, i.e., a heap is dumped if replaying from the last dump to the next GC would take longer.
+ * The replay time is estimated from the parse throughput measured so far. If the remaining disk budget does not suffice for dumping that
+ * often until the end of the trace, the bound is relaxed such that the budget lasts, the size of a dump is estimated from the heap's object
+ * count and the sizes of the dumps written so far.
+ * <p>
+ * The methods may be called by different threads (e.g., {@link #checkpointWritten(long, long, long)} by the thread that writes a dump).
+ */
+public class CheckpointPolicy {
+    // weight of a new measurement in the smoothed rates
+    private static final double SMOOTHING = 0.2;
+    public static double INITIAL_DUMP_BYTES_PER_OBJECT = 16;
+
+    private final double maxReplaySeconds;
+    private final long diskBudget;
+
+    // parse throughput in trace bytes per second
+    private double bytesPerSecond = Double.NaN;
+    // trace bytes between the ends of two GCs
+    private double gcIntervalBytes = Double.NaN;
+    // measured size of a dump, INITIAL_DUMP_BYTES_PER_OBJECT until a dump has been written
+    private double dumpBytesPerObject = Double.NaN;
+
+    private long lastPosition = -1;
+    private long lastNanos;
+    private long excludedNanos;
+    // position of the last dump, the beginning of the trace does not need a dump
+    private long checkpointPosition = 0;
+    private long usedBytes;
+
+    /**
+     * @param maxReplaySeconds the maximum time to replay the trace from a dump to any GC
+     * @param diskBudget       the maximum number of bytes of all dumps, or 0 for no limit
+     */
+    public CheckpointPolicy(double maxReplaySeconds, long diskBudget) {
+        this.maxReplaySeconds = maxReplaySeconds;
+        this.diskBudget = diskBudget;
+    }
+
+    /**
+     * Has to be called at the end of every GC to measure the parse throughput
+     *
+     * @param position the trace position at the end of the GC
+     */
+    public synchronized void gcEnded(long position) {
+        long now = System.nanoTime();
+        if (lastPosition >= 0 && position > lastPosition) {
+            long nanos = now - lastNanos - excludedNanos;
+            if (nanos > 0) {
+                bytesPerSecond = smooth(bytesPerSecond, (position - lastPosition) * 1e9 / nanos);
+            }
+            gcIntervalBytes = smooth(gcIntervalBytes, position - lastPosition);
+        }
+        lastPosition = position;
+        lastNanos = now;
+        excludedNanos = 0;
+    }
+
+    /**
+     * Excludes time that is not spent when the trace is replayed (e.g., writing dumps) from the throughput measurement
+     */
+    public synchronized void excludeTime(long nanos) {
+        excludedNanos += nanos;
+    }
+
+    /**
+     * @param position    the trace position at the end of the current GC
+     * @param traceLength the trace length in bytes
+     * @param objectCount the number of objects in the heap, only requested if the bound on the replay time is exceeded
+     * @return whether the heap should be dumped at the current GC
+     */
+    public synchronized boolean shouldCheckpoint(long position, long traceLength, LongSupplier objectCount) {
+        if (Double.isNaN(bytesPerSecond)) {
+            // nothing measured yet, the trace is replayed from its beginning
+            return false;
+        }
+        if (getReplaySeconds(position + (long) gcIntervalBytes) <= maxReplaySeconds) {
+            // the budget can only relax the bound, so the heap does not have to be counted
+            return false;
+        }
+        double dumpBytes = objectCount.getAsLong() * getDumpBytesPerObject();
+        double bound = maxReplaySeconds;
+        if (diskBudget > 0) {
+            double remainingBudget = diskBudget - usedBytes;
+            if (remainingBudget < dumpBytes) {
+                return false;
+            }
+            // the affordable dumps split the rest of the trace into equally long replays
+            double remainingSeconds = getReplaySeconds(Math.max(traceLength, position));
+            bound = Math.max(bound, remainingSeconds / (Math.floor(remainingBudget / dumpBytes) + 1));
+        }
+        return getReplaySeconds(position + (long) gcIntervalBytes) > bound;
+    }
+
+    /**
+     * Has to be called when the heap is dumped at the current GC
+     *
+     * @return the number of bytes reserved for the dump
+     */
+    public synchronized long checkpointTaken(long position, long objectCount) {
+        checkpointPosition = position;
+        long reserved = (long) (objectCount * getDumpBytesPerObject());
+        usedBytes += reserved;
+        return reserved;
+    }
+
+    /**
+     * Has to be called once a dump has been written to correct the disk usage and the dump size estimate
+     *
+     * @param objectCount   the number of objects of the dumped heap
+     * @param reservedBytes the bytes reserved by {@link #checkpointTaken(long, long)}
+     * @param fileBytes     the size of the dump, or 0 if unknown
+     */
+    public synchronized void checkpointWritten(long objectCount, long reservedBytes, long fileBytes) {
+        if (fileBytes > 0) {
+            usedBytes += fileBytes - reservedBytes;
+            if (objectCount > 0) {
+                dumpBytesPerObject = smooth(dumpBytesPerObject, (double) fileBytes / objectCount);
+            }
+        }
+    }
+
+    /**
+     * @return the estimated time to replay the trace from the last dump to the given position
+     */
+    public synchronized double getReplaySeconds(long position) {
+        return (position - checkpointPosition) / bytesPerSecond;
+    }
+
+    /**
+     * @return the measured parse throughput in trace bytes per second, NaN if not measured yet
+     */
+    public synchronized double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    private double getDumpBytesPerObject() {
+        return Double.isNaN(dumpBytesPerObject) ? INITIAL_DUMP_BYTES_PER_OBJECT : dumpBytesPerObject;
+    }
+
+    private static double smooth(double average, double value) {
+        return Double.isNaN(average) ? value : average + SMOOTHING * (value - average);
+    }
+
+    /**
+     * Stores the parse throughput in the given meta data directory, it is used to estimate seek costs (see
+     * {@link HeapIndexReader#getRangeFromLastHeapDumpToGivenTime(long)})
+     */
+    public static void writeBytesPerSecond(String path, double bytesPerSecond) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(BaseFile.openW(path + File.separator + Consts.REPLAY_META_FILE))) {
+            out.writeInt(Consts.HEAP_FILES_MAGIC_PREFIX);
+            out.writeDouble(bytesPerSecond);
+        }
+    }
+
+    /**
+     * @return the parse throughput stored in the given meta data directory, NaN if unknown
+     */
+    public static double readBytesPerSecond(String path) {
+        String file = path + File.separator + Consts.REPLAY_META_FILE;
+        if (!BaseFile.exists(file)) {
+            return Double.NaN;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(BaseFile.openR(file)))) {
+            return in.readInt() == Consts.HEAP_FILES_MAGIC_PREFIX ? in.readDouble() : Double.NaN;
+        } catch (IOException e) {
+            return Double.NaN;
+        }
+    }
+}
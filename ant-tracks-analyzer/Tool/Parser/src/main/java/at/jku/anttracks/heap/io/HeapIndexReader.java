@@ -51,8 +51,13 @@ public class HeapIndexReader implements AutoCloseable {
         return heapIndex;
     }
 
+    /**
+     * @return the position of the last heap dump before the given time and the position of the GC at the given time, together with the
+     * expected cost of seeking there (based on the parse throughput measured when the meta data has been written, see {@link CheckpointPolicy})
+     */
     public HeapPosition getRangeFromLastHeapDumpToGivenTime(long time) throws IOException {
         ArrayList<HeapIndexEntry> heapIndex = read();
+        double bytesPerSecond = CheckpointPolicy.readBytesPerSecond(path);
         boolean found = false;
         HeapIndexEntry index = null;
         long toPosition = 0;
@@ -69,7 +74,7 @@ public class HeapIndexReader implements AutoCloseable {
             i++;
         }
 
-        HeapPosition position = new HeapPosition(-1, -1, toPosition);
+        HeapPosition position = new HeapPosition(-1, -1, toPosition, bytesPerSecond);
 
         if (!found) {
             logger.log(Level.WARNING, "Tried to obtain an entry from the GC index file which does not exist!");
@@ -87,7 +92,7 @@ public class HeapIndexReader implements AutoCloseable {
                 // fromPosition = latests GC dump
                 // toPosition = how far to parse (either _before_ GCstart or _after_ GCend)
                 // For more information see call hierarchy of HeapIndexWriter#write()
-                position = new HeapPosition(index.fileName, index.position, toPosition);
+                position = new HeapPosition(index.fileName, index.position, toPosition, bytesPerSecond);
             }
         }
 
@@ -1,19 +1,33 @@
-
 package at.jku.anttracks.heap.io;
 
 public class HeapPosition {
     public final int fileName;
     public final long fromPosition;
     public final long toPosition;
+    // trace bytes to parse after the heap has been read, i.e., the cost of seeking to toPosition
+    public final long replayBytes;
+    // estimated time to parse replayBytes, NaN if unknown
+    public final double expectedReplaySeconds;
 
     public HeapPosition(int fileName, long from, long to) {
+        this(fileName, from, to, Double.NaN);
+    }
+
+    public HeapPosition(int fileName, long from, long to, double bytesPerSecond) {
         this.fileName = fileName;
         this.fromPosition = from;
         this.toPosition = to;
+        replayBytes = to - Math.max(from, 0);
+        expectedReplaySeconds = replayBytes / bytesPerSecond;
     }
 
     @Override
     public String toString() {
-        return String.format("Heap File \"%s\" [heap file pos: %d, selected pos: %d]", fileName, fromPosition, toPosition);
+        return String.format("Heap File \"%s\" [heap file pos: %d, selected pos: %d, replay: %,d bytes, expected %.1f s]",
+                             fileName,
+                             fromPosition,
+                             toPosition,
+                             replayBytes,
+                             expectedReplaySeconds);
     }
 }
@@ -1,12 +1,9 @@
-
 package at.jku.anttracks.heap.io
 
 import at.jku.anttracks.heap.DetailedHeap
 import at.jku.anttracks.heap.GarbageCollectionType
 import at.jku.anttracks.heap.labs.AddressHO
 import at.jku.anttracks.heap.labs.Lab
-import at.jku.anttracks.heap.labs.MultiObjectLab
-import at.jku.anttracks.heap.labs.SingleObjectLab
 import at.jku.anttracks.heap.objects.ObjectInfo
 import at.jku.anttracks.heap.objects.ObjectInfoCache
 import at.jku.anttracks.heap.roots.RootPtr
@@ -23,140 +20,169 @@ import at.jku.anttracks.parser.io.BaseFile
 import at.jku.anttracks.util.Consts.HEAP_FILES_MAGIC_PREFIX
 import at.jku.anttracks.util.Consts.UNDEFINED_ADDR
 import at.jku.anttracks.util.TraceException
+import at.jku.anttracks.util.ZipFileUtil
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
-import java.io.BufferedInputStream
-import java.io.DataInputStream
-import java.io.File
-import java.io.IOException
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Paths
+import java.nio.file.StandardOpenOption
 import java.util.*
+import java.util.concurrent.Callable
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
+import java.util.stream.Collectors
 
 class HeapReader(val path: String,
                  val fileName: Int,
                  val symbols: Symbols) : AutoCloseable {
 
-    private val inputStream = DataInputStream(BufferedInputStream(BaseFile.openR(path + File.separator + fileName)))
+    private val file = path + File.separator + fileName
+    private val inputStream: DataInputStream
+    private val version: Int
+
+    init {
+        val fileStream = DataInputStream(BufferedInputStream(BaseFile.openR(file)))
+        try {
+            if (fileStream.readInt() != HEAP_FILES_MAGIC_PREFIX) {
+                throw IllegalArgumentException("Expected magic prefix")
+            }
+            version = fileStream.readInt()
+            inputStream = when (version) {
+                // the segments directly follow each other, the index is never reached when reading sequentially
+                VERSION -> DataInputStream(BlockInputStream(fileStream, true))
+                VERSION_SINGLE_SEGMENT -> DataInputStream(BlockInputStream(fileStream))
+                VERSION_UNCOMPRESSED -> fileStream
+                else -> throw IllegalArgumentException("Unsupported version")
+            }
+        } catch (e: Exception) {
+            fileStream.close()
+            throw e
+        }
+    }
 
     @Throws(IOException::class)
     fun read(parsingInfo: ParsingInfo): DetailedHeap {
-        if (inputStream.readInt() != HEAP_FILES_MAGIC_PREFIX) {
-            throw IllegalArgumentException("Expected magic prefix")
-        }
-        if (inputStream.readInt() != VERSION) {
-            throw IllegalArgumentException("Unsupported version")
-        }
+        // segments can only be read independently if the file can be accessed randomly
+        val readHeap = if (version == VERSION && !ZipFileUtil.isZipFilePath(file)) readSegments(parsingInfo) else readSequentially(parsingInfo)
 
-        val gcInfo = ParserGCInfo(
-                EventType.parse(inputStream.readInt()),
-                GarbageCollectionType.parse(inputStream.readInt()),
-                symbols.causes.get(inputStream.readInt())!!,
-                inputStream.readShort(),
-                inputStream.readLong(),
-                inputStream.readBoolean())
-        // CopyOnWriteArrayList<Long> ageRanges = readAgeRanges();
+        if (TraceParser.CONSISTENCY_CHECK) {
+            readHeap.validate(symbols.isHeapFragmented)
+        }
+        return readHeap
+    }
 
+    @Throws(IOException::class)
+    private fun readSequentially(parsingInfo: ParsingInfo): DetailedHeap {
+        val gcInfo = readGCInfo(inputStream)
         val cache = ObjectInfoCache()
-        val prototypes = readPrototypes(cache)
+        val prototypes = readPrototypes(inputStream, cache)
 
         val spaces = arrayOfNulls<Space>(inputStream.readInt())
         for (i in spaces.indices) {
-            spaces[i] = readSpace(prototypes)
+            val space = readSpace(inputStream) ?: continue
+            val labs = List(space.second) { readLab(inputStream, prototypes) }
+            assignLabs(space.first, labs)
+            spaces[i] = space.first
             spaces[i]?.setId(i.toShort())
         }
 
-        val rootPtrs = Long2ObjectOpenHashMap<MutableList<RootPtr>>()
-        val noOfRoots: Int
-        if (symbols.expectPointers) {
-            noOfRoots = inputStream.readInt()
-            for (i in 0 until noOfRoots) {
-                var root: RootPtr? = null
-                try {
-                    root = RootPtr.fromMetadata(inputStream)
-                } catch (e: Exception) {
-                    e.printStackTrace()
-                }
+        val rootPtrs = readRoots(inputStream)
+        val threads = readThreads(inputStream)
+        return DetailedHeap(symbols, cache, spaces, gcInfo, rootPtrs, threads, parsingInfo)
+    }
 
-                var existingRoots: MutableList<RootPtr>? = rootPtrs[root!!.addr]
-                if (existingRoots != null) {
-                    existingRoots.add(root)
-                    existingRoots.sortBy { it.rootType }
-                } else {
-                    existingRoots = ArrayList()
-                    existingRoots.add(root)
-                    rootPtrs[root.addr] = existingRoots
-                }
-            }
-        }
+    /**
+     * Decodes the LAB segments in parallel while the header segments (i.e., the spaces, roots and threads) are read.
+     */
+    @Throws(IOException::class)
+    private fun readSegments(parsingInfo: ParsingInfo): DetailedHeap {
+        FileChannel.open(Paths.get(file), StandardOpenOption.READ).use { channel ->
+            val segments = HeapSnapshot.readSegments(channel)
+            val headers = DataInputStream(SequenceInputStream(Collections.enumeration(segments.filter { it.isHeader }.map { openSegment(channel, it) })))
 
-        val threads = ConcurrentHashMap<Long, ThreadInfo>()
-        val noOfThreads = inputStream.readInt()
-        for (i in 0 until noOfThreads) {
-            val t = ThreadInfo(inputStream.readLong(), inputStream.readUTF(), inputStream.readUTF(), inputStream.readBoolean())
-            threads[t.threadId] = t
+            val gcInfo = readGCInfo(headers)
+            val cache = ObjectInfoCache()
+            val prototypes = readPrototypes(headers, cache)
 
-            // rebuild callstack
-            val callStackSize = inputStream.readInt()
-            for (j in 0 until callStackSize) {
-                t.addStackframe(inputStream.readInt(), inputStream.readInt())
+            val labSegments = segments.filter { !it.isHeader }
+            val decodedLabs = ForkJoinPool.commonPool().submit(Callable {
+                labSegments.parallelStream().map { segment ->
+                    val input = openSegment(channel, segment)
+                    Array(segment.labCount) { readLab(input, prototypes) }
+                }.collect(Collectors.toList())
+            })
+
+            val spaces = arrayOfNulls<Space>(headers.readInt())
+            val labCounts = IntArray(spaces.size)
+            for (i in spaces.indices) {
+                val space = readSpace(headers) ?: continue
+                spaces[i] = space.first
+                spaces[i]?.setId(i.toShort())
+                labCounts[i] = space.second
             }
-        }
+            val rootPtrs = readRoots(headers)
+            val threads = readThreads(headers)
 
-        val readHeap = DetailedHeap(symbols, cache, spaces, gcInfo, rootPtrs, threads, parsingInfo)
+            val labs = try {
+                decodedLabs.get()
+            } catch (e: ExecutionException) {
+                throw e.cause as? IOException ?: IOException(e.cause)
+            }
+            val spaceLabs = Array(spaces.size) { ArrayList<Lab>() }
+            for ((segment, segmentLabs) in labSegments.zip(labs)) {
+                if (segment.space >= spaces.size || spaces[segment.space] == null || segment.firstLab != spaceLabs[segment.space].size) {
+                    throw IOException("Corrupt segment index")
+                }
+                spaceLabs[segment.space].addAll(segmentLabs)
+            }
+            for (i in spaces.indices) {
+                val space = spaces[i] ?: continue
+                if (spaceLabs[i].size != labCounts[i]) {
+                    throw IOException("Corrupt segment index")
+                }
+                assignLabs(space, spaceLabs[i])
+            }
 
-        if (TraceParser.CONSISTENCY_CHECK) {
-            readHeap.validate(symbols.isHeapFragmented)
+            return DetailedHeap(symbols, cache, spaces, gcInfo, rootPtrs, threads, parsingInfo)
         }
-// heap.getOld().setAgeRanges(ageRanges);
-        return readHeap
     }
 
-    /*
-     * private CopyOnWriteArrayList<Long> readAgeRanges() throws IOException { int size = in.readInt(); CopyOnWriteArrayList<Long> ageRanges
-     * = new CopyOnWriteArrayList<Long>(); for (int i = 0; i < size; i++) { ageRanges.add(in.readLong()); }
-     *
-     * return ageRanges; }
-     */
+    private fun openSegment(channel: FileChannel, segment: HeapSnapshot.Segment): DataInputStream {
+        return DataInputStream(BlockInputStream(BufferedInputStream(ChannelInputStream(channel, segment.offset), SEGMENT_BUFFER_SIZE)))
+    }
 
     @Throws(IOException::class)
-    private fun readPrototypes(cache: ObjectInfoCache): Map<Int, ObjectInfo> {
-        val count = inputStream.readInt()
-        val prototypes = HashMap<Int, ObjectInfo>()
+    private fun readGCInfo(inputStream: DataInputStream): ParserGCInfo {
+        return ParserGCInfo(
+                EventType.parse(inputStream.readInt()),
+                GarbageCollectionType.parse(inputStream.readInt()),
+                symbols.causes.get(inputStream.readInt())!!,
+                inputStream.readShort(),
+                inputStream.readLong(),
+                inputStream.readBoolean())
+    }
 
-        val key = ObjectInfo()
+    @Throws(IOException::class)
+    private fun readPrototypes(inputStream: DataInputStream, cache: ObjectInfoCache): Int2ObjectOpenHashMap<ObjectInfo> {
+        val count = inputStream.readInt()
+        val prototypes = Int2ObjectOpenHashMap<ObjectInfo>(count)
 
         for (i in 0 until count) {
             val id = inputStream.readInt()
-            val prototype = readPrototype(cache, key)
-            prototypes[id] = prototype
+            val prototype = readPrototype(inputStream, cache, symbols)
+            prototypes.put(id, prototype)
         }
         return prototypes
     }
 
+    /**
+     * @return the space without its LABs and the number of its LABs
+     */
     @Throws(IOException::class)
-    private fun readPrototype(cache: ObjectInfoCache,
-                              key: ObjectInfo): ObjectInfo {
-        val threadName = inputStream.readUTF()
-        val allocatedTypeId = inputStream.readInt()
-        val allocationSiteId = inputStream.readInt()
-
-        val eventType = EventType.parse(inputStream.readInt())
-        val prototype: ObjectInfo
-
-        var classSize = -1
-        var arrayLength = -1
-        when (inputStream.readInt()) {
-            0 -> classSize = inputStream.readInt()
-            1 -> {
-            }
-            2 -> arrayLength = inputStream.readInt()
-            else -> throw IOException("Unknown object prototype")
-        }
-        prototype = cache.get(threadName, symbols.sites.getById(allocationSiteId), symbols.types.getById(allocatedTypeId), eventType, classSize, arrayLength, key, symbols)
-        return prototype
-    }
-
-    @Throws(IOException::class)
-    private fun readSpace(prototypes: Map<Int, ObjectInfo>): Space? {
+    private fun readSpace(inputStream: DataInputStream): Pair<Space, Int>? {
         if (inputStream.readByte().toInt() == 0) {
             return null
         }
@@ -174,65 +200,100 @@ class HeapReader(val path: String,
         if (spaceMode >= 0) {
             space.mode = SpaceMode.values()[spaceMode]
         }
-        val count = inputStream.readInt()
-        for (i in 0 until count) {
-            val lab = readLab(prototypes)
-            try {
-                space.assignLab(lab)
-            } catch (e: TraceException) {
-                throw IOException(e)
-            }
+        return Pair(space, inputStream.readInt())
+    }
 
+    @Throws(IOException::class)
+    private fun assignLabs(space: Space, labs: List<Lab>) {
+        try {
+            space.assignLabs(labs)
+        } catch (e: TraceException) {
+            throw IOException(e)
         }
-        return space
     }
 
     @Throws(IOException::class)
-    private fun readLab(prototypes: Map<Int, ObjectInfo>): Lab {
+    private fun readLab(inputStream: DataInputStream, prototypes: Int2ObjectOpenHashMap<ObjectInfo>): Lab {
         val thread = inputStream.readUTF()
         val kind = Lab.Kind.byId(inputStream.readInt());
         val addr = inputStream.readLong()
         val capacity = inputStream.readInt()
         val objectCount = inputStream.readInt()
-        if (objectCount == 1) {
-            val id = inputStream.readInt()
-            val info: ObjectInfo = prototypes[id]!!
-            val obj = AddressHO.createObject(info, (-1).toShort(), symbols, false) // TODO Born
-            val lab = SingleObjectLab(thread, kind, addr, obj) // TODO: Born
-            val pointerCount = inputStream.readInt()
-            val ptrs = LongArray(pointerCount)
-            for (ptrIdx in 0 until pointerCount) {
-                ptrs[ptrIdx] = inputStream.readLong()
+        try {
+            if (objectCount == 1) {
+                // fill before creating the lab, columnar labs copy the object
+                return Lab.create(thread, kind, addr, readObject(inputStream, prototypes)) // TODO: Born
             }
-            try {
-                obj.fillPointers(ptrs)
-            } catch (e: TraceException) {
-                throw IOException(e)
+            val lab = Lab.create(thread, kind, addr, capacity, objectCount)
+            for (i in 0 until objectCount) {
+                val assignedAddr = lab.tryAllocate(UNDEFINED_ADDR, readObject(inputStream, prototypes))
+                assert(assignedAddr != Lab.OBJECT_NOT_ASSIGNED.toLong())
             }
             return lab
-        } else {
-            val lab = MultiObjectLab(thread, kind, addr, capacity)
-            for (i in 0 until objectCount) {
-                val id = inputStream.readInt()
-                val info = prototypes[id]!!
-                val obj = AddressHO.createObject(info, (-1).toShort(), symbols, false) // TODO Born
-                // add feature to obj?
-                try {
-                    val assignedAddr = lab.tryAllocate(UNDEFINED_ADDR, obj)
-                    assert(assignedAddr != Lab.OBJECT_NOT_ASSIGNED.toLong())
-                    val pointerCount = inputStream.readInt()
-                    val ptrs = LongArray(pointerCount)
-                    for (ptrIdx in 0 until pointerCount) {
-                        ptrs[ptrIdx] = inputStream.readLong()
-                    }
-                    obj.fillPointers(ptrs)
-                } catch (e: TraceException) {
-                    throw IOException(e)
-                }
+        } catch (e: TraceException) {
+            throw IOException(e)
+        }
+    }
+
+    @Throws(IOException::class, TraceException::class)
+    private fun readObject(inputStream: DataInputStream, prototypes: Int2ObjectOpenHashMap<ObjectInfo>): AddressHO {
+        val id = inputStream.readInt()
+        val info = prototypes.get(id) ?: throw IOException("Unknown prototype $id")
+        val obj = AddressHO.createObject(info, (-1).toShort(), symbols, false) // TODO Born
+        val pointerCount = inputStream.readInt()
+        val ptrs = LongArray(pointerCount)
+        for (ptrIdx in 0 until pointerCount) {
+            ptrs[ptrIdx] = inputStream.readLong()
+        }
+        obj.fillPointers(ptrs)
+        return obj
+    }
 
+    /**
+     * Reads all roots and groups them by address in a single sorted pass
+     */
+    @Throws(IOException::class)
+    private fun readRoots(inputStream: DataInputStream): Long2ObjectOpenHashMap<MutableList<RootPtr>> {
+        if (!symbols.expectPointers) {
+            return Long2ObjectOpenHashMap()
+        }
+
+        val noOfRoots = inputStream.readInt()
+        val roots = ArrayList<RootPtr>(noOfRoots)
+        for (i in 0 until noOfRoots) {
+            roots.add(RootPtr.fromMetadata(inputStream))
+        }
+        // stable, roots of the same type keep their order
+        roots.sortWith(compareBy<RootPtr> { it.addr }.thenBy { it.rootType })
+
+        val rootPtrs = Long2ObjectOpenHashMap<MutableList<RootPtr>>(noOfRoots)
+        var from = 0
+        while (from < roots.size) {
+            var to = from + 1
+            while (to < roots.size && roots[to].addr == roots[from].addr) {
+                to++
             }
-            return lab
+            rootPtrs[roots[from].addr] = ArrayList(roots.subList(from, to))
+            from = to
         }
+        return rootPtrs
+    }
+
+    @Throws(IOException::class)
+    private fun readThreads(inputStream: DataInputStream): ConcurrentHashMap<Long, ThreadInfo> {
+        val threads = ConcurrentHashMap<Long, ThreadInfo>()
+        val noOfThreads = inputStream.readInt()
+        for (i in 0 until noOfThreads) {
+            val t = ThreadInfo(inputStream.readLong(), inputStream.readUTF(), inputStream.readUTF(), inputStream.readBoolean())
+            threads[t.threadId] = t
+
+            // rebuild callstack
+            val callStackSize = inputStream.readInt()
+            for (j in 0 until callStackSize) {
+                t.addStackframe(inputStream.readInt(), inputStream.readInt())
+            }
+        }
+        return threads
     }
 
     @Throws(IOException::class)
@@ -241,6 +302,54 @@ class HeapReader(val path: String,
     }
 
     companion object {
-        const val VERSION = 1
+        const val VERSION = 3
+        // the same data as VERSION, but in a single block stream without index
+        const val VERSION_SINGLE_SEGMENT = 2
+        // the same data as VERSION, but not split into compressed blocks
+        const val VERSION_UNCOMPRESSED = 1
+
+        private const val SEGMENT_BUFFER_SIZE = 1 shl 16
+
+        @JvmStatic
+        @Throws(IOException::class)
+        fun readPrototype(inputStream: DataInputStream,
+                          cache: ObjectInfoCache,
+                          symbols: Symbols): ObjectInfo {
+            val threadName = inputStream.readUTF()
+            val allocatedTypeId = inputStream.readInt()
+            val allocationSiteId = inputStream.readInt()
+
+            val eventType = EventType.parse(inputStream.readInt())
+
+            var classSize = -1
+            var arrayLength = -1
+            when (inputStream.readInt()) {
+                0 -> classSize = inputStream.readInt()
+                1 -> {
+                }
+                2 -> arrayLength = inputStream.readInt()
+                else -> throw IOException("Unknown object prototype")
+            }
+            return cache.get(threadName, symbols.sites.getById(allocationSiteId), symbols.types.getById(allocatedTypeId), eventType, classSize, arrayLength, symbols)
+        }
+    }
+}
+
+/**
+ * Reads a file channel from the given position on without changing the channel's position, such that several streams can read the same
+ * channel concurrently
+ */
+private class ChannelInputStream(private val channel: FileChannel, private var position: Long) : InputStream() {
+    override fun read(): Int {
+        val b = ByteArray(1)
+        return if (read(b, 0, 1) < 0) -1 else b[0].toInt() and 0xFF
+    }
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        val n = channel.read(ByteBuffer.wrap(b, off, len), position)
+        if (n > 0) {
+            position += n
+        }
+        return n
     }
 }
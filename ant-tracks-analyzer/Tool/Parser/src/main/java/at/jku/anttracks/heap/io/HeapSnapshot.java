@@ -0,0 +1,402 @@
+package at.jku.anttracks.heap.io;
+
+import at.jku.anttracks.heap.DetailedHeap;
+import at.jku.anttracks.heap.labs.Lab;
+import at.jku.anttracks.heap.objects.ObjectInfo;
+import at.jku.anttracks.heap.roots.RootPtr;
+import at.jku.anttracks.heap.space.Space;
+import at.jku.anttracks.heap.symbols.AllocationSites;
+import at.jku.anttracks.parser.EventType;
+import at.jku.anttracks.parser.heap.ThreadInfo;
+import at.jku.anttracks.parser.io.BaseFile;
+import at.jku.anttracks.util.TraceException;
+import at.jku.anttracks.util.ZipFileUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+
+import static at.jku.anttracks.heap.io.HeapReader.VERSION;
+import static at.jku.anttracks.util.Consts.HEAP_FILES_MAGIC_PREFIX;
+
+/**
+ * A heap dump that is taken at the end of a GC and can be written later on, while the parser continues with the next mutator phase.
+ * <p>
+ * Taking a snapshot only encodes the parts that may change during the mutator phase (GC info, space headers, roots, threads and the LABs
+ * that may still get objects) and remembers the object count of every other LAB. These LABs are encoded lazily by {@link #write(OutputStream)},
+ * because their objects do not change until the next GC updates their pointers. Thus, {@link #freeze()} has to be called before the next
+ * GC starts, it encodes (in parallel) everything that has not been encoded yet.
+ * <p>
+ * The encoded data is the same as in version {@link HeapReader#VERSION_UNCOMPRESSED}, but it is split into segments, i.e., block streams
+ * (see {@link BlockOutputStream}) that can be decoded independently. Header segments contain everything but the LABs, LAB segments contain
+ * up to about {@link #SECTION_OBJECTS} objects of consecutive LABs of a single space. The segments are followed by an uncompressed index
+ * (see {@link Segment}), the offset of the index and the magic prefix.
+ */
+public class HeapSnapshot {
+    // objects per lazily encoded section
+    public static int SECTION_OBJECTS = 1 << 15;
+    public static int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
+    private final AllocationSites sites;
+    private final List<Section> sections = new ArrayList<>();
+    private final AtomicBoolean frozen = new AtomicBoolean();
+    private final AtomicBoolean written = new AtomicBoolean();
+
+    private HeapSnapshot(DetailedHeap heap) throws IOException {
+        if (heap.getGC().getEventType() != EventType.GC_END) {
+            throw new IllegalArgumentException("Cannot write heap when a GC is in progress");
+        }
+        sites = heap.getSymbols().sites;
+
+        Encoder header = new Encoder();
+        HeapWriter.writeGCInfo(header.out, heap.getGC());
+        sections.add(header.toSection());
+        sections.add(new PrototypesSection(heap.getCache().getInfos()));
+
+        Space[] spaces = heap.getSpacesCloned();
+        header = new Encoder();
+        header.out.writeInt(spaces.length);
+        for (int i = 0; i < spaces.length; i++) {
+            if (spaces[i] == null) {
+                header.out.writeByte(0);
+                continue;
+            }
+            Lab[] labs = spaces[i].getLabs();
+            HeapWriter.writeSpaceHeader(header.out, spaces[i], labs.length);
+            sections.add(header.toSection());
+            header = new Encoder();
+            addLabSections(i, labs);
+        }
+
+        if (heap.getSymbols().expectPointers) {
+            List<RootPtr> roots = heap.rootPtrs.values().stream().flatMap(x -> x.stream()).collect(Collectors.toList());
+            header.out.writeInt(roots.size());
+            for (RootPtr root : roots) {
+                header.out.write(root.getMetadata());
+            }
+        }
+
+        Collection<ThreadInfo> threads = heap.threadsById.values();
+        header.out.writeInt(threads.size());
+        for (ThreadInfo t : threads) {
+            HeapWriter.writeThread(header.out, t);
+        }
+        sections.add(header.toSection());
+    }
+
+    private void addLabSections(int space, Lab[] labs) {
+        int from = 0;
+        int objects = 0;
+        for (int i = 0; i < labs.length; i++) {
+            if (labs[i].isFull() && !labs[i].isExtendable()) {
+                objects += labs[i].getObjectCount();
+                if (objects >= SECTION_OBJECTS) {
+                    sections.add(new LabSection(space, labs, from, i + 1));
+                    from = i + 1;
+                    objects = 0;
+                }
+            } else {
+                // objects may still be appended to this LAB during the mutator phase
+                if (from < i) {
+                    sections.add(new LabSection(space, labs, from, i));
+                }
+                Section lab = new LabSection(space, labs, i, i + 1);
+                lab.claimAndEncode();
+                sections.add(lab);
+                from = i + 1;
+                objects = 0;
+            }
+        }
+        if (from < labs.length) {
+            sections.add(new LabSection(space, labs, from, labs.length));
+        }
+    }
+
+    /**
+     * Takes a snapshot of the given heap, which must not be in a GC
+     */
+    public static HeapSnapshot take(DetailedHeap heap) throws IOException {
+        return new HeapSnapshot(heap);
+    }
+
+    /**
+     * Encodes everything that has not been encoded yet, has to be called before the snapshot's heap is changed by the next GC
+     */
+    public void freeze() throws IOException {
+        if (frozen.compareAndSet(false, true)) {
+            try {
+                // sections that are currently encoded by the writer are waited for
+                sections.parallelStream().forEach(section -> {
+                    section.claimAndEncode();
+                    section.join();
+                });
+            } catch (CompletionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot to the given stream, which is not closed. A snapshot can only be written once.
+     */
+    public void write(OutputStream stream) throws IOException {
+        if (!written.compareAndSet(false, true)) {
+            throw new IllegalStateException("Heap snapshot has already been written");
+        }
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(HEAP_FILES_MAGIC_PREFIX);
+        out.writeInt(VERSION);
+
+        List<Segment> segments = new ArrayList<>();
+        long offset = 2 * Integer.BYTES;
+        BlockOutputStream blocks = null;
+        int objects = 0;
+        try {
+            for (Section section : sections) {
+                LabSection labs = section instanceof LabSection ? (LabSection) section : null;
+                int space = labs != null ? labs.space : Segment.HEADER;
+                Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+                if (segment == null || segment.space != space || (labs != null && objects >= SECTION_OBJECTS)) {
+                    if (blocks != null) {
+                        blocks.finish();
+                        offset += blocks.getWrittenBytes();
+                    }
+                    blocks = new BlockOutputStream(out, COMPRESSION_LEVEL);
+                    segment = new Segment(offset, space, labs != null ? labs.from : 0);
+                    segments.add(segment);
+                    objects = 0;
+                }
+                if (labs != null) {
+                    segment.labCount += labs.labs.length;
+                    objects += labs.objects;
+                }
+
+                section.claimAndEncode();
+                blocks.write(section.join());
+                // the encoded bytes are not needed anymore
+                section.encoded = null;
+            }
+        } catch (CompletionException e) {
+            throw new IOException(e.getCause());
+        }
+        blocks.finish();
+        offset += blocks.getWrittenBytes();
+
+        out.writeInt(segments.size());
+        for (Segment segment : segments) {
+            out.writeLong(segment.offset);
+            out.writeInt(segment.space);
+            out.writeInt(segment.firstLab);
+            out.writeInt(segment.labCount);
+        }
+        out.writeLong(offset);
+        out.writeInt(HEAP_FILES_MAGIC_PREFIX);
+        out.flush();
+    }
+
+    /**
+     * Reads the segment index of a heap file
+     */
+    public static List<Segment> readSegments(FileChannel channel) throws IOException {
+        ByteBuffer trailer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+        readFully(channel, trailer, channel.size() - trailer.capacity());
+        long offset = trailer.getLong(0);
+        if (trailer.getInt(Long.BYTES) != HEAP_FILES_MAGIC_PREFIX || offset < 0 || offset > channel.size() - trailer.capacity()) {
+            throw new IOException("Heap file is incomplete");
+        }
+
+        ByteBuffer index = ByteBuffer.allocate((int) (channel.size() - trailer.capacity() - offset));
+        readFully(channel, index, offset);
+        List<Segment> segments = new ArrayList<>(index.getInt());
+        while (index.hasRemaining()) {
+            Segment segment = new Segment(index.getLong(), index.getInt(), index.getInt());
+            segment.labCount = index.getInt();
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of heap file");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * An entry of the segment index
+     */
+    public static class Segment {
+        public static final int HEADER = -1;
+
+        // file offset of the segment's block stream
+        public final long offset;
+        // index of the space whose LABs are contained, or HEADER
+        public final int space;
+        // index of the first contained LAB in its space
+        public final int firstLab;
+        public int labCount;
+
+        private Segment(long offset, int space, int firstLab) {
+            this.offset = offset;
+            this.space = space;
+            this.firstLab = firstLab;
+        }
+
+        public boolean isHeader() {
+            return space == HEADER;
+        }
+    }
+
+    /**
+     * Writes the snapshot to the given heap file. Unless the file is in a zip file, it is written under a temporary name first and renamed
+     * once it is complete, such that readers never see a partially written heap.
+     */
+    public void write(String path, int fileName) throws IOException {
+        String target = path + File.separator + fileName;
+        if (ZipFileUtil.isZipFilePath(target)) {
+            try (OutputStream out = new BufferedOutputStream(BaseFile.openW(target))) {
+                write(out);
+            }
+            return;
+        }
+
+        File tmp = new File(target + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(BaseFile.openW(tmp.getPath()))) {
+                write(out);
+            }
+            Files.move(tmp.toPath(), new File(target).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * A part of the encoded data, which is encoded exactly once, either by the writer or by {@link #freeze()}
+     */
+    private static abstract class Section {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        // null once written
+        private volatile CompletableFuture<byte[]> encoded = future;
+
+        void claimAndEncode() {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    Encoder encoder = new Encoder();
+                    encode(encoder.out);
+                    future.complete(encoder.toByteArray());
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }
+
+        byte[] join() {
+            CompletableFuture<byte[]> bytes = encoded;
+            return bytes != null ? bytes.join() : null;
+        }
+
+        abstract void encode(DataOutputStream out) throws IOException;
+    }
+
+    private static class EncodedSection extends Section {
+        private final byte[] bytes;
+
+        private EncodedSection(byte[] bytes) {
+            this.bytes = bytes;
+            claimAndEncode();
+        }
+
+        @Override
+        void encode(DataOutputStream out) throws IOException {
+            out.write(bytes);
+        }
+    }
+
+    private class PrototypesSection extends Section {
+        private final List<ObjectInfo> infos;
+
+        private PrototypesSection(List<ObjectInfo> infos) {
+            this.infos = infos;
+        }
+
+        @Override
+        void encode(DataOutputStream out) throws IOException {
+            out.writeInt(infos.size());
+            for (ObjectInfo info : infos) {
+                // objects refer to their prototype by the info's id
+                out.writeInt(info.id);
+                HeapWriter.writeObjectInfo(out, info, sites);
+            }
+        }
+    }
+
+    private static class LabSection extends Section {
+        private final int space;
+        private final int from;
+        private final Lab[] labs;
+        // objects appended after the snapshot has been taken are not part of it
+        private final int[] objectCounts;
+        private int objects;
+
+        private LabSection(int space, Lab[] labs, int from, int to) {
+            this.space = space;
+            this.from = from;
+            this.labs = new Lab[to - from];
+            System.arraycopy(labs, from, this.labs, 0, this.labs.length);
+            objectCounts = new int[this.labs.length];
+            for (int i = 0; i < this.labs.length; i++) {
+                objectCounts[i] = this.labs[i].getObjectCount();
+                objects += objectCounts[i];
+            }
+        }
+
+        @Override
+        void encode(DataOutputStream out) throws IOException {
+            for (int i = 0; i < labs.length; i++) {
+                Lab lab = labs[i];
+                HeapWriter.writeLabHeader(out, lab, objectCounts[i]);
+                try {
+                    for (int index = 0; index < objectCounts[i]; index++) {
+                        HeapWriter.writeObject(out, lab.getObjectAtIndex(index));
+                    }
+                } catch (TraceException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+
+    private static class Encoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        private byte[] toByteArray() throws IOException {
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private Section toSection() throws IOException {
+            return new EncodedSection(toByteArray());
+        }
+    }
+}
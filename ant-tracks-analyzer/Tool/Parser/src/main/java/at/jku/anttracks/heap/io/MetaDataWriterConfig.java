@@ -5,18 +5,39 @@ public class MetaDataWriterConfig extends MetaDataConfig {
 
     public static int DEFAULT_DUMP_COUNT = 20;
     public static boolean DEFAULT_AT_MAJOR_GCS_ONLY = false;
+    public static int DEFAULT_MAX_SNAPSHOTS_IN_FLIGHT = 2;
+    public static double DEFAULT_MAX_REPLAY_SECONDS = 0;
+    public static long DEFAULT_DISK_BUDGET = 4L << 30;
 
     public final int dumps;
     public final boolean atMajorGCsOnly;
+    // heap snapshots that may be written in the background at the same time, the parser waits if there are more
+    public final int maxSnapshotsInFlight;
+    // heaps are dumped such that seeking to any GC replays the trace for at most this time (see CheckpointPolicy), if > 0 (dumps is ignored),
+    // otherwise the given number of dumps is spread evenly over the trace
+    public final double maxReplaySeconds;
+    // maximum bytes of all heap dumps if maxReplaySeconds > 0, 0 for no limit
+    public final long diskBudget;
 
     public MetaDataWriterConfig(String path) {
         this(path, DEFAULT_DUMP_COUNT, DEFAULT_AT_MAJOR_GCS_ONLY);
     }
 
     public MetaDataWriterConfig(String path, int dumps, boolean atMajorGCsOnly) {
+        this(path, dumps, atMajorGCsOnly, DEFAULT_MAX_SNAPSHOTS_IN_FLIGHT);
+    }
+
+    public MetaDataWriterConfig(String path, int dumps, boolean atMajorGCsOnly, int maxSnapshotsInFlight) {
+        this(path, dumps, atMajorGCsOnly, maxSnapshotsInFlight, DEFAULT_MAX_REPLAY_SECONDS, DEFAULT_DISK_BUDGET);
+    }
+
+    public MetaDataWriterConfig(String path, int dumps, boolean atMajorGCsOnly, int maxSnapshotsInFlight, double maxReplaySeconds, long diskBudget) {
         super(path);
         this.dumps = dumps;
         this.atMajorGCsOnly = atMajorGCsOnly;
+        this.maxSnapshotsInFlight = maxSnapshotsInFlight;
+        this.maxReplaySeconds = maxReplaySeconds;
+        this.diskBudget = diskBudget;
     }
 
 }
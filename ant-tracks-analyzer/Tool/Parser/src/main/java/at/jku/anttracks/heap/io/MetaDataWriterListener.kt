@@ -14,8 +14,13 @@ import at.jku.anttracks.util.FileUtil
 import java.io.DataOutputStream
 import java.io.File
 import java.io.IOException
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
 import java.util.logging.Level
 import java.util.logging.Logger
 
@@ -28,6 +33,11 @@ open class MetaDataWriterListener(private val config: MetaDataWriterConfig, priv
     private val executors: ExecutorService = Executors.newFixedThreadPool(Consts.AVAILABLE_PROCESSORS)
 
     private var dumps = 1
+    private val checkpoints = CheckpointPolicy(config.maxReplaySeconds, config.diskBudget)
+    // heap snapshots that are written in the background, oldest first, the futures yield whether the dump has been written
+    private val inFlight = ArrayDeque<Pair<HeapSnapshot, Future<Boolean>>>()
+    // index entries are written in order, each one only once it is known whether its heap dump has been written
+    private val pendingIndex = ArrayDeque<PendingIndexEntry>()
 
     init {
         val file = File(config.path)
@@ -67,6 +77,10 @@ open class MetaDataWriterListener(private val config: MetaDataWriterConfig, priv
         if (from.eventType === EventType.GC_END) {
             // Switching away from mutator = Switching into GC phase
             val heap = sender as DetailedHeap
+            // the GC is going to change the heap, snapshots that are still being written must not see that
+            val start = System.nanoTime()
+            freezeSnapshots()
+            checkpoints.excludeTime(System.nanoTime() - start)
             handleHeapEvent(position, to, failed, heap, false, parsingInfo)
         }
     }
@@ -85,8 +99,13 @@ open class MetaDataWriterListener(private val config: MetaDataWriterConfig, priv
         if (to.eventType === EventType.GC_END) {
             // Switching into mutator phase
             val heap = sender as DetailedHeap
-            val progress = 1.0 * position / parsingInfo.traceLength
-            val writeHeap = config.dumps > 0 && dumps < config.dumps * progress && (!config.atMajorGCsOnly || from.type.isFull)
+            val writeHeap = if (config.maxReplaySeconds > 0) {
+                checkpoints.gcEnded(position)
+                (!config.atMajorGCsOnly || from.type.isFull) && checkpoints.shouldCheckpoint(position, parsingInfo.traceLength) { heap.objectCount }
+            } else {
+                val progress = 1.0 * position / parsingInfo.traceLength
+                config.dumps > 0 && dumps < config.dumps * progress && (!config.atMajorGCsOnly || from.type.isFull)
+            }
             handleHeapEvent(position, to, failed, heap, writeHeap, parsingInfo)
         }
     }
@@ -98,20 +117,99 @@ open class MetaDataWriterListener(private val config: MetaDataWriterConfig, priv
                                 writeHeap: Boolean,
                                 parsingInfo: ParsingInfo) {
         try {
-            writeIndex(position, gcInfo, writeHeap)
             if (statisticsObtainFunction != null) {
                 writeStatistics(statisticsObtainFunction.invoke(heap, gcInfo, failed, parsingInfo))
             }
+            var heapWritten: Future<Boolean>? = null
             if (writeHeap) {
-                HeapWriter(config.path, gcInfo.id.toInt()).use { heapWriter -> heapWriter.write(heap, executors) }
+                val start = System.nanoTime()
+                heapWritten = writeHeap(heap, gcInfo.id.toInt(), position)
+                checkpoints.excludeTime(System.nanoTime() - start)
                 dumps++
             }
+            writeIndex(position, gcInfo.type, gcInfo.eventType, gcInfo.cause, gcInfo.time, gcInfo.id.toInt(), heapWritten)
         } catch (e: IOException) {
             LOGGER.log(Level.SEVERE, "Unexpected error @ $position", e)
         }
 
     }
 
+    /**
+     * @return whether the heap has been dumped, completes once the dump has been written
+     */
+    private fun writeHeap(heap: DetailedHeap, fileName: Int, position: Long): Future<Boolean> {
+        val objects = heap.objectCount
+        val reserved = checkpoints.checkpointTaken(position, objects)
+        if (config.maxSnapshotsInFlight <= 0) {
+            return try {
+                HeapWriter(config.path, fileName).use { heapWriter -> heapWriter.write(heap, executors) }
+                checkpointWritten(fileName, objects, reserved)
+                CompletableFuture.completedFuture(true)
+            } catch (e: IOException) {
+                LOGGER.log(Level.SEVERE, "Could not write heap $fileName", e)
+                CompletableFuture.completedFuture(false)
+            }
+        }
+
+        while (inFlight.size >= config.maxSnapshotsInFlight) {
+            awaitDump(inFlight.removeFirst().second)
+        }
+        val snapshot = HeapSnapshot.take(heap)
+        val future = executors.submit<Boolean> {
+            try {
+                snapshot.write(config.path, fileName)
+                checkpointWritten(fileName, objects, reserved)
+                true
+            } catch (e: IOException) {
+                LOGGER.log(Level.SEVERE, "Could not write heap $fileName", e)
+                false
+            }
+        }
+        inFlight.addLast(Pair(snapshot, future))
+        return future
+    }
+
+    @Throws(IOException::class)
+    private fun checkpointWritten(fileName: Int, objects: Long, reserved: Long) {
+        checkpoints.checkpointWritten(objects, reserved, File(config.path, fileName.toString()).length())
+        writeReplayInfo()
+    }
+
+    @Throws(IOException::class)
+    private fun writeReplayInfo() {
+        val bytesPerSecond = checkpoints.bytesPerSecond
+        if (!bytesPerSecond.isNaN()) {
+            synchronized(checkpoints) {
+                CheckpointPolicy.writeBytesPerSecond(config.path, bytesPerSecond)
+            }
+        }
+    }
+
+    private fun freezeSnapshots() {
+        inFlight.removeIf { it.second.isDone }
+        for ((snapshot, _) in inFlight) {
+            try {
+                snapshot.freeze()
+            } catch (e: IOException) {
+                LOGGER.log(Level.SEVERE, "Could not encode heap snapshot", e)
+            }
+        }
+    }
+
+    /**
+     * @return whether the heap has been dumped
+     */
+    private fun awaitDump(heapWritten: Future<Boolean>): Boolean {
+        try {
+            return heapWritten.get()
+        } catch (e: ExecutionException) {
+            LOGGER.log(Level.SEVERE, "Unexpected error", e.cause)
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+        return false
+    }
+
     fun writeIndex(position: Long, gcInfo: StatisticGCInfo, writeHeap: Boolean) {
         writeIndex(position, gcInfo.type, gcInfo.meta, gcInfo.cause, gcInfo.time, gcInfo.id.toInt(), writeHeap)
     }
@@ -121,7 +219,29 @@ open class MetaDataWriterListener(private val config: MetaDataWriterConfig, priv
     }
 
     fun writeIndex(position: Long, type: GarbageCollectionType, eventType: EventType, cause: GarbageCollectionCause, time: Long, id: Int, writeHeap: Boolean) {
-        indexWriter.write(position, type, eventType, cause, time, id, writeHeap)
+        writeIndex(position, type, eventType, cause, time, id, if (writeHeap) CompletableFuture.completedFuture(true) else null)
+    }
+
+    private fun writeIndex(position: Long, type: GarbageCollectionType, eventType: EventType, cause: GarbageCollectionCause, time: Long, id: Int, heapWritten: Future<Boolean>?) {
+        pendingIndex.addLast(PendingIndexEntry(position, type, eventType, cause, time, id, heapWritten))
+        flushIndex(false)
+    }
+
+    /**
+     * Writes the pending index entries up to the first one whose heap dump is still being written
+     *
+     * @param await whether to wait for all heap dumps instead
+     */
+    private fun flushIndex(await: Boolean) {
+        while (!pendingIndex.isEmpty()) {
+            val entry = pendingIndex.peekFirst()
+            if (entry.heapWritten != null && !entry.heapWritten.isDone && !await) {
+                break
+            }
+            pendingIndex.removeFirst()
+            val fileExists = entry.heapWritten != null && awaitDump(entry.heapWritten)
+            indexWriter.write(entry.position, entry.type, entry.eventType, entry.cause, entry.time, entry.id, fileExists)
+        }
         indexWriter.flush()
     }
 
@@ -145,7 +265,21 @@ open class MetaDataWriterListener(private val config: MetaDataWriterConfig, priv
             parsingInfo: ParsingInfo) {
         val heap = sender as DetailedHeap
 
+        while (!inFlight.isEmpty()) {
+            awaitDump(inFlight.removeFirst().second)
+        }
         executors.shutdown()
+        try {
+            executors.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+
+        try {
+            writeReplayInfo()
+        } catch (e: IOException) {
+            LOGGER.log(Level.SEVERE, "Unexpected error", e)
+        }
 
         try {
             statisticsWriter.close()
@@ -154,6 +288,7 @@ open class MetaDataWriterListener(private val config: MetaDataWriterConfig, priv
         }
 
         try {
+            flushIndex(true)
             indexWriter.close()
         } catch (e: IOException) {
             LOGGER.log(Level.SEVERE, "Unexpected error", e)
@@ -165,4 +300,13 @@ open class MetaDataWriterListener(private val config: MetaDataWriterConfig, priv
             LOGGER.log(Level.SEVERE, "Unexpected error", e)
         }
     }
-}
\ No newline at end of file
+}
+
+private class PendingIndexEntry(val position: Long,
+                                val type: GarbageCollectionType,
+                                val eventType: EventType,
+                                val cause: GarbageCollectionCause,
+                                val time: Long,
+                                val id: Int,
+                                // null if the heap is not dumped at this GC
+                                val heapWritten: Future<Boolean>?)
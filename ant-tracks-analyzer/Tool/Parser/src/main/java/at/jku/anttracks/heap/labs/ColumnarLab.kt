@@ -0,0 +1,478 @@
+package at.jku.anttracks.heap.labs
+
+import at.jku.anttracks.classification.Filter
+import at.jku.anttracks.heap.DetailedHeap
+import at.jku.anttracks.heap.ObjectVisitor
+import at.jku.anttracks.heap.objects.ObjectInfo
+import at.jku.anttracks.heap.space.Space
+import at.jku.anttracks.heap.space.SpaceInfo
+import at.jku.anttracks.parser.heap.pointer.PtrUpdateVisitor
+import at.jku.anttracks.util.Consts.AVERAGE_OBJECT_SIZE
+import at.jku.anttracks.util.Consts.UNDEFINED_ADDR
+import at.jku.anttracks.util.TraceException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * LAB that stores its objects as columns of primitives instead of one [AddressHO] instance per object. bornAt, lastMovedAt, offset, tag and
+ * the pointers of all objects are packed into two buffers, which are allocated outside of the Java heap if [offHeap] is set. Only the
+ * [ObjectInfo] of every object is kept in an array on the heap (it is shared by many objects, so that is a single compressed reference per
+ * object, and ObjectInfo ids are not stable since the cache may be rebuilt).
+ *
+ * [getObject] returns a view on a row. When a view of another columnar LAB is allocated in this LAB (i.e., the object has been moved by a
+ * GC), its row is copied and the source row forwards to the new one, such that views obtained before the move (e.g., from the back LABs
+ * while the GC is in progress) read and write the moved object like the shared instance of a [MultiObjectLab] would.
+ */
+class ColumnarLab internal constructor(thread: String,
+                                      kind: Kind,
+                                      addr: Long,
+                                      private var capacity: Int,
+                                      private val offHeap: Boolean,
+                                      private var rowCapacity: Int) : Lab(thread, kind, addr) {
+
+    @JvmOverloads
+    constructor(thread: String, kind: Kind, addr: Long, capacity: Int, offHeap: Boolean = false) :
+            this(thread, kind, addr, capacity, offHeap, Math.max(4, capacity / AVERAGE_OBJECT_SIZE))
+
+    /**
+     * Creates a LAB that contains exactly the given object, the columnar counterpart of a [SingleObjectLab].
+     */
+    @Throws(TraceException::class)
+    constructor(thread: String, kind: Kind, addr: Long, obj: AddressHO, offHeap: Boolean) : this(thread, kind, addr, obj.size, offHeap, 1) {
+        allocate(obj)
+        setTag(0, Lab.UNSET_FORWARDING_ADDR)
+    }
+
+    private var infos = arrayOfNulls<ObjectInfo>(rowCapacity)
+    private var rows = newBuffer(rowCapacity * ROW_BYTES)
+    private var pointers: ByteBuffer? = null
+    // pointers of objects whose pointer count is only known once their pointers are set, may be filled by several slaves at GC end
+    @Volatile
+    private var unknownPointers: ConcurrentHashMap<Int, LongArray>? = null
+    // rows that have been moved to another columnar LAB, GC threads may move objects out of the same LAB concurrently
+    @Volatile
+    private var forwards: Array<Slot?>? = null
+    private var pointerTop: Int = 0
+    private var position: Int = 0
+    private var n: Int = 0
+    private var containsPointers = false
+
+    // --------------------------------------------------------
+    // ------------------------ Columns -----------------------
+    // --------------------------------------------------------
+
+    private fun newBuffer(bytes: Int): ByteBuffer =
+            (if (offHeap && bytes >= OFF_HEAP_MIN_BYTES) ByteBuffer.allocateDirect(bytes) else ByteBuffer.allocate(bytes)).order(ByteOrder.nativeOrder())
+
+    private fun bornAt(row: Int) = rows.getShort(BORN_AT * rowCapacity + row * java.lang.Short.BYTES)
+    private fun lastMovedAt(row: Int) = rows.getShort(LAST_MOVED_AT * rowCapacity + row * java.lang.Short.BYTES)
+    private fun offset(row: Int) = rows.getInt(OFFSET * rowCapacity + row * Integer.BYTES)
+    private fun pointerStart(row: Int) = rows.getInt(POINTER_START * rowCapacity + row * Integer.BYTES)
+    private fun pointerCount(row: Int) = rows.getInt(POINTER_COUNT * rowCapacity + row * Integer.BYTES)
+    private fun tag(row: Int) = rows.getLong(TAG * rowCapacity + row * java.lang.Long.BYTES)
+
+    private fun setBornAt(row: Int, value: Short) {
+        rows.putShort(BORN_AT * rowCapacity + row * java.lang.Short.BYTES, value)
+    }
+
+    private fun setLastMovedAt(row: Int, value: Short) {
+        rows.putShort(LAST_MOVED_AT * rowCapacity + row * java.lang.Short.BYTES, value)
+    }
+
+    private fun setOffset(row: Int, value: Int) {
+        rows.putInt(OFFSET * rowCapacity + row * Integer.BYTES, value)
+    }
+
+    private fun setPointerStart(row: Int, value: Int) {
+        rows.putInt(POINTER_START * rowCapacity + row * Integer.BYTES, value)
+    }
+
+    private fun setPointerCount(row: Int, value: Int) {
+        rows.putInt(POINTER_COUNT * rowCapacity + row * Integer.BYTES, value)
+    }
+
+    private fun setTag(row: Int, value: Long) {
+        rows.putLong(TAG * rowCapacity + row * java.lang.Long.BYTES, value)
+    }
+
+    private fun pointer(row: Int, index: Int): Long = pointers!!.getLong((pointerStart(row) + index) * java.lang.Long.BYTES)
+
+    private fun setPointer(row: Int, index: Int, ptr: Long) {
+        pointers!!.putLong((pointerStart(row) + index) * java.lang.Long.BYTES, ptr)
+    }
+
+    private fun resizeRows(newRowCapacity: Int) {
+        val newRows = newBuffer(newRowCapacity * ROW_BYTES)
+        for (column in COLUMN_BYTES.indices) {
+            val columnBytes = COLUMN_BYTES[column]
+            val src = rows.duplicate()
+            src.limit(COLUMN_START[column] * rowCapacity + n * columnBytes).position(COLUMN_START[column] * rowCapacity)
+            newRows.position(COLUMN_START[column] * newRowCapacity)
+            newRows.put(src)
+        }
+        newRows.clear()
+        rows = newRows
+        infos = infos.copyOf(newRowCapacity)
+        forwards = forwards?.copyOf(newRowCapacity)
+        rowCapacity = newRowCapacity
+    }
+
+    private fun resizePointers(newPointerCapacity: Int) {
+        val newPointers = newBuffer(newPointerCapacity * java.lang.Long.BYTES)
+        pointers?.let { old ->
+            val src = old.duplicate()
+            src.limit(pointerTop * java.lang.Long.BYTES).position(0)
+            newPointers.put(src)
+            newPointers.clear()
+        }
+        pointers = newPointers
+    }
+
+    private fun forward(row: Int, to: Slot) {
+        val forwards = this.forwards ?: synchronized(this) {
+            this.forwards ?: arrayOfNulls<Slot>(rowCapacity).also { this.forwards = it }
+        }
+        forwards[row] = to
+    }
+
+    // --------------------------------------------------------
+    // ------------------------ Lab ---------------------------
+    // --------------------------------------------------------
+
+    override fun capacity(): Int {
+        return if (capacity != Lab.UNKNOWN_CAPACITY) capacity else position
+    }
+
+    override fun position(): Int {
+        return position
+    }
+
+    override fun isFull(): Boolean {
+        return capacity != Lab.UNKNOWN_CAPACITY && super.isFull()
+    }
+
+    override fun isExtendable(): Boolean {
+        return capacity == Lab.UNKNOWN_CAPACITY
+    }
+
+    override fun getObjectCount(): Int {
+        return n
+    }
+
+    override fun iterate(heap: DetailedHeap,
+                         space: SpaceInfo,
+                         filter: List<Filter>?,
+                         visitor: ObjectVisitor,
+                         visitorSettings: ObjectVisitor.Settings) {
+        for (i in 0 until n) {
+            val obj = Slot(i)
+            val addr = this.addr + offset(i)
+            var accept = true
+            if (filter != null) {
+                for (f in filter) {
+                    try {
+                        if (!f.classify(obj,
+                                        addr,
+                                        obj.info,
+                                        space,
+                                        obj.type,
+                                        obj.size,
+                                        obj.isArray,
+                                        obj.arrayLength,
+                                        obj.site,
+                                        LongArray(0),// TODO From pointers
+                                        LongArray(0),// TODO Pointers
+                                        obj.eventType,
+                                        if (visitorSettings.rootPointerInfoNeeded) heap.rootPtrs.get(addr) else emptyList(),
+                                        -1,// TODO Age
+                                        obj.info.thread,
+                                        heap.getExternalThreadName(obj.info.thread))) {
+                            accept = false
+                            break
+                        }
+                    } catch (e: Exception) {
+                        e.printStackTrace()
+                        accept = false
+                        break
+                    }
+                }
+            }
+            if (accept) {
+                visitor.visit(addr,
+                              obj,
+                              space,
+                              if (visitorSettings.rootPointerInfoNeeded) heap.rootPtrs.get(addr) ?: emptyList() else emptyList())
+            }
+        }
+    }
+
+    @Throws(TraceException::class)
+    override fun tryAllocate(objAddr: Long, `object`: AddressHO): Long {
+        var assignedAddr = Lab.OBJECT_NOT_ASSIGNED.toLong()
+
+        if (objAddr == UNDEFINED_ADDR) {
+            assignedAddr = allocate(`object`) + addr
+        } else if (isInLab(objAddr)) {
+            if (objAddr != top()) {
+                throw TraceException(String.format("#CalculateAddrByTLAB, Lab of kind %s of thread %s (Range = %,d - %,d, Size = %,d) is not consecutive:\n" +
+                                                           "obj actual addr = %,d (Size = %,d, Object = %s),\nexpected addr = %,d",
+                                                   kind, thread, bottom(), end(), capacity(), objAddr, `object`.size, `object`, top()))
+            }
+            assignedAddr = allocate(`object`) + addr
+        }
+        return assignedAddr
+    }
+
+    private fun isInLab(objAddr: Long): Boolean {
+        return if (capacity == Lab.UNKNOWN_CAPACITY) {
+            objAddr == top()
+        } else {
+            objAddr >= addr && objAddr < addr + capacity
+        }
+    }
+
+    @Throws(TraceException::class)
+    private fun allocate(obj: AddressHO): Int {
+        val offset = position
+        val source = (obj as? Slot)?.resolve()
+        val pointerCount = obj.pointerCount
+
+        if (n == rowCapacity) {
+            resizeRows(rowCapacity * 2)
+        }
+        val row = n
+        infos[row] = obj.info
+        setBornAt(row, obj.bornAt)
+        setLastMovedAt(row, obj.lastMovedAt)
+        setOffset(row, offset)
+        setTag(row, obj.tag)
+        setPointerStart(row, pointerTop)
+        if (obj is AddressHeapObjectUnknown || (source != null && source.lab.pointerCount(source.index) < 0)) {
+            // pointer count is only known once the pointers have been set
+            setPointerCount(row, -1)
+            if (pointerCount >= 0) {
+                unknownPointers().put(row, LongArray(pointerCount) { obj.getPointer(it) })
+            }
+        } else if (pointerCount > 0) {
+            setPointerCount(row, pointerCount)
+            val pointers = this.pointers
+            if (pointers == null || (pointerTop + pointerCount) * java.lang.Long.BYTES > pointers.capacity()) {
+                resizePointers(Math.max(Math.max(4, rowCapacity), (pointerTop + pointerCount) * 2))
+            }
+            for (i in 0 until pointerCount) {
+                setPointer(row, i, obj.getPointer(i))
+            }
+            pointerTop += pointerCount
+        } else {
+            setPointerCount(row, 0)
+        }
+        n++
+        if (pointerCount != 0) {
+            containsPointers = true
+        }
+
+        position += obj.size
+
+        if (capacity != Lab.UNKNOWN_CAPACITY && position > capacity) {
+            throw TraceException(String.format("LAB CAPACITY EXCEEDED\nObject added to lab of kind %s of thread %s (Range = %,d - %,d, Size = %,d) which " +
+                                                       "exceeded the LAB's size:\nobj addr = %,d (Size = %,d, Object = %s)\ncapacity = %,d, position now = %,d",
+                                               kind, thread, bottom(), end(), capacity(), offset + addr, obj.size, obj, capacity, position))
+        }
+
+        source?.lab?.forward(source.index, Slot(row))
+        return offset
+    }
+
+    private fun unknownPointers() = unknownPointers ?: synchronized(this) {
+        unknownPointers ?: ConcurrentHashMap<Int, LongArray>().also { unknownPointers = it }
+    }
+
+    override fun resetCapacity() {
+        assert(capacity == UNKNOWN_CAPACITY) { "Lab Capacity must not be set if capacity should be reset" }
+        capacity = position
+    }
+
+    override fun resetForwardingAddresses() {
+        for (i in 0 until n) {
+            Slot(i).tag = Lab.UNSET_FORWARDING_ADDR
+        }
+    }
+
+    override fun clone(): Lab {
+        return ColumnarLab(thread, kind, addr, capacity, offHeap, rowCapacity).also {
+            it.rows.put(rows.duplicate().clear() as ByteBuffer).clear()
+            it.infos = infos.copyOf()
+            pointers?.let { pointers ->
+                it.pointers = it.newBuffer(pointers.capacity()).put(pointers.duplicate().clear() as ByteBuffer).clear() as ByteBuffer
+            }
+            unknownPointers?.let { unknownPointers -> it.unknownPointers = ConcurrentHashMap(unknownPointers) }
+            it.forwards = forwards?.copyOf()
+            it.pointerTop = pointerTop
+            it.containsPointers = containsPointers
+            it.position = position
+            it.n = n
+        }
+    }
+
+    override fun reduceSize() {
+        if (n < rowCapacity) {
+            resizeRows(Math.max(1, n))
+        }
+        val pointers = this.pointers
+        if (pointers != null && pointerTop * java.lang.Long.BYTES < pointers.capacity()) {
+            resizePointers(pointerTop)
+        }
+    }
+
+    @Throws(TraceException::class)
+    override fun getObject(objAddr: Long): AddressHO? {
+        return Slot(getAddressIndex(objAddr))
+    }
+
+    override fun getObjectAtIndex(index: Int): AddressHO {
+        return Slot(index)
+    }
+
+    @Throws(TraceException::class)
+    override fun getAddressIndex(objAddr: Long): Int {
+        if (n == 0) {
+            throw TraceException("No object in LAB!")
+        }
+
+        var l = 0
+        var r = n - 1
+        val search = (objAddr - addr).toInt()
+
+        while (l <= r) {
+            val m = l + (r - l) / 2
+            val offset = offset(m)
+            if (offset == search) return m
+            if (offset < search) l = m + 1 else r = m - 1
+        }
+        throw TraceException("No object found at address " + objAddr)
+    }
+
+    override fun variableCapacity() {
+        capacity = Lab.UNKNOWN_CAPACITY
+    }
+
+    override fun mayContainPointers(): Boolean {
+        return containsPointers
+    }
+
+    override fun iterateUpdatePointer(iterator: PtrUpdateVisitor, space: Space) {
+        for (i in 0 until n) {
+            iterator.visit(space, this, addr + offset(i), Slot(i))
+        }
+    }
+
+    /**
+     * View on a row of a [ColumnarLab]. All accesses follow the row's forwarding, two views are equal if they denote the same object.
+     */
+    inner class Slot internal constructor(val index: Int) : AddressHO {
+        val lab: ColumnarLab
+            get() = this@ColumnarLab
+
+        /**
+         * @return the view on the row that currently holds this object (i.e., this view unless the object has been moved)
+         */
+        fun resolve(): Slot {
+            var slot = this
+            while (true) {
+                slot = slot.lab.forwards?.get(slot.index) ?: return slot
+            }
+        }
+
+        override val info: ObjectInfo
+            get() = resolve().let { it.lab.infos[it.index]!! }
+
+        override val bornAt: Short
+            get() = resolve().let { it.lab.bornAt(it.index) }
+
+        override var lastMovedAt: Short
+            get() = resolve().let { it.lab.lastMovedAt(it.index) }
+            set(value) = resolve().let { it.lab.setLastMovedAt(it.index, value) }
+
+        override var tag: Long
+            get() = resolve().let { it.lab.tag(it.index) }
+            set(value) = resolve().let { it.lab.setTag(it.index, value) }
+
+        override val pointerCount: Int
+            get() = resolve().let { slot ->
+                val count = slot.lab.pointerCount(slot.index)
+                if (count >= 0) count else slot.lab.unknownPointers?.get(slot.index)?.size ?: -1
+            }
+
+        override fun getPointer(index: Int): Long {
+            val slot = resolve()
+            val count = slot.lab.pointerCount(slot.index)
+            if (count < 0) {
+                val ptrs = slot.lab.unknownPointers?.get(slot.index) ?: error("Pointer have not been set before, access not possible. $this")
+                return ptrs[index]
+            }
+            if (index < 0 || index >= count) {
+                throw IndexOutOfBoundsException()
+            }
+            return slot.lab.pointer(slot.index, index)
+        }
+
+        override fun fillPointers(ptrs: LongArray) {
+            val slot = resolve()
+            if (slot.lab.pointerCount(slot.index) < 0) {
+                slot.lab.unknownPointers().put(slot.index, Arrays.copyOf(ptrs, ptrs.size))
+                return
+            }
+            super.fillPointers(ptrs)
+            for (i in ptrs.indices) {
+                slot.lab.setPointer(slot.index, i, ptrs[i])
+            }
+        }
+
+        override fun setPointer(ptrNr: Int, ptr: Long) {
+            val slot = resolve()
+            if (slot.lab.pointerCount(slot.index) < 0) {
+                val ptrs = slot.lab.unknownPointers?.get(slot.index) ?: error("Pointer have not been set before, access not possible. $this")
+                ptrs[ptrNr] = ptr
+                return
+            }
+            super.setPointer(ptrNr, ptr)
+            slot.lab.setPointer(slot.index, ptrNr, ptr)
+        }
+
+        override fun equals(other: Any?): Boolean {
+            if (other !is Slot) {
+                return false
+            }
+            val a = resolve()
+            val b = other.resolve()
+            return a.lab === b.lab && a.index == b.index
+        }
+
+        override fun hashCode(): Int {
+            val slot = resolve()
+            return 31 * System.identityHashCode(slot.lab) + slot.index
+        }
+
+        override fun toString(): String {
+            return "ColumnarLab.Slot(info=$info, bornAt=$bornAt, lastMovedAt=$lastMovedAt, tag=$tag, pointerCount=$pointerCount)"
+        }
+    }
+
+    companion object {
+        // start of every column in bytes per row of capacity, e.g., the offsets start at byte 4 * rowCapacity
+        private const val BORN_AT = 0
+        private const val LAST_MOVED_AT = 2
+        private const val OFFSET = 4
+        private const val POINTER_START = 8
+        private const val POINTER_COUNT = 12
+        private const val TAG = 16
+        private val COLUMN_START = intArrayOf(BORN_AT, LAST_MOVED_AT, OFFSET, POINTER_START, POINTER_COUNT, TAG)
+        private val COLUMN_BYTES = intArrayOf(2, 2, 4, 4, 4, 8)
+        private const val ROW_BYTES = 24
+
+        // small LABs (e.g., virtual LABs of a single object) are not worth a direct buffer
+        private const val OFF_HEAP_MIN_BYTES = 4096
+    }
+}
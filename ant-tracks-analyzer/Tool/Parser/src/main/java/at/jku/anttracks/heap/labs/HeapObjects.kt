@@ -768,35 +768,3 @@ data class AddressHeapObjectUnknown(override val info: ObjectInfo, override val
         p!![ptrNr] = ptr
     }
 }
-
-class IndexHeapObject(val address: Long,
-                      val index: Int,
-                      val info: ObjectInfo) {
-    constructor(address: Long, index: Int, addressHO: AddressHO) : this(address, index, addressHO.info) {
-        bornAt = addressHO.bornAt
-        lastMovedAt = addressHO.lastMovedAt
-    }
-
-    var bornAt: Short = -1
-    var lastMovedAt: Short = -1
-
-    val type: AllocatedType
-        get() = info.type
-    val site: AllocationSite
-        get() = info.allocationSite
-    val eventType: EventType
-        get() = info.eventType
-    val size: Int
-        get() = info.size
-    val isArray: Boolean
-        get() = info.isArray
-    val arrayLength: Int
-        get() = info.arrayLength
-
-    // TODO: These properties are temporary and should be removed once all algorithms changed to use IndexHeapObject
-    lateinit var pointsToIndices: IntArray
-    lateinit var pointedFromIndices: IntArray
-
-    lateinit var pointsTo: Array<IndexHeapObject?>
-    lateinit var pointedFrom: Array<IndexHeapObject?>
-}
\ No newline at end of file
@@ -31,6 +31,33 @@ public abstract class Lab implements Comparable<Lab>, ObjectAccess {
         }
     }
 
+    /**
+     * How LABs store their objects, see {@link #create(String, Kind, long, int)}.
+     */
+    public enum Storage {
+        // one AddressHO instance per object
+        OBJECTS,
+        // primitive columns on the Java heap
+        COLUMNS,
+        // primitive columns in direct buffers
+        OFF_HEAP_COLUMNS;
+
+        /**
+         * @param name the name of a storage, case and underscores are ignored (e.g., OffHeapColumns)
+         */
+        public static Storage parse(String name) {
+            String normalized = name.trim().replace("_", "").replace("-", "");
+            for (Storage storage : values()) {
+                if (storage.name().replace("_", "").equalsIgnoreCase(normalized)) {
+                    return storage;
+                }
+            }
+            throw new IllegalArgumentException("Unknown LAB storage: " + name);
+        }
+    }
+
+    public static Storage storage = Storage.OBJECTS;
+
     public static final int UNKNOWN_CAPACITY = -1;
     public static final int OBJECT_NOT_ASSIGNED = -1;
     public static final int OBJECT_NOT_FOUND = -1;
@@ -46,6 +73,50 @@ public abstract class Lab implements Comparable<Lab>, ObjectAccess {
         this.addr = addr;
     }
 
+    /**
+     * Creates an empty LAB that stores its objects as configured by {@link #storage}.
+     */
+    public static Lab create(String thread, Kind kind, long addr, int capacity) {
+        switch (storage) {
+            case COLUMNS:
+                return new ColumnarLab(thread, kind, addr, capacity, false);
+            case OFF_HEAP_COLUMNS:
+                return new ColumnarLab(thread, kind, addr, capacity, true);
+            default:
+                return new MultiObjectLab(thread, kind, addr, capacity);
+        }
+    }
+
+    /**
+     * Creates an empty LAB like {@link #create(String, Kind, long, int)}, but with room for the given number of objects, e.g., when a LAB is
+     * loaded from a heap dump.
+     */
+    public static Lab create(String thread, Kind kind, long addr, int capacity, int objectCount) {
+        int rows = Math.max(1, objectCount);
+        switch (storage) {
+            case COLUMNS:
+                return new ColumnarLab(thread, kind, addr, capacity, false, rows);
+            case OFF_HEAP_COLUMNS:
+                return new ColumnarLab(thread, kind, addr, capacity, true, rows);
+            default:
+                return new MultiObjectLab(thread, kind, addr, capacity, new AddressHO[rows], new int[rows]);
+        }
+    }
+
+    /**
+     * Creates a LAB that contains exactly the given object and stores it as configured by {@link #storage}.
+     */
+    public static Lab create(String thread, Kind kind, long addr, AddressHO obj) throws TraceException {
+        switch (storage) {
+            case COLUMNS:
+                return new ColumnarLab(thread, kind, addr, obj, false);
+            case OFF_HEAP_COLUMNS:
+                return new ColumnarLab(thread, kind, addr, obj, true);
+            default:
+                return new SingleObjectLab(thread, kind, addr, obj);
+        }
+    }
+
     @Override
     public abstract Lab clone();
 
@@ -115,7 +186,7 @@ public abstract class Lab implements Comparable<Lab>, ObjectAccess {
             throw new IllegalArgumentException(String.format("%,d < %,d", bottom, end));
         }
         end = Math.min(end, top()); // necessary for non-full labs
-        Lab sublab = new MultiObjectLab(thread, kind, bottom, (int) (end - bottom));
+        Lab sublab = create(thread, kind, bottom, (int) (end - bottom));
         long top = bottom;
         while (top < end) {
             AddressHO obj = getObject(top);
@@ -159,5 +230,12 @@ public abstract class Lab implements Comparable<Lab>, ObjectAccess {
 
     public void variableCapacity() {}
 
+    /**
+     * @return false if no object in this LAB can have pointers, i.e., the LAB can be skipped when pointers are updated
+     */
+    public boolean mayContainPointers() {
+        return true;
+    }
+
     public abstract void iterateUpdatePointer(PtrUpdateVisitor iterator, Space space);
 }
\ No newline at end of file
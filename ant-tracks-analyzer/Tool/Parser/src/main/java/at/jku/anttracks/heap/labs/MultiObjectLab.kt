@@ -21,6 +21,7 @@ class MultiObjectLab @JvmOverloads constructor(thread: String,
 
     private var position: Int = 0
     private var n: Int = 0
+    private var containsPointers = false
     //private var expansions = 0
 
     override fun capacity(): Int {
@@ -130,6 +131,9 @@ class MultiObjectLab @JvmOverloads constructor(thread: String,
         objectsList[n] = obj
         addressList[n] = offset
         n++
+        if (obj.pointerCount != 0) {
+            containsPointers = true
+        }
 
         position += obj.size
 
@@ -203,6 +207,7 @@ class MultiObjectLab @JvmOverloads constructor(thread: String,
                               addressList.clone()).also {
             it.position = this.position
             it.n = this.n
+            it.containsPointers = this.containsPointers
         }
     }
 
@@ -249,6 +254,10 @@ class MultiObjectLab @JvmOverloads constructor(thread: String,
         capacity = Lab.UNKNOWN_CAPACITY
     }
 
+    override fun mayContainPointers(): Boolean {
+        return containsPointers
+    }
+
     override fun iterateUpdatePointer(iterator: PtrUpdateVisitor, space: Space) {
         var curAddr = this.addr
         for (i in 0 until n) {
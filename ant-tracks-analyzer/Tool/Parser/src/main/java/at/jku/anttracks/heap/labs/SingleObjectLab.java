@@ -139,6 +139,11 @@ public final class SingleObjectLab extends Lab {
         return 0;
     }
 
+    @Override
+    public boolean mayContainPointers() {
+        return object.getPointerCount() != 0;
+    }
+
     public MultiObjectLab toMultiObjectLab() {
         MultiObjectLab lab = new MultiObjectLab(thread, Kind.REGION_VIRTUAL, addr, capacity());
         try {
@@ -6,17 +6,43 @@ import at.jku.anttracks.heap.symbols.AllocationSite
 import at.jku.anttracks.heap.symbols.Symbols
 import at.jku.anttracks.parser.EventType
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.ReentrantLock
 
+/**
+ * Assigns every distinct [ObjectInfo] a dense id, such that objects only have to store the id (or a reference to the shared info).
+ *
+ * Lookups first go to a small direct-mapped front cache of the calling thread, which is keyed on the primitive properties of an info
+ * (allocation site id, type id, array length, event type) and the thread name (compared by reference first), so that the frequent
+ * repeated allocations of the same kind neither hash an [ObjectInfo] nor touch shared state. On a front cache miss, the global table is
+ * queried with the same primitive key (reusing a key object of the calling thread), and a new info is only created while holding the lock
+ * of the key's stripe.
+ */
 class ObjectInfoCache(objects: Collection<ObjectInfo>? = null, symbols: Symbols? = null) {
+    companion object {
+        private const val STRIPES = 64
+        private const val FRONT_CACHE_SIZE = 1024
+        private const val PAGE_SHIFT = 12
+        private const val PAGE_SIZE = 1 shl PAGE_SHIFT
+        private const val PAGE_MASK = PAGE_SIZE - 1
+    }
+
     private val currentId = AtomicInteger()
 
-    // Use very low load factors to ensure fast access on the cost of memory
-    private val loadFactor = 0.2f
-    private val initSize = (1_000 * loadFactor).toInt()
-    private var idCache = ConcurrentHashMap<Int, ObjectInfo>(initSize, loadFactor)
-    private var cache = ConcurrentHashMap<ObjectInfo, ObjectInfo>(initSize, loadFactor)
-    private var cacheMisses = 0
+    private val cache = ConcurrentHashMap<Key, ObjectInfo>()
+    private val stripes = Array(STRIPES) { ReentrantLock() }
+    // infos by id, pages are added when needed
+    @Volatile
+    private var idPages = arrayOfNulls<AtomicReferenceArray<ObjectInfo>>(16)
+    private val idPagesLock = Any()
+
+    // incremented by clear() to invalidate all front caches
+    @Volatile
+    private var generation = 0
+    private val frontCaches = ConcurrentLinkedQueue<FrontCache>()
+    private val frontCache = ThreadLocal.withInitial { FrontCache(generation).also { frontCaches.add(it) } }
 
     val size: Int
         get() = cache.size
@@ -27,12 +53,28 @@ class ObjectInfoCache(objects: Collection<ObjectInfo>? = null, symbols: Symbols?
             return result
         }
 
-    init {
-        val prototype = ObjectInfo()
+    /**
+     * Sum of the lookup counters of all threads, the counters are not synchronized and thus only approximate while lookups are in progress
+     */
+    val statistics: Statistics
+        get() {
+            var frontHits = 0L
+            var tableHits = 0L
+            var misses = 0L
+            var contended = 0L
+            for (front in frontCaches) {
+                frontHits += front.hits
+                tableHits += front.tableHits
+                misses += front.misses
+                contended += front.contended
+            }
+            return Statistics(frontHits, tableHits, misses, contended)
+        }
 
+    init {
         if (objects != null && symbols != null) {
             objects.forEach {
-                get(it, prototype, symbols)
+                get(it, symbols)
             }
         }
     }
@@ -43,23 +85,55 @@ class ObjectInfoCache(objects: Collection<ObjectInfo>? = null, symbols: Symbols?
                      eventType: EventType,
                      classSize: Int,
                      arrayLength: Int,
-                     prototype: ObjectInfo,
                      symbols: Symbols): ObjectInfo {
-        prototype.thread = thread
-        prototype.allocationSite = allocationSite
-        prototype.type = type
-        prototype.eventType = eventType
-        prototype.arrayLength = arrayLength
+        var front = frontCache.get()
+        if (front.generation != generation) {
+            frontCaches.remove(front)
+            front = FrontCache(generation)
+            frontCaches.add(front)
+            frontCache.set(front)
+        }
+        val slot = front.slot(thread, allocationSite.id, type.id, arrayLength, eventType.id)
+        val frontCached = front.get(slot, thread, allocationSite.id, type.id, arrayLength, eventType.id)
+        if (frontCached != null) {
+            front.hits++
+            return frontCached
+        }
 
-        val cached = cache.get(prototype)
-        if (cached != null) return cached
+        val key = front.probe.set(thread, allocationSite.id, type.id, arrayLength, eventType.id)
+        var cached = cache[key]
+        if (cached != null) {
+            front.tableHits++
+        } else {
+            cached = getOrCreate(front, key, thread, allocationSite, type, eventType, classSize, arrayLength, symbols)
+        }
+        front.put(slot, thread, allocationSite.id, type.id, arrayLength, eventType.id, cached)
+        return cached
+    }
 
-        synchronized(idCache) {
-            val c = cache.get(prototype)
-            if (c != null) return c
+    private fun getOrCreate(front: FrontCache,
+                            key: Key,
+                            thread: String,
+                            allocationSite: AllocationSite,
+                            type: AllocatedType,
+                            eventType: EventType,
+                            classSize: Int,
+                            arrayLength: Int,
+                            symbols: Symbols): ObjectInfo {
+        // equal keys map to the same stripe, thus an info is created at most once
+        val lock = stripes[(key.hashCode() and Int.MAX_VALUE) % STRIPES]
+        if (!lock.tryLock()) {
+            front.contended++
+            lock.lock()
+        }
+        try {
+            val c = cache[key]
+            if (c != null) {
+                front.tableHits++
+                return c
+            }
 
-            cacheMisses++
-            // println("Cache miss: $cacheMisses | ${cache.size}")
+            front.misses++
 
             val newlyCached: ObjectInfo
             if (arrayLength >= 0) {
@@ -73,14 +147,17 @@ class ObjectInfoCache(objects: Collection<ObjectInfo>? = null, symbols: Symbols?
             }
             newlyCached.id = currentId.getAndIncrement()
 
-            cache.putIfAbsent(newlyCached, newlyCached)
-            idCache.put(newlyCached.id, newlyCached)
+            // publish by id first, everyone who finds the info in the table can then also look it up by id
+            setById(newlyCached.id, newlyCached)
+            // the probe key is reused by the calling thread, the table gets its own copy
+            cache[key.copy()] = newlyCached
             return newlyCached
+        } finally {
+            lock.unlock()
         }
     }
 
     operator fun get(info: ObjectInfo,
-                     prototype: ObjectInfo,
                      symbols: Symbols): ObjectInfo {
         return get(info.thread,
                    info.allocationSite,
@@ -88,25 +165,135 @@ class ObjectInfoCache(objects: Collection<ObjectInfo>? = null, symbols: Symbols?
                    info.eventType,
                    if (info.isMirror) info.size else -1,
                    info.arrayLength,
-                   prototype,
                    symbols)
     }
 
     operator fun get(id: Int): ObjectInfo {
-        return idCache[id]!!
+        return idPages[id ushr PAGE_SHIFT]!!.get(id and PAGE_MASK)!!
+    }
+
+    private fun setById(id: Int, info: ObjectInfo) {
+        val pageIndex = id ushr PAGE_SHIFT
+        var pages = idPages
+        if (pageIndex >= pages.size || pages[pageIndex] == null) {
+            synchronized(idPagesLock) {
+                pages = idPages
+                if (pageIndex >= pages.size) {
+                    pages = pages.copyOf(maxOf(pageIndex + 1, pages.size * 2))
+                }
+                if (pages[pageIndex] == null) {
+                    pages[pageIndex] = AtomicReferenceArray(PAGE_SIZE)
+                }
+                idPages = pages
+            }
+        }
+        pages[pageIndex]!!.set(id and PAGE_MASK, info)
     }
 
     fun clear() {
-        idCache.clear()
+        synchronized(idPagesLock) {
+            idPages = arrayOfNulls(16)
+        }
         cache.clear()
+        generation++
     }
 
     fun clone(): ObjectInfoCache {
         val dolly = ObjectInfoCache()
         dolly.currentId.set(this.currentId.get())
-        dolly.idCache.putAll(this.idCache)
+        dolly.idPages = idPages.map { page ->
+            if (page == null) null else AtomicReferenceArray<ObjectInfo>(PAGE_SIZE).also { copy ->
+                for (i in 0 until PAGE_SIZE) {
+                    copy.set(i, page.get(i))
+                }
+            }
+        }.toTypedArray()
         dolly.cache.putAll(this.cache)
 
         return dolly
     }
+
+    /**
+     * @property frontHits       lookups answered by the thread-local front caches
+     * @property tableHits       lookups answered by the global table
+     * @property misses          lookups that created a new info
+     * @property contendedMisses front cache misses that had to wait for the lock of their stripe
+     */
+    data class Statistics(val frontHits: Long, val tableHits: Long, val misses: Long, val contendedMisses: Long) {
+        val lookups: Long
+            get() = frontHits + tableHits + misses
+
+        val frontHitRate: Double
+            get() = if (lookups == 0L) 0.0 else frontHits.toDouble() / lookups
+
+        override fun toString(): String {
+            return String.format("%,d lookups, %.1f%% front cache hits, %,d table hits, %,d misses, %,d contended",
+                                 lookups,
+                                 frontHitRate * 100,
+                                 tableHits,
+                                 misses,
+                                 contendedMisses)
+        }
+    }
+
+    /**
+     * Key of the global table, with the same equality as [ObjectInfo]
+     */
+    private data class Key(var thread: String = "", var siteId: Int = 0, var typeId: Int = 0, var arrayLength: Int = 0, var eventTypeId: Int = 0) {
+        fun set(thread: String, siteId: Int, typeId: Int, arrayLength: Int, eventTypeId: Int): Key {
+            this.thread = thread
+            this.siteId = siteId
+            this.typeId = typeId
+            this.arrayLength = arrayLength
+            this.eventTypeId = eventTypeId
+            return this
+        }
+    }
+
+    /**
+     * Direct-mapped cache that is only accessed by a single thread, an entry is replaced by any other info mapping to the same slot
+     */
+    private class FrontCache(val generation: Int) {
+        private val threads = arrayOfNulls<String>(FRONT_CACHE_SIZE)
+        // allocation site id, type id, array length and event type id per slot
+        private val keys = IntArray(FRONT_CACHE_SIZE * 4)
+        private val infos = arrayOfNulls<ObjectInfo>(FRONT_CACHE_SIZE)
+        // reused to query the global table
+        val probe = Key()
+
+        var hits = 0L
+        var tableHits = 0L
+        var misses = 0L
+        var contended = 0L
+
+        fun slot(thread: String, siteId: Int, typeId: Int, arrayLength: Int, eventTypeId: Int): Int {
+            var hash = thread.hashCode()
+            hash = 31 * hash + siteId
+            hash = 31 * hash + typeId
+            hash = 31 * hash + arrayLength
+            hash = 31 * hash + eventTypeId
+            hash = hash xor (hash ushr 16)
+            return hash and (FRONT_CACHE_SIZE - 1)
+        }
+
+        fun get(slot: Int, thread: String, siteId: Int, typeId: Int, arrayLength: Int, eventTypeId: Int): ObjectInfo? {
+            val info = infos[slot] ?: return null
+            val key = slot * 4
+            if (keys[key] != siteId || keys[key + 1] != typeId || keys[key + 2] != arrayLength || keys[key + 3] != eventTypeId) {
+                return null
+            }
+            val cachedThread = threads[slot]
+            return if (cachedThread === thread || cachedThread == thread) info else null
+        }
+
+        fun put(slot: Int, thread: String, siteId: Int, typeId: Int, arrayLength: Int, eventTypeId: Int, info: ObjectInfo) {
+            val key = slot * 4
+            keys[key] = siteId
+            keys[key + 1] = typeId
+            keys[key + 2] = arrayLength
+            keys[key + 3] = eventTypeId
+            threads[slot] = thread
+            infos[slot] = info
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package at.jku.anttracks.heap.roots
 
 import at.jku.anttracks.heap.DetailedHeap
+import at.jku.anttracks.heap.IndexBasedHeap
 import at.jku.anttracks.heap.symbols.AllocatedType
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler
 
@@ -47,6 +48,16 @@ class ClassRoot(addr: Long, val classId: Int) : RootPtr(addr) {
         }
     }
 
+    @Throws(Exception::class)
+    override fun resolve(heap: IndexBasedHeap) {
+        klass = heap.symbols.types.getById(classId)
+        if (klass == null) {
+            //            throw new Exception("Could not resolve Class root: " + toString());
+        } else {
+            resolved = true
+        }
+    }
+
     override fun toClassificationString(includePackages: Boolean): Array<String> {
         return arrayOf("Root: Class", "Class: " + if (klass != null) klass!!.getExternalName(true, false) else "???")
     }
@@ -1,6 +1,7 @@
 package at.jku.anttracks.heap.roots
 
 import at.jku.anttracks.heap.DetailedHeap
+import at.jku.anttracks.heap.IndexBasedHeap
 import at.jku.anttracks.heap.symbols.AllocatedType
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler
 import java.nio.ByteBuffer
@@ -52,6 +53,17 @@ class CodeBlobRoot(addr: Long, val classId: Int, val methodId: Int) : RootPtr(ad
         //throw new Exception("Could not resolve code blob root: " + toString());
     }
 
+    @Throws(Exception::class)
+    override fun resolve(heap: IndexBasedHeap) {
+        klass = heap.symbols.types.getById(classId)
+        if (klass != null) {
+            method = Arrays.stream<AllocatedType.MethodInfo>(klass!!.methodInfos).filter { methodInfo -> methodInfo.idnum == methodId }.findFirst().orElse(null)
+            resolved = true
+        }
+
+        //throw new Exception("Could not resolve code blob root: " + toString());
+    }
+
     override fun toClassificationString(includePackages: Boolean): Array<String> {
         return arrayOf("Root: Code blob", "Class: " + if (klass != null) klass!!.getExternalName(false, false) else "???", "Method: " + if (method != null) method!!.name else "???")
     }
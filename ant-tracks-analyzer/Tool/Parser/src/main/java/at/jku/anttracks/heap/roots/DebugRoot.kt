@@ -1,6 +1,7 @@
 package at.jku.anttracks.heap.roots
 
 import at.jku.anttracks.heap.DetailedHeap
+import at.jku.anttracks.heap.IndexBasedHeap
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler
 
 import java.nio.ByteBuffer
@@ -45,6 +46,11 @@ class DebugRoot(addr: Long, val vmCall: String?) : RootPtr(addr) {
         resolved = true
     }
 
+    @Throws(Exception::class)
+    override fun resolve(heap: IndexBasedHeap) {
+        resolved = true
+    }
+
     override fun toClassificationString(includePackages: Boolean): Array<String> {
         return arrayOf("Referenced by debug root(s)", "With VM call: " + (vmCall ?: "null"))
     }
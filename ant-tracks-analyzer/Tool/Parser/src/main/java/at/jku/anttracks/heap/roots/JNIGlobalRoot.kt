@@ -1,6 +1,7 @@
 package at.jku.anttracks.heap.roots
 
 import at.jku.anttracks.heap.DetailedHeap
+import at.jku.anttracks.heap.IndexBasedHeap
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler
 
 import java.nio.ByteBuffer
@@ -35,6 +36,11 @@ class JNIGlobalRoot(addr: Long, val weak: Boolean) : RootPtr(addr) {
         resolved = true
     }
 
+    @Throws(Exception::class)
+    override fun resolve(heap: IndexBasedHeap) {
+        resolved = true
+    }
+
     override fun toClassificationString(includePackages: Boolean): Array<String> {
         return arrayOf("Referenced by JNI global(s)")
     }
@@ -1,6 +1,7 @@
 package at.jku.anttracks.heap.roots
 
 import at.jku.anttracks.heap.DetailedHeap
+import at.jku.anttracks.heap.IndexBasedHeap
 import at.jku.anttracks.parser.heap.ThreadInfo
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler
 
@@ -45,6 +46,16 @@ class JNILocalRoot(addr: Long, val threadId: Long) : RootPtr(addr) {
         }
     }
 
+    @Throws(Exception::class)
+    override fun resolve(heap: IndexBasedHeap) {
+        thread = heap.threadsById[threadId]
+        if (thread == null) {
+            //            throw new Exception("Could not resolve JNI local root: " + toString());
+        } else {
+            resolved = true
+        }
+    }
+
     override fun toClassificationString(includePackages: Boolean): Array<String> {
         return arrayOf("Referenced by JNI local(s)", "In thread: " + if (thread != null) thread!!.threadName else "???")
     }
@@ -1,6 +1,7 @@
 package at.jku.anttracks.heap.roots
 
 import at.jku.anttracks.heap.DetailedHeap
+import at.jku.anttracks.heap.IndexBasedHeap
 import at.jku.anttracks.heap.symbols.AllocatedType
 import at.jku.anttracks.parser.heap.ThreadInfo
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler
@@ -109,6 +110,31 @@ class LocalVariableRoot(addr: Long, val threadId: Long, val classId: Int, val me
         //throw new Exception("Could not resolve method local root: " + toString());
     }
 
+    @Throws(Exception::class)
+    override fun resolve(heap: IndexBasedHeap) {
+        if (addr != -1L) {
+            val idx = heap.toIndex(addr)
+            if (idx != IndexBasedHeap.NULL_INDEX) {
+                localType = heap.getType(idx)
+            }
+        }
+        thread = heap.threadsById[threadId]
+        if (thread != null) {
+            klass = heap.symbols.types.getById(classId)
+            if (klass != null && klass!!.methodInfos != null) {
+                method = Arrays.stream<AllocatedType.MethodInfo>(klass!!.methodInfos).filter { mi -> mi.idnum == this.methodId }.findFirst().orElse(null)
+                if (method != null) {
+                    localName = method!!.locals[slot]
+                    // it's fine if slot can't be resolved (data only available for user defined methods)
+                    resolved = true
+                    return
+                }
+            }
+        }
+
+        //throw new Exception("Could not resolve method local root: " + toString());
+    }
+
     override fun toClassificationString(includePackages: Boolean): Array<String?> {
         return toClassificationString(includePackages, false)
     }
@@ -1,6 +1,7 @@
 package at.jku.anttracks.heap.roots
 
 import at.jku.anttracks.heap.DetailedHeap
+import at.jku.anttracks.heap.IndexBasedHeap
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler
 
 import java.nio.ByteBuffer
@@ -35,6 +36,11 @@ class OtherRoot(addr: Long, private val rootType: RootPtr.RootType) : RootPtr(ad
         resolved = true
     }
 
+    @Throws(Exception::class)
+    override fun resolve(heap: IndexBasedHeap) {
+        resolved = true
+    }
+
     override fun toClassificationString(includePackages: Boolean): Array<String> {
         return arrayOf("Root: " + toString())
     }
@@ -1,6 +1,7 @@
 package at.jku.anttracks.heap.roots;
 
 import at.jku.anttracks.heap.DetailedHeap;
+import at.jku.anttracks.heap.IndexBasedHeap;
 import at.jku.anttracks.parser.EventType;
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler;
 
@@ -163,6 +164,8 @@ public abstract class RootPtr {
 
     public abstract void resolve(DetailedHeap heap) throws Exception;
 
+    public abstract void resolve(IndexBasedHeap heap) throws Exception;
+
     public abstract String[] toClassificationString(boolean includePackages);
 
     public abstract boolean equals(Object other);
@@ -1,6 +1,7 @@
 package at.jku.anttracks.heap.roots
 
 import at.jku.anttracks.heap.DetailedHeap
+import at.jku.anttracks.heap.IndexBasedHeap
 import at.jku.anttracks.heap.symbols.AllocatedType
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler
 import java.nio.ByteBuffer
@@ -74,6 +75,22 @@ class StaticFieldRoot(addr: Long, val classId: Int, val offset: Int) : RootPtr(a
         //throw new Exception("Could not resolve static root: " + toString());
     }
 
+    @Throws(Exception::class)
+    override fun resolve(heap: IndexBasedHeap) {
+        klass = heap.symbols.types.getById(classId)
+        if (klass != null) {
+            val field = Arrays.stream<AllocatedType.FieldInfo>(klass!!.fieldInfos).filter { f -> f.offset == this.offset }.findFirst().orElse(null)
+            if (field != null) {
+                type = heap.symbols.types.getById(field.getTypeId())
+                name = field.name
+                resolved = true
+                return
+            }
+        }
+
+        //throw new Exception("Could not resolve static root: " + toString());
+    }
+
     override fun toClassificationString(includePackages: Boolean): Array<String> {
         return arrayOf("Referenced by static field(s)",
                        "In class: " + clazz(),
@@ -1,6 +1,7 @@
 package at.jku.anttracks.heap.roots
 
 import at.jku.anttracks.heap.DetailedHeap
+import at.jku.anttracks.heap.IndexBasedHeap
 import at.jku.anttracks.parser.heap.ThreadInfo
 import at.jku.anttracks.parser.hprof.handler.HprofToFastHeapHandler
 
@@ -47,6 +48,16 @@ class VMInternalThreadDataRoot(addr: Long, val threadId: Long) : RootPtr(addr) {
         }
     }
 
+    @Throws(Exception::class)
+    override fun resolve(heap: IndexBasedHeap) {
+        thread = heap.threadsById[threadId]
+        if (thread == null) {
+            //            throw new Exception("Could not resolve Thread root: " + toString());
+        } else {
+            resolved = true
+        }
+    }
+
     override fun toClassificationString(includePackages: Boolean): Array<String> {
         return arrayOf("Root: VM internal thread data", "Thread: " + if (thread != null) thread!!.threadName else "???")
     }
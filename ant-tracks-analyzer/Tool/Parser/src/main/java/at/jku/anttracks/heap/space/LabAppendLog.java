@@ -0,0 +1,66 @@
+package at.jku.anttracks.heap.space;
+
+import at.jku.anttracks.heap.DetailedHeap;
+import at.jku.anttracks.heap.labs.Lab;
+import at.jku.anttracks.util.TraceException;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Remembers the LABs that objects have been appended to since the last flush, together with each LAB's object count before the first append.
+ * Appending an object thus only touches thread-local state, the appended objects are added to the object counts of their space (see
+ * {@link Space#countAppended(Lab, int)}) when the log is flushed.
+ * <p>
+ * {@link #flush(DetailedHeap)} must only be called while no other thread appends, i.e., at sync points.
+ */
+public class LabAppendLog {
+    private final ConcurrentLinkedQueue<Appends> allAppends = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Appends> appends = ThreadLocal.withInitial(() -> {
+        Appends local = new Appends();
+        allAppends.add(local);
+        return local;
+    });
+
+    /**
+     * Has to be called before an object is appended to the given LAB
+     */
+    public void beforeAppend(Lab lab) {
+        Appends local = appends.get();
+        if (local.last != lab) {
+            local.last = lab;
+            local.from.putIfAbsent(lab, lab.getObjectCount());
+        }
+    }
+
+    public void flush(DetailedHeap heap) throws TraceException {
+        // the same LAB may have been appended to by several threads (e.g., if a thread's buffers have been parsed by different threads)
+        Reference2IntOpenHashMap<Lab> from = new Reference2IntOpenHashMap<>();
+        for (Appends local : allAppends) {
+            for (Reference2IntMap.Entry<Lab> entry : local.from.reference2IntEntrySet()) {
+                int localFrom = entry.getIntValue();
+                if (!from.containsKey(entry.getKey()) || localFrom < from.getInt(entry.getKey())) {
+                    from.put(entry.getKey(), localFrom);
+                }
+            }
+            local.from.clear();
+            local.last = null;
+        }
+
+        for (Reference2IntMap.Entry<Lab> entry : from.reference2IntEntrySet()) {
+            Lab lab = entry.getKey();
+            if (lab.getObjectCount() > entry.getIntValue()) {
+                Space space = heap.getSpace(lab.addr);
+                if (space != null) {
+                    space.countAppended(lab, entry.getIntValue());
+                }
+            }
+        }
+    }
+
+    private static class Appends {
+        private Lab last;
+        private final Reference2IntOpenHashMap<Lab> from = new Reference2IntOpenHashMap<>();
+    }
+}
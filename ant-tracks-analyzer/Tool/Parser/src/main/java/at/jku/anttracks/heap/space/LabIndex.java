@@ -0,0 +1,319 @@
+package at.jku.anttracks.heap.space;
+
+import at.jku.anttracks.heap.labs.Lab;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Maps the start addresses of the LABs of a {@link SpaceImpl} to the LABs, as sorted primitive arrays.
+ * <p>
+ * LABs are mostly created in ascending address order (TLABs and PLABs are carved off the top of a space), so an insertion usually appends
+ * to the arrays. Other insertions shift the tail, and LABs that are inserted in bulk during a GC are merged in a single pass (see
+ * {@link #merge(Lab[], boolean)}). Lookups binary search the addresses without boxing and without taking a lock: they read optimistically
+ * and only retry under the read lock if a writer has interfered.
+ */
+public class LabIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int EXACT = 0;
+    private static final int FLOOR = 1;
+    private static final int LOWER = 2;
+    private static final int HIGHER = 3;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] addrs;
+    private Lab[] labs;
+    private int size;
+
+    public LabIndex() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private LabIndex(int capacity) {
+        addrs = new long[capacity];
+        labs = new Lab[capacity];
+    }
+
+    // --------------------------------------------------------
+    // ------------------------ Lookup ------------------------
+    // --------------------------------------------------------
+
+    /**
+     * @return the LAB that starts at the given address, or null
+     */
+    public Lab get(long addr) {
+        return read(addr, EXACT);
+    }
+
+    /**
+     * @return the LAB with the greatest start address less than or equal to the given address, or null
+     */
+    public Lab floor(long addr) {
+        return read(addr, FLOOR);
+    }
+
+    /**
+     * @return the LAB with the greatest start address strictly less than the given address, or null
+     */
+    public Lab lower(long addr) {
+        return read(addr, LOWER);
+    }
+
+    /**
+     * @return the LAB with the least start address strictly greater than the given address, or null
+     */
+    public Lab higher(long addr) {
+        return read(addr, HIGHER);
+    }
+
+    /**
+     * @return the LAB with the greatest start address, or null
+     */
+    public Lab last() {
+        long stamp = lock.tryOptimisticRead();
+        Lab[] labs = this.labs;
+        int size = Math.min(this.size, labs.length);
+        Lab last = size > 0 ? labs[size - 1] : null;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                last = this.size > 0 ? this.labs[this.size - 1] : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return last;
+    }
+
+    private Lab read(long addr, int mode) {
+        long stamp = lock.tryOptimisticRead();
+        Lab lab = find(addrs, labs, size, addr, mode);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                lab = find(addrs, labs, size, addr, mode);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return lab;
+    }
+
+    private static Lab find(long[] addrs, Lab[] labs, int size, long addr, int mode) {
+        // arrays and size may be inconsistent if read optimistically, the result is discarded then
+        size = Math.min(size, Math.min(addrs.length, labs.length));
+        int index = Arrays.binarySearch(addrs, 0, size, addr);
+        switch (mode) {
+            case EXACT:
+                break;
+            case FLOOR:
+                index = index >= 0 ? index : -(index + 1) - 1;
+                break;
+            case LOWER:
+                index = index >= 0 ? index - 1 : -(index + 1) - 1;
+                break;
+            case HIGHER:
+                index = index >= 0 ? index + 1 : -(index + 1);
+                break;
+            default:
+                throw new IllegalArgumentException();
+        }
+        return index >= 0 && index < size ? labs[index] : null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the LABs sorted by address, later modifications of the index are not reflected
+     */
+    public Lab[] toArray() {
+        long stamp = lock.readLock();
+        try {
+            return Arrays.copyOf(labs, size);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the LABs sorted by address, later modifications of the index are not reflected
+     */
+    public List<Lab> values() {
+        return Collections.unmodifiableList(Arrays.asList(toArray()));
+    }
+
+    // --------------------------------------------------------
+    // ------------------------ Update ------------------------
+    // --------------------------------------------------------
+
+    /**
+     * Adds a LAB, replacing the LAB at the same address.
+     *
+     * @return the replaced LAB, or null
+     */
+    public Lab put(Lab lab) {
+        long stamp = lock.writeLock();
+        try {
+            if (size == 0 || lab.addr > addrs[size - 1]) {
+                ensureCapacity(size + 1);
+                addrs[size] = lab.addr;
+                labs[size] = lab;
+                size++;
+                return null;
+            }
+            int index = Arrays.binarySearch(addrs, 0, size, lab.addr);
+            if (index >= 0) {
+                Lab replaced = labs[index];
+                labs[index] = lab;
+                return replaced;
+            }
+            index = -(index + 1);
+            ensureCapacity(size + 1);
+            System.arraycopy(addrs, index, addrs, index + 1, size - index);
+            System.arraycopy(labs, index, labs, index + 1, size - index);
+            addrs[index] = lab.addr;
+            labs[index] = lab;
+            size++;
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds LABs sorted by address in a single pass over the index.
+     *
+     * @param sorted       LABs sorted by address, without duplicates
+     * @param keepNonEmpty whether a LAB in the index with a capacity greater than 0 is kept if a given LAB has the same address
+     * @return the LABs that have not been added because of {@code keepNonEmpty}
+     */
+    public List<Lab> merge(Lab[] sorted, boolean keepNonEmpty) {
+        if (sorted.length == 0) {
+            return Collections.emptyList();
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (size == 0 || sorted[0].addr > addrs[size - 1]) {
+                // append
+                ensureCapacity(size + sorted.length);
+                for (Lab lab : sorted) {
+                    addrs[size] = lab.addr;
+                    labs[size] = lab;
+                    size++;
+                }
+                return Collections.emptyList();
+            }
+
+            List<Lab> rejected = null;
+            long[] mergedAddrs = new long[Math.max(INITIAL_CAPACITY, size + sorted.length)];
+            Lab[] mergedLabs = new Lab[mergedAddrs.length];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < sorted.length) {
+                if (j == sorted.length || (i < size && addrs[i] < sorted[j].addr)) {
+                    mergedAddrs[n] = addrs[i];
+                    mergedLabs[n++] = labs[i++];
+                } else if (i == size || sorted[j].addr < addrs[i]) {
+                    mergedAddrs[n] = sorted[j].addr;
+                    mergedLabs[n++] = sorted[j++];
+                } else {
+                    // same address
+                    if (keepNonEmpty && labs[i].capacity() > 0) {
+                        if (rejected == null) {
+                            rejected = new ArrayList<>();
+                        }
+                        rejected.add(sorted[j]);
+                        mergedLabs[n] = labs[i];
+                    } else {
+                        mergedLabs[n] = sorted[j];
+                    }
+                    mergedAddrs[n++] = addrs[i];
+                    i++;
+                    j++;
+                }
+            }
+            addrs = mergedAddrs;
+            labs = mergedLabs;
+            size = n;
+            return rejected != null ? rejected : Collections.emptyList();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the removed LAB, or null if no LAB starts at the given address
+     */
+    public Lab remove(long addr) {
+        long stamp = lock.writeLock();
+        try {
+            int index = Arrays.binarySearch(addrs, 0, size, addr);
+            if (index < 0) {
+                return null;
+            }
+            Lab removed = labs[index];
+            System.arraycopy(addrs, index + 1, addrs, index, size - index - 1);
+            System.arraycopy(labs, index + 1, labs, index, size - index - 1);
+            size--;
+            labs[size] = null;
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            if (labs.length > INITIAL_CAPACITY) {
+                // spaces are cleared after every GC, do not keep the arrays of the largest generation alive
+                addrs = new long[INITIAL_CAPACITY];
+                labs = new Lab[INITIAL_CAPACITY];
+            } else {
+                Arrays.fill(labs, 0, size, null);
+            }
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param cloner applied to every LAB
+     * @return a new index that contains the results of the cloner
+     */
+    public LabIndex clone(UnaryOperator<Lab> cloner) {
+        long stamp = lock.readLock();
+        try {
+            LabIndex clone = new LabIndex(Math.max(INITIAL_CAPACITY, size));
+            System.arraycopy(addrs, 0, clone.addrs, 0, size);
+            for (int i = 0; i < size; i++) {
+                clone.labs[i] = cloner.apply(labs[i]);
+            }
+            clone.size = size;
+            return clone;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > addrs.length) {
+            int newCapacity = Math.max(capacity, addrs.length + (addrs.length >> 1));
+            addrs = Arrays.copyOf(addrs, newCapacity);
+            labs = Arrays.copyOf(labs, newCapacity);
+        }
+    }
+}
@@ -8,9 +8,9 @@ import at.jku.anttracks.heap.ObjectStream;
 import at.jku.anttracks.heap.ObjectVisitor;
 import at.jku.anttracks.heap.labs.AddressHO;
 import at.jku.anttracks.heap.labs.Lab;
-import at.jku.anttracks.heap.labs.MultiObjectLab;
 import at.jku.anttracks.heap.labs.SingleObjectLab;
 import at.jku.anttracks.heap.objects.ObjectInfo;
+import at.jku.anttracks.heap.statistics.SpaceStatistics;
 import at.jku.anttracks.parser.heap.pointer.PtrUpdateVisitor;
 import at.jku.anttracks.util.CollectionsUtil;
 import at.jku.anttracks.util.TraceException;
@@ -34,6 +34,8 @@ public class Space implements FrontBackObjectAccess {
     private SpaceImpl front;
     private SpaceImpl back;
     private final Map<Long, Lab> pendingForeignFillers;
+    // objects appended to LABs that are already part of this space are counted when the log is flushed, or immediately if there is no log
+    private LabAppendLog appendLog;
 
     public Space(String name) {
         this(name, new SpaceImpl());
@@ -68,9 +70,9 @@ public class Space implements FrontBackObjectAccess {
             switch (info.getTransitionType()) {
                 case None:
                 case ReplaceAll:
-                    return CollectionsUtil.toArray(Lab.class, front.get().values());
+                    return CollectionsUtil.toArray(Lab.class, front.get());
                 case Accumulative:
-                    return CollectionsUtil.concat(Lab.class, back.get().values(), front.get().values());
+                    return CollectionsUtil.concat(Lab.class, back.get(), front.get());
                 default:
                     assert false;
                     return null;
@@ -79,7 +81,7 @@ public class Space implements FrontBackObjectAccess {
             switch (info.getTransitionType()) {
                 case ReplaceAll:
                 case Accumulative:
-                    return CollectionsUtil.toArray(Lab.class, back.get().values());
+                    return CollectionsUtil.toArray(Lab.class, back.get());
                 case None:
                     // TODO
                     throw new IllegalStateException("Cannot iterate last heap state while no GC is running! TODO: This currently occurs for G1 GC if new spaces " +
@@ -237,16 +239,16 @@ public class Space implements FrontBackObjectAccess {
             commitTransition();
         }
         assert info.getTransitionType() == None;
-        assert back.get().isEmpty() : info.name;
+        assert back.isEmpty() : info.name;
         info.setTransitionType(newTransition);
         swap();
-        assert front.get().isEmpty() : info.name;
+        assert front.isEmpty() : info.name;
     }
 
     public void startTransition(SpaceInfo.TransitionType newTransition, long address) throws TraceException {
         assert newTransition == SpaceInfo.TransitionType.ReplaceAll;
         startTransition(newTransition);
-        for (Lab lab : back.get().values()) {
+        for (Lab lab : back.get()) {
             if (lab.bottom() < address) {
                 if (lab.end() < address) {
                     front.put(lab, false);
@@ -263,14 +265,14 @@ public class Space implements FrontBackObjectAccess {
             case None:
                 throw new TraceException("No transition in progress!");
             case Accumulative:
-                back.putAll(front.get(), false);
+                back.putAll(front, false);
                 swap();
             case ReplaceAll:
                 back.clear();
                 break;
         }
         info.setTransitionType(None);
-        assert back.get().isEmpty() : info.name;
+        assert back.isEmpty() : info.name;
     }
 
     /**
@@ -281,7 +283,7 @@ public class Space implements FrontBackObjectAccess {
      */
     public void commitTransition(long address) throws TraceException {
         assert info.getTransitionType() == SpaceInfo.TransitionType.ReplaceAll;
-        for (Lab lab : back.get().values()) {
+        for (Lab lab : back.get()) {
             if (address <= lab.bottom()) {
                 front.put(lab, false);
             } else if (address < lab.end()) {
@@ -299,13 +301,13 @@ public class Space implements FrontBackObjectAccess {
             case ReplaceAll:
             case Accumulative:
                 pendingForeignFillers.clear();
-                back.putAll(front.get(), true);
+                back.putAll(front, true);
                 front.clear();
                 swap();
                 break;
         }
         info.setTransitionType(SpaceInfo.TransitionType.None);
-        assert back.get().isEmpty() : info.name;
+        assert back.isEmpty() : info.name;
     }
 
     private void swap() {
@@ -363,9 +365,8 @@ public class Space implements FrontBackObjectAccess {
             state = back;
         }
 
-        if (state.get().size() > 0) {
-            Collection<Lab> labs = state.get().values();
-            labs.stream().forEach(l -> l.iterateUpdatePointer(iterator, this));
+        for (Lab lab : state.get()) {
+            lab.iterateUpdatePointer(iterator, this);
         }
     }
 
@@ -442,7 +443,7 @@ public class Space implements FrontBackObjectAccess {
 
     public long assign(String thread, boolean isPotentialFiller, AddressHO obj, long addr) throws TraceException {
         if (isPotentialFiller) {
-            Lab lab = new SingleObjectLab(thread, Lab.Kind.VIRTUAL, addr, obj);
+            Lab lab = Lab.create(thread, Lab.Kind.VIRTUAL, addr, obj);
             pendingForeignFillers.put(addr, lab);
         } else {
             Lab lab = tryToFindAdjustingLab(thread, addr);
@@ -457,19 +458,24 @@ public class Space implements FrontBackObjectAccess {
     }
 
     public long assignIntoAdjacentLab(Lab lab, String thread, long addr, AddressHO obj) throws TraceException {
-        MultiObjectLab mLab;
+        Lab mLab;
         if (lab instanceof SingleObjectLab) {
             mLab = ((SingleObjectLab) lab).toMultiObjectLab();
         } else {
-            mLab = (MultiObjectLab) lab;
+            // multi-object and columnar LABs can grow
+            mLab = lab;
         }
         mLab.variableCapacity();
+        int objectCount = mLab == lab ? beforeAppend(lab) : 0;
         long assignedAddress = mLab.tryAllocate(addr, obj);
         assert assignedAddress == addr : "Object could not be allocated in adjusting LAB";
         mLab.resetCapacity();
 
         if (mLab != lab) {
+            // the new LAB is counted as a whole when it replaces the old one
             exchangeLabs(lab, mLab);
+        } else {
+            afterAppend(lab, objectCount);
         }
 
         return assignedAddress;
@@ -507,14 +513,14 @@ public class Space implements FrontBackObjectAccess {
 	*/
 
     public Lab assignRealLab(String thread, Lab.Kind kind, long addr, long size) throws TraceException {
-        Lab realLab = new MultiObjectLab(thread, kind, addr, (int) size);
+        Lab realLab = Lab.create(thread, kind, addr, (int) size);
 
         assignLab(realLab);
         return realLab;
     }
 
     public Lab assignVirtualLab(String thread, Lab.Kind kind, long addr, AddressHO obj) throws TraceException {
-        Lab virtualLab = new SingleObjectLab(thread, kind, addr, obj);
+        Lab virtualLab = Lab.create(thread, kind, addr, obj);
 
         assignLab(virtualLab);
         return virtualLab;
@@ -534,6 +540,13 @@ public class Space implements FrontBackObjectAccess {
         front.put(lab, false);
     }
 
+    /**
+     * Assigns all given LABs at once, which is much faster than assigning them one by one
+     */
+    public void assignLabs(Collection<Lab> labs) throws TraceException {
+        front.putAll(labs, false);
+    }
+
     public void insertFillers(List<Lab> labs) throws TraceException {
         for (Lab lab : labs) {
             if (!lab.isFull()) {
@@ -559,14 +572,69 @@ public class Space implements FrontBackObjectAccess {
                 // check then?
                 if (filler != null && missingFillerSize <= filler.capacity()) {
                     AddressHO fillerObject = filler.getObject(filler.addr);
+                    int objectCount = beforeAppend(lab);
                     long addr = lab.tryAllocate(filler.addr, fillerObject);
                     assert addr != Lab.OBJECT_NOT_ASSIGNED;
+                    afterAppend(lab, objectCount);
                     pendingForeignFillers.remove(missingFillerAddr);
                 }
             }
         }
     }
 
+    public void setAppendLog(LabAppendLog appendLog) {
+        this.appendLog = appendLog;
+    }
+
+    private int beforeAppend(Lab lab) {
+        if (appendLog != null) {
+            appendLog.beforeAppend(lab);
+        }
+        return lab.getObjectCount();
+    }
+
+    private void afterAppend(Lab lab, int objectCount) throws TraceException {
+        if (appendLog == null) {
+            countAppended(lab, objectCount);
+        }
+    }
+
+    /**
+     * Counts the objects that have been appended to one of this space's LABs, i.e., the objects from index {@code from} on.
+     * LABs that are not part of this space are counted as a whole once they are assigned.
+     */
+    public void countAppended(Lab lab, int from) throws TraceException {
+        boolean inFront = front.containsLab(lab);
+        boolean inBack = back.containsLab(lab);
+        if (inFront && inBack) {
+            // conserved during an interrupted GC, we cannot tell which state the objects belong to
+            front.invalidateCounts();
+            back.invalidateCounts();
+        } else if (inFront) {
+            front.countAppended(lab, from);
+        } else if (inBack) {
+            back.countAppended(lab, from);
+        }
+    }
+
+    /**
+     * Adds the statistics of the objects that an iteration over the current state of this space would visit, without visiting them
+     */
+    @SuppressWarnings("fallthrough")
+    public void addStatistics(SpaceStatistics statistics) throws TraceException {
+        if (getMode() == null && getType() == null) {
+            return;
+        }
+
+        switch (info.getTransitionType()) {
+            case Accumulative:
+                back.addStatistics(statistics);
+            case None:
+            case ReplaceAll:
+                front.addStatistics(statistics);
+        }
+    }
+
     private void errorOnLabNotFound(Lab lab, long fromAddr) throws TraceException {
         if (lab == null) {
             throw new TraceException(String.format("No lab found for obj on GC Move. Addr = %,d\n" + "Transition: %s\n" + "Type: %s",
@@ -604,7 +672,7 @@ public class Space implements FrontBackObjectAccess {
         /*
         StringBuilder string = new StringBuilder();
         string.append(toShortString());
-        for (Lab lab : front.get().values()) {
+        for (Lab lab : front.get()) {
             string.append(lab);
         }
         return string.toString();
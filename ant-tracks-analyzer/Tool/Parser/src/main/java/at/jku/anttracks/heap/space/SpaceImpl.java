@@ -6,49 +6,62 @@ import at.jku.anttracks.heap.DetailedHeap;
 import at.jku.anttracks.heap.ObjectStream;
 import at.jku.anttracks.heap.ObjectVisitor;
 import at.jku.anttracks.heap.labs.Lab;
+import at.jku.anttracks.heap.statistics.ObjectInfoCounts;
+import at.jku.anttracks.heap.statistics.SpaceStatistics;
 import at.jku.anttracks.util.Consts;
 import at.jku.anttracks.util.TraceException;
 
 import java.util.*;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 public class SpaceImpl {
-    private final ConcurrentSkipListMap<Long, Lab> labs;
+    private final LabIndex labs;
     private final boolean maintainConsistency;
+    // objects per info in this space's LABs, follows all changes of the LABs except objects appended to LABs that are already in this space,
+    // which have to be reported by countAppended(Lab, int)
+    private final ObjectInfoCounts counts;
 
     public SpaceImpl() {
         this(true);
     }
 
     public SpaceImpl(boolean maintainConsistency) {
-        this(maintainConsistency, new ConcurrentSkipListMap<>());
+        this(maintainConsistency, new LabIndex(), new ObjectInfoCounts());
     }
 
-    public SpaceImpl(boolean maintainConsistency, ConcurrentSkipListMap<Long, Lab> labs) {
+    private SpaceImpl(boolean maintainConsistency, LabIndex labs, ObjectInfoCounts counts) {
         this.labs = labs;
         this.maintainConsistency = maintainConsistency;
+        this.counts = counts;
     }
 
     public long getFill() {
-        Lab last = labs.values().stream().reduce((l1, l2) -> l1.addr > l2.addr ? l1 : l2).orElse(null);
+        Lab last = labs.last();
         if (last == null) {
             return -1;
         }
         return last.addr + last.capacity();
     }
 
-    public Map<Long, Lab> get() {
-        return labs;
+    /**
+     * @return the LABs sorted by address, later modifications of this space are not reflected
+     */
+    public List<Lab> get() {
+        return labs.values();
+    }
+
+    public boolean isEmpty() {
+        return labs.isEmpty();
     }
 
     public void removeEmptyLabs() {
-        List<Long> removeLabAdresses = new ArrayList<>();
-        labs.forEach((labAddr, lab) -> {if (!lab.contains(labAddr)) { removeLabAdresses.add(labAddr); }});
-        removeLabAdresses.forEach(labAddr -> labs.remove(labAddr));
+        for (Lab lab : labs.toArray()) {
+            if (!lab.contains(lab.addr)) {
+                labs.remove(lab.addr);
+            }
+        }
     }
 
 
@@ -61,7 +74,7 @@ public class SpaceImpl {
                         List<ObjectStream.IterationListener> labListeners) {
         if (threadPool != null) {
             int threadN = Consts.getAVAILABLE_PROCESSORS();
-            Lab[] labs = this.labs.values().toArray(new Lab[0]);
+            Lab[] labs = this.labs.toArray();
             for (int i = 0; i < threadN; i++) {
                 int threadNr = i;
                 threadPool.execute(() -> {
@@ -76,7 +89,7 @@ public class SpaceImpl {
                 });
             }
         } else {
-            for (Lab lab : labs.values()) {
+            for (Lab lab : labs.toArray()) {
                 lab.iterate(heap, space, filter, visitor, visitorSettings);
                 if (labListeners != null) {
                     labListeners.forEach(l -> l.objectsIterated(lab.getObjectCount()));
@@ -93,7 +106,7 @@ public class SpaceImpl {
                                                                   ExecutorService threadPool,
                                                                   List<ObjectStream.IterationListener> listener) {
         int threadN = Consts.getAVAILABLE_PROCESSORS() * 2;
-        Lab[] labs = this.labs.values().toArray(new Lab[0]);
+        Lab[] labs = this.labs.toArray();
         List<Future<I>> futures = new ArrayList<>();
         for (int i = 0; i < threadN; i++) {
             int threadNr = i;
@@ -114,34 +127,45 @@ public class SpaceImpl {
 
     public void clear() {
         labs.clear();
+        counts.clear();
     }
 
     public Lab remove(long addr) {
-        return labs.remove(addr);
+        Lab removed = labs.remove(addr);
+        if (removed != null && removed.getObjectCount() > 0) {
+            try {
+                counts.remove(removed);
+            } catch (TraceException e) {
+                counts.markDirty();
+            }
+        }
+        return removed;
     }
 
     public void put(Lab lab, boolean allowReplace) throws TraceException {
         if (allowReplace) {
             synchronized (labs) { //double checked locking, do not modify or you will burn in hell!
-                Entry<Long, Lab> prev = labs.floorEntry(lab.addr);
-                if (prev != null && prev.getValue().end() > lab.addr) {
-                    labs.remove(prev.getValue().addr);
-                    Lab head = prev.getValue().sublab(prev.getValue().addr, lab.addr);
-                    Lab tail = prev.getValue().sublab(lab.end(), prev.getValue().end());
+                Lab prev = labs.floor(lab.addr);
+                if (prev != null && prev.end() > lab.addr) {
+                    // parts of the previous LAB are dropped
+                    counts.markDirty();
+                    labs.remove(prev.addr);
+                    Lab head = prev.sublab(prev.addr, lab.addr);
+                    Lab tail = prev.sublab(lab.end(), prev.end());
                     if (head != null) {
-                        labs.put(head.addr, head);
+                        labs.put(head);
                     }
                     if (tail != null) {
-                        labs.put(tail.addr, tail);
+                        labs.put(tail);
                     }
                 }
             }
         }
-        Lab replaced = labs.put(lab.addr, lab);
+        Lab replaced = labs.put(lab);
         if (maintainConsistency) {
             // do this checks afterwards because this method is not thread-safe
             if (replaced != null && replaced.capacity() > 0) {
-                labs.put(replaced.addr, replaced);
+                labs.put(replaced);
                 throw new TraceException(String.format("Lab @ %,d - %,d replaced another Lab %,d - %,d at the same address",
                                                        lab.addr,
                                                        lab.addr + lab.capacity(),
@@ -149,9 +173,8 @@ public class SpaceImpl {
                                                        replaced.addr + replaced.capacity()));
             }
 
-            Entry<Long, Lab> prev = labs.lowerEntry(lab.addr);
-            if (prev != null) {
-                Lab prevLab = prev.getValue();
+            Lab prevLab = labs.lower(lab.addr);
+            if (prevLab != null) {
                 if (prevLab.addr + prevLab.capacity() > lab.addr) {
                     labs.remove(lab.addr);
                     throw new TraceException(String.format("Lab @ [%,d - %,d] (%,d) collides with previous Lab @ [%,d - %,d] (%,d)\n" + "Prev lab current_position " +
@@ -166,30 +189,115 @@ public class SpaceImpl {
                 }
             }
 
-            Entry<Long, Lab> next = labs.higherEntry(lab.addr);
-            if (next != null) {
-                Lab nextLab = next.getValue();
+            Lab nextLab = labs.higher(lab.addr);
+            if (nextLab != null) {
                 if (lab.addr + lab.capacity() > nextLab.addr) {
                     labs.remove(lab.addr);
                     throw new TraceException(String.format("Lab @ %,d collides with next lab", lab.addr));
                 }
             }
         }
+
+        if (replaced != lab) {
+            if (replaced != null && replaced.getObjectCount() > 0) {
+                counts.remove(replaced);
+            }
+            if (lab.getObjectCount() > 0) {
+                counts.add(lab, 0);
+            }
+        }
     }
 
     public boolean containsExact(long addr) {
-        return labs.containsKey(addr);
+        return labs.get(addr) != null;
+    }
+
+    public boolean containsLab(Lab lab) {
+        return labs.get(lab.addr) == lab;
     }
 
-    public void putAll(Map<Long, Lab> labs, boolean allowReplace) throws TraceException {
-        for (Lab lab : labs.values()) {
-            put(lab, allowReplace);
+    /**
+     * Counts the objects that have been appended to a LAB of this space, i.e., the objects from index {@code from} on
+     */
+    public void countAppended(Lab lab, int from) throws TraceException {
+        counts.add(lab, from);
+    }
+
+    /**
+     * Forces a recount of this space's objects, used if a change of the LABs could not be tracked
+     */
+    public void invalidateCounts() {
+        counts.markDirty();
+    }
+
+    /**
+     * Adds the statistics of all objects in this space without visiting them (unless the counts have been invalidated)
+     */
+    public void addStatistics(SpaceStatistics statistics) throws TraceException {
+        if (counts.isDirty()) {
+            counts.recount(labs.values());
+        }
+        counts.addTo(statistics);
+    }
+
+    public void putAll(Collection<Lab> labs, boolean allowReplace) throws TraceException {
+        if (allowReplace) {
+            for (Lab lab : labs) {
+                put(lab, true);
+            }
+        } else {
+            putAllSorted(labs.toArray(new Lab[0]));
+            for (Lab lab : labs) {
+                counts.add(lab, 0);
+            }
+        }
+    }
+
+    public void putAll(SpaceImpl space, boolean allowReplace) throws TraceException {
+        if (allowReplace) {
+            putAll(space.get(), true);
+        } else {
+            // already sorted
+            putAllSorted(space.labs.toArray());
+            counts.addAll(space.counts);
+        }
+    }
+
+    // bulk insertion at the end of a GC, merges all LABs into the index at once and checks them afterwards
+    private void putAllSorted(Lab[] sorted) throws TraceException {
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i - 1].addr >= sorted[i].addr) {
+                Arrays.sort(sorted);
+                break;
+            }
+        }
+        List<Lab> rejected = labs.merge(sorted, maintainConsistency);
+        if (maintainConsistency) {
+            if (!rejected.isEmpty()) {
+                Lab lab = rejected.get(0);
+                Lab replaced = labs.get(lab.addr);
+                throw new TraceException(String.format("Lab @ %,d - %,d replaced another Lab %,d - %,d at the same address",
+                                                       lab.addr,
+                                                       lab.addr + lab.capacity(),
+                                                       replaced.addr,
+                                                       replaced.addr + replaced.capacity()));
+            }
+            for (Lab lab : sorted) {
+                Lab prevLab = labs.lower(lab.addr);
+                Lab nextLab = labs.higher(lab.addr);
+                if ((prevLab != null && prevLab.addr + prevLab.capacity() > lab.addr) || (nextLab != null && lab.addr + lab.capacity() > nextLab.addr)) {
+                    labs.remove(lab.addr);
+                    throw new TraceException(String.format("Lab @ [%,d - %,d] (%,d) collides with a neighbouring Lab", lab.addr, lab.addr + lab.capacity(), lab.capacity()));
+                }
+            }
         }
     }
 
     public Lab findLab(long addr) throws TraceException {
-        Entry<Long, Lab> mapping = labs.floorEntry(addr);
-        Lab lab = mapping != null ? (addr <= mapping.getValue().end() ? mapping.getValue() : null) : null;
+        Lab lab = labs.floor(addr);
+        if (lab != null && addr > lab.end()) {
+            lab = null;
+        }
         if (lab == null) {
             throw new TraceException(String.format("Could not find lab at %,d", addr));
         }
@@ -197,8 +305,7 @@ public class SpaceImpl {
     }
 
     public Lab findNearestLab(long addr) {
-        Entry<Long, Lab> mapping = labs.floorEntry(addr);
-        return mapping != null ? mapping.getValue() : null;
+        return labs.floor(addr);
     }
 
     public void overwriteWith(Map<Long, Lab> fillers) throws TraceException {
@@ -210,13 +317,11 @@ public class SpaceImpl {
     }
 
     public boolean overwriteWith(Lab filler) throws TraceException {
-        Entry<Long, Lab> mapping_start = labs.floorEntry(filler.bottom());
-        Entry<Long, Lab> mapping_end = labs.floorEntry(filler.end());
-        if (mapping_start == null || mapping_end == null) {
+        Lab lab_start = labs.floor(filler.bottom());
+        Lab lab_end = labs.floor(filler.end());
+        if (lab_start == null || lab_end == null) {
             return false;
         }
-        Lab lab_start = mapping_start.getValue();
-        Lab lab_end = mapping_end.getValue();
         if (!lab_start.isFull() || !lab_end.isFull()) {
             return false;
         }
@@ -239,7 +344,7 @@ public class SpaceImpl {
     }
 
     public void fillWith(Map<Long, Lab> fillers) throws TraceException {
-        putAll(fillers, true);
+        putAll(fillers.values(), true);
         fillers.clear();
     }
 
@@ -247,12 +352,12 @@ public class SpaceImpl {
         for (; ; ) {
             Lab lab = labs.get(addr);
             if (lab == null) {
-                Long nextAddr = labs.higherKey(addr);
-                if (nextAddr == null) {
+                Lab next = labs.higher(addr);
+                if (next == null) {
                     break;
                 } else {
                     if (allowFragmentation) {
-                        addr = nextAddr;
+                        addr = next.addr;
                         continue;
                     } else {
                         throw new TraceException(String.format("Heap not consecutive: Lab missing @ %,d", addr));
@@ -267,7 +372,7 @@ public class SpaceImpl {
             } else {
                 addr = addr + lab.capacity();
             }
-            if (addr > lab.addr && lab.addr != labs.lowerKey(addr)) {
+            if (addr > lab.addr && lab != labs.lower(addr)) {
                 throw new TraceException(String.format("Heap not consecutive: Labs overlapping @ %,d - %,d", lab.addr, addr));
             }
         }
@@ -277,9 +382,7 @@ public class SpaceImpl {
     public String toString() {
         StringBuilder str = new StringBuilder();
         str.append("Space @ \n");
-        Collection<Lab> l = labs.values();
-
-        for (Lab lab : new TreeSet<>(l)) {
+        for (Lab lab : labs.toArray()) {
             str.append(String.format("LAB @ %,d - %,d (%,d)\n", lab.addr, lab.addr + lab.capacity(), lab.capacity()));
         }
         return str.toString();
@@ -287,13 +390,13 @@ public class SpaceImpl {
 
     @Override
     public SpaceImpl clone() {
-        ConcurrentSkipListMap<Long, Lab> clonedLabs = new ConcurrentSkipListMap<>();
-        labs.entrySet().forEach(entry -> clonedLabs.put(entry.getKey(), entry.getValue().clone()));
-        return new SpaceImpl(maintainConsistency, clonedLabs);
+        return new SpaceImpl(maintainConsistency, labs.clone(Lab::clone), counts.copy());
     }
 
     public void reduceSize() {
-        labs.values().forEach(lab -> lab.reduceSize());
+        for (Lab lab : labs.toArray()) {
+            lab.reduceSize();
+        }
     }
 
     public int getLabCount() {
@@ -0,0 +1,102 @@
+package at.jku.anttracks.heap.statistics;
+
+import at.jku.anttracks.heap.labs.Lab;
+import at.jku.anttracks.heap.objects.ObjectInfo;
+import at.jku.anttracks.util.TraceException;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+
+import java.util.Collection;
+
+/**
+ * The number of objects per {@link ObjectInfo} in a set of LABs.
+ * All values collected in {@link SpaceStatistics} only depend on an object's info, thus the statistics of the LABs can be calculated from these
+ * counts in time proportional to the number of distinct infos instead of the number of objects.
+ * <p>
+ * If a change of the LABs cannot be tracked exactly (e.g., when overlapping LABs are replaced), the counts are marked dirty and get recounted
+ * from the LABs the next time they are needed.
+ */
+public class ObjectInfoCounts {
+    private final Object2LongOpenHashMap<ObjectInfo> counts;
+    private boolean dirty;
+
+    public ObjectInfoCounts() {
+        this(new Object2LongOpenHashMap<>());
+    }
+
+    private ObjectInfoCounts(Object2LongOpenHashMap<ObjectInfo> counts) {
+        this.counts = counts;
+    }
+
+    public synchronized void add(ObjectInfo info, long objects) {
+        if (counts.addTo(info, objects) + objects == 0) {
+            counts.removeLong(info);
+        }
+    }
+
+    /**
+     * Adds the objects of the given LAB starting at object index {@code from}
+     */
+    public synchronized void add(Lab lab, int from) throws TraceException {
+        int to = lab.getObjectCount();
+        for (int i = from; i < to; i++) {
+            add(lab.getObjectAtIndex(i).getInfo(), 1);
+        }
+    }
+
+    public synchronized void remove(Lab lab) throws TraceException {
+        for (int i = 0; i < lab.getObjectCount(); i++) {
+            add(lab.getObjectAtIndex(i).getInfo(), -1);
+        }
+    }
+
+    public void addAll(ObjectInfoCounts other) {
+        if (other == this) {
+            return;
+        }
+        synchronized (other) {
+            synchronized (this) {
+                for (Object2LongMap.Entry<ObjectInfo> entry : other.counts.object2LongEntrySet()) {
+                    add(entry.getKey(), entry.getLongValue());
+                }
+                dirty |= other.dirty;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        counts.clear();
+        dirty = false;
+    }
+
+    public synchronized void markDirty() {
+        dirty = true;
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Replaces the counts by the objects in the given LABs
+     */
+    public synchronized void recount(Collection<Lab> labs) throws TraceException {
+        counts.clear();
+        dirty = false;
+        for (Lab lab : labs) {
+            add(lab, 0);
+        }
+    }
+
+    public synchronized void addTo(SpaceStatistics statistics) {
+        for (Object2LongMap.Entry<ObjectInfo> entry : counts.object2LongEntrySet()) {
+            statistics.add(entry.getKey(), entry.getLongValue());
+        }
+    }
+
+    public synchronized ObjectInfoCounts copy() {
+        ObjectInfoCounts copy = new ObjectInfoCounts(counts.clone());
+        copy.dirty = dirty;
+        return copy;
+    }
+}
@@ -0,0 +1,200 @@
+package at.jku.anttracks.heap.statistics;
+
+import at.jku.anttracks.heap.DetailedHeap;
+import at.jku.anttracks.heap.labs.AddressHO;
+import at.jku.anttracks.heap.space.Space;
+import at.jku.anttracks.heap.space.SpaceType;
+import at.jku.anttracks.parser.TraceSlaveParser;
+import at.jku.anttracks.util.TraceException;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+
+import java.util.logging.Logger;
+
+/**
+ * Calculates the number of bytes reachable from the heap's roots directly on the {@link DetailedHeap}, i.e., without building an
+ * {@link at.jku.anttracks.heap.IndexBasedHeap}.
+ * <p>
+ * A full mark traverses everything reachable from the roots. After a minor GC, which neither collects nor moves old objects, the old
+ * objects marked before are assumed to be still reachable (as the GC itself does), so only the young objects have to be traversed again:
+ * starting from the roots and from the remembered set, i.e., the marked old objects that point into young spaces or whose pointers have
+ * been updated during the GC (see {@link #pointersUpdated(long)}). Old objects that became unreachable are thus only dropped by the next
+ * full mark, which is done after a major GC, after every {@link #FULL_MARK_INTERVAL} incremental marks, or whenever the state cannot be
+ * continued (e.g., after a failed GC or if an old space has been collected).
+ */
+public class ReachableBytesTracker {
+    private static final Logger LOGGER = Logger.getLogger(ReachableBytesTracker.class.getSimpleName());
+
+    public static int FULL_MARK_INTERVAL = 16;
+
+    // old objects that have been found reachable, their addresses do not change until the next full mark
+    private final LongOpenHashSet reachableOld = new LongOpenHashSet();
+    private long reachableOldBytes;
+    // reachable old objects that point into young spaces
+    private LongOpenHashSet rememberedSet = new LongOpenHashSet();
+    // objects whose pointers have been updated since the last mark (only recorded if the state can be continued)
+    private final LongSet updated = LongSets.synchronize(new LongOpenHashSet());
+
+    private volatile boolean valid;
+    private int incrementalMarks;
+
+    /**
+     * @return whether the next {@link #mark(DetailedHeap, boolean)} can continue the previous one
+     */
+    public boolean canMarkIncrementally() {
+        return valid;
+    }
+
+    /**
+     * @return whether the next mark should be a full mark to drop old objects that became unreachable
+     */
+    public boolean isFullMarkDue() {
+        return !valid || incrementalMarks >= FULL_MARK_INTERVAL;
+    }
+
+    /**
+     * Forces the next mark to be a full mark, has to be called whenever old objects may have been moved or freed
+     */
+    public void invalidate() {
+        valid = false;
+        updated.clear();
+    }
+
+    /**
+     * Has to be called for objects whose pointers have been set without moving the objects (e.g., dirty old objects during a minor GC)
+     */
+    public void pointersUpdated(long addr) {
+        if (valid) {
+            updated.add(addr);
+        }
+    }
+
+    /**
+     * Calculates the reachable bytes of the current heap, the heap must not be in a GC.
+     *
+     * @param full whether to do a full mark, an incremental mark is only done if {@link #canMarkIncrementally()}, regardless of
+     *             {@link #isFullMarkDue()}
+     * @return the number of reachable bytes
+     */
+    public long mark(DetailedHeap heap, boolean full) {
+        Marker marker;
+        if (full || !valid) {
+            reachableOld.clear();
+            reachableOldBytes = 0;
+            rememberedSet = new LongOpenHashSet();
+            updated.clear();
+            incrementalMarks = 0;
+            marker = new Marker(heap, new LongOpenHashSet());
+        } else {
+            LongOpenHashSet sources = rememberedSet;
+            synchronized (updated) {
+                for (LongIterator it = updated.iterator(); it.hasNext(); ) {
+                    long addr = it.nextLong();
+                    if (reachableOld.contains(addr)) {
+                        sources.add(addr);
+                    }
+                }
+                updated.clear();
+            }
+            rememberedSet = new LongOpenHashSet(sources.size());
+            incrementalMarks++;
+            marker = new Marker(heap, sources);
+        }
+        // stays invalid if the mark fails
+        valid = false;
+
+        for (LongIterator it = heap.rootPtrs.keySet().iterator(); it.hasNext(); ) {
+            marker.reach(it.nextLong());
+        }
+        for (LongIterator it = marker.sources.iterator(); it.hasNext(); ) {
+            marker.scan(it.nextLong());
+        }
+        marker.drain();
+
+        valid = true;
+        LOGGER.fine(() -> String.format("%s mark: %,d young objects, %,d old objects, %,d remembered",
+                                        incrementalMarks == 0 ? "full" : "incremental",
+                                        marker.young.size(),
+                                        reachableOld.size(),
+                                        rememberedSet.size()));
+        return reachableOldBytes + marker.youngBytes;
+    }
+
+    private static boolean isYoung(Space space) {
+        return space.getType() == SpaceType.EDEN || space.getType() == SpaceType.SURVIVOR;
+    }
+
+    private class Marker {
+        private final DetailedHeap heap;
+        private final LongOpenHashSet sources;
+        private final LongOpenHashSet young = new LongOpenHashSet();
+        private final LongArrayList stack = new LongArrayList();
+        private long youngBytes;
+
+        private Marker(DetailedHeap heap, LongOpenHashSet sources) {
+            this.heap = heap;
+            this.sources = sources;
+        }
+
+        private void reach(long addr) {
+            if (addr < 0) {
+                return;
+            }
+            Space space = heap.getSpace(addr);
+            if (space == null) {
+                return;
+            }
+            boolean isNew = isYoung(space) ? young.add(addr) : reachableOld.add(addr);
+            if (isNew) {
+                stack.push(addr);
+            }
+        }
+
+        private void scan(long addr) {
+            Space space = heap.getSpace(addr);
+            AddressHO obj;
+            try {
+                obj = space.getObject(addr);
+            } catch (TraceException e) {
+                obj = null;
+            }
+            if (obj == null) {
+                // e.g., roots whose objects have died, another object may be allocated at this address later on
+                if (!isYoung(space)) {
+                    reachableOld.remove(addr);
+                }
+                return;
+            }
+            boolean young = isYoung(space);
+            if (young) {
+                youngBytes += obj.getSize();
+            } else if (!sources.contains(addr)) {
+                reachableOldBytes += obj.getSize();
+            }
+
+            boolean pointsToYoung = false;
+            for (int i = 0; i < obj.getPointerCount(); i++) {
+                long ptr = obj.getPointer(i);
+                if (ptr != TraceSlaveParser.NULL_PTR && ptr >= 0) {
+                    if (!young && !pointsToYoung) {
+                        Space ptrSpace = heap.getSpace(ptr);
+                        pointsToYoung = ptrSpace != null && isYoung(ptrSpace);
+                    }
+                    reach(ptr);
+                }
+            }
+            if (pointsToYoung) {
+                rememberedSet.add(addr);
+            }
+        }
+
+        private void drain() {
+            while (!stack.isEmpty()) {
+                scan(stack.popLong());
+            }
+        }
+    }
+}
@@ -44,52 +44,60 @@ public class SpaceStatistics {
     }
 
     public void add(ObjectInfo obj) {
+        add(obj, 1);
+    }
+
+    /**
+     * Adds {@code count} objects that all share the given info
+     */
+    public void add(ObjectInfo obj, long count) {
         switch (obj.eventType) {
             case OBJ_ALLOC_FAST_C1:
             case OBJ_ALLOC_FAST_C1_DEVIANT_TYPE:
             case OBJ_ALLOC_NORMAL_C1:
             case OBJ_ALLOC_SLOW_C1:
             case OBJ_ALLOC_SLOW_C1_DEVIANT_TYPE:
-                allocators.incrementC1();
+                allocators.addC1(count);
                 break;
             case OBJ_ALLOC_FAST_C2:
             case OBJ_ALLOC_FAST_C2_DEVIANT_TYPE:
             case OBJ_ALLOC_NORMAL_C2:
             case OBJ_ALLOC_SLOW_C2:
             case OBJ_ALLOC_SLOW_C2_DEVIANT_TYPE:
-                allocators.incrementC2();
+                allocators.addC2(count);
                 break;
             case OBJ_ALLOC_FAST_IR:
             case OBJ_ALLOC_NORMAL_IR:
             case OBJ_ALLOC_SLOW_IR:
             case OBJ_ALLOC_SLOW_IR_DEVIANT_TYPE:
-                allocators.incrementIr();
+                allocators.addIr(count);
                 break;
             case OBJ_ALLOC_SLOW:
-                allocators.incrementVm();
+                allocators.addVm(count);
                 break;
             default:
                 break;
         }
 
+        long bytes = count * obj.size;
         if (obj.isArray) {
             if (obj.isSmallArray()) {
-                objectTypes.incrementSmallArrays(obj.size);
+                objectTypes.addSmallArrays(count, bytes);
             } else {
-                objectTypes.incrementBigArrays(obj.size);
+                objectTypes.addBigArrays(count, bytes);
             }
         } else {
-            objectTypes.incrementInstances(obj.size);
+            objectTypes.addInstances(count, bytes);
         }
 
-        memoryConsumption.incrementObjects();
-        memoryConsumption.addBytes(obj.size);
+        memoryConsumption.addObjects(count);
+        memoryConsumption.addBytes(bytes);
 
         if (featureCache != null) {
             int[] objFeatures = featureCache.match(obj);
             for (int id : objFeatures) {
-                featureConsumptions[id].addObjects(1);
-                featureConsumptions[id].addBytes(obj.size);
+                featureConsumptions[id].addObjects(count);
+                featureConsumptions[id].addBytes(bytes);
             }
         }
     }
@@ -21,6 +21,9 @@ class Statistics(val info: StatisticGCInfo, val eden: SpaceStatistics, val survi
         private val LOGGER = Logger.getLogger(Statistics::class.java.simpleName)
         const val REACHABLE_MEMORY_CALCULATION_OVERHEAD_THRESHOLD = 2.0
 
+        // read the object counts that the spaces maintain while parsing instead of iterating all objects at every GC
+        var INCREMENTAL = true
+
         fun collect(heap: DetailedHeap,
                     parserGCInfo: ParserGCInfo,
                     failed: Boolean,
@@ -57,17 +60,34 @@ class Statistics(val info: StatisticGCInfo, val eden: SpaceStatistics, val survi
 
             //val m = ApplicationStatistics.getInstance().createMeasurement("Collect statistics")
 
-            // we calculate the amount of reachable memory as often as possible while never letting the calculation exceed 10% of the total parse time
+            // incremental marks (after minor GCs) only traverse the young objects and are done at every GC end,
+            // full marks are done as often as possible while never letting the calculation exceed the overhead threshold
             var reachableBytes: Long? = null
             LOGGER.log(Level.INFO, "Reachable memory calculation runtime overhead: ${(parsingInfo.reachableMemoryCalculationOverhead * 100).roundToInt()}%")
-            if (statisticsGCInfo.meta == EventType.GC_END && parsingInfo.reachableMemoryCalculationOverhead <= REACHABLE_MEMORY_CALCULATION_OVERHEAD_THRESHOLD) {
-                parsingInfo.reachableMemoryCalculationDuration += measureTimeMillis { reachableBytes = heap.toIndexBasedHeap(false, null).reachableFromRootByteCount }
+            val tracker = heap.reachableBytesTracker
+            val fullMarkAllowed = parsingInfo.reachableMemoryCalculationOverhead <= REACHABLE_MEMORY_CALCULATION_OVERHEAD_THRESHOLD
+            if (statisticsGCInfo.meta == EventType.GC_END && (tracker.canMarkIncrementally() || fullMarkAllowed)) {
+                parsingInfo.reachableMemoryCalculationDuration += measureTimeMillis { reachableBytes = tracker.mark(heap, tracker.isFullMarkDue && fullMarkAllowed) }
             }
             statisticsGCInfo.reachableBytes = reachableBytes
 
             val eden = SpaceStatistics(heap.symbols)
             val survivor = SpaceStatistics(heap.symbols)
             val old = SpaceStatistics(heap.symbols)
+            if (INCREMENTAL) {
+                heap.countAppendedObjects()
+                heap.spacesUncloned.filterNotNull().forEach { space ->
+                    when (space.type) {
+                        SpaceType.EDEN -> eden
+                        SpaceType.SURVIVOR -> survivor
+                        SpaceType.OLD -> old
+                        SpaceType.UNDEFINED -> null
+                        null -> null
+                    }?.let { space.addStatistics(it) }
+                }
+                return Statistics(statisticsGCInfo, eden, survivor, old)
+            }
+
             heap.toObjectStream().forEachParallel(object : ObjectStream.ThreadVisitorGenerator<ThreadLocalStatisticsVisitor> {
                 override fun generate(): ThreadLocalStatisticsVisitor {
                     return ThreadLocalStatisticsVisitor()
@@ -0,0 +1,232 @@
+package at.jku.anttracks.parser;
+
+import at.jku.anttracks.parser.io.InputStreamScanner;
+import at.jku.anttracks.util.Consts;
+import at.jku.anttracks.util.ParallelizationUtil;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Position, thread and meta-data word of every buffer in a set of trace files, such that buffers can be fetched without reading the trace
+ * in sequence (see TraceParser#dispatchIndexed). Entries are grouped per trace file and sorted by position.
+ * <p>
+ * The index is built by a pass that only reads the buffer headers and skips the payloads, trace files are indexed in parallel. It is
+ * persisted in the meta-data directory next to the heap index (see {@link at.jku.anttracks.heap.io.BufferIndexWriter}).
+ */
+public class BufferIndex {
+    // version of the persisted format, an index of another version is rebuilt
+    public static final int VERSION = 2;
+
+    private static final Logger LOGGER = Logger.getLogger(BufferIndex.class.getSimpleName());
+
+    private static final int COMPRESSED_MASK = 1 << (Integer.SIZE - 1);
+    private static final int SYNC_LOCATION = Integer.SIZE - 3;
+    private static final int SYNC_MASK = 3 << SYNC_LOCATION;
+    private static final int LENGTH_MASK = ~(COMPRESSED_MASK | SYNC_MASK);
+
+    // per file
+    private final long[] fileStarts;
+    private final long[] fileLengths;
+    private final long[] fileModified;
+    private final int[] fileFirstEntries;
+
+    // per buffer, positions are global positions of the payload (i.e., behind thread and meta-data word)
+    private final long[] positions;
+    private final long[] threads;
+    private final int[] metadata;
+
+    public BufferIndex(long[] fileStarts,
+                       long[] fileLengths,
+                       long[] fileModified,
+                       int[] fileFirstEntries,
+                       long[] positions,
+                       long[] threads,
+                       int[] metadata) {
+        assert fileStarts.length == fileLengths.length && fileStarts.length == fileModified.length;
+        assert fileFirstEntries.length == fileStarts.length + 1;
+        assert positions.length == threads.length && positions.length == metadata.length;
+        this.fileStarts = fileStarts;
+        this.fileLengths = fileLengths;
+        this.fileModified = fileModified;
+        this.fileFirstEntries = fileFirstEntries;
+        this.positions = positions;
+        this.threads = threads;
+        this.metadata = metadata;
+    }
+
+    public int getFileCount() {
+        return fileStarts.length;
+    }
+
+    public long getFileStart(int file) {
+        return fileStarts[file];
+    }
+
+    public long getFileLength(int file) {
+        return fileLengths[file];
+    }
+
+    /**
+     * @return the modification time of the given file when it has been indexed, or 0 if unknown
+     */
+    public long getFileModified(int file) {
+        return fileModified[file];
+    }
+
+    /**
+     * @return the index of the first entry of the given file, the entries of file {@code f} are {@code [getFirstEntry(f), getFirstEntry(f + 1))}
+     */
+    public int getFirstEntry(int file) {
+        return fileFirstEntries[file];
+    }
+
+    public int size() {
+        return positions.length;
+    }
+
+    /**
+     * @return the file that contains the given global position, or -1
+     */
+    public int getFile(long globalPosition) {
+        for (int file = 0; file < fileStarts.length; file++) {
+            if (globalPosition >= fileStarts[file] && globalPosition < fileStarts[file] + fileLengths[file]) {
+                return file;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the first entry of the given file whose header starts at or after the given global position
+     */
+    public int getFirstEntryAtOrAfter(int file, long globalPosition) {
+        int entry = Arrays.binarySearch(positions, fileFirstEntries[file], fileFirstEntries[file + 1], globalPosition + Scanner.META_BUFFER_INFO);
+        return entry >= 0 ? entry : -(entry + 1);
+    }
+
+    public long getPosition(int entry) {
+        return positions[entry];
+    }
+
+    public String getThread(int entry) {
+        // same representation as Scanner.getThread
+        return "0x" + Long.toHexString(threads[entry]);
+    }
+
+    public long getThreadId(int entry) {
+        return threads[entry];
+    }
+
+    public int getMetadata(int entry) {
+        return metadata[entry];
+    }
+
+    public int getLength(int entry) {
+        return metadata[entry] & LENGTH_MASK;
+    }
+
+    public boolean isCompressed(int entry) {
+        return (metadata[entry] & COMPRESSED_MASK) != 0;
+    }
+
+    public SyncLevel getSync(int entry) {
+        return SyncLevel.parse((metadata[entry] & SYNC_MASK) >>> SYNC_LOCATION);
+    }
+
+    /**
+     * @return whether this index has been built for the given trace files (i.e., they have not been modified or replaced since). A file
+     * that has been rewritten with the same length is detected by its modification time.
+     */
+    public boolean matches(TraceFile.Access[] files) {
+        if (files.length != fileLengths.length) {
+            return false;
+        }
+        for (int file = 0; file < files.length; file++) {
+            if (files[file].length() != fileLengths[file] || files[file].lastModified() != fileModified[file]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static BufferIndex build(TraceFile.Access[] files) throws IOException {
+        long time = System.currentTimeMillis();
+        long[] fileStarts = new long[files.length];
+        long[] fileLengths = new long[files.length];
+        long[] fileModified = new long[files.length];
+        for (int file = 0; file < files.length; file++) {
+            fileStarts[file] = file == 0 ? 0 : fileStarts[file - 1] + fileLengths[file - 1];
+            fileLengths[file] = files[file].length();
+            fileModified[file] = files[file].lastModified();
+        }
+
+        LongArrayList[] positions = new LongArrayList[files.length];
+        LongArrayList[] threads = new LongArrayList[files.length];
+        IntArrayList[] metadata = new IntArrayList[files.length];
+        IOException[] errors = new IOException[files.length];
+        ParallelizationUtil.temporaryExecutorServiceBlocking((threadId, threadCount) -> {
+            for (int file = threadId; file < files.length; file += threadCount) {
+                positions[file] = new LongArrayList();
+                threads[file] = new LongArrayList();
+                metadata[file] = new IntArrayList();
+                try {
+                    indexFile(files[file], fileStarts[file], positions[file], threads[file], metadata[file]);
+                } catch (IOException e) {
+                    errors[file] = e;
+                }
+            }
+        }, Math.max(1, Math.min(files.length, Consts.getAVAILABLE_PROCESSORS())));
+
+        int[] fileFirstEntries = new int[files.length + 1];
+        for (int file = 0; file < files.length; file++) {
+            if (errors[file] != null) {
+                throw errors[file];
+            }
+            fileFirstEntries[file + 1] = fileFirstEntries[file] + positions[file].size();
+        }
+        int size = fileFirstEntries[files.length];
+        long[] allPositions = new long[size];
+        long[] allThreads = new long[size];
+        int[] allMetadata = new int[size];
+        for (int file = 0; file < files.length; file++) {
+            positions[file].getElements(0, allPositions, fileFirstEntries[file], positions[file].size());
+            threads[file].getElements(0, allThreads, fileFirstEntries[file], threads[file].size());
+            metadata[file].getElements(0, allMetadata, fileFirstEntries[file], metadata[file].size());
+        }
+
+        LOGGER.log(Level.INFO, "indexed {0} buffers in {1} trace files in {2}s", new Object[]{size, files.length, (System.currentTimeMillis() - time) / 1000.0});
+        return new BufferIndex(fileStarts, fileLengths, fileModified, fileFirstEntries, allPositions, allThreads, allMetadata);
+    }
+
+    private static void indexFile(TraceFile.Access file, long fileStart, LongArrayList positions, LongArrayList threads, IntArrayList metadata)
+            throws IOException {
+        try (Scanner scanner = new InputStreamScanner(fileStart, file.open(), 0, file.length())) {
+            TraceFile.readTraceFileInfo(new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    return (scanner.getByte()) & 0xFF;
+                }
+            });
+            while (scanner.isAvailable(Long.BYTES + Integer.BYTES)) {
+                long thread = scanner.getLong();
+                int word = scanner.getWord();
+                long position = scanner.getGlobalPosition();
+                try {
+                    scanner.skip(word & LENGTH_MASK);
+                } catch (IOException e) {
+                    // trace has been cut off in the middle of this buffer, the parser stops here as well
+                    break;
+                }
+                positions.add(position);
+                threads.add(thread);
+                metadata.add(word);
+            }
+        }
+    }
+}
@@ -1,14 +1,18 @@
 
 package at.jku.anttracks.parser;
 
-import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
-
+import java.nio.ByteOrder;
+
+/**
+ * LZW decoder for compressed trace buffers.
+ * <p>
+ * The dictionary is kept in preallocated tables indexed by code (every custom entry is its prefix code plus one suffix byte), and the
+ * result is written into a direct buffer that is reused across calls. Thus, decoding a buffer does not allocate once the output buffer
+ * has grown to the largest uncompressed buffer size. A decompressor must not be shared between threads, every
+ * {@link TraceSlaveParser} owns its own instance.
+ */
 public class Decompressor {
 
     private static final boolean BITWISE_COMPRESSION = true;
@@ -16,97 +20,120 @@ public class Decompressor {
     private static final int INDEX_MASK = ((1 << (INDEX_MAX_WIDTH * 8)) - 1);
     private static final int FIRST_CUSTOM_INDEX = 1 << 8;
     private static final int MAX_INDEX = (((~0) & INDEX_MASK) >> INDEX_MAX_WIDTH);
+    private static final int INITIAL_OUTPUT_CAPACITY = 1 << 16;
 
     private final int limit;
 
+    // code -> code of the sequence without its last byte
+    private final int[] prefix = new int[MAX_INDEX + 1];
+    // code -> last byte of the sequence
+    private final byte[] suffix = new byte[MAX_INDEX + 1];
+    // code -> first byte of the sequence
+    private final byte[] first = new byte[MAX_INDEX + 1];
+    // code -> length of the sequence
+    private final int[] length = new int[MAX_INDEX + 1];
+    // scratch space to reverse a sequence while walking its prefix chain
+    private final byte[] sequence = new byte[MAX_INDEX + 2];
+
+    private final IntReader reader = BITWISE_COMPRESSION ? new BitwiseVarIntReader() : new VarIntReader();
+    private ByteBuffer output;
+
     public Decompressor() {
         this(Integer.MAX_VALUE);
     }
 
     public Decompressor(int limit) {
         this.limit = limit;
+        for (int code = 0; code < FIRST_CUSTOM_INDEX; code++) {
+            prefix[code] = -1;
+            suffix[code] = (byte) code;
+            first[code] = (byte) code;
+            length[code] = 1;
+        }
+        output = ByteBuffer.allocateDirect(INITIAL_OUTPUT_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
     }
 
+    /**
+     * Decodes the remaining content of the given buffer.
+     *
+     * @param buffer the compressed data
+     * @return a little-endian buffer holding the uncompressed data. The buffer is owned by this decompressor and is overwritten by the next
+     * call to this method.
+     * @throws IOException if the compressed data refers to a code that cannot be resolved
+     */
     public ByteBuffer decode(ByteBuffer buffer) throws IOException {
-        ByteBufferInputStream compressed = new ByteBufferInputStream(buffer);
-        ByteBufferOutputStream uncompressed = new ByteBufferOutputStream();
-        decode(compressed, uncompressed);
-        return uncompressed.consume();
-    }
-
-    private void decode(ByteBufferInputStream src, ByteBufferOutputStream dest) throws IOException {
-        final Map<Integer, byte[]> dictionary = new HashMap<>();
+        output.clear();
+        reader.reset(buffer);
         int nextIndex = FIRST_CUSTOM_INDEX;
-
-        IntReader reader = BITWISE_COMPRESSION ? new BitwiseVarIntReader(src) : new VarIntReader(src);
-        byte[] last = new byte[0];
-        for (int index = reader.next(); index >= 0 && dest.size() < limit; index = reader.next()) {
-            byte[] current;
-            boolean mergeLastWithCurrent = false;
-            if (index < FIRST_CUSTOM_INDEX) {
-                current = new byte[]{(byte) (index & 0xFF)};
+        int last = -1;
+        for (int index = reader.next(); index >= 0 && output.position() < limit; index = reader.next()) {
+            int current;
+            if (index < nextIndex && index <= MAX_INDEX) {
+                current = index;
+                if (last >= 0 && nextIndex <= MAX_INDEX) {
+                    register(nextIndex++, last, first[current]);
+                }
             } else {
-                current = dictionary.get(index);
-                if (current != null) {
-                    assert current.length >= 2;
-                } else {
-                    current = new byte[]{last[0]};
-                    dest.write(last);
-                    mergeLastWithCurrent = true;
+                // the code is the one that is just being defined, i.e., the last sequence followed by its own first byte
+                if (last < 0 || nextIndex > MAX_INDEX) {
+                    throw new IOException("Invalid code " + index + " (next code " + nextIndex + ")");
                 }
+                current = nextIndex++;
+                register(current, last, first[last]);
             }
-            dest.write(current);
-            nextIndex = registerIndex(dictionary, last, current, nextIndex);
-            if (mergeLastWithCurrent) {
-                current = concat(last, current);
-            }
+            write(current);
             last = current;
         }
-        reader.close();
+        output.flip();
+        return output;
     }
 
-    private int registerIndex(Map<Integer, byte[]> dictionary, byte[] last, byte[] current, int nextIndex) {
-        if (last.length != 0 && nextIndex <= MAX_INDEX) {
-            byte[] sequence = concat(last, new byte[]{current[0]});
-            dictionary.put(nextIndex, sequence);
-            return nextIndex + 1;
-        } else {
-            return nextIndex;
-        }
+    private void register(int index, int prefixIndex, byte suffixByte) {
+        prefix[index] = prefixIndex;
+        suffix[index] = suffixByte;
+        first[index] = first[prefixIndex];
+        length[index] = length[prefixIndex] + 1;
     }
 
-    private static byte[] concat(byte[] a1, byte[] a2) {
-        byte[] result = new byte[a1.length + a2.length];
-        int i = 0;
-        for (int j = 0; j < a1.length; j++) {
-            result[i++] = a1[j];
+    private void write(int code) {
+        int len = length[code];
+        if (output.remaining() < len) {
+            grow(len);
         }
-        for (int j = 0; j < a2.length; j++) {
-            result[i++] = a2[j];
+        for (int i = len - 1; i >= 0; i--) {
+            sequence[i] = suffix[code];
+            code = prefix[code];
         }
-        return result;
+        output.put(sequence, 0, len);
     }
 
-    private static abstract class IntReader implements Closeable {
-        public abstract int next() throws IOException;
-
-        public abstract void close() throws IOException;
+    private void grow(int minRemaining) {
+        int capacity = output.capacity();
+        while (capacity - output.position() < minRemaining) {
+            capacity *= 2;
+        }
+        output.flip();
+        output = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN).put(output);
     }
 
-    private static class VarIntReader extends IntReader {
-
-        private final InputStream in;
+    private static abstract class IntReader {
+        protected ByteBuffer in;
 
-        public VarIntReader(InputStream in) {
+        public void reset(ByteBuffer in) {
             this.in = in;
         }
 
-        public int next() throws IOException {
-            if (in.available() > 0) {
+        public abstract int next();
+    }
+
+    private static class VarIntReader extends IntReader {
+
+        public int next() {
+            if (in.hasRemaining()) {
                 int value = 0;
                 int length = 0;
                 for (; ; ) {
-                    int raw = in.read() & 0xFF;
+                    int raw = in.get() & 0xFF;
                     value = value | ((raw & ~(1 << 7)) << (7 * length));
                     length++;
                     if ((raw & (1 << 7)) == 0) {
@@ -118,27 +145,23 @@ public class Decompressor {
                 return -1;
             }
         }
-
-        @Override
-        public void close() throws IOException {
-            in.close();
-        }
     }
 
     private static class BitwiseVarIntReader extends IntReader {
-        private final InputStream in;
         private int width;
-        private int in_byte_offset;
-        private int b;
+        // bits that have been read from the buffer but not yet consumed, right-aligned
+        private long bits;
+        private int available;
 
-        public BitwiseVarIntReader(InputStream in) {
-            this.in = in;
+        @Override
+        public void reset(ByteBuffer in) {
+            super.reset(in);
             width = 8;
-            in_byte_offset = 8;
-            b = 0;
+            bits = 0;
+            available = 0;
         }
 
-        public int next() throws IOException {
+        public int next() {
             int value = read();
             if (value == (1 << width) - 1) {
                 width++;
@@ -150,85 +173,14 @@ public class Decompressor {
             return value;
         }
 
-        private int read() throws IOException {
-            int value = 0;
-            int bits = width;
-            do {
-                if (in_byte_offset == 8) {
-                    in_byte_offset = 0;
-                    b = in.read() & 0xFF;
-                }
-                int bits_to_read = Math.min(8 - in_byte_offset, bits);
-                int value_part_mask = (1 << bits_to_read) - 1;
-                int value_part_in_place = b;
-                int value_part = (value_part_in_place >> (8 - in_byte_offset - bits_to_read)) & value_part_mask;
-                value = value | (value_part << (bits - bits_to_read));
-                bits = bits - bits_to_read;
-                in_byte_offset = in_byte_offset + bits_to_read;
-            } while (bits > 0);
-            return value;
-        }
-
-        @Override
-        public void close() throws IOException {
-            in.close();
-        }
-    }
-
-    private static class ByteBufferOutputStream extends OutputStream {
-
-        private ByteBuffer buffer;
-
-        public ByteBufferOutputStream() {
-            buffer = ByteBuffer.allocate(2);
-        }
-
-        public int size() {
-            return buffer.position();
-        }
-
-        public ByteBuffer consume() {
-            buffer.limit(buffer.position());
-            buffer.rewind();
-            return buffer;
-        }
-
-        @Override
-        public void write(int b) throws IOException {
-            if (buffer.position() == buffer.capacity()) {
-                grow();
+        private int read() {
+            while (available < width) {
+                bits = (bits << 8) | (in.get() & 0xFF);
+                available += 8;
             }
-            buffer.put((byte) b);
-        }
-
-        private void grow() {
-            buffer.limit(buffer.position());
-            buffer.rewind();
-            ByteBuffer bufferNew = ByteBuffer.allocate(buffer.capacity() * 2);
-            bufferNew.put(buffer);
-            buffer = bufferNew;
+            available -= width;
+            return (int) (bits >>> available) & ((1 << width) - 1);
         }
-
-    }
-
-    private static class ByteBufferInputStream extends InputStream {
-
-        private final ByteBuffer buffer;
-
-        public ByteBufferInputStream(ByteBuffer buffer) {
-            this.buffer = buffer;
-        }
-
-        @Override
-        public int available() {
-            return buffer.limit() - buffer.position();
-        }
-
-        @Override
-        public int read() throws IOException {
-            return buffer.get();
-        }
-
     }
 
 }
@@ -1,5 +1,7 @@
 package at.jku.anttracks.parser
 
+import at.jku.anttracks.heap.objects.ObjectInfoCache
+
 class ParsingInfo(val parsingStartTime: Long,
                   val fromTime: Long,
                   val toTime: Long,
@@ -12,5 +14,14 @@ class ParsingInfo(val parsingStartTime: Long,
     val reachableMemoryCalculationOverhead: Double
         get() = reachableMemoryCalculationDuration.toDouble() / parsingDuration
 
+    // the cache of the heap that is being built, if any
+    var objectInfoCache: ObjectInfoCache? = null
+    /**
+     * The lookup statistics of the object info cache, e.g., the front cache hit rate and the number of contended lookups. They are
+     * approximate while parsing is in progress.
+     */
+    val objectInfoCacheStatistics: ObjectInfoCache.Statistics?
+        get() = objectInfoCache?.statistics
+
     fun isWithinParseTimeWindow(timeToCheck: Long): Boolean = timeToCheck in fromTime..toTime
 }
\ No newline at end of file
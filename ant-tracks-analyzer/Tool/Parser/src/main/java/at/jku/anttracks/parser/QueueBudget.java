@@ -0,0 +1,251 @@
+package at.jku.anttracks.parser;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Number of bytes that have been dispatched by the {@link TraceParser} but not yet parsed by a {@link TraceSlaveParser}. The dispatcher
+ * blocks while the number exceeds the budget, slaves release the bytes of every buffer they have parsed.
+ * <p>
+ * Slaves only update an atomic counter. The dispatcher parks when it is over budget and is unparked by the slave whose release brings
+ * the counter back within the budget.
+ * <p>
+ * An adaptive budget doubles (up to its upper bound) whenever a slave runs out of work while the dispatcher is blocked, unless the master
+ * is waiting at a sync point (then more buffers would not keep the slave busy anyway). It halves (down to its lower bound) whenever the
+ * usage of a heap memory pool after a GC exceeds the pressure threshold, and does not grow while the threshold is exceeded. The usage
+ * after GCs is polled by the dispatcher (see {@link MemoryPoolMXBean#getCollectionUsage()}), the collection usage thresholds of the pools
+ * are left untouched because they are shared by everyone in the JVM. Queue occupancy, dispatcher stall time and slave idle time are logged
+ * periodically while parsing.
+ */
+public class QueueBudget implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(QueueBudget.class.getSimpleName());
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+    private static final long PRESSURE_POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long min;
+    private final long upper;
+    private final AtomicLong max;
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile Thread waiting;
+    private volatile boolean synchronizing;
+
+    // metrics, occupancy and stall time are only written by the dispatcher
+    private long occupancySum;
+    private long occupancySamples;
+    private long peak;
+    private long stallNanos;
+    private final LongAdder idleNanos = new LongAdder();
+    private final AtomicInteger grown = new AtomicInteger();
+    private final AtomicInteger shrunk = new AtomicInteger();
+    private final long start = System.nanoTime();
+    private long lastReport = start;
+
+    // pools whose usage after GCs is monitored, and the usage that counts as pressure
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+    private final List<Long> pressureThresholds = new ArrayList<>();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    // only written by the dispatcher
+    private long collections;
+    private long lastPressurePoll = start;
+    private volatile boolean underPressure;
+
+    /**
+     * Creates a fixed budget.
+     */
+    public QueueBudget(long max) {
+        this.min = max;
+        this.upper = max;
+        this.max = new AtomicLong(max);
+    }
+
+    /**
+     * Creates an adaptive budget.
+     *
+     * @param initial           the initial budget in bytes
+     * @param min               the budget does not shrink below this number of bytes
+     * @param upper             the budget does not grow beyond this number of bytes
+     * @param pressureThreshold fraction of a heap pool's maximum size that, when exceeded after a GC, shrinks the budget
+     */
+    public QueueBudget(long initial, long min, long upper, double pressureThreshold) {
+        this.min = min;
+        this.upper = upper;
+        this.max = new AtomicLong(initial);
+        if (min < upper) {
+            monitor(pressureThreshold);
+        }
+        LOGGER.log(Level.INFO, "queue budget {0}b (min {1}b, max {2}b)", new Object[]{initial, min, upper});
+    }
+
+    private void monitor(double pressureThreshold) {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long poolMax = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null && poolMax > 0) {
+                pressureThresholds.add((long) (poolMax * pressureThreshold));
+                pools.add(pool);
+            }
+        }
+        collections = countCollections();
+    }
+
+    @Override
+    public void close() {
+        pools.clear();
+        underPressure = false;
+    }
+
+    public long get() {
+        return bytes.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getPeak() {
+        return peak;
+    }
+
+    public double getAverageOccupancy() {
+        return occupancySamples == 0 ? 0 : 1.0 * occupancySum / occupancySamples;
+    }
+
+    public long getDispatcherStallTime(TimeUnit unit) {
+        return unit.convert(stallNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getSlaveIdleTime(TimeUnit unit) {
+        return unit.convert(idleNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds the given number of bytes and waits until the total is within the budget again. Must only be called by the dispatching thread.
+     */
+    public void acquire(long length) throws InterruptedException {
+        if (!pools.isEmpty() && System.nanoTime() - lastPressurePoll > PRESSURE_POLL_INTERVAL) {
+            lastPressurePoll = System.nanoTime();
+            pollPressure();
+        }
+        long now = bytes.addAndGet(length);
+        occupancySum += now;
+        occupancySamples++;
+        peak = Math.max(peak, now);
+        if (now > max.get()) {
+            long stallStart = System.nanoTime();
+            waiting = Thread.currentThread();
+            try {
+                while (bytes.get() > max.get()) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            } finally {
+                waiting = null;
+                stallNanos += System.nanoTime() - stallStart;
+            }
+        }
+        if (System.nanoTime() - lastReport > REPORT_INTERVAL) {
+            lastReport = System.nanoTime();
+            LOGGER.log(Level.INFO, "queue: {0}", this);
+        }
+    }
+
+    /**
+     * Removes the given number of bytes, may be called by any thread.
+     */
+    public void release(long length) {
+        long now = bytes.addAndGet(-length);
+        long max = this.max.get();
+        if (now <= max && now + length > max) {
+            // this release brought the total within the budget
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * Called by the master while it waits for slaves to park their heaps at a sync point.
+     */
+    public void setSynchronizing(boolean synchronizing) {
+        this.synchronizing = synchronizing;
+    }
+
+    /**
+     * Called by a slave that is about to wait for work, grows the budget if the dispatcher is blocked on it.
+     */
+    public void slaveIdle() {
+        if (waiting == null || synchronizing || underPressure) {
+            return;
+        }
+        long current = max.get();
+        if (current < upper && max.compareAndSet(current, Math.min(upper, current * 2))) {
+            grown.incrementAndGet();
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    public void addSlaveIdleTime(long nanos) {
+        idleNanos.add(nanos);
+    }
+
+    private long countCollections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Checks the usage of the monitored pools after the latest GC, if there has been a GC since the last poll
+     */
+    private void pollPressure() {
+        long count = countCollections();
+        if (count == collections) {
+            return;
+        }
+        collections = count;
+        boolean exceeded = false;
+        for (int i = 0; i < pools.size(); i++) {
+            if (pools.get(i).getCollectionUsage().getUsed() > pressureThresholds.get(i)) {
+                exceeded = true;
+                break;
+            }
+        }
+        underPressure = exceeded;
+        if (!exceeded) {
+            return;
+        }
+        long current = max.get();
+        long shrunkMax = Math.max(min, current / 2);
+        if (shrunkMax < current && max.compareAndSet(current, shrunkMax)) {
+            shrunk.incrementAndGet();
+            LOGGER.log(Level.INFO, "heap usage after GC exceeds threshold, queue budget shrunk to {0}b", shrunkMax);
+        }
+    }
+
+    @Override
+    public String toString() {
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        return String.format("%,d of %,d bytes in flight (%.1f%% average occupancy, peak %,d bytes), dispatcher stalled %.1f%% of the time, " +
+                                     "slaves idle %,dms in total, budget grown %d and shrunk %d times",
+                             bytes.get(),
+                             max.get(),
+                             100.0 * getAverageOccupancy() / max.get(),
+                             peak,
+                             100.0 * stallNanos / elapsed,
+                             getSlaveIdleTime(TimeUnit.MILLISECONDS),
+                             grown.get(),
+                             shrunk.get());
+    }
+}
@@ -0,0 +1,89 @@
+package at.jku.anttracks.parser;
+
+import at.jku.anttracks.util.SpscRingBuffer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands {@link ThreadLocalHeap}s with pending buffers from the master to the {@link TraceSlaveParser}s. Every slave owns a bounded
+ * single-producer single-consumer ring (the master is the only producer), so slaves do not compete for a shared queue.
+ * <p>
+ * The master assigns a heap to the slave with the fewest assigned heaps (including the one it is currently parsing), thus heaps are
+ * preferably handed to idle slaves.
+ */
+public class SlaveQueues {
+    private static final int CAPACITY = 1 << 10;
+
+    private static class Slot {
+        final SpscRingBuffer<ThreadLocalHeap> queue = new SpscRingBuffer<>(CAPACITY);
+        // heaps that have been assigned to this slave and have not yet been parked again
+        final AtomicInteger load = new AtomicInteger();
+    }
+
+    private volatile Slot[] slots = new Slot[0];
+    private int next;
+
+    /**
+     * Creates the queue of the slave with the given id. All slaves have to be registered before the master assigns the first heap.
+     */
+    public synchronized void register(int slave) {
+        if (slave >= slots.length) {
+            Slot[] grown = Arrays.copyOf(slots, slave + 1);
+            for (int i = slots.length; i < grown.length; i++) {
+                grown[i] = new Slot();
+            }
+            slots = grown;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Slot slot : slots) {
+            size += slot.queue.size();
+        }
+        return size;
+    }
+
+    /**
+     * Assigns a heap to a slave. Must only be called by the master.
+     */
+    public void add(ThreadLocalHeap threadLocalHeap) throws InterruptedException {
+        final Slot[] slots = this.slots;
+        // start at a rotating slave to spread heaps over equally loaded slaves
+        int best = next;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < slots.length && bestLoad > 0; i++) {
+            int slave = (next + i) % slots.length;
+            int load = slots[slave].load.get();
+            if (load < bestLoad) {
+                best = slave;
+                bestLoad = load;
+            }
+        }
+        next = (best + 1) % slots.length;
+        slots[best].load.incrementAndGet();
+        slots[best].queue.put(threadLocalHeap);
+    }
+
+    /**
+     * @return the next heap assigned to the given slave, or null if there is none
+     */
+    public ThreadLocalHeap poll(int slave) {
+        return slots[slave].queue.poll();
+    }
+
+    /**
+     * Waits for the next heap assigned to the given slave.
+     */
+    public ThreadLocalHeap take(int slave) throws InterruptedException {
+        return slots[slave].queue.take();
+    }
+
+    /**
+     * Called by a slave once it has parked a heap that it has taken.
+     */
+    public void done(int slave) {
+        slots[slave].load.decrementAndGet();
+    }
+}
@@ -4,27 +4,28 @@ package at.jku.anttracks.parser
 import at.jku.anttracks.heap.DetailedHeap
 import at.jku.anttracks.heap.labs.AddressHO
 import at.jku.anttracks.heap.labs.Lab
-import at.jku.anttracks.heap.objects.ObjectInfo
 import at.jku.anttracks.heap.space.Space
 import at.jku.anttracks.heap.space.SpaceType
 import at.jku.anttracks.heap.symbols.AllocationSite
-import at.jku.anttracks.parser.heap.pointer.IncompletePointerInfo
+import at.jku.anttracks.parser.heap.pointer.MultiThreadedPointerBuffer
 import at.jku.anttracks.parser.heap.pointer.PointerHandling
 import at.jku.anttracks.util.AntRingBuffer
 import at.jku.anttracks.util.Assertion.assertion
 import at.jku.anttracks.util.Counter
 import at.jku.anttracks.util.TraceException
+import it.unimi.dsi.fastutil.bytes.ByteArrayList
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap
 import java.io.BufferedOutputStream
 import java.io.DataOutputStream
 import java.io.File
 import java.io.FileOutputStream
 import java.util.*
-import java.util.concurrent.BlockingQueue
-import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.locks.LockSupport
 
 class ThreadLocalHeap(val internalThreadName: String,
-                      var state: Int = STATE_IN_QUEUE,
+                      state: Int = STATE_IN_QUEUE,
                       val gcNr: Short = 0,
                       val gcStartOrEnd: EventType = EventType.GC_START) {
     companion object {
@@ -42,9 +43,17 @@ class ThreadLocalHeap(val internalThreadName: String,
 
     val currentLabPos: MutableMap<SpaceType, Counter>
 
-    val prototype = ObjectInfo()
+    // written by the master, polled by the slave that currently owns this heap
+    val queue: Queue<QueueEntry>
 
-    val queue: BlockingQueue<QueueEntry>
+    // state transitions are lock-free, see enqueue, park and awaitParked
+    private val atomicState = AtomicInteger(state)
+    @Volatile
+    private var waiting: Thread? = null
+
+    var state: Int
+        get() = atomicState.get()
+        set(value) = atomicState.set(value)
     val retiredLabs: MutableMap<Space, MutableList<Lab>>
     val currentLabs: MutableMap<SpaceType, Lab>
 
@@ -73,7 +82,7 @@ class ThreadLocalHeap(val internalThreadName: String,
     private var currentPtrPointers = EMPTY_PTR_ARRAY
     private var currentPtrTop = 0
 
-    private val notYetMatchedMultiThreadedPtrEventsToHandleAtGCEnd: ArrayList<IncompletePointerInfo>
+    private var multiThreadedPtrEvents = MultiThreadedPointerBuffer()
     val rootPointedObjectMovesToHandleAtGCEnd = Long2LongOpenHashMap()
     // private val movesSinceLastGCStart = Long2LongOpenHashMap()
 
@@ -88,15 +97,60 @@ class ThreadLocalHeap(val internalThreadName: String,
     val fileDataOutputStream: DataOutputStream by lazy {
         DataOutputStream(BufferedOutputStream(FileOutputStream(file, false), 100_000_000))
     }
-    val outputData = ArrayList<Byte>()
+    val outputData = ByteArrayList()
 
     init {
-        queue = LinkedBlockingQueue()
+        queue = ConcurrentLinkedQueue()
         retiredLabs = HashMap()
         currentLabs = HashMap()
         currentLabPos = HashMap()
         lastAllocations = AntRingBuffer(NUM_LAST_ALLOCATIONS)
-        notYetMatchedMultiThreadedPtrEventsToHandleAtGCEnd = ArrayList()
+    }
+
+    fun compareAndSetState(expected: Int, state: Int): Boolean = atomicState.compareAndSet(expected, state)
+
+    /**
+     * Called by the master to append a buffer.
+     * @return true if this heap has been parked and is now in state [STATE_IN_QUEUE], i.e., the master has to hand it to a slave
+     */
+    fun enqueue(entry: QueueEntry): Boolean {
+        queue.add(entry)
+        return atomicState.compareAndSet(STATE_PARKED, STATE_IN_QUEUE)
+    }
+
+    /**
+     * Called by the slave that processes this heap once its queue has been drained.
+     * @return false if the master has appended another buffer in the meantime, the heap then remains in process by the calling slave
+     */
+    fun park(): Boolean {
+        assertion({ state == STATE_IN_PROCESS }, { "State is $state, but expected $STATE_IN_PROCESS" })
+        atomicState.set(STATE_PARKED)
+        // the master appends before it tries to take a parked heap, and we set the state before we check the queue, thus at least one of
+        // us sees the buffer, and if both do, the compare-and-set decides
+        if (!queue.isEmpty() && atomicState.compareAndSet(STATE_PARKED, STATE_IN_PROCESS)) {
+            return false
+        }
+        LockSupport.unpark(waiting)
+        return true
+    }
+
+    /**
+     * Called by the master to wait until all buffers of this heap have been processed.
+     */
+    @Throws(InterruptedException::class)
+    fun awaitParked() {
+        waiting = Thread.currentThread()
+        try {
+            // a slave that has just parked may still take back the heap if it sees a buffer in the queue
+            while (state != STATE_PARKED || !queue.isEmpty()) {
+                LockSupport.park(this)
+                if (Thread.interrupted()) {
+                    throw InterruptedException()
+                }
+            }
+        } finally {
+            waiting = null
+        }
     }
 
     fun retireCurrentLabs(heap: DetailedHeap) {
@@ -157,12 +211,7 @@ class ThreadLocalHeap(val internalThreadName: String,
                                                                   Arrays.copyOf(currentPtrPointers, currentPtrTop))
                 } else {
                     // multi-threaded
-                    val info = IncompletePointerInfo(currentPtrFromAddr,
-                                                     currentPtrToAddr,
-                                                     Arrays.copyOf(currentPtrPointers, currentPtrPointers.size),
-                                                     currentPtrTop)
-                    val alreadyExisting = heap.multiThreadedPtrEventsToHandleAtGCEnd.put(currentPtrToAddr, info)
-                    assert(alreadyExisting == null) { "There must not have been an already existing incomplete pointer info" }
+                    multiThreadedPtrEvents.addIncompleteObject(currentPtrFromAddr, currentPtrToAddr, currentPtrPointers, currentPtrTop)
                 }
             }
         }
@@ -209,21 +258,18 @@ class ThreadLocalHeap(val internalThreadName: String,
         currentPtrTop = top
     }
 
-    fun addMultithreadedPtrEvent(heap: DetailedHeap, toAddr: Long, ptrs: LongArray) {
-        var info: IncompletePointerInfo? = heap.multiThreadedPtrEventsToHandleAtGCEnd[toAddr]
-        if (info != null) {
-            info.addPointers(ptrs)
-        } else {
-            info = IncompletePointerInfo(-1, toAddr, Arrays.copyOf(ptrs, ptrs.size), ptrs.size)
-            notYetMatchedMultiThreadedPtrEventsToHandleAtGCEnd.add(info)
-        }
+    fun addMultithreadedPtrEvent(toAddr: Long, ptrs: LongArray) {
+        multiThreadedPtrEvents.addChunk(toAddr, ptrs)
     }
 
-    fun copyAndClearMultiThreadedEvents(dest: MutableList<IncompletePointerInfo>) {
-        synchronized(dest) {
-            dest.addAll(notYetMatchedMultiThreadedPtrEventsToHandleAtGCEnd)
+    /**
+     * Hands the staged multi-threaded pointer events over to the given collection (if there are any) and starts a new buffer.
+     */
+    fun copyAndClearMultiThreadedEvents(dest: MutableCollection<MultiThreadedPointerBuffer>) {
+        if (!multiThreadedPtrEvents.isEmpty) {
+            dest.add(multiThreadedPtrEvents)
+            multiThreadedPtrEvents = MultiThreadedPointerBuffer()
         }
-        notYetMatchedMultiThreadedPtrEventsToHandleAtGCEnd.clear()
     }
 
     /*
@@ -7,9 +7,12 @@ import at.jku.anttracks.parser.io.MappedFileScanner;
 import at.jku.anttracks.parser.io.BaseFile;
 import at.jku.anttracks.parser.io.InputStreamScanner;
 import at.jku.anttracks.parser.io.MappedFileScanner;
+import at.jku.anttracks.parser.io.SegmentedMappedFileScanner;
 import at.jku.anttracks.util.ZipFileUtil;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -21,6 +24,8 @@ import static at.jku.anttracks.util.ZipFileUtil.isZipFile;
 public class TraceFile extends BaseFile {
 
     public final static int TRACE_FILE_ID = 1;
+    // Map plain trace files as a whole and hand out the event buffers as slices of the mapping (see SegmentedMappedFileScanner)
+    public static boolean mapWholeFile = false;
     private static Logger LOGGER = Logger.getLogger(TraceFile.class.getSimpleName());
 
     // Multiple infos possible if reading a zip file
@@ -179,6 +184,20 @@ public class TraceFile extends BaseFile {
 
         public abstract long length();
 
+        /**
+         * @return the time the file has been modified last (see {@link File#lastModified()}), or 0 if unknown
+         */
+        public long lastModified() {
+            return 0;
+        }
+
+        /**
+         * @return a channel for random access to the file, or null if the file can only be read in sequence
+         */
+        public FileChannel openChannel() throws IOException {
+            return null;
+        }
+
         @Override
         public void close() throws IOException {}
     }
@@ -199,14 +218,27 @@ public class TraceFile extends BaseFile {
         @Override
         public Scanner open(long globalPosition, long from, long to) throws IOException {
             // return new InputStreamScanner(globalPosition, open(), from, to);
+            if (mapWholeFile) {
+                return new SegmentedMappedFileScanner(globalPosition, open(), from, to);
+            }
             return new MappedFileScanner(globalPosition, open(), from, to);
         }
 
+        @Override
+        public FileChannel openChannel() throws IOException {
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
         @Override
         public long length() {
             return file.length();
         }
 
+        @Override
+        public long lastModified() {
+            return file.lastModified();
+        }
+
     }
 
     private static final class ZipEntryAccess extends Access {
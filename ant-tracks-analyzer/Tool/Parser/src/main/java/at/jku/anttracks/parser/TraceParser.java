@@ -3,13 +3,15 @@ package at.jku.anttracks.parser;
 
 import at.jku.anttracks.heap.GarbageCollectionLookup;
 import at.jku.anttracks.heap.HeapListener;
+import at.jku.anttracks.heap.io.BufferIndexReader;
+import at.jku.anttracks.heap.io.BufferIndexWriter;
 import at.jku.anttracks.heap.io.HeapIndexReader;
 import at.jku.anttracks.heap.io.HeapPosition;
 import at.jku.anttracks.heap.io.MetaDataConfig;
 import at.jku.anttracks.heap.io.MetaDataReaderConfig;
 import at.jku.anttracks.heap.symbols.Symbols;
 import at.jku.anttracks.util.Consts;
-import at.jku.anttracks.util.MutableLong;
+import at.jku.anttracks.util.SpscRingBuffer;
 import at.jku.anttracks.util.TraceException;
 import javafx.beans.property.BooleanProperty;
 
@@ -18,10 +20,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -41,7 +47,17 @@ public abstract class TraceParser<W> {
 
     public static boolean CONSISTENCY_CHECK;
     public static final boolean MULTITHREADING = true;
-    public static final long MAX_QUEUE_SIZE = getMaxQueueSize();
+    // Budget for buffers that have been read but not yet parsed, as fractions of the maximum heap size. The budget starts at queueHeapFraction
+    // and adapts up to maxQueueHeapFraction, it shrinks whenever a heap pool exceeds queuePressureThreshold after a GC (see QueueBudget)
+    public static double queueHeapFraction = 0.01;
+    public static double maxQueueHeapFraction = 0.05;
+    public static double queuePressureThreshold = 0.85;
+    private static final long MIN_QUEUE_SIZE = 1024 * 50;
+    // upper bound for the number of buffers between dispatcher and master, the queue is usually limited by its size in bytes first
+    private static final int MAX_QUEUE_ENTRIES = 1 << 14;
+    // Number of reader threads and of buffers they may read ahead of the dispatcher when dispatching from a buffer index
+    private static final int INDEXED_READERS = Math.max(1, Math.min(4, Consts.getAVAILABLE_PROCESSORS() / 2));
+    private static final int INDEXED_READ_AHEAD = 16 * INDEXED_READERS;
 
     private volatile Throwable error;
 
@@ -122,6 +138,7 @@ public abstract class TraceParser<W> {
         File file = new File(symbols.root + File.separator + symbols.trace);
 
         TraceScannerFactory factory = null;
+        BufferIndex bufferIndex = null;
 
         ParsingInfo parsingInfo;
         if (readerConfig == null) {
@@ -139,6 +156,7 @@ public abstract class TraceParser<W> {
                 to = heapIndexReaderTo.getRangeFromLastHeapDumpToGivenTime(toTime).toPosition;
             }
             factory = TraceScannerFactory.create(new File(symbols.root), symbols.header, file, heapPositionFrom.fromPosition, to);
+            bufferIndex = getBufferIndex(factory.getFiles());
 
             logger.log(Level.INFO, "parsing trace, starting at " + heapPositionFrom.toString());
             logger.log(Level.INFO, "building workspace");
@@ -165,7 +183,7 @@ public abstract class TraceParser<W> {
                             throw new TraceException("Headers do not match!");
                         }
                     }
-                    parse(workspace, scanner, parsingInfo, cancellationToken);
+                    parse(workspace, scanner, factory, bufferIndex, parsingInfo, cancellationToken);
                 }
             }
 
@@ -195,26 +213,80 @@ public abstract class TraceParser<W> {
 
     protected abstract W generatePlainWorkspace(TraceScannerFactory factory, ParsingInfo parsingInfo) throws IOException;
 
-    private void parse(W workspace, Scanner scanner, ParsingInfo parsingInfo, BooleanProperty cancellationToken)
+    /**
+     * Reads the buffer index from the meta-data directory, or builds and persists it if it does not exist yet or is out of date.
+     *
+     * @return the buffer index, or null if it could neither be read nor built (parsing falls back to sequential dispatch)
+     */
+    private BufferIndex getBufferIndex(TraceFile.Access[] files) {
+        String path = readerConfig.path;
+        if (BufferIndexReader.exists(path)) {
+            try (BufferIndexReader reader = new BufferIndexReader(path)) {
+                BufferIndex index = reader.read();
+                if (index.matches(files)) {
+                    return index;
+                }
+                logger.log(Level.INFO, "buffer index is out of date, rebuilding it");
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "could not read buffer index, rebuilding it", e);
+            }
+        }
+
+        try {
+            BufferIndex index = BufferIndex.build(files);
+            try (BufferIndexWriter writer = new BufferIndexWriter(path)) {
+                writer.write(index);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "could not write buffer index", e);
+            }
+            return index;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "could not build buffer index", e);
+            return null;
+        }
+    }
+
+    private void parse(W workspace, Scanner scanner, TraceScannerFactory factory, BufferIndex bufferIndex, ParsingInfo parsingInfo, BooleanProperty cancellationToken)
             throws IOException, TraceException, InterruptedException {
         logger.log(Level.INFO, "parsing trace @ {0}", scanner.getGlobalPosition());
 
         final Thread self = Thread.currentThread();
-        final MutableLong queueSize = new MutableLong(0);
-        final BlockingQueue<QueueEntry> chunks = new LinkedBlockingQueue<>();
-        final BlockingQueue<ThreadLocalHeap> masterQueue = new LinkedBlockingQueue<>();
+        final QueueBudget queueSize = createQueueBudget();
+        final SpscRingBuffer<QueueEntry> chunks = new SpscRingBuffer<>(MAX_QUEUE_ENTRIES);
+        final SlaveQueues masterQueue = new SlaveQueues();
         final Map<String, ThreadLocalHeap> threadLocalHeaps = new HashMap<>();
 
         logger.log(Level.INFO, "starting slaves");
         final List<TraceSlaveParser<W>> slaves = startSlaveThreads(queueSize, masterQueue, workspace, e -> abort(e, self), parsingInfo);
 
         logger.log(Level.INFO, "starting master");
-        final Thread master = new Thread(() -> processQueueEntries(chunks, masterQueue, threadLocalHeaps, slaves, e -> abort(e, self)), "Trace Parser Master");
+        final Thread master = new Thread(() -> processQueueEntries(chunks, masterQueue, queueSize, threadLocalHeaps, slaves, e -> abort(e, self)),
+                                         "Trace Parser Master");
         master.start();
 
         try {
-            dispatch(scanner, chunks, queueSize, cancellationToken);
+            int file = bufferIndex != null ? bufferIndex.getFile(scanner.getGlobalPosition()) : -1;
+            FileChannel channel = file >= 0 ? factory.getFiles()[file].openChannel() : null;
+            if (channel != null) {
+                try {
+                    long to = Math.min(bufferIndex.getFileStart(file) + bufferIndex.getFileLength(file), factory.getTo());
+                    dispatchIndexed(bufferIndex,
+                                    file,
+                                    factory.getFiles()[file],
+                                    channel,
+                                    scanner.getGlobalPosition(),
+                                    to,
+                                    chunks,
+                                    queueSize,
+                                    cancellationToken);
+                } finally {
+                    channel.close();
+                }
+            } else {
+                dispatch(scanner, chunks, queueSize, cancellationToken);
+            }
             master.join();
+            logger.log(Level.INFO, "queue: {0}", queueSize);
 
             logger.log(Level.INFO, "waiting for slaves");
             interruptSlaves(masterQueue, slaves);
@@ -230,6 +302,8 @@ public abstract class TraceParser<W> {
             } else {
                 throw ie;
             }
+        } finally {
+            queueSize.close();
         }
 
         logger.info(() -> {
@@ -258,7 +332,7 @@ public abstract class TraceParser<W> {
         }
     }
 
-    private void dispatch(Scanner scanner, BlockingQueue<QueueEntry> chunks, MutableLong queueSize, BooleanProperty cancellationToken)
+    private void dispatch(Scanner scanner, SpscRingBuffer<QueueEntry> chunks, QueueBudget queueSize, BooleanProperty cancellationToken)
             throws InterruptedException, TraceException {
         final Thread self = Thread.currentThread();
         logger.log(Level.INFO, "starting IO");
@@ -278,7 +352,7 @@ public abstract class TraceParser<W> {
         // - c.) Sync-Level
         // 3. Position
         // 4. Data (Byte-Buffer)
-        // All of this data is stored in a (size-limited) BlockingQueue<QueueEntry> queue, which is
+        // All of this data is stored in a (size-limited) ring buffer of QueueEntry objects, which is
         // processed by the processQueueEntries() method (run by the master).
         logger.log(Level.WARNING, "helooooooo im in TraceParser.java");
 
@@ -291,14 +365,7 @@ public abstract class TraceParser<W> {
                 boolean isCompressed = (metadata & COMPRESSED_MASK) != 0;
                 SyncLevel sync = SyncLevel.parse((metadata & SYNC_MASK) >>> SYNC_LOCATION);
                 long position = scanner.getGlobalPosition();
-                synchronized (queueSize) {
-                    queueSize.add(length);
-                    queueSize.notifyAll();
-                    while (queueSize.get() > MAX_QUEUE_SIZE) {
-                        // System.out.println(String.format("Dispatcher waiting, queue size: %,d bytes", queueSize.get()));
-                        queueSize.wait();
-                    }
-                }
+                queueSize.acquire(length);
                 ByteBuffer buffer = scanner.getBuffer(length);
                 QueueEntry queueEntry = new QueueEntry(thread, buffer, position, isCompressed, sync);
                 chunks.put(queueEntry);
@@ -316,6 +383,111 @@ public abstract class TraceParser<W> {
         chunks.put(QueueEntry.Companion.getNULL());
     }
 
+    /**
+     * Dispatches the buffers of the given trace file between the global positions {@code from} and {@code to} like {@link #dispatch}, but
+     * takes the buffer boundaries from the buffer index. Thus, payloads are fetched by a pool of reader threads while the buffers are still
+     * queued in trace order (sync points remain ordered relative to all other buffers). If {@link TraceFile#mapWholeFile} is set, the
+     * payloads are handed out as slices of the mapped file instead (see {@link #dispatchIndexedMapped}).
+     */
+    private void dispatchIndexed(BufferIndex index,
+                                 int file,
+                                 TraceFile.Access access,
+                                 FileChannel channel,
+                                 long from,
+                                 long to,
+                                 SpscRingBuffer<QueueEntry> chunks,
+                                 QueueBudget queueSize,
+                                 BooleanProperty cancellationToken) throws InterruptedException, TraceException {
+        final Thread self = Thread.currentThread();
+        final long fileStart = index.getFileStart(file);
+        final int first = index.getFirstEntry(file);
+        int last = index.getFirstEntry(file + 1);
+        while (last > first && index.getPosition(last - 1) + index.getLength(last - 1) > to) {
+            last--;
+        }
+        if (TraceFile.mapWholeFile) {
+            dispatchIndexedMapped(index, access, fileStart, index.getFirstEntryAtOrAfter(file, from), last, chunks, queueSize, cancellationToken);
+            return;
+        }
+        logger.log(Level.INFO, "starting IO ({0} reader threads, {1} indexed buffers)", new Object[]{INDEXED_READERS, last - first});
+
+        final ExecutorService readers = Executors.newFixedThreadPool(INDEXED_READERS);
+        final ArrayDeque<Future<ByteBuffer>> readAhead = new ArrayDeque<>();
+        try {
+            int next = index.getFirstEntryAtOrAfter(file, from);
+            for (int entry = next;
+                 entry < last && error == null && !self.isInterrupted() && (cancellationToken == null || !cancellationToken.get());
+                 entry++) {
+                for (; next < last && readAhead.size() < INDEXED_READ_AHEAD; next++) {
+                    final long position = index.getPosition(next) - fileStart;
+                    final int length = index.getLength(next);
+                    readAhead.add(readers.submit(() -> read(channel, position, length)));
+                }
+
+                int length = index.getLength(entry);
+                queueSize.acquire(length);
+                ByteBuffer buffer = readAhead.poll().get();
+                chunks.put(new QueueEntry(index.getThread(entry), buffer, index.getPosition(entry), index.isCompressed(entry), index.getSync(entry)));
+            }
+        } catch (ExecutionException e) {
+            throw new TraceException(e.getCause());
+        } finally {
+            readers.shutdownNow();
+        }
+
+        logger.log(Level.INFO, "IO finished ({0} undispatched chunks ahead) ({1} bytes ahead)", new Object[]{chunks.size(), queueSize.get()});
+        chunks.put(QueueEntry.Companion.getNULL());
+    }
+
+    /**
+     * Dispatches the indexed buffers {@code [first, last)} of a trace file as zero-copy slices of the mapped file, no reader threads are
+     * needed because slicing does not block on IO.
+     */
+    private void dispatchIndexedMapped(BufferIndex index,
+                                       TraceFile.Access access,
+                                       long fileStart,
+                                       int first,
+                                       int last,
+                                       SpscRingBuffer<QueueEntry> chunks,
+                                       QueueBudget queueSize,
+                                       BooleanProperty cancellationToken) throws InterruptedException, TraceException {
+        final Thread self = Thread.currentThread();
+        logger.log(Level.INFO, "starting IO (mapped, {0} indexed buffers)", last - first);
+        if (first < last) {
+            long from = index.getPosition(first) - fileStart;
+            long to = index.getPosition(last - 1) + index.getLength(last - 1) - fileStart;
+            try (Scanner mapped = access.open(fileStart, from, to)) {
+                for (int entry = first;
+                     entry < last && error == null && !self.isInterrupted() && (cancellationToken == null || !cancellationToken.get());
+                     entry++) {
+                    int length = index.getLength(entry);
+                    queueSize.acquire(length);
+                    // skip the thread and meta-data word of the buffer, they are taken from the index
+                    mapped.skip((int) (index.getPosition(entry) - mapped.getGlobalPosition()));
+                    ByteBuffer buffer = mapped.getBuffer(length);
+                    chunks.put(new QueueEntry(index.getThread(entry), buffer, index.getPosition(entry), index.isCompressed(entry), index.getSync(entry)));
+                }
+            } catch (IOException e) {
+                throw new TraceException(e);
+            }
+        }
+
+        logger.log(Level.INFO, "IO finished ({0} undispatched chunks ahead) ({1} bytes ahead)", new Object[]{chunks.size(), queueSize.get()});
+        chunks.put(QueueEntry.Companion.getNULL());
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of trace file");
+            }
+        }
+        buffer.flip();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
     protected abstract void doParseCleanupAfterSuccessfulParse(W workspace) throws TraceException;
 
     private synchronized void abort(Throwable e, Thread thread) {
@@ -331,8 +503,9 @@ public abstract class TraceParser<W> {
     // This method runs in a separate thread and takes care of the buffer queue.
     // It checks if the queue contains an buffer, and if so, the entry gets
     // added to the respective ThreadLocalHeap
-    private void processQueueEntries(BlockingQueue<QueueEntry> chunks,
-                                     BlockingQueue<ThreadLocalHeap> queue,
+    private void processQueueEntries(SpscRingBuffer<QueueEntry> chunks,
+                                     SlaveQueues queue,
+                                     QueueBudget queueSize,
                                      Map<String, ThreadLocalHeap> threads,
                                      List<TraceSlaveParser<W>> slaves,
                                      ErrorHandler error) {
@@ -351,7 +524,15 @@ public abstract class TraceParser<W> {
                     waitUntilParked(threads);
                     self.interrupt();
                 } else {
+                    // slaves that run out of work while we wait at a sync point must not grow the queue budget
+                    boolean sync = entry.getSync() != SyncLevel.NONE || !MULTITHREADING;
+                    if (sync) {
+                        queueSize.setSynchronizing(true);
+                    }
                     processQueueEntry(queue, threads, entry);
+                    if (sync) {
+                        queueSize.setSynchronizing(false);
+                    }
                     buffers++;
                 }
             } catch (InterruptedException ie) {
@@ -369,7 +550,7 @@ public abstract class TraceParser<W> {
     // This method takes care of the sync level, and assigns a QueueEntry to the
     // master queue.
     // The master queue then is processes by the slave parser(s).
-    private void processQueueEntry(BlockingQueue<ThreadLocalHeap> queue, Map<String, ThreadLocalHeap> threads, QueueEntry chunk) throws InterruptedException, Exception {
+    private void processQueueEntry(SlaveQueues queue, Map<String, ThreadLocalHeap> threads, QueueEntry chunk) throws InterruptedException, Exception {
         if (chunk.getSync() == SyncLevel.FULL) {
             waitUntilParked(threads);
             insertCleanUps(queue, threads);
@@ -405,8 +586,8 @@ public abstract class TraceParser<W> {
         }
     }
 
-    private List<TraceSlaveParser<W>> startSlaveThreads(MutableLong queueSize,
-                                                        BlockingQueue<ThreadLocalHeap> queue,
+    private List<TraceSlaveParser<W>> startSlaveThreads(QueueBudget queueSize,
+                                                        SlaveQueues queue,
                                                         W workspace,
                                                         ErrorHandler handler,
                                                         ParsingInfo parsingInfo)
@@ -414,8 +595,8 @@ public abstract class TraceParser<W> {
         return startSlaveThreads(queueSize, queue, workspace, handler, CONSISTENCY_CHECK, parsingInfo);
     }
 
-    protected List<TraceSlaveParser<W>> startSlaveThreads(MutableLong queueSize,
-                                                          BlockingQueue<ThreadLocalHeap> masterQueue,
+    protected List<TraceSlaveParser<W>> startSlaveThreads(QueueBudget queueSize,
+                                                          SlaveQueues masterQueue,
                                                           W workspace,
                                                           ErrorHandler handler,
                                                           boolean check,
@@ -446,14 +627,12 @@ public abstract class TraceParser<W> {
         return result;
     }
 
-    private void insertCleanUps(BlockingQueue<ThreadLocalHeap> queue, Map<String, ThreadLocalHeap> threads) throws InterruptedException {
+    private void insertCleanUps(SlaveQueues queue, Map<String, ThreadLocalHeap> threads) throws InterruptedException {
         for (String key : threads.keySet()) {
             ThreadLocalHeap threadLocalHeap = threads.get(key);
-            synchronized (threadLocalHeap) {
-                assert (threadLocalHeap.getState() == ThreadLocalHeap.STATE_PARKED);
-                threadLocalHeap.setState(ThreadLocalHeap.STATE_IN_QUEUE_FOR_CLEAN_UP);
-                queue.add(threadLocalHeap);
-            }
+            boolean parked = threadLocalHeap.compareAndSetState(ThreadLocalHeap.STATE_PARKED, ThreadLocalHeap.STATE_IN_QUEUE_FOR_CLEAN_UP);
+            assert parked;
+            queue.add(threadLocalHeap);
         }
     }
 
@@ -465,15 +644,10 @@ public abstract class TraceParser<W> {
     }
 
     private void waitUntilParked(ThreadLocalHeap threadLocalHeap) throws InterruptedException {
-        synchronized (threadLocalHeap) {
-            while (threadLocalHeap.getState() != ThreadLocalHeap.STATE_PARKED) {
-                threadLocalHeap.wait();
-            }
-        }
-
+        threadLocalHeap.awaitParked();
     }
 
-    private ThreadLocalHeap addNewThreadLocalHeap(BlockingQueue<ThreadLocalHeap> queue, Map<String, ThreadLocalHeap> threads, String thread)
+    private ThreadLocalHeap addNewThreadLocalHeap(SlaveQueues queue, Map<String, ThreadLocalHeap> threads, String thread)
             throws InterruptedException {
         ThreadLocalHeap threadLocalHeap = createNewThreadLocalHeap(thread);
         threads.put(thread, threadLocalHeap);
@@ -485,21 +659,16 @@ public abstract class TraceParser<W> {
         return new ThreadLocalHeap(thread, ThreadLocalHeap.STATE_IN_QUEUE, (short) -1, EventType.GC_END);
     }
 
-    private void addToThreadLocalHeap(BlockingQueue<ThreadLocalHeap> masterQueue, QueueEntry entry, ThreadLocalHeap threadLocalHeap) throws Exception {
+    private void addToThreadLocalHeap(SlaveQueues masterQueue, QueueEntry entry, ThreadLocalHeap threadLocalHeap) throws Exception {
         if (threadLocalHeap == null) {
             throw new TraceException("TLH must already exist.");
         }
-        synchronized (threadLocalHeap) {
-            threadLocalHeap.getQueue().add(entry);
-
-            if (threadLocalHeap.getState() == ThreadLocalHeap.STATE_PARKED) {
-                threadLocalHeap.setState(ThreadLocalHeap.STATE_IN_QUEUE);
-                masterQueue.add(threadLocalHeap);
-            }
+        if (threadLocalHeap.enqueue(entry)) {
+            masterQueue.add(threadLocalHeap);
         }
     }
 
-    private void interruptSlaves(BlockingQueue<ThreadLocalHeap> queue, List<TraceSlaveParser<W>> slaves) {
+    private void interruptSlaves(SlaveQueues queue, List<TraceSlaveParser<W>> slaves) {
         for (TraceSlaveParser<W> thread : slaves) {
             thread.interrupt();
         }
@@ -517,12 +686,11 @@ public abstract class TraceParser<W> {
         this.additionalEventHandlerSupplier.add(handlerSupplier);
     }
 
-    private static long getMaxQueueSize() {
+    private static QueueBudget createQueueBudget() {
         long memory = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
-        long size = (long) (memory * 0.01); // 1% of maximum heap may be used by input queue
-        size = Math.max(size, 1024 * 50); // Minimum size 50kB
-        System.out.println("Max queue size: " + size + " bytes");
-        return size;
+        long initial = Math.max((long) (memory * queueHeapFraction), MIN_QUEUE_SIZE);
+        long upper = Math.max((long) (memory * maxQueueHeapFraction), initial);
+        return new QueueBudget(initial, MIN_QUEUE_SIZE, upper, queuePressureThreshold);
     }
 
     public void addHeapListener(HeapListener l) {
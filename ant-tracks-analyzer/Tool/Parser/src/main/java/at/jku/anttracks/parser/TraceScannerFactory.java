@@ -44,6 +44,10 @@ public class TraceScannerFactory {
         return to - from;
     }
 
+    public TraceFile.Access[] getFiles() {
+        return Arrays.copyOf(files, files.length);
+    }
+
     public Scanner getNext() throws IOException {
         Scanner result;
         if (index < files.length) {
@@ -11,14 +11,12 @@ import at.jku.anttracks.heap.symbols.AllocatedType;
 import at.jku.anttracks.heap.symbols.AllocationSite;
 import at.jku.anttracks.heap.symbols.Symbols;
 import at.jku.anttracks.parser.heap.pointer.PtrEvent;
-import at.jku.anttracks.util.MutableLong;
 import at.jku.anttracks.util.TraceException;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -69,8 +67,9 @@ public class TraceSlaveParser<W> {
     protected static final int ALLOCATION_SITE_INDEX_3 = 3; // big allocSite
     protected static final int EVENT_TYPE_INDEX = 0;
 
-    private final MutableLong size;
-    private final BlockingQueue<ThreadLocalHeap> masterQueue;
+    private final int id;
+    private final QueueBudget size;
+    private final SlaveQueues masterQueue;
     private final Decompressor decompressor;
     private final boolean check;
 
@@ -101,8 +100,8 @@ public class TraceSlaveParser<W> {
     // --------------------------------------------------------
 
     public TraceSlaveParser(int id,
-                            MutableLong size,
-                            BlockingQueue<ThreadLocalHeap> masterQueue,
+                            QueueBudget size,
+                            SlaveQueues masterQueue,
                             W workspace,
                             RelAddrFactory relAddrFactory,
                             Symbols symbols,
@@ -110,8 +109,10 @@ public class TraceSlaveParser<W> {
                             ErrorHandler error,
                             TraceParsingEventHandler mainEventHandler,
                             TraceParsingEventHandler... otherEventHandlers) {
+        this.id = id;
         this.size = size;
         this.masterQueue = masterQueue;
+        masterQueue.register(id);
         this.workspace = workspace;
         this.relAddrFactory = relAddrFactory;
         this.symbols = symbols;
@@ -146,51 +147,56 @@ public class TraceSlaveParser<W> {
 
         while (!worker.isInterrupted()) {
             try {
-                ThreadLocalHeap threadLocalHeap = masterQueue.take();
+                ThreadLocalHeap threadLocalHeap = masterQueue.poll(id);
+                if (threadLocalHeap == null) {
+                    // out of work, the queue budget may be too small to keep all slaves busy
+                    size.slaveIdle();
+                    long idleStart = System.nanoTime();
+                    threadLocalHeap = masterQueue.take(id);
+                    size.addSlaveIdleTime(System.nanoTime() - idleStart);
+                }
                 boolean cleanUp;
-                synchronized (threadLocalHeap) {
-                    if (threadLocalHeap.getState() == ThreadLocalHeap.STATE_IN_QUEUE) {
-                        threadLocalHeap.setState(ThreadLocalHeap.STATE_IN_PROCESS);
-                        cleanUp = false;
-                    } else if (threadLocalHeap.getState() == ThreadLocalHeap.STATE_IN_QUEUE_FOR_CLEAN_UP) {
-                        threadLocalHeap.setState(ThreadLocalHeap.STATE_IN_PROCESS);
-                        cleanUp = true;
-                    } else {
-                        errorOnthreadLocalHeapState(threadLocalHeap);
-                        return; // to make the compiler happy :-)
-                    }
+                if (threadLocalHeap.compareAndSetState(ThreadLocalHeap.STATE_IN_QUEUE, ThreadLocalHeap.STATE_IN_PROCESS)) {
+                    cleanUp = false;
+                } else if (threadLocalHeap.compareAndSetState(ThreadLocalHeap.STATE_IN_QUEUE_FOR_CLEAN_UP, ThreadLocalHeap.STATE_IN_PROCESS)) {
+                    cleanUp = true;
+                } else {
+                    errorOnthreadLocalHeapState(threadLocalHeap);
+                    return; // to make the compiler happy :-)
                 }
 
-                for (QueueEntry entry = threadLocalHeap.getQueue().poll(); entry != null; entry = threadLocalHeap.getQueue().poll()) {
-                    buffer = entry.getBuffer();
-                    long start = entry.getPosition();
-                    long end = start + buffer.limit();
-                    if (entry.isCompressed()) {
-                        buffer = decompressor.decode(buffer);
-                    }
-                    if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
-                        buffer.order(ByteOrder.LITTLE_ENDIAN);
-                    }
-
-                    while (buffer.position() != buffer.limit()) {
-                        evaluateEvent(threadLocalHeap, start, end);
+                do {
+                    for (QueueEntry entry = threadLocalHeap.getQueue().poll(); entry != null; entry = threadLocalHeap.getQueue().poll()) {
+                        buffer = entry.getBuffer();
+                        long start = entry.getPosition();
+                        long end = start + buffer.limit();
+                        if (entry.isCompressed()) {
+                            // the decompressor reuses its output buffer, i.e., the buffer is only valid until the next entry is decoded
+                            buffer = decompressor.decode(buffer);
+                        }
+                        if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+                            buffer.order(ByteOrder.LITTLE_ENDIAN);
+                        }
+
+                        parseBuffer(threadLocalHeap, buffer, start, end);
+
+                        buffer = null; // to avoid memory leak with last buffer
+                        parsedBuffers++;
+                        size.release(end - start);
                     }
 
-                    buffer = null; // to avoid memory leak with last buffer
-                    parsedBuffers++;
-                    synchronized (size) {
-                        size.add(-(end - start));
-                        size.notifyAll();
+                    if (cleanUp) {
+                        // Cleanups happen:
+                        // 1. When a file has been read (i.e., when multiple trace files are generated)
+                        // 2. When an event with SyncLevel = FULL is sent
+                        cleanUp(threadLocalHeap);
+                        cleanUp = false;
                     }
-                }
-
-                if (cleanUp) {
-                    // Cleanups happen:
-                    // 1. When a file has been read (i.e., when multiple trace files are generated)
-                    // 2. When an event with SyncLevel = FULL is sent
-                    cleanUp(threadLocalHeap);
-                }
-                parkThreadLocalHeap(threadLocalHeap);
+                    // parking fails in rare cases where the master adds another entry to the queue while we are parking, we then continue
+                    // with this heap because the entry may contain important events (like missing foreign filler oops, holes in the heap,
+                    // non-full LABs)
+                } while (!threadLocalHeap.park());
+                masterQueue.done(id);
             } catch (InterruptedException ie) {
                 worker.interrupt();
             } catch (Throwable e) {
@@ -204,23 +210,16 @@ public class TraceSlaveParser<W> {
         logger.log(Level.INFO, "slave finished, handled {0} chunks", parsedBuffers);
     }
 
-    private void parkThreadLocalHeap(ThreadLocalHeap threadLocalHeap) {
-        synchronized (threadLocalHeap) {
-            assert threadLocalHeap.getState() == ThreadLocalHeap.STATE_IN_PROCESS;
-            if (threadLocalHeap.getQueue().isEmpty()) {
-                threadLocalHeap.setState(ThreadLocalHeap.STATE_PARKED);
-            } else {
-                // this happens in rare cases where we did not get another
-                // buffer (queue is empty) and we start parking while the master
-                // is adding another entry to the queue
-                // in this case we end up with a thread local heap that is
-                // parked, but has an element in the queue which contains
-                // important events that will be missed (like missing foreign
-                // filler oops, holes in the heap, non-full LABs)
-                threadLocalHeap.setState(ThreadLocalHeap.STATE_IN_QUEUE);
-                masterQueue.add(threadLocalHeap);
-            }
-            threadLocalHeap.notifyAll();
+    /**
+     * Handles all events of a (decompressed) buffer, which have been written by the thread of the given thread-local heap.
+     *
+     * @param buffer the buffer's events range from its position to its limit
+     * @param start  the position of the buffer in the trace
+     * @param end    the position after the (compressed) buffer in the trace
+     */
+    protected void parseBuffer(ThreadLocalHeap threadLocalHeap, ByteBuffer buffer, long start, long end) throws TraceException {
+        while (buffer.position() != buffer.limit()) {
+            evaluateEvent(threadLocalHeap, start, end);
         }
     }
 
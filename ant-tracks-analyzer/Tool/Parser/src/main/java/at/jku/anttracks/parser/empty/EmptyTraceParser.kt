@@ -5,9 +5,7 @@ import at.jku.anttracks.heap.io.HeapPosition
 import at.jku.anttracks.heap.symbols.Symbols
 import at.jku.anttracks.parser.*
 import at.jku.anttracks.util.Consts
-import at.jku.anttracks.util.MutableLong
 import java.util.*
-import java.util.concurrent.BlockingQueue
 
 open class EmptyTraceParser(symbols: Symbols) : TraceParser<Void?>(symbols) {
     override fun doRemoveListenersOnCompletion(workspace: Void?) {
@@ -36,8 +34,8 @@ open class EmptyTraceParser(symbols: Symbols) : TraceParser<Void?>(symbols) {
         //
     }
 
-    override fun startSlaveThreads(queueSize: MutableLong?,
-                                   masterQueue: BlockingQueue<ThreadLocalHeap>?,
+    override fun startSlaveThreads(queueSize: QueueBudget?,
+                                   masterQueue: SlaveQueues?,
                                    workspace: Void?,
                                    handler: ErrorHandler?,
                                    check: Boolean,
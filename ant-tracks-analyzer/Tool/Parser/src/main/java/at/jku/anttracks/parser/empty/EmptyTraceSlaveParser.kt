@@ -4,12 +4,11 @@ package at.jku.anttracks.parser.empty
 import at.jku.anttracks.heap.symbols.AllocatedTypes.MIRROR_CLASS_NAME
 import at.jku.anttracks.parser.*
 import at.jku.anttracks.util.Consts
-import java.util.concurrent.BlockingQueue
 
 class EmptyTraceSlaveParser
 (id: Int,
- size: at.jku.anttracks.util.MutableLong,
- masterQueue: BlockingQueue<ThreadLocalHeap>,
+ size: at.jku.anttracks.parser.QueueBudget,
+ masterQueue: at.jku.anttracks.parser.SlaveQueues,
  relAddrFactory: RelAddrFactory,
  symbols: at.jku.anttracks.heap.symbols.Symbols,
  test: Boolean,
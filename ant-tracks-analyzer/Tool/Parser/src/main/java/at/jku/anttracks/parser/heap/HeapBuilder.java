@@ -79,7 +79,7 @@ public class HeapBuilder {
         tlh.getRetiredLabs().clear();
 
         tlh.finishCurrentObjectPointers(heap);
-        tlh.copyAndClearMultiThreadedEvents(heap.notYetMatchedMultiThreadedPtrEventsToHandleAtGCEnd);
+        tlh.copyAndClearMultiThreadedEvents(heap.multiThreadedPtrEventsToHandleAtGCEnd);
 
         // tlh.copyAndClearMoves(heap.movesSinceLastGCStart);
 
@@ -259,7 +259,6 @@ public class HeapBuilder {
                                           eventType,
                                           size,
                                           arrayLength,
-                                          threadLocalHeap.getPrototype(),
                                           symbols);
 
             object = AddressHO.Companion.createObject(objInfo, heap, false);
@@ -310,12 +309,12 @@ public class HeapBuilder {
 
             case GC_PTR_MULTITHREADED:
                 // A multithreaded ptr event can be sent from any event for any object
-                // The thread local lists will be merged after the GC and processed together
+                // The thread local buffers will be merged after the GC and processed together
                 assert fromAddr == -1 : "From address is not known for dedicated pointer events";
                 assert toAddr != -1 : "To address must be known for dedicated pointer events";
                 assert ptrs != null : "Dedicated ptr event must have ptrs";
 
-                threadLocalHeap.addMultithreadedPtrEvent(heap, toAddr, ptrs);
+                threadLocalHeap.addMultithreadedPtrEvent(toAddr, ptrs);
                 break;
 
             case GC_PTR_UPDATE_PREMOVE:
@@ -411,7 +410,6 @@ public class HeapBuilder {
                                                  eventType,
                                                  -1,
                                                  arrayLength,
-                                                 threadLocalHeap.getPrototype(),
                                                  symbols);
 
         AddressHO obj = AddressHO.Companion.createObject(objInfo, heap, false);
@@ -439,7 +437,6 @@ public class HeapBuilder {
                                                  eventType,
                                                  -1,
                                                  arrayLength,
-                                                 threadLocalHeap.getPrototype(),
                                                  symbols);
 
         AddressHO obj = AddressHO.Companion.createObject(objInfo, heap, false);
@@ -459,7 +456,6 @@ public class HeapBuilder {
                                                  eventType,
                                                  -1,
                                                  -1,
-                                                 threadLocalHeap.getPrototype(),
                                                  symbols);
         AddressHO obj = AddressHO.Companion.createObject(objInfo, heap, false);
         long addr = assignToLab(threadLocalHeap.getInternalThreadName(), threadLocalHeap.getCurrentLabs().get(SpaceType.EDEN), obj, UNDEFINED_ADDR);
@@ -484,7 +480,6 @@ public class HeapBuilder {
                                                  eventType,
                                                  -1,
                                                  arrayLength,
-                                                 threadLocalHeap.getPrototype(),
                                                  symbols);
 
         AddressHO obj = AddressHO.Companion.createObject(objInfo, heap, false);
@@ -504,7 +499,6 @@ public class HeapBuilder {
                                                  eventType,
                                                  -1,
                                                  -1,
-                                                 threadLocalHeap.getPrototype(),
                                                  symbols);
 
         AddressHO obj = AddressHO.Companion.createObject(objInfo, heap, false);
@@ -540,7 +534,6 @@ public class HeapBuilder {
                                                  eventType,
                                                  -1,
                                                  arrayLength,
-                                                 threadLocalHeap.getPrototype(),
                                                  symbols);
 
         AddressHO obj = AddressHO.Companion.createObject(objInfo, heap, false);
@@ -568,7 +561,6 @@ public class HeapBuilder {
                                                  eventType,
                                                  size,
                                                  arrayLength,
-                                                 threadLocalHeap.getPrototype(),
                                                  symbols);
 
         AddressHO obj = AddressHO.Companion.createObject(objInfo, heap, false);
@@ -644,6 +636,7 @@ public class HeapBuilder {
     private long assignToLab(String thread, Lab currentLab, AddressHO obj, long addr) throws TraceException {
         long assignedAddr = Lab.OBJECT_NOT_ASSIGNED;
         if (currentLab != null) {
+            heap.getLabAppends().beforeAppend(currentLab);
             assignedAddr = currentLab.tryAllocate(addr, obj);
         } else {
             errorOnUndefinedAddr(addr);
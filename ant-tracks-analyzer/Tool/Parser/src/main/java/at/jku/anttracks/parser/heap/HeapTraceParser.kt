@@ -1,6 +1,7 @@
 
 package at.jku.anttracks.parser.heap
 
+import at.jku.anttracks.heap.DeadObjectListener
 import at.jku.anttracks.heap.DetailedHeap
 import at.jku.anttracks.heap.GarbageCollectionCause
 import at.jku.anttracks.heap.GarbageCollectionLookup
@@ -15,6 +16,7 @@ import at.jku.anttracks.util.Counter
 import at.jku.anttracks.util.TraceException
 import java.io.FileNotFoundException
 import java.io.IOException
+import java.util.concurrent.CopyOnWriteArrayList
 import java.util.logging.Level
 
 open class HeapTraceParser : TraceParser<DetailedHeap> {
@@ -31,6 +33,8 @@ open class HeapTraceParser : TraceParser<DetailedHeap> {
     var latestGCStartTime: Long = -1
     var latestGCEndTime: Long = -1
 
+    private val deadObjectListeners = CopyOnWriteArrayList<DeadObjectListener>()
+
     init {
         addEventHandler { heapInfo, parsingInfo -> AdditionalPrintingEventHandler(parsingInfo) }
     }
@@ -41,6 +45,10 @@ open class HeapTraceParser : TraceParser<DetailedHeap> {
         for (hl in heapListeners) {
             heap.addListener(hl)
         }
+        for (dl in deadObjectListeners) {
+            heap.addDeadObjectListener(dl)
+        }
+        parsingInfo.objectInfoCache = heap.cache
         return heap
     }
 
@@ -54,9 +62,13 @@ open class HeapTraceParser : TraceParser<DetailedHeap> {
         } else {
             heap = HeapBuilder.constructHeap(symbols, parsingInfo)
         }
+        parsingInfo.objectInfoCache = heap.cache
         for (hl in heapListeners) {
             heap.addListener(hl)
         }
+        for (dl in deadObjectListeners) {
+            heap.addDeadObjectListener(dl)
+        }
 
         // This is the case if the first selected GC point has exaclty been reconstructed from a heap dump file.
         // The GC-end event at which the heap dump file got created will not be read from the trace anymore, therefore
@@ -98,10 +110,20 @@ open class HeapTraceParser : TraceParser<DetailedHeap> {
         } catch (e: TraceException) {
             e.printStackTrace()
         }
+        logger.log(Level.INFO, "object info cache: ${workspace.cache.size} infos, ${workspace.parsingInfo.objectInfoCacheStatistics}")
     }
 
     override fun doRemoveListenersOnCompletion(workspace: DetailedHeap) {
         workspace.removeAllListeners()
+        deadObjectListeners.clear()
+    }
+
+    fun addDeadObjectListener(l: DeadObjectListener) {
+        deadObjectListeners.add(l)
+    }
+
+    fun removeDeadObjectListener(l: DeadObjectListener) {
+        deadObjectListeners.remove(l)
     }
 
     @Throws(TraceException::class)
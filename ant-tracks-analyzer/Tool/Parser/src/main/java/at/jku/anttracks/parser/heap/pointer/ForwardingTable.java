@@ -0,0 +1,81 @@
+package at.jku.anttracks.parser.heap.pointer;
+
+import at.jku.anttracks.heap.DetailedHeap;
+import at.jku.anttracks.heap.ObjectVisitor;
+import at.jku.anttracks.heap.labs.Lab;
+import at.jku.anttracks.heap.space.Space;
+import at.jku.anttracks.util.TraceException;
+
+import java.util.Arrays;
+
+/**
+ * Forwarding addresses of all objects in the back LABs of a space that is being collected, i.e., the tags set by the moves of the current
+ * GC. Object addresses and tags are kept in two sorted primitive arrays, so resolving a pointer at the end of the GC is a single binary
+ * search instead of a LAB lookup followed by an object lookup.
+ * <p>
+ * The table is allocated for all back LABs at once (see {@link #allocate(Space)}), afterwards every LAB fills its own slice via
+ * {@link #fill(DetailedHeap, int)}, such that LABs can be processed in parallel.
+ * <p>
+ * The table costs 16 bytes per object in the back LABs of the space, it only lives until the pointers have been updated at the end of
+ * the GC.
+ */
+public class ForwardingTable {
+    public static final long NOT_FOUND = Long.MIN_VALUE;
+
+    private final Space space;
+    private final Lab[] labs;
+    private final int[] firstIndices;
+    private final long[] from;
+    private final long[] to;
+
+    private ForwardingTable(Space space, Lab[] labs, int[] firstIndices, int size) {
+        this.space = space;
+        this.labs = labs;
+        this.firstIndices = firstIndices;
+        this.from = new long[size];
+        this.to = new long[size];
+    }
+
+    /**
+     * Allocates the table for the back LABs of the given space, the table has to be filled LAB by LAB before it can be used.
+     */
+    public static ForwardingTable allocate(Space space) {
+        Lab[] labs = space.getBackLabs().get().toArray(new Lab[0]);
+        int[] firstIndices = new int[labs.length + 1];
+        for (int i = 0; i < labs.length; i++) {
+            firstIndices[i + 1] = firstIndices[i] + labs[i].getObjectCount();
+        }
+        return new ForwardingTable(space, labs, firstIndices, firstIndices[labs.length]);
+    }
+
+    public int getLabCount() {
+        return labs.length;
+    }
+
+    /**
+     * Enters the addresses and tags of all objects in the LAB with the given index. Different LABs may be filled concurrently.
+     */
+    public void fill(DetailedHeap heap, int lab) throws TraceException {
+        final int[] next = {firstIndices[lab]};
+        labs[lab].iterate(heap, space.getInfo(), null, (address, obj, spaceInfo, rootPtrs) -> {
+            from[next[0]] = address;
+            to[next[0]] = obj.getTag();
+            next[0]++;
+        }, ObjectVisitor.Settings.Companion.getNO_INFOS());
+        if (next[0] != firstIndices[lab + 1]) {
+            throw new TraceException(String.format("LAB @ %,d of space %s changed while building the forwarding table", labs[lab].addr, space.toShortString()));
+        }
+    }
+
+    /**
+     * @return the tag of the object at the given address, or {@link #NOT_FOUND} if no object starts there
+     */
+    public long get(long addr) {
+        int index = Arrays.binarySearch(from, addr);
+        return index >= 0 ? to[index] : NOT_FOUND;
+    }
+
+    public int size() {
+        return from.length;
+    }
+}
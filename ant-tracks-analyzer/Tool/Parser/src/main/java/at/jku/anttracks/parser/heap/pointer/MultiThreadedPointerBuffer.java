@@ -0,0 +1,89 @@
+package at.jku.anttracks.parser.heap.pointer;
+
+import java.util.Arrays;
+
+/**
+ * Pointer events of a multi-threaded GC that have been parsed by a single thread, staged in primitive arrays until the end of the GC.
+ * <p>
+ * The VM splits the pointers of an object across GC threads if it copies the object in parallel. The first event of such an object contains
+ * the object's addresses and only some of its pointers (an <i>incomplete object</i>), the remaining pointers arrive as
+ * {@link at.jku.anttracks.parser.EventType#GC_PTR_MULTITHREADED} events (<i>chunks</i>), possibly in other threads' buffers and even
+ * before the incomplete object. Thus, nothing is matched while parsing, every thread only appends to its own buffer, and all buffers are
+ * merged once at the end of the GC (see {@link MultiThreadedPointerTable#merge(java.util.Collection)}).
+ * <p>
+ * A buffer must only be used by one thread at a time.
+ */
+public class MultiThreadedPointerBuffer {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // incomplete objects, their pointers are stored consecutively in objectPtrs
+    long[] objectFrom = new long[INITIAL_CAPACITY];
+    long[] objectTo = new long[INITIAL_CAPACITY];
+    int[] objectPtrCount = new int[INITIAL_CAPACITY];
+    int[] objectPtrStart = new int[INITIAL_CAPACITY + 1];
+    long[] objectPtrs = new long[INITIAL_CAPACITY];
+    int objects;
+
+    // chunks, their pointers are stored consecutively in chunkPtrs
+    long[] chunkTo = new long[INITIAL_CAPACITY];
+    int[] chunkPtrStart = new int[INITIAL_CAPACITY + 1];
+    long[] chunkPtrs = new long[INITIAL_CAPACITY];
+    int chunks;
+
+    /**
+     * Stages an object whose pointers have only partially been sent with its first event.
+     *
+     * @param fromAddr the address of the object before the GC
+     * @param toAddr   the address of the object after the GC
+     * @param ptrs     the pointer array of the object, sized for all of its pointers
+     * @param top      the number of pointers that have already been sent
+     */
+    public void addIncompleteObject(long fromAddr, long toAddr, long[] ptrs, int top) {
+        if (objects == objectTo.length) {
+            int capacity = objects + (objects >> 1);
+            objectFrom = Arrays.copyOf(objectFrom, capacity);
+            objectTo = Arrays.copyOf(objectTo, capacity);
+            objectPtrCount = Arrays.copyOf(objectPtrCount, capacity);
+            objectPtrStart = Arrays.copyOf(objectPtrStart, capacity + 1);
+        }
+        int start = objectPtrStart[objects];
+        objectPtrs = ensureCapacity(objectPtrs, start + top);
+        System.arraycopy(ptrs, 0, objectPtrs, start, top);
+        objectFrom[objects] = fromAddr;
+        objectTo[objects] = toAddr;
+        objectPtrCount[objects] = ptrs.length;
+        objectPtrStart[++objects] = start + top;
+    }
+
+    /**
+     * Stages pointers of the object at the given (post-GC) address that have been sent separately.
+     */
+    public void addChunk(long toAddr, long[] ptrs) {
+        if (chunks == chunkTo.length) {
+            int capacity = chunks + (chunks >> 1);
+            chunkTo = Arrays.copyOf(chunkTo, capacity);
+            chunkPtrStart = Arrays.copyOf(chunkPtrStart, capacity + 1);
+        }
+        int start = chunkPtrStart[chunks];
+        chunkPtrs = ensureCapacity(chunkPtrs, start + ptrs.length);
+        System.arraycopy(ptrs, 0, chunkPtrs, start, ptrs.length);
+        chunkTo[chunks] = toAddr;
+        chunkPtrStart[++chunks] = start + ptrs.length;
+    }
+
+    public int getIncompleteObjectCount() {
+        return objects;
+    }
+
+    public int getChunkCount() {
+        return chunks;
+    }
+
+    public boolean isEmpty() {
+        return objects == 0 && chunks == 0;
+    }
+
+    private static long[] ensureCapacity(long[] array, int capacity) {
+        return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length + (array.length >> 1)));
+    }
+}
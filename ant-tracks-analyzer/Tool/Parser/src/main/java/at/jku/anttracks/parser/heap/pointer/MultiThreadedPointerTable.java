@@ -0,0 +1,101 @@
+package at.jku.anttracks.parser.heap.pointer;
+
+import at.jku.anttracks.util.TraceException;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The objects of a multi-threaded GC whose pointers have been sent in several events, sorted by their post-GC address, with all of their
+ * pointers. Built once at the end of the GC from the {@link MultiThreadedPointerBuffer}s of all threads.
+ */
+public class MultiThreadedPointerTable {
+    private final long[] toAddrs;
+    private final long[] fromAddrs;
+    private final long[][] ptrs;
+
+    private MultiThreadedPointerTable(long[] toAddrs, long[] fromAddrs, long[][] ptrs) {
+        this.toAddrs = toAddrs;
+        this.fromAddrs = fromAddrs;
+        this.ptrs = ptrs;
+    }
+
+    /**
+     * Sorts the incomplete objects of all buffers by address and appends every chunk to its object.
+     *
+     * @throws TraceException if an object has been sent twice, if a chunk does not belong to any object, or if an object receives more
+     *                        pointers than it has
+     */
+    public static MultiThreadedPointerTable merge(Collection<MultiThreadedPointerBuffer> buffers) throws TraceException {
+        MultiThreadedPointerBuffer[] staged = buffers.toArray(new MultiThreadedPointerBuffer[0]);
+        int size = 0;
+        for (MultiThreadedPointerBuffer buffer : staged) {
+            size += buffer.objects;
+        }
+
+        // sort (address, buffer | object index) pairs by address
+        long[] toAddrs = new long[size];
+        long[] refs = new long[size];
+        int n = 0;
+        for (int b = 0; b < staged.length; b++) {
+            for (int o = 0; o < staged[b].objects; o++) {
+                toAddrs[n] = staged[b].objectTo[o];
+                refs[n++] = ((long) b << 32) | o;
+            }
+        }
+        LongArrays.radixSort(toAddrs, refs);
+
+        long[] fromAddrs = new long[size];
+        long[][] ptrs = new long[size][];
+        int[] tops = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && toAddrs[i] == toAddrs[i - 1]) {
+                throw new TraceException(String.format("Multi-threaded pointer events of object @ %,d have been started twice", toAddrs[i]));
+            }
+            MultiThreadedPointerBuffer buffer = staged[(int) (refs[i] >>> 32)];
+            int o = (int) refs[i];
+            fromAddrs[i] = buffer.objectFrom[o];
+            ptrs[i] = new long[buffer.objectPtrCount[o]];
+            tops[i] = buffer.objectPtrStart[o + 1] - buffer.objectPtrStart[o];
+            System.arraycopy(buffer.objectPtrs, buffer.objectPtrStart[o], ptrs[i], 0, tops[i]);
+        }
+
+        for (MultiThreadedPointerBuffer buffer : staged) {
+            for (int c = 0; c < buffer.chunks; c++) {
+                int i = Arrays.binarySearch(toAddrs, buffer.chunkTo[c]);
+                if (i < 0) {
+                    throw new TraceException(String.format("Multi-threaded pointer event for object @ %,d without a preceding object pointer event",
+                                                           buffer.chunkTo[c]));
+                }
+                int length = buffer.chunkPtrStart[c + 1] - buffer.chunkPtrStart[c];
+                if (tops[i] + length > ptrs[i].length) {
+                    throw new TraceException(String.format("Object @ %,d received %,d pointers but has only %,d",
+                                                           toAddrs[i],
+                                                           tops[i] + length,
+                                                           ptrs[i].length));
+                }
+                System.arraycopy(buffer.chunkPtrs, buffer.chunkPtrStart[c], ptrs[i], tops[i], length);
+                tops[i] += length;
+            }
+        }
+
+        return new MultiThreadedPointerTable(toAddrs, fromAddrs, ptrs);
+    }
+
+    public int size() {
+        return toAddrs.length;
+    }
+
+    public long getToAddr(int index) {
+        return toAddrs[index];
+    }
+
+    public long getFromAddr(int index) {
+        return fromAddrs[index];
+    }
+
+    public long[] getPointers(int index) {
+        return ptrs[index];
+    }
+}
@@ -11,14 +11,16 @@ import at.jku.anttracks.heap.space.SpaceInfo;
 import at.jku.anttracks.heap.symbols.Symbols;
 import at.jku.anttracks.parser.EventType;
 import at.jku.anttracks.parser.TraceParser;
+import at.jku.anttracks.util.Consts;
 import at.jku.anttracks.util.ParallelizationUtil;
 import at.jku.anttracks.util.TraceException;
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static at.jku.anttracks.parser.EventType.GC_PTR_UPDATE_POSTMOVE;
@@ -72,6 +74,7 @@ public class PointerHandling {
                     }
                 }
                 heapObject.fillPointers(pointers);
+                heap.getReachableBytesTracker().pointersUpdated(toAddr);
             }
         }
     }
@@ -83,9 +86,18 @@ public class PointerHandling {
         // getObject() takes care of this by looking at back/front depending on the space's transition type
         AddressHO object = heap.getObject(fromAddr);
         object.fillPointers(ptrs);
+        heap.getReachableBytesTracker().pointersUpdated(fromAddr);
     }
 
     public static void updateRefsNew(DetailedHeap heap, Space space, Lab lab, long addr, AddressHO object) throws TraceException {
+        updateRefsNew(heap, space, lab, addr, object, null);
+    }
+
+    /**
+     * @param forwarding forwarding tables indexed by space id (may be null), pointers into collected spaces without a table are resolved
+     *                   via the heap
+     */
+    public static void updateRefsNew(DetailedHeap heap, Space space, Lab lab, long addr, AddressHO object, ForwardingTable[] forwarding) throws TraceException {
         if (object.getPointerCount() == 0) {
             // Objects that don't have pointers don't have to be handled
             return;
@@ -113,9 +125,16 @@ public class PointerHandling {
                     long movedTo = heap.movesSinceLastGCStart.get(oldPointer);
                     object.setPointer(ptrNr, movedTo);
                     */
-                    AddressHO oldObj = heap.getObjectInBack(oldPointer);
-                    assert oldObj != null : "Error during processing pointers of " + object + ".\nNo object found at " + oldPointer;
-                    object.setPointer(ptrNr, oldObj.getTag());
+                    long forwarded = ForwardingTable.NOT_FOUND;
+                    if (forwarding != null && ptrSpace.getId() < forwarding.length && forwarding[ptrSpace.getId()] != null) {
+                        forwarded = forwarding[ptrSpace.getId()].get(oldPointer);
+                    }
+                    if (forwarded == ForwardingTable.NOT_FOUND) {
+                        AddressHO oldObj = heap.getObjectInBack(oldPointer);
+                        assert oldObj != null : "Error during processing pointers of " + object + ".\nNo object found at " + oldPointer;
+                        forwarded = oldObj.getTag();
+                    }
+                    object.setPointer(ptrNr, forwarded);
                 }
             }
         }
@@ -210,54 +229,125 @@ public class PointerHandling {
         return false;
     }
 
+    /**
+     * Completes the pointers of objects whose pointer events have been sent by several threads, and updates all pointers to objects that
+     * have been moved by the GC that ends now.
+     * <p>
+     * Both steps are split at object or LAB granularity across all cores, so a single large space does not serialize the GC end. Pointers
+     * into a collected space are resolved via a {@link ForwardingTable} of that space, and LABs that cannot contain pointers are skipped.
+     */
     public static void handlePtrsOnGCEnd(DetailedHeap heap, boolean failed) throws TraceException {
         if (heap.getSymbols().expectPointers) {
-            for (IncompletePointerInfo info : heap.notYetMatchedMultiThreadedPtrEventsToHandleAtGCEnd) {
-                heap.multiThreadedPtrEventsToHandleAtGCEnd.get(info.toAddr).addPointers(info.ptrs);
-            }
-            heap.notYetMatchedMultiThreadedPtrEventsToHandleAtGCEnd.clear();
-
-            for (Map.Entry<Long, IncompletePointerInfo> entry : heap.multiThreadedPtrEventsToHandleAtGCEnd.entrySet()) {
-                assert entry.getValue().isComplete() : "Incomplete pointer info must have been completed by multi-threaded events but this is not the case here!";
-                PointerHandling.handleMultiThreadedPtrEvent(heap, entry.getValue().fromAddr, entry.getValue().toAddr, entry.getValue().ptrs);
-            }
+            MultiThreadedPointerTable multiThreaded = MultiThreadedPointerTable.merge(heap.multiThreadedPtrEventsToHandleAtGCEnd);
             heap.multiThreadedPtrEventsToHandleAtGCEnd.clear();
 
-            ParallelizationUtil.temporaryExecutorServiceBlocking(Arrays.asList(heap.getSpacesCloned()).iterator(), (Space space) -> {
-                try {
-                    if (space != null) {
-                        switch (space.getTransitionType()) {
-                            case Accumulative:
-                                space.iterateUpdatePointer(new PtrUpdateVisitor(true, heap, failed));
-                                space.iterateUpdatePointer(new PtrUpdateVisitor(false, heap, failed));
-                                break;
-                            case ReplaceAll:
-                                space.iterateUpdatePointer(new PtrUpdateVisitor(true, heap, failed));
-                                break;
-                            case None:
-                                if (!failed) {
-                                    throw new TraceException("Space needs to be in transition if gc did not fail");
-                                }
-                                space.iterateUpdatePointer(new PtrUpdateVisitor(true, heap, failed));
-                                break;
-                            default:
-                                assert false : "here be dragons";
+            Space[] spaces = heap.getSpacesCloned();
+            int maxSpaceId = -1;
+            for (Space space : spaces) {
+                if (space != null) {
+                    maxSpaceId = Math.max(maxSpaceId, space.getId());
+                }
+            }
+            ForwardingTable[] forwarding = new ForwardingTable[maxSpaceId + 1];
+            List<ForwardingTable> tables = new ArrayList<>();
+            List<Space> updateSpaces = new ArrayList<>();
+            List<Lab> updateLabs = new ArrayList<>();
+            BooleanArrayList updateFront = new BooleanArrayList();
+            for (Space space : spaces) {
+                if (space == null) {
+                    continue;
+                }
+                if (!failed && space.isBeingCollected()) {
+                    ForwardingTable table = ForwardingTable.allocate(space);
+                    forwarding[space.getId()] = table;
+                    tables.add(table);
+                }
+                switch (space.getTransitionType()) {
+                    case Accumulative:
+                        addLabsToUpdate(space, true, updateSpaces, updateLabs, updateFront);
+                        addLabsToUpdate(space, false, updateSpaces, updateLabs, updateFront);
+                        break;
+                    case ReplaceAll:
+                        addLabsToUpdate(space, true, updateSpaces, updateLabs, updateFront);
+                        break;
+                    case None:
+                        if (!failed) {
+                            throw new TraceException("Space needs to be in transition if gc did not fail");
                         }
+                        addLabsToUpdate(space, true, updateSpaces, updateLabs, updateFront);
+                        break;
+                    default:
+                        assert false : "here be dragons";
+                }
+            }
+
+            // 1. complete multi-threaded pointer events and fill the forwarding tables (tags have all been set by now)
+            int[] tableStarts = new int[tables.size() + 1];
+            for (int i = 0; i < tables.size(); i++) {
+                tableStarts[i + 1] = tableStarts[i] + tables.get(i).getLabCount();
+            }
+            forEachParallel(multiThreaded.size() + tableStarts[tables.size()], item -> {
+                if (item < multiThreaded.size()) {
+                    PointerHandling.handleMultiThreadedPtrEvent(heap,
+                                                                multiThreaded.getFromAddr(item),
+                                                                multiThreaded.getToAddr(item),
+                                                                multiThreaded.getPointers(item));
+                } else {
+                    int tableLab = item - multiThreaded.size();
+                    int table = 0;
+                    while (tableStarts[table + 1] <= tableLab) {
+                        table++;
                     }
-                } catch (TraceException e) {
-                    e.printStackTrace();
+                    tables.get(table).fill(heap, tableLab - tableStarts[table]);
                 }
             });
 
+            // 2. update pointers LAB by LAB
+            PtrUpdateVisitor frontVisitor = new PtrUpdateVisitor(true, heap, failed, forwarding);
+            PtrUpdateVisitor backVisitor = new PtrUpdateVisitor(false, heap, failed, forwarding);
+            forEachParallel(updateLabs.size(),
+                            item -> updateLabs.get(item).iterateUpdatePointer(updateFront.getBoolean(item) ? frontVisitor : backVisitor, updateSpaces.get(item)));
+
             if (failed) {
-                Arrays.stream(heap.getSpacesCloned())
-                      .filter(s -> s.getTransitionType() == SpaceInfo.TransitionType.None)
+                Arrays.stream(spaces)
+                      .filter(s -> s != null && s.getTransitionType() == SpaceInfo.TransitionType.None)
                       .flatMap(s -> Arrays.stream(s.getLabs()))
                       .forEach(Lab::resetForwardingAddresses);
             }
         }
     }
 
+    private static void addLabsToUpdate(Space space, boolean front, List<Space> spaces, List<Lab> labs, BooleanArrayList fronts) {
+        for (Lab lab : (front ? space.getFrontLabs() : space.getBackLabs()).get()) {
+            if (lab.mayContainPointers()) {
+                spaces.add(space);
+                labs.add(lab);
+                fronts.add(front);
+            }
+        }
+    }
+
+    private interface Item {
+        void process(int item) throws TraceException;
+    }
+
+    // distributes the items dynamically, such that a few large LABs do not keep a single thread busy while the others are idle
+    private static void forEachParallel(int items, Item action) {
+        if (items == 0) {
+            return;
+        }
+        AtomicInteger next = new AtomicInteger();
+        ParallelizationUtil.temporaryExecutorServiceBlocking((threadId, threadCount) -> {
+            for (int item = next.getAndIncrement(); item < items; item = next.getAndIncrement()) {
+                try {
+                    action.process(item);
+                } catch (TraceException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, Math.min(items, Consts.getAVAILABLE_PROCESSORS()));
+    }
+
     public static void validateAllPointers(DetailedHeap heap) throws TraceException {
         class ThreadLocalPointerValidator implements ObjectVisitor {
             class InvalidPointerPair {
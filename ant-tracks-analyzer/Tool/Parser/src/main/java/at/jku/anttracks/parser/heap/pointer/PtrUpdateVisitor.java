@@ -11,11 +11,18 @@ public class PtrUpdateVisitor {
     public final boolean front;
     public final DetailedHeap heap;
     private final boolean gcFailed;
+    // indexed by space id, null for spaces that are not being collected
+    private final ForwardingTable[] forwarding;
 
     public PtrUpdateVisitor(boolean front, DetailedHeap heap, boolean failed) {
+        this(front, heap, failed, null);
+    }
+
+    public PtrUpdateVisitor(boolean front, DetailedHeap heap, boolean failed, ForwardingTable[] forwarding) {
         this.front = front;
         this.heap = heap;
         this.gcFailed = failed;
+        this.forwarding = forwarding;
     }
 
     public void visit(Space space, Lab lab, long addr, AddressHO object) {
@@ -23,7 +30,7 @@ public class PtrUpdateVisitor {
             if (gcFailed) {
                 PointerHandling.updateRefsFailedGC(heap, space, lab, addr, object);
             } else {
-                PointerHandling.updateRefsNew(heap, space, lab, addr, object);
+                PointerHandling.updateRefsNew(heap, space, lab, addr, object, forwarding);
             }
         } catch (TraceException e) {
             e.printStackTrace();
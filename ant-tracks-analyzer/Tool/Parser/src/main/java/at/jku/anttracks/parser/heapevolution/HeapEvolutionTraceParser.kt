@@ -7,8 +7,6 @@ import at.jku.anttracks.heap.io.MetaDataReaderConfig
 import at.jku.anttracks.heap.symbols.Symbols
 import at.jku.anttracks.parser.*
 import at.jku.anttracks.parser.heap.HeapTraceParser
-import at.jku.anttracks.util.MutableLong
-import java.util.concurrent.BlockingQueue
 
 enum class HeapEvolutionAction {
     TRACK_PERM_OBJECTS,
@@ -42,8 +40,8 @@ class HeapEvolutionTraceParser(symbols: Symbols,
     // stores the time of the last gc point; used to detect when a final gc start is omitted by the parser (see doParseCleanupAfterSuccessfulParse)
     var latestTime: Long = -1
 
-    override fun startSlaveThreads(queueSize: MutableLong?,
-                                   masterQueue: BlockingQueue<ThreadLocalHeap>?,
+    override fun startSlaveThreads(queueSize: QueueBudget?,
+                                   masterQueue: SlaveQueues?,
                                    workspace: DetailedHeap?,
                                    handler: ErrorHandler?,
                                    check: Boolean,
@@ -370,7 +370,6 @@ class HprofToFastHeapHandler : CountingRecordHandler() {
             typeid++
         }
 
-        val prototype = ObjectInfo()
         objectInfos = classKeys
                 .mapIndexed { i, classKey ->
                     objectInfoCache["unknown thread",
@@ -379,7 +378,6 @@ class HprofToFastHeapHandler : CountingRecordHandler() {
                             EventType.NOP,
                             -1,
                             arrayLengths[i],
-                            prototype,
                             symbols]
                 }
                 .toTypedArray()
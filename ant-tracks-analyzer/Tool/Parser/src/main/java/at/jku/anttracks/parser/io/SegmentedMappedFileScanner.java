@@ -0,0 +1,137 @@
+package at.jku.anttracks.parser.io;
+
+import at.jku.anttracks.parser.Scanner;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Scanner that maps the scanned range of a file once, in segments of {@link #SEGMENT_SIZE} bytes, instead of mapping and loading a small
+ * window at a time (see {@link MappedFileScanner}). Paging is left to the OS page cache.
+ * <p>
+ * {@link #getBuffer(int)} does not copy, it returns a read-only slice of the mapping. Every segment additionally maps the first
+ * {@link #SEGMENT_OVERLAP} bytes of its successor, such that a read that starts in a segment never has to be stitched together from two
+ * segments.
+ */
+public final class SegmentedMappedFileScanner extends Scanner {
+    private final static long SEGMENT_SIZE = 1L << 30;
+    private final static long SEGMENT_OVERLAP = 1L << 26;
+
+    private final FileInputStream stream;
+    private final FileChannel inChannel;
+    private final long from;
+    private final long to;
+    private final MappedByteBuffer[] segments;
+    private long position;
+
+    // set by segment(), offset of the current position within the returned segment
+    private int offset;
+
+    public SegmentedMappedFileScanner(long globalOffset, FileInputStream stream, long from, long to) throws IOException {
+        super(globalOffset);
+        this.stream = stream;
+        inChannel = stream.getChannel();
+        this.from = from;
+        this.to = to;
+        segments = new MappedByteBuffer[(int) Math.max(1, (to - from + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        position = from;
+    }
+
+    private MappedByteBuffer segment(int length) throws IOException {
+        if (position + length > to) {
+            throw new IOException("Not enough data available");
+        }
+        int index = (int) Math.min((position - from) / SEGMENT_SIZE, segments.length - 1);
+        MappedByteBuffer segment = segments[index];
+        if (segment == null) {
+            long start = from + index * SEGMENT_SIZE;
+            long end = Math.min(start + SEGMENT_SIZE + SEGMENT_OVERLAP, to);
+            segment = inChannel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments[index] = segment;
+        }
+        offset = (int) (position - from - index * SEGMENT_SIZE);
+        if (offset + length > segment.limit()) {
+            throw new IOException("Read of " + length + "b exceeds segment overlap");
+        }
+        return segment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // slices handed out by getBuffer remain valid, a mapping is only released once it is garbage collected
+        inChannel.close();
+        stream.close();
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void skip(int length) throws IOException {
+        if (position + length > to) {
+            throw new IOException("Not enough data available");
+        }
+        position += length;
+    }
+
+    @Override
+    public boolean isAvailable(int length) {
+        return position + length <= to;
+    }
+
+    @Override
+    public byte getByte() throws IOException {
+        byte value = segment(1).get(offset);
+        position += 1;
+        return value;
+    }
+
+    @Override
+    public short getShort() throws IOException {
+        short value = segment(2).getShort(offset);
+        position += 2;
+        return value;
+    }
+
+    @Override
+    public int getInt() throws IOException {
+        int value = segment(4).getInt(offset);
+        position += 4;
+        return value;
+    }
+
+    @Override
+    public long getLong() throws IOException {
+        long value = segment(8).getLong(offset);
+        position += 8;
+        return value;
+    }
+
+    @Override
+    public byte[] get(int length) throws IOException {
+        ByteBuffer segment = segment(length).duplicate();
+        segment.position(offset);
+        byte[] result = new byte[length];
+        segment.get(result);
+        position += length;
+        return result;
+    }
+
+    @Override
+    public ByteBuffer getBuffer(int length) throws IOException {
+        ByteBuffer slice = segment(length).duplicate();
+        slice.position(offset);
+        slice.limit(offset + length);
+        slice = slice.slice().asReadOnlyBuffer();
+        slice.order(ByteOrder.LITTLE_ENDIAN);
+        position += length;
+        return slice;
+    }
+}
@@ -4,6 +4,7 @@ package at.jku.anttracks.parser.main;
 import at.jku.anttracks.heap.HeapAdapter;
 import at.jku.anttracks.heap.io.MetaDataWriterConfig;
 import at.jku.anttracks.heap.io.MetaDataWriterListener;
+import at.jku.anttracks.heap.labs.Lab;
 import at.jku.anttracks.heap.statistics.Statistics;
 import at.jku.anttracks.heap.symbols.Symbols;
 import at.jku.anttracks.classification.ClassifierChain;
@@ -13,18 +14,22 @@ import at.jku.anttracks.classification.ClassifierChain;
 import at.jku.anttracks.heap.DetailedHeap;
 import at.jku.anttracks.parser.ParserGCInfo;
 import at.jku.anttracks.parser.ParsingInfo;
+import at.jku.anttracks.parser.TraceFile;
 import at.jku.anttracks.parser.TraceParser;
 import at.jku.anttracks.parser.classdefinitions.ClassDefinitionsFile;
 import at.jku.anttracks.parser.heap.HeapTraceParser;
 import at.jku.anttracks.parser.heap.HeapBuilder;
 import at.jku.anttracks.parser.symbols.SymbolsFile;
 import at.jku.anttracks.parser.symbols.SymbolsParser;
+import at.jku.anttracks.parser.threadseparation.ThreadChannelSeparatingTraceParser;
+import at.jku.anttracks.parser.threadseparation.ThreadTraceReader;
 import at.jku.anttracks.util.ApplicationStatistics;
 import at.jku.anttracks.util.GCReporter;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -47,7 +52,13 @@ public class Main {
         int useCallContext = Symbols.CALLCONTEXT_NONE;
 
         int metaDumpCount = MetaDataWriterConfig.DEFAULT_DUMP_COUNT;
+        boolean metaDumpCountGiven = false;
         boolean metaMajorGCsOnly = MetaDataWriterConfig.DEFAULT_AT_MAJOR_GCS_ONLY;
+        int metaMaxSnapshotsInFlight = MetaDataWriterConfig.DEFAULT_MAX_SNAPSHOTS_IN_FLIGHT;
+        double metaMaxReplaySeconds = MetaDataWriterConfig.DEFAULT_MAX_REPLAY_SECONDS;
+        long metaDiskBudget = MetaDataWriterConfig.DEFAULT_DISK_BUDGET;
+        File threadSeparationPath = null;
+        boolean threadSeparationMapped = false;
         boolean check = false;
 
         for (int index = 0; index < argv.length; index++) {
@@ -66,13 +77,41 @@ public class Main {
                     System.out.printf("Meta path: %s\n", metaPath);
                 } else if (key.equals("MetaDataDumpCount")) {
                     metaDumpCount = Integer.parseInt(value);
+                    metaDumpCountGiven = true;
                     System.out.printf("Meta dump count: %s\n", metaDumpCount);
                 } else if (key.equals("MetaDataAtMajorGCsOnly")) {
                     metaMajorGCsOnly = Boolean.parseBoolean(value);
                     System.out.printf("Meta data at MajorGCs only: %s\n", metaMajorGCsOnly);
+                } else if (key.equals("MetaDataMaxSnapshotsInFlight")) {
+                    metaMaxSnapshotsInFlight = Integer.parseInt(value);
+                    System.out.printf("Meta data max snapshots in flight: %s\n", metaMaxSnapshotsInFlight);
+                } else if (key.equals("MetaDataMaxReplaySeconds")) {
+                    metaMaxReplaySeconds = Double.parseDouble(value);
+                    System.out.printf("Meta data max replay seconds: %s\n", metaMaxReplaySeconds);
+                } else if (key.equals("MetaDataDiskBudget")) {
+                    metaDiskBudget = Long.parseLong(value);
+                    System.out.printf("Meta data disk budget: %s\n", metaDiskBudget);
                 } else if (key.equals("FeaturesPath")) {
                     features = new File(value);
                     System.out.printf("Feature Path: %s\n", features);
+                } else if (key.equals("SeparateThreadsPath")) {
+                    threadSeparationPath = new File(value);
+                    System.out.printf("Separate threads into: %s\n", threadSeparationPath);
+                } else if (key.equals("SeparateThreadsMapped")) {
+                    threadSeparationMapped = Boolean.parseBoolean(value);
+                    System.out.printf("Separate threads through mapped regions: %s\n", threadSeparationMapped);
+                } else if (key.equals("MapWholeTrace")) {
+                    TraceFile.mapWholeFile = Boolean.parseBoolean(value);
+                    System.out.printf("Map whole trace: %s\n", TraceFile.mapWholeFile);
+                } else if (key.equals("QueueSize")) {
+                    TraceParser.queueHeapFraction = Double.parseDouble(value);
+                    System.out.printf("Queue size: %s of max heap\n", TraceParser.queueHeapFraction);
+                } else if (key.equals("MaxQueueSize")) {
+                    TraceParser.maxQueueHeapFraction = Double.parseDouble(value);
+                    System.out.printf("Max queue size: %s of max heap\n", TraceParser.maxQueueHeapFraction);
+                } else if (key.equals("LabStorage")) {
+                    Lab.storage = Lab.Storage.parse(value);
+                    System.out.printf("LAB storage: %s\n", Lab.storage);
                 } else if (key.equals("ReportGC")) {
                     reportGc = Boolean.parseBoolean(value);
                     System.out.printf("Report GC: %s\n", reportGc);
@@ -112,6 +151,10 @@ public class Main {
 
         TraceParser.CONSISTENCY_CHECK = check;
 
+        if (metaDumpCountGiven && metaMaxReplaySeconds > 0) {
+            System.err.println("MetaDataDumpCount is ignored because MetaDataMaxReplaySeconds is set, heaps are dumped by replay time");
+        }
+
         int errors = 0;
         if (reportGc) {
             GCReporter.getInstance();
@@ -157,7 +200,17 @@ public class Main {
                                                                 useCallContext);
                 Symbols sym = symbolsParser.parse();
 
-                MetaDataWriterConfig config = metaPath != null ? new MetaDataWriterConfig(sym.root + File.separator + metaPath, metaDumpCount, metaMajorGCsOnly) : null;
+                if (threadSeparationPath != null) {
+                    separateThreads(sym, threadSeparationPath, threadSeparationMapped);
+                    continue;
+                }
+
+                MetaDataWriterConfig config = metaPath != null ? new MetaDataWriterConfig(sym.root + File.separator + metaPath,
+                                                                                          metaDumpCount,
+                                                                                          metaMajorGCsOnly,
+                                                                                          metaMaxSnapshotsInFlight,
+                                                                                          metaMaxReplaySeconds,
+                                                                                          metaDiskBudget) : null;
                 HeapTraceParser parser = new HeapTraceParser(sym);
                 System.out.println("helooooooooooooooooo im innnnnnnnnnnnnnnnnnnnnnnnnnnnnnnnnnnnnnnnnn");
                 if (config != null) {
@@ -212,6 +265,7 @@ public class Main {
                 System.out.println("Heap: " + heap);
                 System.out.println("Heap spaces: " + heap.getSpacesUncloned());
                 System.out.println("Number of objects: " + heap.getObjectCount());
+                System.out.println("Object info cache: " + heap.getParsingInfo().getObjectInfoCacheStatistics());
 
                 HeapBuilder heapBuilder = new HeapBuilder(heap, sym, heap.getParsingInfo());
 
@@ -232,4 +286,19 @@ public class Main {
         }
     }
 
+    private static void separateThreads(Symbols sym, File outputDirectory, boolean mapped) throws Exception {
+        new ThreadChannelSeparatingTraceParser(sym, outputDirectory, mapped).parse();
+        for (File file : ThreadChannelSeparatingTraceParser.Companion.getFiles(outputDirectory)) {
+            try (ThreadTraceReader reader = new ThreadTraceReader(file)) {
+                long buffers = 0;
+                long bytes = 0;
+                for (ByteBuffer buffer = reader.next(); buffer != null; buffer = reader.next()) {
+                    buffers++;
+                    bytes += buffer.remaining();
+                }
+                System.out.printf("Thread %s: %,d buffers, %,d bytes\n", reader.getThread(), buffers, bytes);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,101 @@
+package at.jku.anttracks.parser.threadseparation
+
+import at.jku.anttracks.heap.io.HeapIndexReader
+import at.jku.anttracks.heap.io.HeapPosition
+import at.jku.anttracks.heap.symbols.Symbols
+import at.jku.anttracks.parser.*
+import at.jku.anttracks.util.Consts
+import java.io.File
+import java.io.IOException
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.logging.Level
+
+/**
+ * Splits a trace into one file per thread (in the given directory) by copying the (decompressed) buffers of each thread as they are into
+ * the thread's file, see [ThreadChannelSeparatingTraceSlaveParser]. In contrast to [ThreadFileSeparatingTraceParser], events are not
+ * decoded, which makes splitting IO-bound. The files can be read with [ThreadTraceReader].
+ *
+ * @param mapped whether the files are written through mapped regions instead of file channel writes, see [ThreadTraceOutput]
+ */
+open class ThreadChannelSeparatingTraceParser(symbols: Symbols,
+                                              val outputDirectory: File,
+                                              val mapped: Boolean = false) : at.jku.anttracks.parser.TraceParser<Void?>(symbols) {
+    // a thread-local heap may be replaced after a full sync, thus the files are kept per thread name
+    private val outputs = ConcurrentHashMap<String, ThreadTraceOutput>()
+
+    override fun doRemoveListenersOnCompletion(workspace: Void?) {
+        // called in a finally block, i.e., the files are also closed if parsing fails
+        for ((thread, output) in outputs) {
+            try {
+                output.close()
+            } catch (e: IOException) {
+                logger.log(Level.WARNING, "Could not close trace file of thread $thread", e)
+            }
+        }
+        outputs.clear()
+    }
+
+    override fun generateWorkspaceFromMetaData(heapIndexReader: HeapIndexReader,
+                                               heapPosition: HeapPosition,
+                                               parsingInfo: ParsingInfo): Void? {
+        return null
+    }
+
+    override fun generatePlainWorkspace(factory: TraceScannerFactory?, parsingInfo: ParsingInfo?): Void? {
+        return null
+    }
+
+    override fun doParseCleanupAfterSuccessfulParse(workspace: Void?) {
+        //
+    }
+
+    override fun createMainEventHandler(parsingInfo: ParsingInfo?): TraceParsingEventHandler? {
+        return null
+    }
+
+    override fun doWorkspaceCompletion(workspace: Void?) {
+        //
+    }
+
+    override fun startSlaveThreads(queueSize: QueueBudget?,
+                                   masterQueue: SlaveQueues?,
+                                   workspace: Void?,
+                                   handler: ErrorHandler?,
+                                   check: Boolean,
+                                   parsingInfo: ParsingInfo?): List<TraceSlaveParser<Void?>> {
+        val relAddrFactory = RelAddrFactory(symbols.heapWordSize.toLong())
+
+        var slaves = 1
+        if (MULTITHREADING) {
+            slaves = Consts.AVAILABLE_PROCESSORS
+        }
+
+        val result = ArrayList<TraceSlaveParser<Void?>>()
+        for (i in 0 until slaves) {
+            result.add(ThreadChannelSeparatingTraceSlaveParser(i,
+                                                               queueSize!!,
+                                                               masterQueue!!,
+                                                               relAddrFactory,
+                                                               symbols!!,
+                                                               check,
+                                                               handler!!,
+                                                               outputs) { thread ->
+                outputDirectory.mkdirs()
+                ThreadTraceOutput.open(getFile(outputDirectory, thread), mapped)
+            })
+        }
+        return result
+    }
+
+    companion object {
+        const val FILE_EXTENSION = ".threadlocaltrace"
+
+        fun getFile(outputDirectory: File, thread: String) = File(outputDirectory, thread + FILE_EXTENSION)
+
+        /**
+         * @return the files written to the given directory, one per thread
+         */
+        fun getFiles(outputDirectory: File): Array<File> = outputDirectory.listFiles { file -> file.name.endsWith(FILE_EXTENSION) } ?: arrayOf()
+    }
+}
@@ -0,0 +1,30 @@
+package at.jku.anttracks.parser.threadseparation
+
+import at.jku.anttracks.parser.*
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentMap
+
+/**
+ * Writes every buffer to the file of the thread that has written the buffer, without decoding its events, see [ThreadTraceOutput].
+ *
+ * A thread's file is only written by the slave that currently processes the thread's heap, see [ThreadLocalHeap.park].
+ */
+class ThreadChannelSeparatingTraceSlaveParser
+(id: Int,
+ size: at.jku.anttracks.parser.QueueBudget,
+ masterQueue: at.jku.anttracks.parser.SlaveQueues,
+ relAddrFactory: RelAddrFactory,
+ symbols: at.jku.anttracks.heap.symbols.Symbols,
+ test: Boolean,
+ error: at.jku.anttracks.parser.ErrorHandler,
+ private val outputs: ConcurrentMap<String, ThreadTraceOutput>,
+ private val openOutput: (String) -> ThreadTraceOutput) : at.jku.anttracks.parser.TraceSlaveParser<Void?>(id, size, masterQueue, null, relAddrFactory, symbols, test, error, null) {
+
+    override fun parseBuffer(threadLocalHeap: ThreadLocalHeap, buffer: ByteBuffer, start: Long, end: Long) {
+        outputs.computeIfAbsent(threadLocalHeap.internalThreadName, openOutput).write(start, buffer)
+    }
+
+    override fun cleanUp(threadLocalHeap: ThreadLocalHeap) {
+        // the buffers are copied as they are, there is no state to clean up
+    }
+}
@@ -5,9 +5,7 @@ import at.jku.anttracks.heap.io.HeapPosition
 import at.jku.anttracks.heap.symbols.Symbols
 import at.jku.anttracks.parser.*
 import at.jku.anttracks.util.Consts
-import at.jku.anttracks.util.MutableLong
 import java.util.*
-import java.util.concurrent.BlockingQueue
 
 open class ThreadFileSeparatingTraceParser(symbols: Symbols) : at.jku.anttracks.parser.TraceParser<Void?>(symbols) {
     override fun doRemoveListenersOnCompletion(workspace: Void?) {
@@ -36,8 +34,8 @@ open class ThreadFileSeparatingTraceParser(symbols: Symbols) : at.jku.anttracks.
         //
     }
 
-    override fun startSlaveThreads(queueSize: MutableLong?,
-                                   masterQueue: BlockingQueue<ThreadLocalHeap>?,
+    override fun startSlaveThreads(queueSize: QueueBudget?,
+                                   masterQueue: SlaveQueues?,
                                    workspace: Void?,
                                    handler: ErrorHandler?,
                                    check: Boolean,
@@ -0,0 +1,105 @@
+package at.jku.anttracks.parser.threadseparation
+
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * The file of a single thread written by [ThreadChannelSeparatingTraceSlaveParser]. Every buffer is preceded by its position in the trace
+ * (long) and its length in bytes (int), both little-endian like the events, see [ThreadTraceReader].
+ *
+ * An output is only written by one slave at a time, see [at.jku.anttracks.parser.ThreadLocalHeap.park].
+ */
+abstract class ThreadTraceOutput(file: File) : AutoCloseable {
+    protected val channel: FileChannel = FileChannel.open(file.toPath(),
+                                                          StandardOpenOption.CREATE,
+                                                          StandardOpenOption.TRUNCATE_EXISTING,
+                                                          StandardOpenOption.READ,
+                                                          StandardOpenOption.WRITE)
+    protected val header: ByteBuffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+
+    /**
+     * Appends the buffer's remaining bytes
+     *
+     * @param start the position of the buffer in the trace
+     */
+    fun write(start: Long, buffer: ByteBuffer) {
+        header.clear()
+        header.putLong(start).putInt(buffer.remaining()).flip()
+        append(buffer)
+    }
+
+    protected abstract fun append(buffer: ByteBuffer)
+
+    companion object {
+        const val HEADER_SIZE = java.lang.Long.BYTES + Integer.BYTES
+
+        fun open(file: File, mapped: Boolean): ThreadTraceOutput = if (mapped) MappedOutput(file) else ChannelOutput(file)
+    }
+}
+
+/**
+ * Appends the header and the buffer with a single gathering write, i.e., buffers that have been mapped from the trace file are not copied to
+ * the Java heap.
+ */
+private class ChannelOutput(file: File) : ThreadTraceOutput(file) {
+    private val buffers = arrayOfNulls<ByteBuffer>(2)
+
+    override fun append(buffer: ByteBuffer) {
+        buffers[0] = header
+        buffers[1] = buffer
+        while (header.hasRemaining() || buffer.hasRemaining()) {
+            channel.write(buffers)
+        }
+        buffers[1] = null
+    }
+
+    override fun close() {
+        channel.close()
+    }
+}
+
+/**
+ * Copies the header and the buffer into a mapped region of the file, the next region is mapped when the current one is full. The file is
+ * truncated to the written length when it is closed.
+ */
+private class MappedOutput(file: File) : ThreadTraceOutput(file) {
+    private var region: MappedByteBuffer? = null
+    private var regionStart = 0L
+
+    override fun append(buffer: ByteBuffer) {
+        put(header)
+        put(buffer)
+    }
+
+    private fun put(src: ByteBuffer) {
+        while (src.hasRemaining()) {
+            var dst = region
+            if (dst == null || !dst.hasRemaining()) {
+                regionStart += dst?.capacity() ?: 0
+                dst = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE)
+                region = dst
+            }
+            val n = Math.min(src.remaining(), dst!!.remaining())
+            val limit = src.limit()
+            src.limit(src.position() + n)
+            dst.put(src)
+            src.limit(limit)
+        }
+    }
+
+    override fun close() {
+        val length = regionStart + (region?.position() ?: 0)
+        region = null
+        channel.use {
+            it.truncate(length)
+        }
+    }
+
+    companion object {
+        const val REGION_SIZE = 64L shl 20
+    }
+}
@@ -0,0 +1,65 @@
+package at.jku.anttracks.parser.threadseparation
+
+import java.io.EOFException
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * Reads the buffers of a thread's file that has been written by [ThreadChannelSeparatingTraceParser], in the order in which they occur in
+ * the trace.
+ */
+class ThreadTraceReader(file: File) : AutoCloseable {
+    val thread: String = file.name.removeSuffix(ThreadChannelSeparatingTraceParser.FILE_EXTENSION)
+
+    private val channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)
+    private val header = ByteBuffer.allocate(ThreadTraceOutput.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+    private var buffer = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN)
+
+    /**
+     * The position in the trace of the buffer that has been returned by the last call to [next]
+     */
+    var position = -1L
+        private set
+
+    /**
+     * @return the events of the next buffer (little-endian, valid until the next call), or null if all buffers have been read
+     */
+    fun next(): ByteBuffer? {
+        header.clear()
+        if (!fill(header, true)) {
+            return null
+        }
+        header.flip()
+        position = header.long
+        val length = header.int
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN)
+        }
+        buffer.clear().limit(length)
+        fill(buffer, false)
+        buffer.flip()
+        return buffer
+    }
+
+    /**
+     * @return false if the end of the file has been reached before the first byte (only allowed if atBoundary is set)
+     */
+    private fun fill(dst: ByteBuffer, atBoundary: Boolean): Boolean {
+        while (dst.hasRemaining()) {
+            if (channel.read(dst) < 0) {
+                if (atBoundary && dst.position() == 0) {
+                    return false
+                }
+                throw EOFException("Incomplete buffer in trace file of thread $thread")
+            }
+        }
+        return true
+    }
+
+    override fun close() {
+        channel.close()
+    }
+}
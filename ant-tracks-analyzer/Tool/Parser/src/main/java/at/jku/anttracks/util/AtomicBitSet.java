@@ -0,0 +1,93 @@
+package at.jku.anttracks.util;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-size bit set that can be modified by several threads concurrently. Words are allocated in pages on first write, so a set over a
+ * large heap that only contains a few objects stays small.
+ */
+public class AtomicBitSet {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final AtomicReferenceArray<AtomicLongArray> pages;
+
+    /**
+     * @param size the number of bits
+     */
+    public AtomicBitSet(int size) {
+        pages = new AtomicReferenceArray<>((wordIndex(size) >>> PAGE_SHIFT) + 1);
+    }
+
+    /**
+     * @param size    the number of bits
+     * @param initial the initially set bits, must not contain bits beyond the size
+     */
+    public AtomicBitSet(int size, BitSet initial) {
+        this(size);
+        long[] words = initial.toLongArray();
+        for (int word = 0; word < words.length; word++) {
+            if (words[word] != 0) {
+                page(word).set(word & PAGE_MASK, words[word]);
+            }
+        }
+    }
+
+    private static int wordIndex(int bit) {
+        return bit >>> 6;
+    }
+
+    private AtomicLongArray page(int word) {
+        AtomicLongArray page = pages.get(word >>> PAGE_SHIFT);
+        if (page == null) {
+            pages.compareAndSet(word >>> PAGE_SHIFT, null, new AtomicLongArray(PAGE_SIZE));
+            page = pages.get(word >>> PAGE_SHIFT);
+        }
+        return page;
+    }
+
+    public boolean get(int bit) {
+        AtomicLongArray page = pages.get(wordIndex(bit) >>> PAGE_SHIFT);
+        return page != null && (page.get(wordIndex(bit) & PAGE_MASK) & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return true if the bit has been set by this call, false if it has already been set before
+     */
+    public boolean set(int bit) {
+        AtomicLongArray page = page(wordIndex(bit));
+        int word = wordIndex(bit) & PAGE_MASK;
+        long mask = 1L << bit;
+        long old;
+        do {
+            old = page.get(word);
+            if ((old & mask) != 0) {
+                return false;
+            }
+        } while (!page.compareAndSet(word, old, old | mask));
+        return true;
+    }
+
+    /**
+     * @return a snapshot of this set, must not be called concurrently with {@link #set(int)}
+     */
+    public BitSet toBitSet() {
+        int lastPage = pages.length() - 1;
+        while (lastPage >= 0 && pages.get(lastPage) == null) {
+            lastPage--;
+        }
+        long[] words = new long[(lastPage + 1) * PAGE_SIZE];
+        for (int p = 0; p <= lastPage; p++) {
+            AtomicLongArray page = pages.get(p);
+            if (page != null) {
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    words[(p << PAGE_SHIFT) + i] = page.get(i);
+                }
+            }
+        }
+        return BitSet.valueOf(words);
+    }
+}
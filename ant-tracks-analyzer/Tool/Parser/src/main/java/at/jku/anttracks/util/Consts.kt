@@ -21,12 +21,15 @@ object Consts {
     const val ANT_META_DIRECTORY = ".ant_tracks_trace_meta_data"
     const val HEADERS_META_FILE = "header"
     const val HEAP_INDEX_META_FILE = "index"
+    const val BUFFER_INDEX_META_FILE = "buffers"
     const val STATISTICS_META_FILE = "statistics"
     const val FEATURES_META_FILE = "features"
+    const val REPLAY_META_FILE = "replay"
     const val LIST_TREE_EXTENSION = ".listtree"
     const val DIFF_STAT_EXTENSION = ".diffstat"
     const val DIFF_INTERVAL_EXTENSION = ".diffinterval"
     const val DIFF_HEAP_EXTENSION = ".diffheap"
+    const val INDEX_HEAP_SNAPSHOT_EXTENSION = ".indexheap"
 
     @JvmStatic
     val AVAILABLE_PROCESSORS: Int
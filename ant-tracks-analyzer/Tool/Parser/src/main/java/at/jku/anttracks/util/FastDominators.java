@@ -1,304 +1,316 @@
 package at.jku.anttracks.util;
 
 import at.jku.anttracks.heap.IndexBasedHeap;
+import at.jku.anttracks.heap.IndexHeapPointers;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashSet;
-import java.util.Stack;
-import java.util.function.Function;
-import java.util.function.Supplier;
+import java.util.function.IntUnaryOperator;
 
 import static at.jku.anttracks.heap.IndexBasedHeap.NULL_INDEX;
 
 /**
  * Based on the Lengauer-Tarjan algorithm presented in 'Modern Compiler Implementation in Java'
+ * <p>
+ * All state is kept in int arrays indexed by DFS number: the DFS and the path compression use explicit stacks instead of recursion, and
+ * buckets are intrusive linked lists ({@code bucketHead}, {@code bucketNext}). Successors and predecessors are read directly from the heap's
+ * CSR pointer columns, the DFS stack only holds positions in these columns. Besides the immediate dominators, one pass over the nodes in reverse DFS order yields the retained size of every
+ * object, and a preorder numbering of the dominator tree, such that all objects dominated by an object form a contiguous range.
  */
-
 public class FastDominators {
 
     private static final int SUPER_ROOT_INDEX = 0;  // consequently all object indices are shifted by 1 in this algorithm
     // 'none' in algorithm is NULL_INDEX i.e. -1
 
-    private final Function<Integer, int[]> successorFunction;
-    private final Function<Integer, int[]> predecessorFunction;
-    private final Function<Integer, Boolean> isReachableFunction;
-    private final int[] entryNodes;
-    private final BitSet entryNodesSet;
-
-    private final int nodeCount;
-    private int N = 0;
-    private int[] dfnum;
-    private int[] vertex;
-    private int[] parent;
-
-    private HashSet<?>[] bucket;  // HashSet<Integer> array not allowed...
-    private int[] semi;
-    private int[] ancestor;
-    private int[] idom;
-    private int[] samedom;
-
-    private int[] best;
-
-    private int[][] dominated;
-
-    // TODO check for correctness, eg invested some time into this, we think it should be correct now
-    // A unit test could help
-    public FastDominators(Function<Integer, int[]> successorFunction,
-                          Function<Integer, int[]> predecessorFunction,
-                          Function<Integer, Boolean> isReachableFunction,
+    // per object (not shifted): immediate dominator (IndexBasedHeap.SUPER_ROOT_INDEX or NULL_INDEX if unreachable) and retained bytes
+    private final int[] idom;
+    private final long[] retainedSizes;
+    // preorder of the dominator tree, the objects dominated by object n are domOrder[domPre[n]] to domOrder[domPre[n] + domCount[n] - 1]
+    private final int[] domOrder;
+    private final int[] domPre;
+    private final int[] domCount;
+
+    public FastDominators(IndexHeapPointers successors,
+                          IndexHeapPointers predecessors,
+                          IntUnaryOperator sizeFunction,
                           int[] entryNodes,
                           int nodeCount) {
-        this.successorFunction = successorFunction;
-        this.predecessorFunction = predecessorFunction;
-        this.isReachableFunction = isReachableFunction;
-        this.entryNodes = Arrays.stream(entryNodes)
-                                .filter(i -> i != NULL_INDEX)
-                                .distinct()
-                                .toArray();
-        this.entryNodesSet = new BitSet();
-        Arrays.stream(this.entryNodes)
-              .forEach(entryNodesSet::set);
-
-        this.nodeCount = nodeCount += 1;
-
-        N = 0;
-        dfnum = new int[nodeCount];
-        vertex = new int[nodeCount];
-        parent = new int[nodeCount];
-        bucket = new HashSet<?>[nodeCount];
-        semi = new int[nodeCount];
-        ancestor = new int[nodeCount];
-        idom = new int[nodeCount];
-        samedom = new int[nodeCount];
-        best = new int[nodeCount];
+        int[] entries = Arrays.stream(entryNodes)
+                              .filter(i -> i >= 0 && i < nodeCount)
+                              .distinct()
+                              .toArray();
+
+        // all following arrays are indexed by DFS number, vertex maps DFS numbers to (shifted) nodes
+        int[] dfnum = new int[nodeCount + 1];   // DFS number + 1 of a node, 0 if not reached
+        int[] vertex = new int[nodeCount + 1];
+        int[] parent = new int[nodeCount + 1];
+        int N = dfs(successors, entries, dfnum, vertex, parent);
+
+        int[] semi = new int[N];
+        int[] dom = new int[N];
+        calculateDominators(predecessors, entries, N, dfnum, vertex, parent, semi, dom);
+        semi = null;
+        parent = null;
 
-        Arrays.fill(dfnum, 0);
-        Arrays.fill(semi, NULL_INDEX);
-        Arrays.fill(ancestor, NULL_INDEX);
-        Arrays.fill(samedom, NULL_INDEX);
+        idom = new int[nodeCount];
         Arrays.fill(idom, NULL_INDEX);
-        Arrays.fill(best, NULL_INDEX);
-
-        //ApplicationStatistics.Measurement m = ApplicationStatistics.getInstance().createMeasurement("DFS");
-        DFS(NULL_INDEX, SUPER_ROOT_INDEX);
-        //m.end();
-
-        //m = ApplicationStatistics.getInstance().createMeasurement("calculate idoms");
-        calculateDominators();
-        //m.end();
-
-        //m = ApplicationStatistics.getInstance().createMeasurement("calculate dominate array");
-        complete();
-        //m.end();
-
-        assert areIDomsAndDominatedArrayConsistent() : "calculation of 'dominated' array is incorrect!";
-    }
+        for (int i = 1; i < N; i++) {
+            idom[vertex[i] - 1] = dom[i] == 0 ? IndexBasedHeap.SUPER_ROOT_INDEX : vertex[dom[i]] - 1;
+        }
 
-    private void calculateDominators() {
+        // dominated nodes have greater DFS numbers than their dominators, thus sizes can be accumulated in a single reverse pass
+        retainedSizes = new long[nodeCount];
         for (int i = N - 1; i >= 1; i--) {
-            int n = vertex[i];
-            int p = parent[n];
-            int s = p;
-
-            if (n != SUPER_ROOT_INDEX) {
-                HashSet<Integer> predecessorsClosedSet = new HashSet<>();
-                int[] predecessors = predecessorFunction.apply(n - 1);
-                if (predecessors != null) {
-                    for (int j = 0; j < predecessors.length; j++) {
-                        if (predecessors[j] != NULL_INDEX && predecessorsClosedSet.add(predecessors[j])) {
-                            int v = predecessors[j] + 1;
-
-                            int sPrime;
-                            if (dfnum[v] <= dfnum[n]) {
-                                sPrime = v;
-                            } else {
-                                sPrime = semi[AncestorWithLowestSemi(v)];
-                            }
-                            if (dfnum[sPrime] < dfnum[s]) {
-                                s = sPrime;
-                            }
-                        }
-                    }
-                }
+            int n = vertex[i] - 1;
+            retainedSizes[n] += sizeFunction.applyAsInt(n);
+            if (dom[i] != 0) {
+                retainedSizes[vertex[dom[i]] - 1] += retainedSizes[n];
             }
+        }
 
-            if (entryNodesSet.get(n - 1)) {
-                // we are at an entry node => the node has the super root node as additional predecessor
-                // => do one more iteration of regular algorithm with predecessor SUPER_ROOT_INDEX
-                int v = SUPER_ROOT_INDEX;
-
-                int sPrime;
-                if (dfnum[v] <= dfnum[n]) {
-                    sPrime = v;
-                } else {
-                    sPrime = semi[AncestorWithLowestSemi(v)];
-                }
-                if (dfnum[sPrime] < dfnum[s]) {
-                    s = sPrime;
-                }
-            }
+        domPre = new int[nodeCount];
+        domCount = new int[nodeCount];
+        domOrder = new int[N - 1];
+        buildDominatorTreeOrder(N, vertex, dom);
 
-            semi[n] = s;
-            // union
-            HashSet<Integer> set = (HashSet<Integer>) bucket[s];
-            if (set == null) {
-                set = new HashSet<>();
-                bucket[s] = set;
-            }
-            set.add(n);
-            Link(p, n);
-
-            if (bucket[p] != null) {
-                for (int v : (HashSet<Integer>) bucket[p]) {
-                    int y = AncestorWithLowestSemi(v);
-
-                    if (semi[y] == semi[v]) {
-                        idom[v] = p;
-                    } else {
-                        samedom[v] = y;
-                    }
-                }
-            }
+        assert isConsistent(N) : "calculation of dominator tree order is incorrect!";
+    }
 
-            bucket[p] = null;
+    /**
+     * Restores dominators that have been written with {@link #write(DataOutput)}, e.g., as part of a heap snapshot
+     */
+    public FastDominators(DataInput in) throws IOException {
+        int nodeCount = in.readInt();
+        idom = readInts(in, nodeCount);
+        retainedSizes = new long[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            retainedSizes[i] = in.readLong();
         }
+        domOrder = readInts(in, in.readInt());
+        domPre = readInts(in, nodeCount);
+        domCount = readInts(in, nodeCount);
+    }
 
-        for (int i = 1; i <= N - 1; i++) {
-            int n = vertex[i];
-            if (samedom[n] != NULL_INDEX) {
-                idom[n] = idom[samedom[n]];
-            }
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(idom.length);
+        writeInts(out, idom);
+        for (long retainedSize : retainedSizes) {
+            out.writeLong(retainedSize);
         }
+        out.writeInt(domOrder.length);
+        writeInts(out, domOrder);
+        writeInts(out, domPre);
+        writeInts(out, domCount);
     }
 
-    private void DFS(int startParent, int startNode) {
-        Stack<Integer> pStack = new Stack<>();
-        Stack<Integer> nStack = new Stack<>();
-        BitSet closedSet = new BitSet();
-
-        pStack.push(startParent);
-        nStack.push(startNode);
+    private static int[] readInts(DataInput in, int length) throws IOException {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
 
-        while (!pStack.isEmpty() && !nStack.isEmpty()) {
-            int p = pStack.pop();
-            int n = nStack.pop();
+    private static void writeInts(DataOutput out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
 
-            if (closedSet.get(n)) {
-                // checking this condition before pushing on the stack results in a different DFS visit order and incorrectly calculated dominators
-                // checking it this late however means that the stacks might grow too big...
-                // => TODO something about this
+    /**
+     * Iterative DFS from the super root that numbers nodes in preorder.
+     *
+     * @return the number of reached nodes (including the super root)
+     */
+    private static int dfs(IndexHeapPointers successors, int[] entries, int[] dfnum, int[] vertex, int[] parent) {
+        int N = 0;
+        // a node stays on the stack until all of its successors have been visited, thus the depth is bounded by the node count
+        // the super root at the bottom iterates the entries, all other nodes iterate their range of the successor column
+        int[] nodeStack = new int[16];
+        int[] positionStack = new int[16];
+        int[] endStack = new int[16];
+        int top = 0;
+
+        dfnum[SUPER_ROOT_INDEX] = ++N;
+        vertex[0] = SUPER_ROOT_INDEX;
+        parent[0] = NULL_INDEX;
+        nodeStack[0] = SUPER_ROOT_INDEX;
+        positionStack[0] = 0;
+        endStack[0] = entries.length;
+
+        while (top >= 0) {
+            if (positionStack[top] == endStack[top]) {
+                top--;
                 continue;
             }
-
-            closedSet.set(n);
-            dfnum[n] = N;
+            int position = positionStack[top]++;
+            int w = top == 0 ? entries[position] : successors.get(position);
+            if (w < 0 || dfnum[w + 1] != 0) {
+                continue;
+            }
+            int n = w + 1;
             vertex[N] = n;
-            parent[n] = p;
-            N = N + 1;
-
-            int[] successors = n == SUPER_ROOT_INDEX ?
-                               entryNodes :
-                               successorFunction.apply(n - 1);
-            if (successors != null) {
-                for (int w : successors) {
-                    if (w != NULL_INDEX) {
-                        pStack.push(n);
-                        nStack.push(w + 1);
-                    }
-                }
+            parent[N] = dfnum[nodeStack[top]] - 1;
+            dfnum[n] = ++N;
+
+            if (++top == nodeStack.length) {
+                int capacity = top + (top >> 1);
+                nodeStack = Arrays.copyOf(nodeStack, capacity);
+                positionStack = Arrays.copyOf(positionStack, capacity);
+                endStack = Arrays.copyOf(endStack, capacity);
             }
+            nodeStack[top] = n;
+            positionStack[top] = successors.start(w);
+            endStack[top] = successors.end(w);
         }
+        return N;
     }
 
-    private int AncestorWithLowestSemiNaive(int v) {
-        int u = v;
-
-        while (ancestor[v] != NULL_INDEX) {
-            if (dfnum[semi[v]] < dfnum[semi[u]]) {
-                u = v;
-            }
-            v = ancestor[v];
+    private static void calculateDominators(IndexHeapPointers predecessors,
+                                            int[] entries,
+                                            int N,
+                                            int[] dfnum,
+                                            int[] vertex,
+                                            int[] parent,
+                                            int[] semi,
+                                            int[] dom) {
+        BitSet entrySet = new BitSet();
+        for (int entry : entries) {
+            entrySet.set(entry);
         }
 
-        return u;
-    }
-
-    private void LinkNaive(int p, int n) {
-        ancestor[n] = p;
-    }
-
-    private int AncestorWithLowestSemi(int v) {
-        int a = ancestor[v];
+        int[] ancestor = new int[N];
+        int[] label = new int[N];
+        int[] bucketHead = new int[N];
+        int[] bucketNext = new int[N];
+        int[] compressStack = new int[16];
+        for (int i = 0; i < N; i++) {
+            semi[i] = i;
+            label[i] = i;
+        }
+        Arrays.fill(ancestor, NULL_INDEX);
+        Arrays.fill(bucketHead, NULL_INDEX);
+
+        for (int w = N - 1; w >= 1; w--) {
+            int n = vertex[w];
+            for (int p = predecessors.start(n - 1); p < predecessors.end(n - 1); p++) {
+                int predecessor = predecessors.get(p);
+                if (predecessor < 0 || dfnum[predecessor + 1] == 0) {
+                    // null or not reachable from any root
+                    continue;
+                }
+                compressStack = compress(dfnum[predecessor + 1] - 1, ancestor, label, semi, compressStack);
+                int u = label[dfnum[predecessor + 1] - 1];
+                if (semi[u] < semi[w]) {
+                    semi[w] = semi[u];
+                }
+            }
+            if (entrySet.get(n - 1)) {
+                // we are at an entry node => the node has the super root node as additional predecessor
+                semi[w] = 0;
+            }
 
-        if (ancestor[a] != NULL_INDEX) {
-            int b = AncestorWithLowestSemi(a);
-            ancestor[v] = ancestor[a];
+            bucketNext[w] = bucketHead[semi[w]];
+            bucketHead[semi[w]] = w;
+            int p = parent[w];
+            ancestor[w] = p;
 
-            if (dfnum[semi[b]] < dfnum[semi[best[v]]]) {
-                best[v] = b;
+            for (int v = bucketHead[p]; v != NULL_INDEX; v = bucketNext[v]) {
+                compressStack = compress(v, ancestor, label, semi, compressStack);
+                int u = label[v];
+                dom[v] = semi[u] < semi[v] ? u : p;
             }
+            bucketHead[p] = NULL_INDEX;
         }
 
-        return best[v];
-    }
-
-    private void Link(int p, int n) {
-        ancestor[n] = p;
-        best[n] = n;
+        for (int w = 1; w < N; w++) {
+            if (dom[w] != semi[w]) {
+                dom[w] = dom[dom[w]];
+            }
+        }
     }
 
-    private void complete() {
-        // make no longer needed data eligible for garbage collection
-        dfnum = null;
-        vertex = null;
-        parent = null;
-        bucket = null;
-        semi = null;
-        ancestor = null;
-        samedom = null;
-        best = null;
-
-        // build data structure for immediate access to dominated nodes (i.e., turn the dom tree upside down)
-        // note that this data structure does not account for the super root node! (leads to quicker access, i.e., indices do not have to be incremented)
-        dominated = new int[nodeCount - 1][];
-
-        // first calculate how many nodes are dominated by each node such that the sub arrays in 'dominated' only have to instantiated once
-        int[] dominatedCount = new int[nodeCount - 1];
-        for (int i = 1; i < idom.length; i++) {
-            // the super root has no entry in 'dominated'
-            if (idom[i] > 0) {
-                dominatedCount[idom[i] - 1]++;
+    /**
+     * Path compression (iterative): afterwards, the ancestor of v is a root of the link forest or a child of one, and label[v] is the node
+     * with the lowest semidominator on the compressed path.
+     */
+    private static int[] compress(int v, int[] ancestor, int[] label, int[] semi, int[] stack) {
+        if (ancestor[v] == NULL_INDEX) {
+            return stack;
+        }
+        int top = 0;
+        for (int x = v; ancestor[ancestor[x]] != NULL_INDEX; x = ancestor[x]) {
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top + (top >> 1));
             }
+            stack[top++] = x;
         }
+        // process from the node closest to the root downwards
+        while (top > 0) {
+            int x = stack[--top];
+            int a = ancestor[x];
+            if (semi[label[a]] < semi[label[x]]) {
+                label[x] = label[a];
+            }
+            ancestor[x] = ancestor[a];
+        }
+        return stack;
+    }
 
-        // now instantiate the sub arrays
-        for (int i = 0; i < dominated.length; i++) {
-            if (dominatedCount[i] > 0) {
-                dominated[i] = new int[dominatedCount[i]];
+    private void buildDominatorTreeOrder(int N, int[] vertex, int[] dom) {
+        // children of every DFS number in the dominator tree as CSR
+        int[] childStart = new int[N + 1];
+        for (int w = 1; w < N; w++) {
+            childStart[dom[w] + 1]++;
+        }
+        for (int i = 0; i < N; i++) {
+            childStart[i + 1] += childStart[i];
+        }
+        int[] children = new int[N - 1];
+        int[] fill = Arrays.copyOf(childStart, N);
+        for (int w = 1; w < N; w++) {
+            children[fill[dom[w]]++] = w;
+        }
 
-                // reset the previously calculated array size entry, it will now be used to hold a top pointer (necessary when gradually filling each subarray)
-                dominatedCount[i] = 0;
+        // iterative preorder traversal from the super root (which is not part of the order)
+        int[] stack = new int[N];
+        int top = 0;
+        for (int c = childStart[1] - 1; c >= childStart[0]; c--) {
+            stack[top++] = children[c];
+        }
+        int next = 0;
+        while (top > 0) {
+            int w = stack[--top];
+            int n = vertex[w] - 1;
+            domPre[n] = next;
+            domOrder[next++] = n;
+            for (int c = childStart[w + 1] - 1; c >= childStart[w]; c--) {
+                stack[top++] = children[c];
             }
         }
 
-        // now iterate once more over immediate dominators, filling the 'dominated' subarrays
-        for (int i = 1; i < idom.length; i++) {
-            if (idom[i] > 0) {
-                dominated[idom[i] - 1][dominatedCount[idom[i] - 1]++] = i - 1;
+        // subtree sizes, again in reverse DFS order
+        for (int w = N - 1; w >= 1; w--) {
+            int n = vertex[w] - 1;
+            domCount[n]++;
+            if (dom[w] != 0) {
+                domCount[vertex[dom[w]] - 1] += domCount[n];
             }
         }
     }
 
-    private boolean areIDomsAndDominatedArrayConsistent() {
-        // check whether the 'dominated' array is consistent with the 'idom' array
-        for (int i = 0; i < dominated.length; i++) {
-            int finalI = i;
-            if (dominated[i] != null && !Arrays.stream(dominated[i]).allMatch(idx -> getImmediateDominator(idx) == finalI)) {
+    private boolean isConsistent(int N) {
+        // every object must lie within the range of its immediate dominator
+        for (int i = 0; i < N - 1; i++) {
+            int n = domOrder[i];
+            int d = idom[n];
+            if (d >= 0 && (domPre[n] <= domPre[d] || domPre[n] >= domPre[d] + domCount[d])) {
                 return false;
             }
         }
-
         return true;
     }
 
@@ -310,20 +322,43 @@ public class FastDominators {
      * Returns the immediate dominator of a given object
      *
      * @param n the index of an object in the heap
-     * @return the index of the object that immediately dominates the given object. If the given object is immediately dominated by the super root object, -2 is returned.
+     * @return the index of the object that immediately dominates the given object. If the given object is immediately dominated by the super
+     * root object, -2 is returned. If the object is not reachable from any root, -1 is returned.
      */
     public int getImmediateDominator(int n) {
-        if (!isReachableFunction.apply(n)) {
-            // nodes that are not reachable from the super root don't have an immediate dominator
-            return NULL_INDEX;
-        }
+        return idom[n];
+    }
+
+    /**
+     * @param n the index of an object in the heap
+     * @return the number of bytes that would be freed if the given object was freed, i.e., the size of all objects it dominates, including
+     * itself. 0 if the object is not reachable from any root.
+     */
+    public long getRetainedSize(int n) {
+        return retainedSizes[n];
+    }
 
-        return idom[n + 1] == SUPER_ROOT_INDEX ?
-               IndexBasedHeap.SUPER_ROOT_INDEX :
-               idom[n + 1] - 1;
+    /**
+     * @param n the index of an object in the heap
+     * @return the object itself and all objects that it dominates, only the object itself if it is not reachable from any root
+     */
+    public BitSet getDominated(int n) {
+        BitSet dominated = new BitSet();
+        if (idom[n] == NULL_INDEX) {
+            dominated.set(n);
+            return dominated;
+        }
+        for (int i = domPre[n]; i < domPre[n] + domCount[n]; i++) {
+            dominated.set(domOrder[i]);
+        }
+        return dominated;
     }
 
-    public int[] getImmediatelyDominated(int n) {
-        return dominated[n];
+    /**
+     * @param n the index of an object in the heap
+     * @return whether n (transitively) dominates m, false if n equals m
+     */
+    public boolean dominates(int n, int m) {
+        return n != m && idom[n] != NULL_INDEX && idom[m] != NULL_INDEX && domPre[m] > domPre[n] && domPre[m] < domPre[n] + domCount[n];
     }
 }
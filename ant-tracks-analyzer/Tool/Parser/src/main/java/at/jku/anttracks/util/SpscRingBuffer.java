@@ -0,0 +1,133 @@
+package at.jku.anttracks.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer single-consumer queue. Like {@link AntRingBuffer}, elements are stored in a power-of-two array that is indexed
+ * by masking, but elements are never overwritten: {@link #put(Object)} blocks while the buffer is full and {@link #take()} blocks while it
+ * is empty.
+ * <p>
+ * Neither side takes a lock. Head and tail are only written by the consumer and the producer respectively, and a blocked side parks its
+ * thread until the other side unparks it.
+ *
+ * @param <E> The type of element in the ring buffer.
+ */
+public class SpscRingBuffer<E> {
+
+    private final Object[] store;
+    private final int mask;
+
+    // index of the next element to take, only written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // index of the next element to put, only written by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+
+    /**
+     * @param capacity the minimum capacity, rounded up to the next power of two
+     */
+    public SpscRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        store = new Object[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return store.length;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    /**
+     * Adds an element if there is space left. Must only be called by the producer.
+     *
+     * @return whether the element has been added
+     */
+    public boolean offer(E e) {
+        final long t = tail.get();
+        if (t - head.get() == store.length) {
+            return false;
+        }
+        store[(int) t & mask] = e;
+        // volatile write, such that it cannot be reordered with the read of the waiting consumer
+        tail.set(t + 1);
+        LockSupport.unpark(waitingConsumer);
+        return true;
+    }
+
+    /**
+     * Adds an element, waiting for space to become available. Must only be called by the producer.
+     */
+    public void put(E e) throws InterruptedException {
+        if (offer(e)) {
+            return;
+        }
+        waitingProducer = Thread.currentThread();
+        try {
+            while (!offer(e)) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waitingProducer = null;
+        }
+    }
+
+    /**
+     * Removes the oldest element. Must only be called by the consumer.
+     *
+     * @return the oldest element, or null if the buffer is empty
+     */
+    public E poll() {
+        final long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        final int index = (int) h & mask;
+        @SuppressWarnings("unchecked")
+        final E e = (E) store[index];
+        store[index] = null;
+        head.set(h + 1);
+        LockSupport.unpark(waitingProducer);
+        return e;
+    }
+
+    /**
+     * Removes the oldest element, waiting for an element to become available. Must only be called by the consumer.
+     */
+    public E take() throws InterruptedException {
+        E e = poll();
+        if (e != null) {
+            return e;
+        }
+        waitingConsumer = Thread.currentThread();
+        try {
+            while ((e = poll()) == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return e;
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package at.jku.anttracks.util;
+
+import at.jku.anttracks.heap.IndexHeapPointers;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static at.jku.anttracks.heap.IndexBasedHeap.NULL_INDEX;
+import static at.jku.anttracks.heap.IndexBasedHeap.SUPER_ROOT_INDEX;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FastDominatorsTest {
+
+    private static final int SIZE = 10;
+
+    /**
+     * 0 -> 1 -> 3, 0 -> 2 -> 3, root 0
+     */
+    @Test
+    public void diamond() {
+        FastDominators dominators = dominators(4, new int[][]{{0, 1}, {0, 2}, {1, 3}, {2, 3}}, 0);
+
+        assertEquals(SUPER_ROOT_INDEX, dominators.getImmediateDominator(0));
+        assertEquals(0, dominators.getImmediateDominator(1));
+        assertEquals(0, dominators.getImmediateDominator(2));
+        assertEquals(0, dominators.getImmediateDominator(3));
+        assertFalse(dominators.dominates(1, 3));
+        assertFalse(dominators.dominates(2, 3));
+        assertTrue(dominators.dominates(0, 3));
+
+        assertEquals(4 * SIZE, dominators.getRetainedSize(0));
+        assertEquals(SIZE, dominators.getRetainedSize(1));
+        assertEquals(bits(0, 1, 2, 3), dominators.getDominated(0));
+        assertEquals(bits(1), dominators.getDominated(1));
+    }
+
+    /**
+     * 0 -> 1 -> 2 -> 3, root 0
+     */
+    @Test
+    public void chain() {
+        FastDominators dominators = dominators(4, new int[][]{{0, 1}, {1, 2}, {2, 3}}, 0);
+
+        assertEquals(SUPER_ROOT_INDEX, dominators.getImmediateDominator(0));
+        assertEquals(0, dominators.getImmediateDominator(1));
+        assertEquals(1, dominators.getImmediateDominator(2));
+        assertEquals(2, dominators.getImmediateDominator(3));
+        assertTrue(dominators.dominates(0, 3));
+        assertTrue(dominators.dominates(1, 3));
+        assertFalse(dominators.dominates(3, 1));
+        assertFalse(dominators.dominates(2, 2));
+
+        assertEquals(3 * SIZE, dominators.getRetainedSize(1));
+        assertEquals(bits(1, 2, 3), dominators.getDominated(1));
+    }
+
+    /**
+     * 0 -> 1 -> 2, 3 -> 2, root 0; 3 is not reachable and therefore does not affect the dominators of 2
+     */
+    @Test
+    public void unreachable() {
+        FastDominators dominators = dominators(4, new int[][]{{0, 1}, {1, 2}, {3, 2}}, 0);
+
+        assertEquals(NULL_INDEX, dominators.getImmediateDominator(3));
+        assertEquals(1, dominators.getImmediateDominator(2));
+        assertFalse(dominators.dominates(3, 2));
+        assertFalse(dominators.dominates(0, 3));
+
+        assertEquals(0, dominators.getRetainedSize(3));
+        assertEquals(2 * SIZE, dominators.getRetainedSize(1));
+        assertEquals(bits(3), dominators.getDominated(3));
+    }
+
+    private static FastDominators dominators(int nodeCount, int[][] edges, int... roots) {
+        return new FastDominators(pointers(nodeCount, edges, 0, 1), pointers(nodeCount, edges, 1, 0), n -> SIZE, roots, nodeCount);
+    }
+
+    /**
+     * @return the edges in compressed sparse row format, grouped by the node at index {@code from} of every edge
+     */
+    private static IndexHeapPointers pointers(int nodeCount, int[][] edges, int from, int to) {
+        int[][] sorted = edges.clone();
+        Arrays.sort(sorted, (a, b) -> Integer.compare(a[from], b[from]));
+        int[] offsets = new int[nodeCount + 1];
+        int[] pointers = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            offsets[sorted[i][from] + 1]++;
+            pointers[i] = sorted[i][to];
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            offsets[n + 1] += offsets[n];
+        }
+        return new IndexHeapPointers.ArrayBacked(offsets, pointers);
+    }
+
+    private static BitSet bits(int... indices) {
+        BitSet bits = new BitSet();
+        for (int index : indices) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
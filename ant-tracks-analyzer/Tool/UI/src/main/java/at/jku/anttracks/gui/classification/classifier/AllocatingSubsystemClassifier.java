@@ -3,6 +3,7 @@ package at.jku.anttracks.gui.classification.classifier;
 
 import at.jku.anttracks.classification.Classifier;
 import at.jku.anttracks.classification.annotations.C;
+import at.jku.anttracks.classification.annotations.ObjectInfoBased;
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection;
 import at.jku.anttracks.classification.enumerations.ClassifierType;
 import at.jku.anttracks.gui.utils.ImageUtil;
@@ -13,6 +14,7 @@ import at.jku.anttracks.util.ImagePack;
         example = "C2 compiler",
         type = ClassifierType.ONE,
         collection = ClassifierSourceCollection.ALL)
+@ObjectInfoBased
 public class AllocatingSubsystemClassifier extends Classifier<String> {
     public static final int VM_ID = 0;
     public static final String VM = "VM-Internal Code";
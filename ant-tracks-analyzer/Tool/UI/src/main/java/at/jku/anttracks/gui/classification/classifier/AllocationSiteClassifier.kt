@@ -2,6 +2,7 @@ package at.jku.anttracks.gui.classification.classifier
 
 import at.jku.anttracks.classification.Classifier
 import at.jku.anttracks.classification.annotations.C
+import at.jku.anttracks.classification.annotations.ObjectInfoBased
 import at.jku.anttracks.classification.annotations.ClassifierProperty
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection
 import at.jku.anttracks.classification.enumerations.ClassifierType
@@ -16,6 +17,7 @@ import java.util.*
    example = "at -> jku -> anttracks -> classifier",
    type = ClassifierType.HIERARCHY,
    collection = ClassifierSourceCollection.ALL)
+@ObjectInfoBased
 class AllocationSiteClassifier : Classifier<Array<out Description?>>() {
 
     @ClassifierProperty(overviewLevel = 10)
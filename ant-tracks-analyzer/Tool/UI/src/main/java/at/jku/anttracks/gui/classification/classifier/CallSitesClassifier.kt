@@ -3,6 +3,7 @@ package at.jku.anttracks.gui.classification.classifier
 
 import at.jku.anttracks.classification.Classifier
 import at.jku.anttracks.classification.annotations.C
+import at.jku.anttracks.classification.annotations.ObjectInfoBased
 import at.jku.anttracks.classification.annotations.ClassifierProperty
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection
 import at.jku.anttracks.classification.enumerations.ClassifierType
@@ -17,6 +18,7 @@ import at.jku.anttracks.util.safe
    example = "HashMap.put() <- Main.main()",
    type = ClassifierType.HIERARCHY,
    collection = ClassifierSourceCollection.ALL)
+@ObjectInfoBased
 class CallSitesClassifier : Classifier<Array<Description?>>() {
 
     @ClassifierProperty(overviewLevel = 10)
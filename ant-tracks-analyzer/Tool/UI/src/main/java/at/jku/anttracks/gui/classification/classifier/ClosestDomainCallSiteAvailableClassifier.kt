@@ -2,6 +2,7 @@ package at.jku.anttracks.gui.classification.classifier
 
 import at.jku.anttracks.classification.Classifier
 import at.jku.anttracks.classification.annotations.C
+import at.jku.anttracks.classification.annotations.ObjectInfoBased
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection
 import at.jku.anttracks.classification.enumerations.ClassifierType
 import at.jku.anttracks.gui.utils.ImageUtil
@@ -12,6 +13,7 @@ import at.jku.anttracks.util.ImagePack
    example = "Either \"Closest domain call site info available\" or \"No closest domain call site info available\"",
    type = ClassifierType.ONE,
    collection = ClassifierSourceCollection.ALL)
+@ObjectInfoBased
 class ClosestDomainCallSiteAvailableClassifier : Classifier<String>() {
     override fun classify(): String =
             if (allocationSite().callSites.firstOrNull { it.isPossibleDomainType } == null)
@@ -2,6 +2,7 @@ package at.jku.anttracks.gui.classification.classifier
 
 import at.jku.anttracks.classification.Classifier
 import at.jku.anttracks.classification.annotations.C
+import at.jku.anttracks.classification.annotations.ObjectInfoBased
 import at.jku.anttracks.classification.annotations.ClassifierProperty
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection
 import at.jku.anttracks.classification.enumerations.ClassifierType
@@ -15,6 +16,7 @@ import at.jku.anttracks.util.ImagePack
    example = "at -> jku -> anttracks -> classifier",
    type = ClassifierType.HIERARCHY,
    collection = ClassifierSourceCollection.ALL)
+@ObjectInfoBased
 class ClosestDomainCallSiteClassifier : Classifier<Array<out Description?>>() {
 
     @ClassifierProperty(overviewLevel = 10)
@@ -3,6 +3,7 @@ package at.jku.anttracks.gui.classification.classifier;
 
 import at.jku.anttracks.classification.Classifier;
 import at.jku.anttracks.classification.annotations.C;
+import at.jku.anttracks.classification.annotations.ObjectInfoBased;
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection;
 import at.jku.anttracks.classification.enumerations.ClassifierType;
 import at.jku.anttracks.gui.utils.ImageUtil;
@@ -16,6 +17,7 @@ import java.util.Arrays;
         example = "MyFeature #4 & MyFeature #6",
         type = ClassifierType.MANY,
         collection = ClassifierSourceCollection.ALL)
+@ObjectInfoBased
 public class FeatureClassifier extends Classifier<String[]> {
 
     private static final String[] nonFeature = new String[0];
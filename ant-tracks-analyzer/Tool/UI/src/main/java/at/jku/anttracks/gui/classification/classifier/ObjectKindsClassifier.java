@@ -3,6 +3,7 @@ package at.jku.anttracks.gui.classification.classifier;
 
 import at.jku.anttracks.classification.Classifier;
 import at.jku.anttracks.classification.annotations.C;
+import at.jku.anttracks.classification.annotations.ObjectInfoBased;
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection;
 import at.jku.anttracks.classification.enumerations.ClassifierType;
 import at.jku.anttracks.gui.utils.ImageUtil;
@@ -18,6 +19,7 @@ import static at.jku.anttracks.util.Consts.ARRAY_SIZE_MAX_SMALL;
         example = "Small Array",
         type = ClassifierType.ONE,
         collection = ClassifierSourceCollection.ALL)
+@ObjectInfoBased
 public class ObjectKindsClassifier extends Classifier<String> {
 
     public static final String MIRROR = "Mirror";
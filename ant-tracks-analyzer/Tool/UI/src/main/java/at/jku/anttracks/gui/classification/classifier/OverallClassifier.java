@@ -3,6 +3,7 @@ package at.jku.anttracks.gui.classification.classifier;
 
 import at.jku.anttracks.classification.Classifier;
 import at.jku.anttracks.classification.annotations.C;
+import at.jku.anttracks.classification.annotations.ObjectInfoBased;
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection;
 import at.jku.anttracks.classification.enumerations.ClassifierType;
 
@@ -11,6 +12,7 @@ import at.jku.anttracks.classification.enumerations.ClassifierType;
         example = "All objects",
         type = ClassifierType.ONE,
         collection = ClassifierSourceCollection.ALL)
+@ObjectInfoBased
 public class OverallClassifier extends Classifier<String> {
 
     @Override
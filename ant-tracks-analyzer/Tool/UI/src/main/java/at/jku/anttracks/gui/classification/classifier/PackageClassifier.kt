@@ -3,6 +3,7 @@ package at.jku.anttracks.gui.classification.classifier
 
 import at.jku.anttracks.classification.Classifier
 import at.jku.anttracks.classification.annotations.C
+import at.jku.anttracks.classification.annotations.ObjectInfoBased
 import at.jku.anttracks.classification.annotations.ClassifierProperty
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection
 import at.jku.anttracks.classification.enumerations.ClassifierType
@@ -14,6 +15,7 @@ import at.jku.anttracks.gui.utils.ImageUtil
 import at.jku.anttracks.util.ImagePack
 
 @C(name = NAME, desc = DESC, example = EX, type = ClassifierType.HIERARCHY, collection = ClassifierSourceCollection.ALL)
+@ObjectInfoBased
 class PackageClassifier : Classifier<Array<Description>>() {
 
     @ClassifierProperty(overviewLevel = 10)
@@ -3,6 +3,7 @@ package at.jku.anttracks.gui.classification.classifier
 
 import at.jku.anttracks.classification.Classifier
 import at.jku.anttracks.classification.annotations.C
+import at.jku.anttracks.classification.annotations.ObjectInfoBased
 import at.jku.anttracks.classification.enumerations.ClassifierSourceCollection
 import at.jku.anttracks.classification.enumerations.ClassifierType
 import at.jku.anttracks.gui.classification.classifier.ThreadClassifier.Companion.DESC
@@ -10,6 +11,7 @@ import at.jku.anttracks.gui.classification.classifier.ThreadClassifier.Companion
 import at.jku.anttracks.gui.classification.classifier.ThreadClassifier.Companion.NAME
 
 @C(name = NAME, desc = DESC, example = EX, type = ClassifierType.ONE, collection = ClassifierSourceCollection.ALL)
+@ObjectInfoBased
 class ThreadClassifier : Classifier<String>() {
     // TODO: Icon
 
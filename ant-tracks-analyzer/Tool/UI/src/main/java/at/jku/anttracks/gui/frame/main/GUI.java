@@ -7,6 +7,7 @@ import at.jku.anttracks.gui.model.ClientInfo;
 import at.jku.anttracks.gui.utils.Consts;
 import at.jku.anttracks.gui.utils.ImageUtil;
 import at.jku.anttracks.gui.utils.OperationManager;
+import at.jku.anttracks.heap.IndexHeapSnapshot;
 import at.jku.anttracks.heap.MemoryMappedFastHeap;
 import at.jku.anttracks.parser.TraceParser;
 import at.jku.anttracks.util.ApplicationStatistics;
@@ -145,7 +146,12 @@ public class GUI extends Application {
                 return Unit.INSTANCE;
             });
 
-            // 4. Assertions
+            // 4. Heap state snapshots
+            String writeHeapSnapshotsString = "at.jku.anttracks.gui.writeHeapSnapshots";
+            IndexHeapSnapshot.WRITE_SNAPSHOTS = Boolean.parseBoolean(System.getProperty(writeHeapSnapshotsString));
+            System.out.println("Write heap state snapshots: " + IndexHeapSnapshot.WRITE_SNAPSHOTS);
+
+            // 5. Assertions
             boolean assertionsEnabled = false;
             assert assertionsEnabled = true;
             ClientInfo.assertionsEnabled = assertionsEnabled;
@@ -1,16 +1,37 @@
 package at.jku.anttracks.gui.task
 
 import at.jku.anttracks.gui.model.AppInfo
+import at.jku.anttracks.gui.utils.Consts
 import at.jku.anttracks.heap.IndexBasedHeap
+import at.jku.anttracks.heap.IndexHeapSnapshot
+import at.jku.anttracks.heap.MemoryMappedFastHeap
 import at.jku.anttracks.parser.heap.HeapTraceParser
 import at.jku.anttracks.util.TraceException
+import java.io.File
 import java.io.IOException
 import java.util.concurrent.ExecutionException
+import java.util.logging.Level
 
 abstract class FastHeapTask(appInfo: AppInfo, time: Long) : HeapTask<IndexBasedHeap>(appInfo, time) {
 
     @Throws(InterruptedException::class, IOException::class, TraceException::class, ExecutionException::class)
     override fun parse(parser: HeapTraceParser): IndexBasedHeap {
+        // a heap that has already been built for this point in time in an earlier session can be opened without parsing the trace
+        val snapshotFile = IndexHeapSnapshot.getFile(appInfo.symbols.root + File.separator + Consts.ANT_META_DIRECTORY, time)
+        if (snapshotFile.exists()) {
+            try {
+                updateMessage("Open heap state snapshot for time " + time / 1000.0 + "s")
+                return MemoryMappedFastHeap(IndexHeapSnapshot.open(snapshotFile, appInfo.symbols), true) { d: Double, s: String? ->
+                    if (s != null) {
+                        updateMessage("Open heap state snapshot for time " + time / 1000.0 + "s: " + s)
+                    }
+                    updateProgress(d, 1.0)
+                }
+            } catch (e: IOException) {
+                LOGGER.log(Level.WARNING, "Could not open heap state snapshot $snapshotFile, parse trace instead", e)
+            }
+        }
+
         val detailedHeap = parser.parse(cancelProperty)
         /*
         AntTask<IndexBasedHeap> convertDetailedHeapToIndexBasedHeapTask =
@@ -30,11 +51,20 @@ abstract class FastHeapTask(appInfo: AppInfo, time: Long) : HeapTask<IndexBasedH
         updateProgress(0, 1)
         updateTitle("Heap State")
         updateMessage("Final location in trace file reached, arrange heap state representation for time " + time / 1000.0 + "s (this may take some seconds, please wait)")
-        return detailedHeap.toIndexBasedHeap { d: Double, s: String? ->
+        val heap = detailedHeap.toIndexBasedHeap { d: Double, s: String? ->
             if (s != null) {
                 updateMessage("Final location in trace file reached, arrange heap state representation for time " + time / 1000.0 + "s: " + s)
             }
             updateProgress(d, 1.0)
         }
+        if (IndexHeapSnapshot.WRITE_SNAPSHOTS) {
+            updateMessage("Write heap state snapshot for time " + time / 1000.0 + "s")
+            try {
+                IndexHeapSnapshot.write(heap, snapshotFile)
+            } catch (e: IOException) {
+                LOGGER.log(Level.WARNING, "Could not write heap state snapshot $snapshotFile", e)
+            }
+        }
+        return heap
     }
 }
\ No newline at end of file